@@ -0,0 +1,347 @@
+package com.exponam.api.arrow;
+
+import com.exponam.api.reader.QueryColumn;
+import com.exponam.api.reader.Reader;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateMilliVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeStampMilliVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Exports the results of a query as Apache Arrow record batches, either to a callback as VectorSchemaRoot
+ * batches or to a channel in the Arrow IPC stream or file format.  Rows are selected exactly as for
+ * Reader.getRowValues, and each projected column becomes a nullable Arrow field, in column index order,
+ * named after the column:
+ * <ul>
+ *     <li>Boolean columns as Bool</li>
+ *     <li>Long columns as Int(64, signed)</li>
+ *     <li>Double columns as FloatingPoint(DOUBLE)</li>
+ *     <li>String columns as Utf8, with display formats applied</li>
+ *     <li>Date columns as Date(MILLISECOND), the date in the default time zone</li>
+ *     <li>DateTime columns as Timestamp(MILLISECOND), without a time zone, the date and time in the default
+ *     time zone</li>
+ *     <li>Time columns as Time(MILLISECOND, 32), the time of day in the default time zone</li>
+ * </ul>
+ * The desired type given in each QueryColumn is ignored, as for Reader.getColumnBatches.
+ * <p>
+ * Values are written from the row callback straight into the Arrow vectors, and a single VectorSchemaRoot
+ * is refilled for each batch, so converting a file of any size holds no more than one batch in memory.
+ * <p>
+ * Arrow is an optional dependency of this library: applications that use this class must have arrow-vector,
+ * and an arrow-memory allocator implementation such as arrow-memory-netty, on their class path.
+ */
+public final class ArrowExport {
+    /**
+     * The number of rows in a batch when none is specified.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 65536;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final Reader reader;
+    private final int worksheetIndex;
+    private final Map<Integer, QueryColumn> queryColumns;
+    private final List<Integer> projectedColumns;
+    private final Schema schema;
+    private final BufferAllocator allocator;
+
+    /**
+     * @param reader the Reader to export from, which must remain open while exporting
+     * @param worksheetIndex the zero-based worksheet index
+     * @param queryColumns map describing the columns to be exported and filtered, as for Reader.getRowValues
+     * @param allocator the allocator of the Arrow vectors
+     */
+    public ArrowExport(Reader reader, int worksheetIndex, Map<Integer, QueryColumn> queryColumns,
+                       BufferAllocator allocator) {
+        this.reader = Objects.requireNonNull(reader, "reader");
+        Objects.requireNonNull(queryColumns, "queryColumns");
+        if (queryColumns.isEmpty()) throw new IllegalArgumentException("queryColumns cannot be empty");
+        this.allocator = Objects.requireNonNull(allocator, "allocator");
+        this.worksheetIndex = worksheetIndex;
+
+        Map<Integer, QueryColumn> columns = new TreeMap<>();
+        List<Integer> projected = new ArrayList<>();
+        List<Field> fields = new ArrayList<>();
+        for (Map.Entry<Integer, QueryColumn> entry : new TreeMap<>(queryColumns).entrySet()) {
+            int columnIndex = entry.getKey();
+            QueryColumn queryColumn = entry.getValue();
+            Reader.ColumnTypes columnType = reader.getColumnType(worksheetIndex, columnIndex);
+            columns.put(columnIndex, queryColumn.getProject()
+                    ? new QueryColumn(true, exportTypeFor(columnType), queryColumn.getColumnFilter())
+                    : queryColumn);
+            if (queryColumn.getProject()) {
+                projected.add(columnIndex);
+                fields.add(Field.nullable(reader.getColumnName(worksheetIndex, columnIndex), arrowTypeFor(columnType)));
+            }
+        }
+        if (projected.isEmpty()) throw new IllegalArgumentException("queryColumns must project at least one column");
+        this.queryColumns = columns;
+        this.projectedColumns = projected;
+        this.schema = new Schema(fields);
+    }
+
+    /**
+     * @return the Arrow schema of the exported batches
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * Delivers the rows of startRow..endRow that match the query in batches of up to batchSize rows.  A single
+     * VectorSchemaRoot is allocated for the call and refilled for each callback, and closed on return; the
+     * batch must not be retained once batchConsumer returns (use VectorSchemaRoot.slice or a TransferPair to
+     * keep its buffers).
+     * @param startRow the zero-based index for the first row in the range of rows to be exported
+     * @param endRow the zero-based index for the last row in the range of rows to be exported
+     * @param batchSize the maximum number of rows in a batch
+     * @param batchConsumer the callback invoked for each batch of rows
+     */
+    public void getBatches(int startRow, int endRow, int batchSize, Consumer<VectorSchemaRoot> batchConsumer) {
+        Objects.requireNonNull(batchConsumer, "batchConsumer");
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+            fill(root, startRow, endRow, batchSize, batchConsumer);
+        }
+    }
+
+    /**
+     * Writes the rows of startRow..endRow that match the query to channel, in the Arrow IPC streaming format.
+     * The channel is not closed.
+     * @param startRow the zero-based index for the first row in the range of rows to be exported
+     * @param endRow the zero-based index for the last row in the range of rows to be exported
+     * @param batchSize the maximum number of rows in a record batch
+     * @param channel the channel to write to
+     * @throws IOException if there is a problem writing to the channel
+     */
+    public void writeStream(int startRow, int endRow, int batchSize, WritableByteChannel channel) throws IOException {
+        Objects.requireNonNull(channel, "channel");
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+            write(root, new ArrowStreamWriter(root, new DictionaryProvider.MapDictionaryProvider(), channel),
+                    startRow, endRow, batchSize);
+        }
+    }
+
+    /**
+     * Writes the rows of startRow..endRow that match the query to channel, in the Arrow IPC file format, which
+     * adds a footer allowing random access to the record batches.  The channel is not closed.
+     * @param startRow the zero-based index for the first row in the range of rows to be exported
+     * @param endRow the zero-based index for the last row in the range of rows to be exported
+     * @param batchSize the maximum number of rows in a record batch
+     * @param channel the channel to write to
+     * @throws IOException if there is a problem writing to the channel
+     */
+    public void writeFile(int startRow, int endRow, int batchSize, WritableByteChannel channel) throws IOException {
+        Objects.requireNonNull(channel, "channel");
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+            write(root, new ArrowFileWriter(root, new DictionaryProvider.MapDictionaryProvider(), channel),
+                    startRow, endRow, batchSize);
+        }
+    }
+
+    private void write(VectorSchemaRoot root, ArrowWriter writer, int startRow, int endRow, int batchSize) throws IOException {
+        writer.start();
+        try {
+            fill(root, startRow, endRow, batchSize, batch -> {
+                try {
+                    writer.writeBatch();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.end();
+    }
+
+    private void fill(VectorSchemaRoot root, int startRow, int endRow, int batchSize,
+                      Consumer<VectorSchemaRoot> batchConsumer) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be > 0");
+        ValueWriter[] writers = new ValueWriter[projectedColumns.size()];
+        for (int i = 0; i < writers.length; i++)
+            writers[i] = writerFor(reader.getColumnType(worksheetIndex, projectedColumns.get(i)), root.getVector(i));
+        int[] columns = projectedColumns.stream().mapToInt(Integer::intValue).toArray();
+        int[] size = new int[1];
+
+        root.allocateNew();
+        reader.getRowValues(worksheetIndex, startRow, endRow, queryColumns, (rowIndex, row) -> {
+            int position = size[0]++;
+            for (int i = 0; i < columns.length; i++) writers[i].write(position, row.apply(columns[i]));
+            if (size[0] == batchSize) {
+                deliver(root, size[0], batchConsumer);
+                size[0] = 0;
+            }
+        });
+        if (size[0] > 0) deliver(root, size[0], batchConsumer);
+    }
+
+    private static void deliver(VectorSchemaRoot root, int size, Consumer<VectorSchemaRoot> batchConsumer) {
+        root.setRowCount(size);
+        batchConsumer.accept(root);
+        for (FieldVector vector : root.getFieldVectors()) vector.reset();
+    }
+
+    /**
+     * Writes one value, or null for an empty value, at a position of an Arrow vector.
+     */
+    private interface ValueWriter {
+        void write(int position, Object value);
+    }
+
+    private static ValueWriter writerFor(Reader.ColumnTypes columnType, FieldVector vector) {
+        switch (columnType) {
+            case Boolean: {
+                BitVector bits = (BitVector) vector;
+                return (position, value) -> {
+                    if (value == null) bits.setNull(position);
+                    else bits.setSafe(position, (Boolean) value ? 1 : 0);
+                };
+            }
+            case Long: {
+                BigIntVector longs = (BigIntVector) vector;
+                return (position, value) -> {
+                    if (value == null) longs.setNull(position);
+                    else longs.setSafe(position, (Long) value);
+                };
+            }
+            case Double: {
+                Float8Vector doubles = (Float8Vector) vector;
+                return (position, value) -> {
+                    if (value == null) doubles.setNull(position);
+                    else doubles.setSafe(position, (Double) value);
+                };
+            }
+            case String: {
+                VarCharVector strings = (VarCharVector) vector;
+                return (position, value) -> {
+                    if (value == null) strings.setNull(position);
+                    else strings.setSafe(position, ((String) value).getBytes(StandardCharsets.UTF_8));
+                };
+            }
+            case Date: {
+                DateMilliVector dates = (DateMilliVector) vector;
+                Calendar calendar = Calendar.getInstance();
+                Calendar utc = Calendar.getInstance(UTC);
+                return (position, value) -> {
+                    if (value == null) dates.setNull(position);
+                    else dates.setSafe(position, wallClockMillis(calendar, utc, (Date) value, true));
+                };
+            }
+            case DateTime: {
+                TimeStampMilliVector timestamps = (TimeStampMilliVector) vector;
+                Calendar calendar = Calendar.getInstance();
+                Calendar utc = Calendar.getInstance(UTC);
+                return (position, value) -> {
+                    if (value == null) timestamps.setNull(position);
+                    else timestamps.setSafe(position, wallClockMillis(calendar, utc, (Date) value, false));
+                };
+            }
+            case Time: {
+                TimeMilliVector times = (TimeMilliVector) vector;
+                Calendar calendar = Calendar.getInstance();
+                return (position, value) -> {
+                    if (value == null) {
+                        times.setNull(position);
+                    } else {
+                        calendar.setTime((Date) value);
+                        times.setSafe(position, ((calendar.get(Calendar.HOUR_OF_DAY) * 60
+                                + calendar.get(Calendar.MINUTE)) * 60
+                                + calendar.get(Calendar.SECOND)) * 1000
+                                + calendar.get(Calendar.MILLISECOND));
+                    }
+                };
+            }
+            default:
+                throw new IllegalArgumentException(String.format("Unknown column type %s", columnType));
+        }
+    }
+
+    /**
+     * The date and time of value in the default time zone, as the milliseconds since the epoch at which a UTC
+     * clock reads the same date and time, which is how Arrow represents dates and timestamps without a time
+     * zone.  The time of day is dropped if dateOnly.
+     */
+    private static long wallClockMillis(Calendar calendar, Calendar utc, Date value, boolean dateOnly) {
+        calendar.setTime(value);
+        utc.clear();
+        utc.set(Calendar.ERA, calendar.get(Calendar.ERA));
+        utc.set(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), calendar.get(Calendar.DAY_OF_MONTH));
+        if (!dateOnly) {
+            utc.set(Calendar.HOUR_OF_DAY, calendar.get(Calendar.HOUR_OF_DAY));
+            utc.set(Calendar.MINUTE, calendar.get(Calendar.MINUTE));
+            utc.set(Calendar.SECOND, calendar.get(Calendar.SECOND));
+            utc.set(Calendar.MILLISECOND, calendar.get(Calendar.MILLISECOND));
+        }
+        return utc.getTimeInMillis();
+    }
+
+    /**
+     * The type requested from the Reader for the values of a column of columnType.
+     */
+    private static Type exportTypeFor(Reader.ColumnTypes columnType) {
+        switch (columnType) {
+            case Boolean:
+                return Boolean.class;
+            case Long:
+                return Long.class;
+            case Double:
+                return Double.class;
+            case String:
+                return String.class;
+            default:
+                return Date.class;
+        }
+    }
+
+    private static ArrowType arrowTypeFor(Reader.ColumnTypes columnType) {
+        switch (columnType) {
+            case Boolean:
+                return ArrowType.Bool.INSTANCE;
+            case Long:
+                return new ArrowType.Int(64, true);
+            case Double:
+                return new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE);
+            case String:
+                return ArrowType.Utf8.INSTANCE;
+            case Date:
+                return new ArrowType.Date(DateUnit.MILLISECOND);
+            case DateTime:
+                return new ArrowType.Timestamp(TimeUnit.MILLISECOND, null);
+            case Time:
+                return new ArrowType.Time(TimeUnit.MILLISECOND, 32);
+            default:
+                throw new IllegalArgumentException(String.format("Unknown column type %s", columnType));
+        }
+    }
+}
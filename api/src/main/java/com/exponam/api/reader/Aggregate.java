@@ -0,0 +1,104 @@
+package com.exponam.api.reader;
+
+/**
+ * An aggregate to be computed by Reader.aggregate.
+ * <p>
+ * Aggregates over Long, Date, DateTime, Time and Boolean columns are computed on long values (the values that
+ * getValue returns when Long.class is requested, with Boolean true counted as 1); aggregates over Double
+ * columns are computed on double values.  String columns can only be counted.  Empty values are ignored by
+ * every aggregate except count().
+ */
+public final class Aggregate {
+    /**
+     * The kinds of aggregate supported
+     */
+    public enum Kind {
+        Count,
+        Sum,
+        Min,
+        Max,
+        Avg
+    }
+
+    private static final int ALL_ROWS = -1;
+
+    private final Kind kind;
+    private final int columnIndex;
+
+    /**
+     * @return an aggregate counting the rows that match the query's filters
+     */
+    public static Aggregate count() {
+        return new Aggregate(Kind.Count, ALL_ROWS);
+    }
+
+    /**
+     * @param columnIndex the zero-based column index
+     * @return an aggregate counting the non-empty values of a column
+     */
+    public static Aggregate count(int columnIndex) {
+        return new Aggregate(Kind.Count, validateColumnIndex(columnIndex));
+    }
+
+    /**
+     * @param columnIndex the zero-based column index
+     * @return an aggregate summing a column; a Long for integral columns, a Double for Double columns
+     */
+    public static Aggregate sum(int columnIndex) {
+        return new Aggregate(Kind.Sum, validateColumnIndex(columnIndex));
+    }
+
+    /**
+     * @param columnIndex the zero-based column index
+     * @return an aggregate finding the smallest value of a column, or null if it has no non-empty values
+     */
+    public static Aggregate min(int columnIndex) {
+        return new Aggregate(Kind.Min, validateColumnIndex(columnIndex));
+    }
+
+    /**
+     * @param columnIndex the zero-based column index
+     * @return an aggregate finding the largest value of a column, or null if it has no non-empty values
+     */
+    public static Aggregate max(int columnIndex) {
+        return new Aggregate(Kind.Max, validateColumnIndex(columnIndex));
+    }
+
+    /**
+     * @param columnIndex the zero-based column index
+     * @return an aggregate averaging a column, as a Double, or null if it has no non-empty values
+     */
+    public static Aggregate avg(int columnIndex) {
+        return new Aggregate(Kind.Avg, validateColumnIndex(columnIndex));
+    }
+
+    private Aggregate(Kind kind, int columnIndex) {
+        this.kind = kind;
+        this.columnIndex = columnIndex;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return the zero-based column index, or -1 for count()
+     */
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    boolean countsAllRows() {
+        return columnIndex == ALL_ROWS;
+    }
+
+    private static int validateColumnIndex(int columnIndex) {
+        if (columnIndex < 0)
+            throw new IllegalArgumentException(String.format("Column index '%d' out of range", columnIndex));
+        return columnIndex;
+    }
+
+    public String toString() {
+        return countsAllRows() ? "Count(*)" : String.format("%s(%d)", kind, columnIndex);
+    }
+}
@@ -0,0 +1,85 @@
+package com.exponam.api.reader;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of Reader.aggregate: one Group for each distinct combination of values of the group-by columns
+ * among the matching rows.  Without group-by columns there is exactly one Group, with an empty key, even if
+ * no rows match.
+ */
+public final class AggregateResult {
+    private final List<Integer> groupByColumns;
+    private final List<Aggregate> aggregates;
+    private final List<Group> groups;
+
+    AggregateResult(List<Integer> groupByColumns, List<Aggregate> aggregates, List<Group> groups) {
+        this.groupByColumns = ImmutableList.copyOf(groupByColumns);
+        this.aggregates = ImmutableList.copyOf(aggregates);
+        this.groups = Collections.unmodifiableList(groups);
+    }
+
+    public List<Integer> getGroupByColumns() {
+        return groupByColumns;
+    }
+
+    public List<Aggregate> getAggregates() {
+        return aggregates;
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * The value of an aggregate for a query without group-by columns.
+     * @param aggregateIndex the zero-based position of the aggregate in the query
+     * @return the aggregate value
+     */
+    public Number getValue(int aggregateIndex) {
+        if (!groupByColumns.isEmpty())
+            throw new IllegalStateException("The query has group-by columns; read the values of each group");
+        return groups.get(0).getValue(aggregateIndex);
+    }
+
+    public String toString() {
+        return String.format("groupByColumns=%s, aggregates=%s, groups=%d", groupByColumns, aggregates, groups.size());
+    }
+
+    /**
+     * The aggregate values for one combination of group-by values.
+     */
+    public static final class Group {
+        private final List<Object> key;
+        private final Number[] values;
+
+        Group(List<Object> key, Number[] values) {
+            this.key = Collections.unmodifiableList(key);
+            this.values = values;
+        }
+
+        /**
+         * @return the values of the group-by columns, in the order of the query, in the form that ColumnVector
+         * uses for their column types; an empty value is null
+         */
+        public List<Object> getKey() {
+            return key;
+        }
+
+        /**
+         * @param aggregateIndex the zero-based position of the aggregate in the query
+         * @return the aggregate value
+         */
+        public Number getValue(int aggregateIndex) {
+            if (aggregateIndex < 0 || aggregateIndex >= values.length)
+                throw new IllegalArgumentException(String.format("Aggregate index '%d' out of range", aggregateIndex));
+            return values[aggregateIndex];
+        }
+
+        public String toString() {
+            return String.format("key=%s", key);
+        }
+    }
+}
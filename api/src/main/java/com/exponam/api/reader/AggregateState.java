@@ -0,0 +1,81 @@
+package com.exponam.api.reader;
+
+/**
+ * The mergeable partial state of one aggregate, accumulated on primitive values.
+ */
+final class AggregateState {
+    private final boolean floating;
+    private long count;
+    private long longSum;
+    private double doubleSum;
+    private long longMin = Long.MAX_VALUE;
+    private long longMax = Long.MIN_VALUE;
+    private double doubleMin = Double.POSITIVE_INFINITY;
+    private double doubleMax = Double.NEGATIVE_INFINITY;
+
+    AggregateState(boolean floating) {
+        this.floating = floating;
+    }
+
+    void addRow() {
+        count++;
+    }
+
+    void addRows(long rows) {
+        count += rows;
+    }
+
+    void add(Object value) {
+        if (value == null) return;
+        count++;
+        if (floating) {
+            add(((Number) value).doubleValue());
+        } else if (value instanceof Boolean) {
+            add((Boolean) value ? 1L : 0L);
+        } else {
+            add(((Number) value).longValue());
+        }
+    }
+
+    void add(long value) {
+        longSum = Math.addExact(longSum, value);
+        if (value < longMin) longMin = value;
+        if (value > longMax) longMax = value;
+    }
+
+    void add(double value) {
+        doubleSum += value;
+        if (value < doubleMin) doubleMin = value;
+        if (value > doubleMax) doubleMax = value;
+    }
+
+    void merge(AggregateState other) {
+        count += other.count;
+        longSum = Math.addExact(longSum, other.longSum);
+        doubleSum += other.doubleSum;
+        longMin = Math.min(longMin, other.longMin);
+        longMax = Math.max(longMax, other.longMax);
+        doubleMin = Math.min(doubleMin, other.doubleMin);
+        doubleMax = Math.max(doubleMax, other.doubleMax);
+    }
+
+    Number result(Aggregate.Kind kind) {
+        switch (kind) {
+            case Count:
+                return count;
+            case Sum:
+                return floating ? (Number) doubleSum : (Number) longSum;
+            case Min:
+                if (count == 0) return null;
+                return floating ? (Number) doubleMin : (Number) longMin;
+            case Max:
+                if (count == 0) return null;
+                return floating ? (Number) doubleMax : (Number) longMax;
+            case Avg:
+                if (count == 0) return null;
+                return (floating ? doubleSum : (double) longSum) / count;
+            default:
+                throw new IllegalArgumentException("Unknown aggregate");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.exponam.api.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The evaluation of a set of aggregates, grouped by zero or more columns.  Each partition of the rows is
+ * folded into a Partial of its own, and the Partials are then merged, in partition order, into the result.
+ */
+final class Aggregation {
+    private final List<Integer> groupByColumns;
+    private final List<Aggregate> aggregates;
+    private final boolean[] floating;
+
+    Aggregation(Schema.Worksheet worksheet, List<Integer> groupByColumns, List<Aggregate> aggregates) {
+        this.groupByColumns = new ArrayList<>(groupByColumns);
+        this.aggregates = new ArrayList<>(aggregates);
+        this.floating = new boolean[aggregates.size()];
+        for (int columnIndex : groupByColumns) worksheet.getColumn(columnIndex);
+        for (int i = 0; i < aggregates.size(); i++) {
+            Aggregate aggregate = aggregates.get(i);
+            if (aggregate.countsAllRows()) continue;
+            Reader.ColumnTypes columnType = worksheet.getColumn(aggregate.getColumnIndex()).getType();
+            if (columnType == Reader.ColumnTypes.String && aggregate.getKind() != Aggregate.Kind.Count)
+                throw new IllegalArgumentException(String.format("%s cannot be applied to String column '%d'",
+                        aggregate.getKind(), aggregate.getColumnIndex()));
+            floating[i] = columnType == Reader.ColumnTypes.Double;
+        }
+    }
+
+    /**
+     * @return the columns whose values are needed to compute the aggregates
+     */
+    List<Integer> getProjectedColumns() {
+        List<Integer> columns = new ArrayList<>(groupByColumns);
+        for (Aggregate aggregate : aggregates)
+            if (!aggregate.countsAllRows() && !columns.contains(aggregate.getColumnIndex()))
+                columns.add(aggregate.getColumnIndex());
+        return columns;
+    }
+
+    Partial newPartial() {
+        return new Partial();
+    }
+
+    AggregateResult finish(List<Partial> partials) {
+        Map<List<Object>, AggregateState[]> merged = new LinkedHashMap<>();
+        for (Partial partial : partials) {
+            for (Map.Entry<List<Object>, AggregateState[]> group : partial.groups.entrySet()) {
+                AggregateState[] states = merged.get(group.getKey());
+                if (states == null) {
+                    merged.put(group.getKey(), group.getValue());
+                } else {
+                    for (int i = 0; i < states.length; i++) states[i].merge(group.getValue()[i]);
+                }
+            }
+        }
+        if (merged.isEmpty() && groupByColumns.isEmpty()) merged.put(Collections.emptyList(), newStates());
+
+        List<AggregateResult.Group> groups = new ArrayList<>(merged.size());
+        for (Map.Entry<List<Object>, AggregateState[]> group : merged.entrySet()) {
+            Number[] values = new Number[aggregates.size()];
+            for (int i = 0; i < values.length; i++)
+                values[i] = group.getValue()[i].result(aggregates.get(i).getKind());
+            groups.add(new AggregateResult.Group(group.getKey(), values));
+        }
+        return new AggregateResult(groupByColumns, aggregates, groups);
+    }
+
+    private AggregateState[] newStates() {
+        AggregateState[] states = new AggregateState[aggregates.size()];
+        for (int i = 0; i < states.length; i++) states[i] = new AggregateState(floating[i]);
+        return states;
+    }
+
+    /**
+     * The aggregates of one partition, accumulated as its rows are read.
+     */
+    final class Partial implements BiConsumer<Integer, Function<Integer, Object>> {
+        private final Map<List<Object>, AggregateState[]> groups = new LinkedHashMap<>();
+        private AggregateState[] ungrouped;
+
+        @Override
+        public void accept(Integer rowIndex, Function<Integer, Object> row) {
+            AggregateState[] states = statesFor(row);
+            for (int i = 0; i < states.length; i++) {
+                Aggregate aggregate = aggregates.get(i);
+                if (aggregate.countsAllRows()) states[i].addRow();
+                else states[i].add(row.apply(aggregate.getColumnIndex()));
+            }
+        }
+
+        /**
+         * Counts rows without reading them, which is only valid when every aggregate is count() and there
+         * are no group-by columns.
+         */
+        void addRows(long rows) {
+            AggregateState[] states = statesFor(null);
+            for (AggregateState state : states) state.addRows(rows);
+        }
+
+        private AggregateState[] statesFor(Function<Integer, Object> row) {
+            if (groupByColumns.isEmpty()) {
+                if (ungrouped == null) {
+                    ungrouped = newStates();
+                    groups.put(Collections.emptyList(), ungrouped);
+                }
+                return ungrouped;
+            }
+            Object[] key = new Object[groupByColumns.size()];
+            for (int i = 0; i < key.length; i++) key[i] = row.apply(groupByColumns.get(i));
+            return groups.computeIfAbsent(Arrays.asList(key), ignored -> newStates());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.exponam.api.reader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The origin of the bytes of a .BIG file.  Each call to openStream() yields an independent stream
+ * positioned at the start of the file, so several BigReaders can be opened over the same file.
+ */
+abstract class BigReaderSource implements Closeable {
+    /**
+     * The size of the regions in which a file is memory-mapped; a single MappedByteBuffer cannot
+     * exceed 2GB.
+     */
+    static final long MAPPED_REGION_SIZE = 1L << 30;
+
+    abstract InputStream openStream() throws IOException;
+
+    abstract String getName();
+
+    /**
+     * @return the path of the file, or null if the source is not a file
+     */
+    Path getPath() {
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * A source that reads the file through a FileInputStream per stream.
+     */
+    static BigReaderSource forFile(File bigFile) {
+        return new BigReaderSource() {
+            @Override
+            InputStream openStream() throws IOException {
+                return new FileInputStream(bigFile);
+            }
+
+            @Override
+            String getName() {
+                return bigFile.getName();
+            }
+
+            @Override
+            Path getPath() {
+                return bigFile.toPath();
+            }
+        };
+    }
+
+    /**
+     * A source that reads the file with positional reads on a single FileChannel, which is held open
+     * until the source is closed, and re-opened if an interrupted read closes it.
+     */
+    static BigReaderSource forChannel(Path bigFile) throws IOException {
+        SharedFileChannel channel = new SharedFileChannel(bigFile);
+        return new BigReaderSource() {
+            @Override
+            InputStream openStream() throws IOException {
+                return new ChannelInputStream(channel);
+            }
+
+            @Override
+            String getName() {
+                return bigFile.getFileName().toString();
+            }
+
+            @Override
+            Path getPath() {
+                return bigFile;
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+
+    /**
+     * A source that maps the whole file into memory, in regions of MAPPED_REGION_SIZE bytes.  The channel
+     * is closed as soon as the file is mapped; the mapping itself is released when it is garbage collected.
+     */
+    static BigReaderSource forMappedFile(Path bigFile) throws IOException {
+        ByteBuffer[] regions;
+        try (FileChannel channel = FileChannel.open(bigFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            regions = new ByteBuffer[(int) Math.max(1, (size + MAPPED_REGION_SIZE - 1) / MAPPED_REGION_SIZE)];
+            for (int i = 0; i < regions.length; i++) {
+                long start = i * MAPPED_REGION_SIZE;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAPPED_REGION_SIZE, size - start));
+            }
+        }
+        return forRegions(regions, MAPPED_REGION_SIZE, bigFile);
+    }
+
+    /**
+     * A source over the remaining bytes of buffer, which holds the entire file.  The buffer is not
+     * modified, and must not be modified while the source is in use.
+     */
+    static BigReaderSource forBuffer(ByteBuffer buffer) {
+        return forRegions(new ByteBuffer[]{buffer}, Math.max(1, buffer.remaining()), null);
+    }
+
+    /**
+     * @param path the path of the mapped file, or null if the regions were not mapped from a file
+     */
+    private static BigReaderSource forRegions(ByteBuffer[] regions, long regionSize, Path path) {
+        return new BigReaderSource() {
+            @Override
+            InputStream openStream() {
+                return new ByteBufferInputStream(regions, regionSize);
+            }
+
+            @Override
+            String getName() {
+                return path == null ? "<buffer>" : path.getFileName().toString();
+            }
+
+            @Override
+            Path getPath() {
+                return path;
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package com.exponam.api.reader;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream over one or more ByteBuffer regions that together hold a whole file, such as the
+ * MappedByteBuffer regions of a memory-mapped file.  Every region except the last holds exactly
+ * regionSize bytes.  The stream reads through slices of the regions, so the regions themselves are
+ * never modified and can be shared by any number of streams.
+ */
+final class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer[] regions;
+    private final long regionSize;
+    private final long size;
+    private long position;
+    private long mark;
+
+    ByteBufferInputStream(ByteBuffer[] regions, long regionSize) {
+        this.regions = new ByteBuffer[regions.length];
+        long total = 0;
+        for (int i = 0; i < regions.length; i++) {
+            this.regions[i] = regions[i].slice();
+            total += this.regions[i].remaining();
+        }
+        this.regionSize = regionSize;
+        this.size = total;
+    }
+
+    @Override
+    public int read() {
+        if (position >= size) return -1;
+        int value = regions[(int) (position / regionSize)].get((int) (position % regionSize)) & 0xff;
+        position++;
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        if (length == 0) return 0;
+        if (position >= size) return -1;
+        int total = 0;
+        while (total < length && position < size) {
+            ByteBuffer region = regions[(int) (position / regionSize)];
+            region.position((int) (position % regionSize));
+            int count = Math.min(length - total, region.remaining());
+            region.get(buffer, offset + total, count);
+            total += count;
+            position += count;
+        }
+        return total;
+    }
+
+    @Override
+    public long skip(long count) {
+        long skipped = Math.max(0, Math.min(count, size - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        mark = position;
+    }
+
+    @Override
+    public void reset() {
+        position = mark;
+    }
+}
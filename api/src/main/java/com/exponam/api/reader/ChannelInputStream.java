@@ -0,0 +1,70 @@
+package com.exponam.api.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream over a SharedFileChannel that reads with positional reads.  The stream keeps its own
+ * position, so any number of these streams can read from one channel concurrently without disturbing one
+ * another.  Closing the stream does not close the channel.
+ */
+final class ChannelInputStream extends InputStream {
+    private final SharedFileChannel channel;
+    private final long size;
+    private long position;
+    private long mark;
+
+    ChannelInputStream(SharedFileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        if (position >= size) return -1;
+        ByteBuffer target = ByteBuffer.wrap(buffer, offset, (int) Math.min(length, size - position));
+        int total = 0;
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position + total);
+            if (read < 0) break;
+            total += read;
+        }
+        position += total;
+        return total == 0 ? -1 : total;
+    }
+
+    @Override
+    public long skip(long count) {
+        long skipped = Math.max(0, Math.min(count, size - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, size - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+        mark = position;
+    }
+
+    @Override
+    public void reset() {
+        position = mark;
+    }
+}
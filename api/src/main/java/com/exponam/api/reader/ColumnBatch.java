@@ -0,0 +1,74 @@
+package com.exponam.api.reader;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A batch of consecutive results from Reader.getColumnBatches, held column-wise.  Each projected column
+ * is available as a ColumnVector, and getRowIndexes() gives the zero-based row index of each position.
+ * <p>
+ * A batch is recycled once the consumer returns, so neither the batch nor its arrays may be retained.
+ */
+public final class ColumnBatch {
+    /**
+     * The number of rows in a batch when none is specified.
+     */
+    public static final int DEFAULT_SIZE = 4096;
+
+    private final int capacity;
+    private final int[] rowIndexes;
+    private final ColumnVector[] vectorOfColumn;
+    private final ColumnVector[] vectors;
+    private int size;
+
+    ColumnBatch(int capacity, Map<Integer, Reader.ColumnTypes> projectedColumns) {
+        this.capacity = capacity;
+        this.rowIndexes = new int[capacity];
+        int maxColumn = projectedColumns.keySet().stream().mapToInt(Integer::intValue).max().orElse(-1);
+        this.vectorOfColumn = new ColumnVector[maxColumn + 1];
+        this.vectors = projectedColumns.entrySet().stream()
+                .map(entry -> new ColumnVector(entry.getKey(), entry.getValue(), capacity))
+                .toArray(ColumnVector[]::new);
+        for (ColumnVector vector : vectors) vectorOfColumn[vector.getColumnIndex()] = vector;
+    }
+
+    /**
+     * @return the number of rows in the batch
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the row index of each position in the batch; only the first getSize() elements are meaningful
+     */
+    public int[] getRowIndexes() {
+        return rowIndexes;
+    }
+
+    /**
+     * @param columnIndex the zero-based index of a projected column
+     * @return the values of that column
+     */
+    public ColumnVector getColumn(int columnIndex) {
+        ColumnVector vector = columnIndex >= 0 && columnIndex < vectorOfColumn.length ? vectorOfColumn[columnIndex] : null;
+        if (vector == null)
+            throw new IllegalArgumentException(String.format("Column '%d' was not projected", columnIndex));
+        return vector;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+
+    void add(int rowIndex, Function<Integer, Object> row) {
+        rowIndexes[size] = rowIndex;
+        for (ColumnVector vector : vectors) vector.set(size, row.apply(vector.getColumnIndex()));
+        size++;
+    }
+
+    void clear() {
+        for (ColumnVector vector : vectors) vector.clear(size);
+        size = 0;
+    }
+}
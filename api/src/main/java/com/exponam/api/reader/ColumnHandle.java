@@ -0,0 +1,67 @@
+package com.exponam.api.reader;
+
+import java.util.Optional;
+
+/**
+ * A typed accessor for the values of one column, obtained from Reader.column.  The worksheet, column and
+ * requested type are validated once, when the handle is created, so reading a value costs only a row
+ * bounds check and the decode itself.
+ * <p>
+ * A handle is valid for as long as the Reader that created it is open.
+ * @param <T> the type in which values are returned
+ */
+public final class ColumnHandle<T> {
+    private final Reader reader;
+    private final int worksheetIndex;
+    private final int columnIndex;
+    private final int rowCount;
+    private final Class<T> desiredClass;
+    private final Schema.Column column;
+
+    ColumnHandle(Reader reader, int worksheetIndex, Schema.Column column, int rowCount, Class<T> desiredClass) {
+        this.reader = reader;
+        this.worksheetIndex = worksheetIndex;
+        this.columnIndex = column.getIndex();
+        this.rowCount = rowCount;
+        this.desiredClass = desiredClass;
+        this.column = column;
+    }
+
+    /**
+     * @param rowIndex the zero-based row index
+     * @return the value in that row, or null if it is empty
+     */
+    public T get(int rowIndex) {
+        if (rowIndex < 0 || rowIndex >= rowCount)
+            throw new IllegalArgumentException(String.format("Row index '%d' out of range", rowIndex));
+        return desiredClass.cast(reader.readValue(worksheetIndex, rowIndex, columnIndex, desiredClass));
+    }
+
+    /**
+     * @param rowIndex the zero-based row index
+     * @return the value in that row, or Optional.empty() if it is empty
+     */
+    public Optional<T> getOptional(int rowIndex) {
+        return Optional.ofNullable(get(rowIndex));
+    }
+
+    public int getWorksheetIndex() {
+        return worksheetIndex;
+    }
+
+    public Schema.Column getColumn() {
+        return column;
+    }
+
+    public Class<T> getDesiredClass() {
+        return desiredClass;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public String toString() {
+        return String.format("worksheet=%d, column=%s, desiredClass=%s", worksheetIndex, column.toString(), desiredClass.getName());
+    }
+}
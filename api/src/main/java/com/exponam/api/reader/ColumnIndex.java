@@ -0,0 +1,347 @@
+package com.exponam.api.reader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A secondary index of one column of a .BIG file, held in a sidecar file next to it: the distinct non-empty
+ * values of the column in ascending order, each with the ascending indices of the rows that hold it.  An
+ * equality or range filter on the column is answered by two binary searches over the values, without
+ * reading the .BIG file at all.
+ * <p>
+ * Values are held as for FilterPlan: as longs for Long, Boolean, Date, DateTime and Time columns, as doubles
+ * for Double columns (NaN, which no comparison selects, is left out), and as UTF-8 strings, in String.compareTo
+ * order, for String columns.
+ * <p>
+ * The sidecar is a 64-byte header followed by the values, the offset of each value's first row in the row
+ * section, and the rows.  Each section is memory-mapped when the index is opened, so opening an index reads
+ * only its header.  The header records the size and last-modified time of the .BIG file and a checksum of
+ * samples of its content; a sidecar that no longer matches its .BIG file, such as one left behind when the
+ * file was regenerated, is ignored.  A section cannot exceed 2GB, which bounds an index at about 500 million rows.
+ */
+final class ColumnIndex {
+    private static final long MAGIC = 0x4558504e49445831L; // "EXPNIDX1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    /**
+     * The checksum covers this many evenly spaced samples of the .BIG file, of SAMPLE_BYTES each, including
+     * its first and last bytes.
+     */
+    private static final int SAMPLES = 16;
+    private static final int SAMPLE_BYTES = 1 << 16;
+
+    private final Reader.ColumnTypes columnType;
+    private final int distinctCount;
+    private final LongBuffer keys;
+    private final IntBuffer keyOffsets;
+    private final ByteBuffer keyBytes;
+    private final IntBuffer postings;
+    private final IntBuffer rowIds;
+
+    private ColumnIndex(Reader.ColumnTypes columnType, int distinctCount, LongBuffer keys, IntBuffer keyOffsets,
+                        ByteBuffer keyBytes, IntBuffer postings, IntBuffer rowIds) {
+        this.columnType = columnType;
+        this.distinctCount = distinctCount;
+        this.keys = keys;
+        this.keyOffsets = keyOffsets;
+        this.keyBytes = keyBytes;
+        this.postings = postings;
+        this.rowIds = rowIds;
+    }
+
+    /**
+     * The sidecar file of the index of a column, next to the .BIG file: orders.big.0.3.idx for column 3 of
+     * worksheet 0 of orders.big.
+     */
+    static Path sidecarFor(Path bigFile, int worksheetIndex, int columnIndex) {
+        return bigFile.resolveSibling(String.format("%s.%d.%d.idx", bigFile.getFileName(), worksheetIndex, columnIndex));
+    }
+
+    /**
+     * A checksum of samples of the content of a .BIG file, together with its size, so that an index can be
+     * matched to the file it was built from without reading the whole file.
+     */
+    static long fingerprint(Path bigFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(bigFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            CRC32 crc = new CRC32();
+            ByteBuffer sample = ByteBuffer.allocate(SAMPLE_BYTES);
+            if (size <= (long) SAMPLES * SAMPLE_BYTES) {
+                for (long start = 0; start < size; start += SAMPLE_BYTES) update(crc, channel, sample, start);
+            } else {
+                for (int i = 0; i < SAMPLES; i++) update(crc, channel, sample, (size - SAMPLE_BYTES) * i / (SAMPLES - 1));
+            }
+            return crc.getValue() ^ size << 32;
+        }
+    }
+
+    private static void update(CRC32 crc, FileChannel channel, ByteBuffer sample, long start) throws IOException {
+        sample.clear();
+        while (sample.hasRemaining() && channel.read(sample, start + sample.position()) >= 0) {
+            // read the whole sample, or up to the end of the file
+        }
+        sample.flip();
+        crc.update(sample);
+    }
+
+    /**
+     * Opens the index of a column, if its sidecar exists and was built from the .BIG file as it now is.
+     * @return the index, or null if there is no sidecar or it does not match
+     */
+    static ColumnIndex open(Path sidecar, Reader.ColumnTypes columnType, int worksheetIndex, int columnIndex,
+                            int rowCount, long bigFileSize, long bigFileLastModified, long bigFileFingerprint)
+            throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(sidecar, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        try {
+            long size = channel.size();
+            if (size < HEADER_BYTES) return null;
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION || header.getInt(12) != worksheetIndex
+                    || header.getInt(16) != columnIndex || header.getInt(20) != columnType.ordinal()
+                    || header.getInt(24) != rowCount || header.getLong(40) != bigFileSize
+                    || header.getLong(48) != bigFileFingerprint || header.getLong(56) != bigFileLastModified)
+                return null;
+            int distinctCount = header.getInt(28);
+            int entryCount = header.getInt(32);
+            int keyBytesLength = header.getInt(36);
+            boolean strings = columnType == Reader.ColumnTypes.String;
+            long keysLength = strings ? 4L * (distinctCount + 1) + keyBytesLength : 8L * distinctCount;
+            long postingsLength = 4L * (distinctCount + 1);
+            long rowIdsLength = 4L * entryCount;
+            if (distinctCount < 0 || entryCount < 0 || keyBytesLength < 0
+                    || size != HEADER_BYTES + keysLength + postingsLength + rowIdsLength)
+                return null;
+
+            long position = HEADER_BYTES;
+            LongBuffer keys = null;
+            IntBuffer keyOffsets = null;
+            ByteBuffer keyBytes = null;
+            if (strings) {
+                keyOffsets = channel.map(FileChannel.MapMode.READ_ONLY, position, 4L * (distinctCount + 1)).asIntBuffer();
+                keyBytes = channel.map(FileChannel.MapMode.READ_ONLY, position + 4L * (distinctCount + 1), keyBytesLength);
+            } else {
+                keys = channel.map(FileChannel.MapMode.READ_ONLY, position, keysLength).asLongBuffer();
+            }
+            position += keysLength;
+            IntBuffer postings = channel.map(FileChannel.MapMode.READ_ONLY, position, postingsLength).asIntBuffer();
+            position += postingsLength;
+            IntBuffer rowIds = channel.map(FileChannel.MapMode.READ_ONLY, position, rowIdsLength).asIntBuffer();
+            return new ColumnIndex(columnType, distinctCount, keys, keyOffsets, keyBytes, postings, rowIds);
+        } finally {
+            // the mappings remain valid once the channel is closed
+            channel.close();
+        }
+    }
+
+    /**
+     * @param maxRows the most rows to return
+     * @return the rows whose values lie in range, ascending for each value, or null if there are more than
+     * maxRows of them
+     */
+    int[] lookup(KeyRange range, int maxRows) {
+        int first = range.getLower() == null ? 0 : search(range.getLower(), !range.getLowerInclusive());
+        int last = range.getUpper() == null ? distinctCount : search(range.getUpper(), range.getUpperInclusive());
+        if (first >= last) return new int[0];
+        int start = postings.get(first);
+        int end = postings.get(last);
+        if (end - start > maxRows) return null;
+        int[] rows = new int[end - start];
+        for (int i = 0; i < rows.length; i++) rows[i] = rowIds.get(start + i);
+        return rows;
+    }
+
+    /**
+     * @return the position of the first value that is greater than bound, if after is true, or else greater
+     * than or equal to it
+     */
+    private int search(Comparable<?> bound, boolean after) {
+        int low = 0;
+        int high = distinctCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int order = compareAt(middle, bound);
+            if (order < 0 || (after && order == 0)) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    private int compareAt(int position, Comparable<?> bound) {
+        switch (columnType) {
+            case String:
+                return keyAt(position).compareTo((String) bound);
+            case Double:
+                return Long.compare(keys.get(position), sortableDouble(((Number) bound).doubleValue()));
+            default:
+                return Long.compare(keys.get(position), ((Number) bound).longValue());
+        }
+    }
+
+    private String keyAt(int position) {
+        int start = keyOffsets.get(position);
+        byte[] bytes = new byte[keyOffsets.get(position + 1) - start];
+        ByteBuffer slice = keyBytes.duplicate();
+        slice.position(start);
+        slice.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A long whose signed order is the order of the double, with -0.0 taken as 0.0 as a FilterPlan does.
+     */
+    private static long sortableDouble(double value) {
+        long bits = Double.doubleToLongBits(value == 0.0 ? 0.0 : value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Collects the values of a column, in ascending row order, and writes them out as an index.
+     */
+    static final class Writer {
+        private final Reader.ColumnTypes columnType;
+        private final int worksheetIndex;
+        private final int columnIndex;
+        private final int rowCount;
+        private final long[] longKeys;
+        private final String[] stringKeys;
+        private final int[] rows;
+        private int count;
+
+        Writer(Reader.ColumnTypes columnType, int worksheetIndex, int columnIndex, int rowCount) {
+            this.columnType = columnType;
+            this.worksheetIndex = worksheetIndex;
+            this.columnIndex = columnIndex;
+            this.rowCount = rowCount;
+            this.longKeys = columnType == Reader.ColumnTypes.String ? null : new long[rowCount];
+            this.stringKeys = columnType == Reader.ColumnTypes.String ? new String[rowCount] : null;
+            this.rows = new int[rowCount];
+        }
+
+        /**
+         * @param value the value of the row, in the form given by FilterPlan.valueTypeFor, or null if it is empty
+         */
+        void add(int rowIndex, Object value) {
+            if (value == null) return;
+            switch (columnType) {
+                case String:
+                    stringKeys[count] = (String) value;
+                    break;
+                case Double: {
+                    double d = ((Number) value).doubleValue();
+                    if (Double.isNaN(d)) return;
+                    longKeys[count] = sortableDouble(d);
+                    break;
+                }
+                default:
+                    longKeys[count] = FilterPlan.toLong(value);
+            }
+            rows[count++] = rowIndex;
+        }
+
+        /**
+         * Writes the index to sidecar, replacing any index already there.  The index is written to a temporary
+         * file first, so that a Reader never opens a partly written index.
+         */
+        void write(Path sidecar, long bigFileSize, long bigFileLastModified, long bigFileFingerprint) throws IOException {
+            boolean strings = columnType == Reader.ColumnTypes.String;
+            long[] distinctLongs = null;
+            String[] distinctStrings = null;
+            int distinctCount;
+            if (strings) {
+                distinctStrings = Arrays.copyOf(stringKeys, count);
+                Arrays.sort(distinctStrings);
+                distinctCount = dedupe(distinctStrings);
+            } else {
+                distinctLongs = Arrays.copyOf(longKeys, count);
+                Arrays.sort(distinctLongs);
+                distinctCount = dedupe(distinctLongs);
+            }
+
+            // each value's rows, ascending, since rows were added in ascending order
+            int[] positions = new int[count];
+            int[] postings = new int[distinctCount + 1];
+            for (int i = 0; i < count; i++) {
+                positions[i] = strings
+                        ? Arrays.binarySearch(distinctStrings, 0, distinctCount, stringKeys[i])
+                        : Arrays.binarySearch(distinctLongs, 0, distinctCount, longKeys[i]);
+                postings[positions[i] + 1]++;
+            }
+            for (int i = 0; i < distinctCount; i++) postings[i + 1] += postings[i];
+            int[] rowIds = new int[count];
+            int[] next = Arrays.copyOf(postings, distinctCount);
+            for (int i = 0; i < count; i++) rowIds[next[positions[i]]++] = rows[i];
+
+            byte[][] encoded = null;
+            long keyBytesLength = 0;
+            if (strings) {
+                encoded = new byte[distinctCount][];
+                for (int i = 0; i < distinctCount; i++) {
+                    encoded[i] = distinctStrings[i].getBytes(StandardCharsets.UTF_8);
+                    keyBytesLength += encoded[i].length;
+                }
+            }
+            long keysLength = strings ? 4L * (distinctCount + 1) + keyBytesLength : 8L * distinctCount;
+            if (keyBytesLength > Integer.MAX_VALUE || keysLength > Integer.MAX_VALUE || 4L * count > Integer.MAX_VALUE)
+                throw new IllegalArgumentException(String.format("Column '%d' is too large to index", columnIndex));
+
+            Path temporary = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeLong(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(worksheetIndex);
+                out.writeInt(columnIndex);
+                out.writeInt(columnType.ordinal());
+                out.writeInt(rowCount);
+                out.writeInt(distinctCount);
+                out.writeInt(count);
+                out.writeInt((int) keyBytesLength);
+                out.writeLong(bigFileSize);
+                out.writeLong(bigFileFingerprint);
+                out.writeLong(bigFileLastModified);
+                if (strings) {
+                    int offset = 0;
+                    out.writeInt(offset);
+                    for (byte[] key : encoded) out.writeInt(offset += key.length);
+                    for (byte[] key : encoded) out.write(key);
+                } else {
+                    for (int i = 0; i < distinctCount; i++) out.writeLong(distinctLongs[i]);
+                }
+                for (int posting : postings) out.writeInt(posting);
+                for (int rowId : rowIds) out.writeInt(rowId);
+            }
+            Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private static int dedupe(long[] sorted) {
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++)
+                if (i == 0 || sorted[i] != sorted[distinct - 1]) sorted[distinct++] = sorted[i];
+            return distinct;
+        }
+
+        private static int dedupe(String[] sorted) {
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++)
+                if (i == 0 || !sorted[i].equals(sorted[distinct - 1])) sorted[distinct++] = sorted[i];
+            return distinct;
+        }
+    }
+}
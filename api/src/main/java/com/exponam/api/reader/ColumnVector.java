@@ -0,0 +1,161 @@
+package com.exponam.api.reader;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+
+/**
+ * The values of a single column for the rows of a ColumnBatch, held in a primitive array suited to the
+ * column type:
+ * <ul>
+ *     <li>Boolean columns in getBooleans()</li>
+ *     <li>Double columns in getDoubles()</li>
+ *     <li>Long, Date, DateTime and Time columns in getLongs(), with the values that getValue returns
+ *         when Long.class is requested</li>
+ *     <li>String columns in getStrings(), with display formats applied</li>
+ * </ul>
+ * Only the first ColumnBatch.getSize() elements are meaningful.  A position whose value is empty is marked
+ * in the null bitmap, and its element in the value array is unspecified.
+ * <p>
+ * The arrays are owned by the batch and are overwritten when the batch is refilled; copy anything you
+ * need to keep.
+ */
+public final class ColumnVector {
+    private final int columnIndex;
+    private final Reader.ColumnTypes columnType;
+    private final long[] nulls;
+    private final long[] longs;
+    private final double[] doubles;
+    private final boolean[] booleans;
+    private final String[] strings;
+
+    ColumnVector(int columnIndex, Reader.ColumnTypes columnType, int capacity) {
+        this.columnIndex = columnIndex;
+        this.columnType = columnType;
+        this.nulls = new long[(capacity + 63) >>> 6];
+        this.longs = isLongVector(columnType) ? new long[capacity] : null;
+        this.doubles = columnType == Reader.ColumnTypes.Double ? new double[capacity] : null;
+        this.booleans = columnType == Reader.ColumnTypes.Boolean ? new boolean[capacity] : null;
+        this.strings = columnType == Reader.ColumnTypes.String ? new String[capacity] : null;
+    }
+
+    /**
+     * @return the zero-based index of the column within its worksheet
+     */
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    /**
+     * @return the type of the column, which determines the array holding its values
+     */
+    public Reader.ColumnTypes getColumnType() {
+        return columnType;
+    }
+
+    /**
+     * @param position the zero-based position within the batch
+     * @return true if the value at that position is empty
+     */
+    public boolean isNull(int position) {
+        return (nulls[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * @return the null bitmap, with bit (position % 64) of word (position / 64) set for each empty value
+     */
+    public long[] getNulls() {
+        return nulls;
+    }
+
+    public long[] getLongs() {
+        return requireVector(longs, "long");
+    }
+
+    public double[] getDoubles() {
+        return requireVector(doubles, "double");
+    }
+
+    public boolean[] getBooleans() {
+        return requireVector(booleans, "boolean");
+    }
+
+    public String[] getStrings() {
+        return requireVector(strings, "String");
+    }
+
+    public long getLong(int position) {
+        return getLongs()[position];
+    }
+
+    public double getDouble(int position) {
+        return getDoubles()[position];
+    }
+
+    public boolean getBoolean(int position) {
+        return getBooleans()[position];
+    }
+
+    public String getString(int position) {
+        return getStrings()[position];
+    }
+
+    /**
+     * The type that is requested from the underlying file for the values of a column of columnType.
+     */
+    static Type vectorTypeFor(Reader.ColumnTypes columnType) {
+        switch (columnType) {
+            case Boolean:
+                return Boolean.class;
+            case Double:
+                return Double.class;
+            case String:
+                return String.class;
+            default:
+                return Long.class;
+        }
+    }
+
+    void set(int position, Object value) {
+        if (value == null) {
+            nulls[position >>> 6] |= 1L << position;
+            if (strings != null) strings[position] = null;
+            return;
+        }
+        switch (columnType) {
+            case Boolean:
+                booleans[position] = (Boolean) value;
+                break;
+            case Double:
+                doubles[position] = (Double) value;
+                break;
+            case String:
+                strings[position] = (String) value;
+                break;
+            default:
+                longs[position] = (Long) value;
+                break;
+        }
+    }
+
+    void clear(int size) {
+        Arrays.fill(nulls, 0, (size + 63) >>> 6, 0L);
+    }
+
+    private static boolean isLongVector(Reader.ColumnTypes columnType) {
+        switch (columnType) {
+            case Date:
+            case DateTime:
+            case Long:
+            case Time:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private <A> A requireVector(A vector, String kind) {
+        if (vector == null) throw new IllegalStateException(
+                String.format("Column '%d' of type %s has no %s values", columnIndex, columnType, kind));
+        return vector;
+    }
+}
@@ -0,0 +1,130 @@
+package com.exponam.api.reader;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Statistics for the values of one column within one zone of rows: the number of rows, the number of
+ * empty values, and the smallest and largest non-empty values.
+ * <p>
+ * Values are held as longs for Long and Boolean columns (true being 1), as epoch milliseconds for Date,
+ * DateTime and Time columns, and as doubles for Double columns.  String columns carry no minimum or maximum,
+ * but a zone of a String column with few distinct values can carry its dictionary: the set of those values,
+ * against which a string filter can be evaluated once per distinct value instead of once per row.  Zones
+ * carry dictionaries only when ReaderOptions.withDictionaryFilters is enabled, since the filter is then
+ * evaluated with Java's String comparisons, which need not agree with the core reader's; without a dictionary,
+ * a String zone is skipped only if all its values are empty.
+ */
+final class ColumnZone {
+    /**
+     * The most distinct values a zone's dictionary holds; zones with more carry none.
+     */
+    static final int MAX_DICTIONARY_SIZE = 256;
+
+    private final Reader.ColumnTypes columnType;
+    private final int rowCount;
+    private int nullCount;
+    private boolean hasNaN;
+    private long longMin = Long.MAX_VALUE;
+    private long longMax = Long.MIN_VALUE;
+    private double doubleMin = Double.POSITIVE_INFINITY;
+    private double doubleMax = Double.NEGATIVE_INFINITY;
+    private Set<String> dictionary;
+
+    /**
+     * @param dictionary whether a String zone keeps its dictionary
+     */
+    ColumnZone(Reader.ColumnTypes columnType, int rowCount, boolean dictionary) {
+        this.columnType = columnType;
+        this.rowCount = rowCount;
+        this.dictionary = dictionary && columnType == Reader.ColumnTypes.String ? new HashSet<>() : null;
+    }
+
+    void add(Object value) {
+        if (value == null) {
+            nullCount++;
+        } else if (value instanceof String) {
+            if (dictionary != null && dictionary.add((String) value) && dictionary.size() > MAX_DICTIONARY_SIZE)
+                dictionary = null;
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            if (Double.isNaN(d)) {
+                hasNaN = true;
+            } else {
+                doubleMin = Math.min(doubleMin, d);
+                doubleMax = Math.max(doubleMax, d);
+            }
+        } else {
+            long l = FilterPlan.toLong(value);
+            longMin = Math.min(longMin, l);
+            longMax = Math.max(longMax, l);
+        }
+    }
+
+    /**
+     * Adds the statistics of another zone of the same column, for a zone covering both.
+     */
+    void merge(ColumnZone other) {
+        nullCount += other.nullCount;
+        hasNaN |= other.hasNaN;
+        longMin = Math.min(longMin, other.longMin);
+        longMax = Math.max(longMax, other.longMax);
+        doubleMin = Math.min(doubleMin, other.doubleMin);
+        doubleMax = Math.max(doubleMax, other.doubleMax);
+        if (dictionary != null && other.dictionary != null) {
+            dictionary.addAll(other.dictionary);
+            if (dictionary.size() > MAX_DICTIONARY_SIZE) dictionary = null;
+        } else {
+            dictionary = null;
+        }
+    }
+
+    Reader.ColumnTypes getColumnType() {
+        return columnType;
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    int getNullCount() {
+        return nullCount;
+    }
+
+    /**
+     * @return true if the smallest and largest values are known; they are not for String columns, for zones
+     * without non-empty values, or for Double zones holding NaN
+     */
+    boolean hasRange() {
+        if (columnType == Reader.ColumnTypes.String || hasNaN) return false;
+        return columnType == Reader.ColumnTypes.Double ? doubleMin <= doubleMax : longMin <= longMax;
+    }
+
+    boolean isAllNull() {
+        return nullCount == rowCount;
+    }
+
+    long getLongMin() {
+        return longMin;
+    }
+
+    long getLongMax() {
+        return longMax;
+    }
+
+    double getDoubleMin() {
+        return doubleMin;
+    }
+
+    double getDoubleMax() {
+        return doubleMax;
+    }
+
+    /**
+     * @return the distinct non-empty values of a String zone, or null if there are too many to keep, the zone
+     * keeps no dictionary or the column is not a String column
+     */
+    Set<String> getDictionary() {
+        return dictionary;
+    }
+}
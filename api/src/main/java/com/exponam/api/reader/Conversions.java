@@ -0,0 +1,45 @@
+package com.exponam.api.reader;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The type conversions supported when reading values, as documented on Reader.getValue.  String is
+ * supported for every column type, with display formats applied.
+ */
+final class Conversions {
+    private static final Set<Class<?>> NUMERIC = ImmutableSet.of(
+            Long.class, Integer.class, Short.class, Byte.class, Double.class, Float.class, BigDecimal.class);
+
+    private static final Map<Reader.ColumnTypes, Set<Class<?>>> SUPPORTED =
+            ImmutableMap.<Reader.ColumnTypes, Set<Class<?>>>builder()
+                    .put(Reader.ColumnTypes.Boolean, ImmutableSet.<Class<?>>builder()
+                            .add(Boolean.class).addAll(NUMERIC).build())
+                    .put(Reader.ColumnTypes.Date, ImmutableSet.of(
+                            java.util.Date.class, java.sql.Date.class, Long.class, BigDecimal.class))
+                    .put(Reader.ColumnTypes.DateTime, ImmutableSet.of(
+                            java.util.Date.class, java.sql.Date.class, java.sql.Timestamp.class, Long.class, BigDecimal.class))
+                    .put(Reader.ColumnTypes.Double, NUMERIC)
+                    .put(Reader.ColumnTypes.Long, NUMERIC)
+                    .put(Reader.ColumnTypes.String, ImmutableSet.of())
+                    .put(Reader.ColumnTypes.Time, ImmutableSet.of(
+                            java.util.Date.class, java.sql.Time.class, Long.class, BigDecimal.class))
+                    .build();
+
+    private Conversions() {
+    }
+
+    static boolean isSupported(Reader.ColumnTypes columnType, Class<?> desiredClass) {
+        return desiredClass == String.class || SUPPORTED.get(columnType).contains(desiredClass);
+    }
+
+    static void validate(Reader.ColumnTypes columnType, Class<?> desiredClass) {
+        if (!isSupported(columnType, desiredClass))
+            throw new IllegalArgumentException(String.format("%s columns cannot be retrieved as %s",
+                    columnType, desiredClass.getName()));
+    }
+}
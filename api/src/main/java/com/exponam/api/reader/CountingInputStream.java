@@ -0,0 +1,36 @@
+package com.exponam.api.reader;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An InputStream that counts the bytes read through it, so that queries can report how much of the file
+ * they read.  Skipped bytes are not counted.  Like the session that owns it, the stream must only be used
+ * by one thread at a time.
+ */
+final class CountingInputStream extends FilterInputStream {
+    private long bytesRead;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int read = in.read();
+        if (read >= 0) bytesRead++;
+        return read;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int read = in.read(buffer, offset, length);
+        if (read > 0) bytesRead += read;
+        return read;
+    }
+}
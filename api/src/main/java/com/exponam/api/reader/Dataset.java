@@ -0,0 +1,547 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.Filter;
+import com.exponam.core.reader.BigReader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A set of .BIG files with compatible schemas, presented as one logical worksheet.  Each file contributes
+ * the rows of its first worksheet, and rows are numbered globally, in file order: the first row of a file
+ * follows the last row of the file before it.  Since a dataset can hold more rows than a single worksheet,
+ * global row numbers are longs.
+ * <p>
+ * Queries and aggregates run one task per file on an executor you supply.  No more than maxOpenFiles
+ * Readers are open at once; Readers are kept open between queries, up to that bound, and the least recently
+ * used is closed when another file must be opened.
+ * <p>
+ * If ReaderOptions enables zone maps, the first time a filtered query touches a file, the statistics of each
+ * filtered column are merged for the whole file from its zone maps, and kept for the life of the Dataset.
+ * Later queries skip files whose statistics show that no row can match, without opening them.  Without zone
+ * maps, files are never skipped: the statistics would take a pass over every filtered column of every file,
+ * which on a large dataset can cost more than the queries they would prune.
+ * <p>
+ * A Dataset can be used from several threads at once.  Close it when through.
+ */
+public final class Dataset implements Closeable {
+    private final ImmutableList<Path> files;
+    private final Supplier<String> passwordSupplier;
+    private final ReaderOptions options;
+    private final int maxOpenFiles;
+    private final Schema.Worksheet worksheet;
+    private final long[] firstRows;
+    private final Map<Long, ColumnZone> fileZones = new ConcurrentHashMap<>();
+    private final AtomicLong filesScanned = new AtomicLong();
+    private final AtomicLong filesSkipped = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition readerReleased = lock.newCondition();
+    private final Deque<OpenReader> idleReaders = new ArrayDeque<>();
+    private int openReaders;
+    private boolean closed;
+
+    /**
+     * Opens a dataset of the given files, in the given order.
+     * @param files the Exponam .BIG files, all sharing the same password
+     * @param passwordSupplier a caller-supplier function returning the password for the files; can be null or return an empty String for unencrypted files
+     * @param maxOpenFiles the maximum number of files open at once
+     * @throws IOException if there is a problem accessing a file
+     * @throws BigReader.UnsupportedFileVersionException if a file version is more recent than supported by this version of the API
+     */
+    public Dataset(List<Path> files, Supplier<String> passwordSupplier, int maxOpenFiles) throws IOException, BigReader.UnsupportedFileVersionException {
+        this(files, passwordSupplier, maxOpenFiles, ReaderOptions.defaults());
+    }
+
+    /**
+     * Opens a dataset of the given files, in the given order, whose Readers are opened with the given options.
+     * <p>
+     * Every file is opened once, here, to read its schema and row count.  The column names and types of
+     * every file must match those of the first.
+     * @param files the Exponam .BIG files, all sharing the same password
+     * @param passwordSupplier a caller-supplier function returning the password for the files; can be null or return an empty String for unencrypted files
+     * @param maxOpenFiles the maximum number of files open at once
+     * @param options optional settings for the Readers of the files
+     * @throws IOException if there is a problem accessing a file
+     * @throws BigReader.UnsupportedFileVersionException if a file version is more recent than supported by this version of the API
+     */
+    public Dataset(List<Path> files, Supplier<String> passwordSupplier, int maxOpenFiles, ReaderOptions options) throws IOException, BigReader.UnsupportedFileVersionException {
+        this.files = ImmutableList.copyOf(Objects.requireNonNull(files, "files"));
+        if (this.files.isEmpty()) throw new IllegalArgumentException("files cannot be empty");
+        if (maxOpenFiles <= 0) throw new IllegalArgumentException("Maximum open files must be > 0");
+        this.passwordSupplier = passwordSupplier;
+        this.maxOpenFiles = maxOpenFiles;
+        this.options = Objects.requireNonNull(options, "options");
+        this.firstRows = new long[this.files.size() + 1];
+
+        Schema.Worksheet first = null;
+        try {
+            for (int fileIndex = 0; fileIndex < this.files.size(); fileIndex++) {
+                Reader reader = new Reader(this.files.get(fileIndex), passwordSupplier, Reader.FileAccess.Channel, options);
+                openReaders++;
+                boolean keep = false;
+                try {
+                    Schema.Worksheet fileWorksheet = reader.getSchema().getWorksheet(0);
+                    if (first == null) first = fileWorksheet;
+                    else checkCompatible(first, fileWorksheet, fileIndex);
+                    firstRows[fileIndex + 1] = firstRows[fileIndex] + fileWorksheet.getRowCount();
+                    keep = fileIndex < maxOpenFiles;
+                } finally {
+                    release(new OpenReader(fileIndex, reader), keep);
+                }
+            }
+        } catch (IOException | BigReader.UnsupportedFileVersionException | RuntimeException e) {
+            try {
+                close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        this.worksheet = first;
+    }
+
+    /**
+     * Opens a dataset of the .BIG files in a directory, in order of file name.
+     *
+     * @see #Dataset(List, Supplier, int, ReaderOptions)
+     * @param directory the directory holding the files
+     * @param passwordSupplier a caller-supplier function returning the password for the files; can be null or return an empty String for unencrypted files
+     * @param maxOpenFiles the maximum number of files open at once
+     * @param options optional settings for the Readers of the files
+     * @return the dataset
+     * @throws IOException if there is a problem accessing a file
+     * @throws BigReader.UnsupportedFileVersionException if a file version is more recent than supported by this version of the API
+     */
+    public static Dataset forDirectory(Path directory, Supplier<String> passwordSupplier, int maxOpenFiles,
+                                       ReaderOptions options) throws IOException, BigReader.UnsupportedFileVersionException {
+        Objects.requireNonNull(directory, "directory");
+        if (!Files.isDirectory(directory))
+            throw new IllegalArgumentException(String.format("'%s' is not a directory", directory.getFileName()));
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory,
+                entry -> Files.isRegularFile(entry) && entry.getFileName().toString().toLowerCase().endsWith(".big"))) {
+            for (Path entry : entries) files.add(entry);
+        }
+        files.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+        return new Dataset(files, passwordSupplier, maxOpenFiles, options);
+    }
+
+    /**
+     * @return the schema shared by the files, as read from the first file
+     */
+    public Schema.Worksheet getWorksheet() {
+        return worksheet;
+    }
+
+    public int getFileCount() {
+        return files.size();
+    }
+
+    public Path getFile(int fileIndex) {
+        validateFileIndex(fileIndex);
+        return files.get(fileIndex);
+    }
+
+    /**
+     * @param fileIndex the zero-based file index
+     * @return the global row number of the first row of the file
+     */
+    public long getFirstRow(int fileIndex) {
+        validateFileIndex(fileIndex);
+        return firstRows[fileIndex];
+    }
+
+    /**
+     * @return the total number of rows of all the files
+     */
+    public long getRowCount() {
+        return firstRows[files.size()];
+    }
+
+    public int getColumnCount() {
+        return worksheet.getColumnCount();
+    }
+
+    public String getColumnName(int columnIndex) {
+        return worksheet.getColumn(columnIndex).getName();
+    }
+
+    public Reader.ColumnTypes getColumnType(int columnIndex) {
+        return worksheet.getColumn(columnIndex).getType();
+    }
+
+    /**
+     * @return the number of files that queries have read, counted once per query
+     */
+    public long getFilesScanned() {
+        return filesScanned.get();
+    }
+
+    /**
+     * @return the number of files that queries have skipped because no row could match, counted once per query
+     */
+    public long getFilesSkipped() {
+        return filesSkipped.get();
+    }
+
+    /**
+     * The dataset form of Reader.getRowValues, with rows identified by global row number.
+     * <p>
+     * If preserveOrder is false, the files overlapping the range are read concurrently, one task per file and
+     * no more than maxOpenFiles at once, and rowConsumer is invoked on the executor's threads, concurrently and
+     * in no particular order; rowConsumer must therefore be thread-safe.
+     * <p>
+     * If preserveOrder is true, the files are read one after another, each with the parallel, order-preserving
+     * form of Reader.getRowValues, and rowConsumer is invoked on the calling thread in ascending row order.
+     * @param startRow the global row number of the first row in the range of rows to be retrieved
+     * @param endRow the global row number of the last row in the range of rows to be retrieved
+     * @param queryColumns map describing the columns to be fetched, as for Reader.getRowValues
+     * @param executor the executor on which files are read
+     * @param preserveOrder whether rows must be delivered in row order on the calling thread
+     * @param rowConsumer the callback invoked for each row that is retrieved
+     */
+    public void getRowValues(long startRow, long endRow, Map<Integer, QueryColumn> queryColumns,
+                             ExecutorService executor, boolean preserveOrder,
+                             BiConsumer<Long, Function<Integer, Object>> rowConsumer) {
+        validateRowRange(startRow, endRow);
+        Objects.requireNonNull(queryColumns, "queryColumns");
+        if (queryColumns.isEmpty()) throw new IllegalArgumentException("queryColumns cannot be empty");
+        Objects.requireNonNull(executor, "executor");
+        Objects.requireNonNull(rowConsumer, "rowConsumer");
+        Map<Integer, FilterPlan> filterPlans = compileFilters(queryColumns);
+
+        if (preserveOrder) {
+            for (FileSlice slice : slicesOf(startRow, endRow))
+                read(slice, filterPlans, reader -> {
+                    reader.getRowValues(0, slice.startRow, slice.endRow, queryColumns, executor, true,
+                            (rowIndex, row) -> rowConsumer.accept(firstRows[slice.fileIndex] + rowIndex, row));
+                    return null;
+                });
+        } else {
+            runPerFile(slicesOf(startRow, endRow), executor, slice -> read(slice, filterPlans, reader -> {
+                reader.getRowValues(0, slice.startRow, slice.endRow, queryColumns,
+                        (rowIndex, row) -> rowConsumer.accept(firstRows[slice.fileIndex] + rowIndex, row));
+                return null;
+            }));
+        }
+    }
+
+    /**
+     * The dataset form of Reader.aggregate.  Each file is aggregated by its own task on the executor, no more
+     * than maxOpenFiles at once, and the partial states of all files are merged once every file is done.
+     * Groups are returned in the order in which they first occur in the dataset.
+     * @param startRow the global row number of the first row in the range of rows to be aggregated
+     * @param endRow the global row number of the last row in the range of rows to be aggregated
+     * @param filterColumns map of the column filters that select the rows to be aggregated; can be empty
+     * @param groupByColumns the zero-based indices of the columns to group by; can be empty
+     * @param aggregates the aggregates to compute
+     * @param executor the executor on which files are aggregated
+     * @return the aggregate values of each group
+     */
+    public AggregateResult aggregate(long startRow, long endRow, Map<Integer, QueryColumn> filterColumns,
+                                     List<Integer> groupByColumns, List<Aggregate> aggregates,
+                                     ExecutorService executor) {
+        validateRowRange(startRow, endRow);
+        Objects.requireNonNull(filterColumns, "filterColumns");
+        Objects.requireNonNull(groupByColumns, "groupByColumns");
+        Objects.requireNonNull(aggregates, "aggregates");
+        if (aggregates.isEmpty()) throw new IllegalArgumentException("aggregates cannot be empty");
+        Objects.requireNonNull(executor, "executor");
+        Map<Integer, FilterPlan> filterPlans = compileFilters(filterColumns);
+        Aggregation aggregation = new Aggregation(worksheet, groupByColumns, aggregates);
+
+        List<List<Aggregation.Partial>> perFile = runPerFile(slicesOf(startRow, endRow), executor,
+                slice -> read(slice, filterPlans, reader -> reader.aggregatePartials(0, slice.startRow, slice.endRow,
+                        filterColumns, aggregation, MoreExecutors.newDirectExecutorService())));
+        List<Aggregation.Partial> partials = new ArrayList<>();
+        for (List<Aggregation.Partial> filePartials : perFile) if (filePartials != null) partials.addAll(filePartials);
+        return aggregation.finish(partials);
+    }
+
+    /**
+     * Closes every open Reader.  Readers in use by running queries are closed as those queries finish.
+     */
+    @Override
+    public void close() throws IOException {
+        List<OpenReader> evicted;
+        lock.lock();
+        try {
+            closed = true;
+            evicted = new ArrayList<>(idleReaders);
+            idleReaders.clear();
+            readerReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        closeAll(evicted);
+    }
+
+    private interface ReaderTask<T> {
+        T apply(Reader reader);
+    }
+
+    /**
+     * Runs task against the Reader of a file, unless the file's statistics show that no row can match, in which
+     * case null is returned.
+     */
+    private <T> T read(FileSlice slice, Map<Integer, FilterPlan> filterPlans, ReaderTask<T> task) {
+        if (!couldMatch(slice.fileIndex, filterPlans, null)) {
+            filesSkipped.incrementAndGet();
+            return null;
+        }
+        OpenReader open = acquire(slice.fileIndex);
+        boolean reusable = false;
+        try {
+            if (!couldMatch(slice.fileIndex, filterPlans, open.reader)) {
+                filesSkipped.incrementAndGet();
+                reusable = true;
+                return null;
+            }
+            filesScanned.incrementAndGet();
+            T result = task.apply(open.reader);
+            reusable = true;
+            return result;
+        } finally {
+            release(open, reusable);
+        }
+    }
+
+    /**
+     * Whether some row of a file could satisfy every filter.  Without a Reader, only statistics already
+     * known are consulted; with one, missing statistics are merged from its zone maps, if they are enabled.
+     */
+    private boolean couldMatch(int fileIndex, Map<Integer, FilterPlan> filterPlans, Reader reader) {
+        if (!options.getZoneMaps()) return true;
+        for (Map.Entry<Integer, FilterPlan> entry : filterPlans.entrySet()) {
+            Long key = ((long) fileIndex << 32) | entry.getKey();
+            ColumnZone zone = fileZones.get(key);
+            if (zone == null && reader != null) {
+                zone = reader.columnZone(0, entry.getKey());
+                fileZones.putIfAbsent(key, zone);
+            }
+            if (zone != null && !entry.getValue().canMatch(zone)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Runs task for each slice on the executor, with no more than maxOpenFiles tasks in flight, and returns
+     * their results in slice order.
+     */
+    private <T> List<T> runPerFile(List<FileSlice> slices, ExecutorService executor, Function<FileSlice, T> task) {
+        List<T> results = new ArrayList<>(slices.size());
+        Deque<Future<T>> inFlight = new ArrayDeque<>(maxOpenFiles);
+        Iterator<FileSlice> pending = slices.iterator();
+        try {
+            while (inFlight.size() < maxOpenFiles && pending.hasNext())
+                inFlight.add(submit(executor, task, pending.next()));
+            while (!inFlight.isEmpty()) {
+                results.add(Tasks.await(inFlight.poll()));
+                if (pending.hasNext()) inFlight.add(submit(executor, task, pending.next()));
+            }
+            return results;
+        } catch (RuntimeException | Error e) {
+            Tasks.cancelAll(inFlight);
+            throw e;
+        }
+    }
+
+    private static <T> Future<T> submit(ExecutorService executor, Function<FileSlice, T> task, FileSlice slice) {
+        Callable<T> callable = () -> task.apply(slice);
+        return executor.submit(callable);
+    }
+
+    private OpenReader acquire(int fileIndex) {
+        List<OpenReader> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            while (true) {
+                ensureOpen();
+                for (Iterator<OpenReader> it = idleReaders.iterator(); it.hasNext(); ) {
+                    OpenReader idle = it.next();
+                    if (idle.fileIndex == fileIndex) {
+                        it.remove();
+                        return idle;
+                    }
+                }
+                if (openReaders < maxOpenFiles) break;
+                if (!idleReaders.isEmpty()) {
+                    evicted.add(idleReaders.removeLast());
+                    openReaders--;
+                    break;
+                }
+                readerReleased.awaitUninterruptibly();
+            }
+            openReaders++;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            closeAll(evicted);
+            return new OpenReader(fileIndex,
+                    new Reader(files.get(fileIndex), passwordSupplier, Reader.FileAccess.Channel, options));
+        } catch (IOException e) {
+            forget();
+            throw new UncheckedIOException(e);
+        } catch (BigReader.UnsupportedFileVersionException e) {
+            forget();
+            throw new IllegalStateException(e);
+        } catch (RuntimeException | Error e) {
+            forget();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a Reader to the idle set, or closes it if it is not to be reused or the dataset is closed.
+     */
+    private void release(OpenReader open, boolean reusable) {
+        lock.lock();
+        try {
+            if (reusable && !closed) {
+                idleReaders.addFirst(open);
+                readerReleased.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        try {
+            open.reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            forget();
+        }
+    }
+
+    /**
+     * Accounts for a Reader that has been closed, or that failed to open.
+     */
+    private void forget() {
+        lock.lock();
+        try {
+            openReaders--;
+            readerReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<Integer, FilterPlan> compileFilters(Map<Integer, QueryColumn> queryColumns) {
+        Map<Integer, FilterPlan> filterPlans = new HashMap<>();
+        for (Map.Entry<Integer, QueryColumn> entry : queryColumns.entrySet()) {
+            Optional<Filter> filter = entry.getValue().getColumnFilter();
+            Reader.ColumnTypes columnType = worksheet.getColumn(entry.getKey()).getType();
+            filter.ifPresent(f -> filterPlans.put(entry.getKey(), FilterPlan.compile(f, columnType)));
+        }
+        return filterPlans;
+    }
+
+    /**
+     * The parts of startRow..endRow that fall within each file, as ranges of the file's own row indices.
+     */
+    private List<FileSlice> slicesOf(long startRow, long endRow) {
+        List<FileSlice> slices = new ArrayList<>();
+        for (int fileIndex = 0; fileIndex < files.size(); fileIndex++) {
+            long first = Math.max(startRow, firstRows[fileIndex]);
+            long last = Math.min(endRow, firstRows[fileIndex + 1] - 1);
+            if (first <= last)
+                slices.add(new FileSlice(fileIndex, (int) (first - firstRows[fileIndex]), (int) (last - firstRows[fileIndex])));
+        }
+        return slices;
+    }
+
+    private void checkCompatible(Schema.Worksheet first, Schema.Worksheet other, int fileIndex) {
+        if (other.getColumnCount() != first.getColumnCount())
+            throw new IllegalArgumentException(String.format("'%s' has %d columns, but '%s' has %d",
+                    files.get(fileIndex).getFileName(), other.getColumnCount(), files.get(0).getFileName(),
+                    first.getColumnCount()));
+        for (int columnIndex = 0; columnIndex < first.getColumnCount(); columnIndex++) {
+            Schema.Column expected = first.getColumn(columnIndex);
+            Schema.Column actual = other.getColumn(columnIndex);
+            if (!expected.getName().equals(actual.getName()) || expected.getType() != actual.getType())
+                throw new IllegalArgumentException(String.format("Column '%d' of '%s' is %s %s, but in '%s' is %s %s",
+                        columnIndex, files.get(fileIndex).getFileName(), actual.getType(), actual.getName(),
+                        files.get(0).getFileName(), expected.getType(), expected.getName()));
+        }
+    }
+
+    private void validateFileIndex(int fileIndex) {
+        if (fileIndex < 0 || fileIndex >= files.size())
+            throw new IllegalArgumentException(String.format("File index '%d' out of range", fileIndex));
+    }
+
+    private void validateRowRange(long startRow, long endRow) {
+        if (startRow < 0) throw new IllegalArgumentException("Start row must be >= 0");
+        if (endRow >= getRowCount()) throw new IllegalArgumentException(
+                String.format("End row must be < %d", getRowCount()));
+        if (startRow > endRow) throw new IllegalArgumentException("Start row must be <= end row");
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("Dataset has been closed");
+    }
+
+    private static void closeAll(List<OpenReader> readers) throws IOException {
+        IOException failure = null;
+        for (OpenReader open : readers) {
+            try {
+                open.reader.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    private static final class OpenReader {
+        private final int fileIndex;
+        private final Reader reader;
+
+        private OpenReader(int fileIndex, Reader reader) {
+            this.fileIndex = fileIndex;
+            this.reader = reader;
+        }
+    }
+
+    private static final class FileSlice {
+        private final int fileIndex;
+        private final int startRow;
+        private final int endRow;
+
+        private FileSlice(int fileIndex, int startRow, int endRow) {
+            this.fileIndex = fileIndex;
+            this.startRow = startRow;
+            this.endRow = endRow;
+        }
+    }
+}
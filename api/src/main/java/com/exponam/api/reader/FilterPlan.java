@@ -0,0 +1,609 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A column filter compiled for the type of the column it applies to.  Operands are parsed once, when the
+ * plan is compiled: comparisons on Long, Boolean, Date, DateTime and Time columns become comparisons of longs
+ * (epoch milliseconds for dates, 0 and 1 for booleans), and comparisons on Double columns become comparisons
+ * of doubles.  Nested And and Or filters are flattened, and their children ordered by estimated cost so that
+ * the cheapest are evaluated first.
+ * <p>
+ * A plan can judge whether any row of a ColumnZone could match, and can test individual values in the form
+ * given by valueTypeFor.  Empty values satisfy IsNull only.  Set-membership filters compile to a SetPlan.
+ * A filter whose operand cannot be interpreted for the column type compiles to a plan that can match any zone
+ * and cannot test values; such filters are left to the core reader to evaluate.
+ */
+abstract class FilterPlan {
+    /**
+     * The estimated relative cost of evaluating the filter for one value.
+     */
+    abstract int cost();
+
+    /**
+     * @return false if no value in the zone could satisfy the filter
+     */
+    abstract boolean canMatch(ColumnZone zone);
+
+    /**
+     * @param value a value of the column, in the form given by valueTypeFor, or null if it is empty
+     * @return true if the value satisfies the filter
+     */
+    abstract boolean test(Object value);
+
+    /**
+     * @return true if test can be used; false if some part of the filter can only be evaluated by the core reader
+     */
+    abstract boolean isTestable();
+
+    /**
+     * The range of values that a filter selects, for a column index to look up rather than testing every
+     * value; a plan combining a range with other conditions gives the range, which the other conditions
+     * then narrow.
+     * @return the range, or null if the filter does not select a single range of non-empty values
+     */
+    KeyRange keyRange() {
+        return null;
+    }
+
+    /**
+     * A plan that tests each distinct value once, remembering the result, for columns with few distinct values.
+     */
+    FilterPlan memoized() {
+        return new MemoizedPlan(this);
+    }
+
+    /**
+     * @return false if the zone has a dictionary, which it does only if dictionary filters are enabled, and
+     * none of its values satisfies the filter
+     */
+    final boolean matchesDictionary(ColumnZone zone) {
+        Set<String> dictionary = zone.getDictionary();
+        if (dictionary == null) return true;
+        for (String value : dictionary) if (test(value)) return true;
+        return false;
+    }
+
+    /**
+     * The type in which values are read to be tested by a plan, or to compute zone statistics.
+     */
+    static Class<?> valueTypeFor(Reader.ColumnTypes columnType) {
+        switch (columnType) {
+            case Date:
+            case DateTime:
+            case Time:
+                return java.util.Date.class;
+            default:
+                return (Class<?>) ColumnVector.vectorTypeFor(columnType);
+        }
+    }
+
+    static FilterPlan compile(Filter filter, Reader.ColumnTypes columnType) {
+        if (filter instanceof And) return new AndPlan(compileAll(((And) filter).getFilters(), columnType, And.class));
+        if (filter instanceof Or) return new OrPlan(compileAll(((Or) filter).getFilters(), columnType, Or.class));
+        if (filter instanceof IsNull) return new NullPlan(true);
+        if (filter instanceof IsNotNull) return new NullPlan(false);
+        if (filter instanceof IsEqual) return comparison(Comparison.Equal, ((IsEqual) filter).getOperand(), columnType, filter);
+        if (filter instanceof IsNotEqual)
+            return comparison(Comparison.NotEqual, ((IsNotEqual) filter).getOperand(), columnType, filter);
+        if (filter instanceof IsGreaterThan)
+            return comparison(Comparison.GreaterThan, ((IsGreaterThan) filter).getOperand(), columnType, filter);
+        if (filter instanceof IsGreaterThanOrEqual)
+            return comparison(Comparison.GreaterThanOrEqual, ((IsGreaterThanOrEqual) filter).getOperand(), columnType, filter);
+        if (filter instanceof IsLessThan)
+            return comparison(Comparison.LessThan, ((IsLessThan) filter).getOperand(), columnType, filter);
+        if (filter instanceof IsLessThanOrEqual)
+            return comparison(Comparison.LessThanOrEqual, ((IsLessThanOrEqual) filter).getOperand(), columnType, filter);
+        FilterPlan set = SetPlan.compile(filter, columnType);
+        if (set != null) return set;
+        if (columnType == Reader.ColumnTypes.String) {
+            StringPlan plan = StringPlan.compile(filter);
+            if (plan != null) return plan;
+            PatternPlan pattern = PatternPlan.compile(filter);
+            if (pattern != null) return pattern;
+        }
+        return new OpaquePlan(filter, columnType);
+    }
+
+    private static List<FilterPlan> compileAll(Filter[] filters, Reader.ColumnTypes columnType,
+                                               Class<? extends Filter> flattened) {
+        List<FilterPlan> plans = new ArrayList<>();
+        for (Filter filter : FilterTranslation.flatten(filters, flattened)) plans.add(compile(filter, columnType));
+        // compiled costs can differ from estimates, for instance when a comparison reduces to a constant
+        plans.sort(Comparator.comparingInt(FilterPlan::cost));
+        return plans;
+    }
+
+    enum Comparison {
+        Equal,
+        NotEqual,
+        GreaterThan,
+        GreaterThanOrEqual,
+        LessThan,
+        LessThanOrEqual
+    }
+
+    private static FilterPlan comparison(Comparison comparison, Object operand, Reader.ColumnTypes columnType, Filter filter) {
+        switch (columnType) {
+            case Double: {
+                BigDecimal value = toDecimal(columnType, operand);
+                return value == null ? new OpaquePlan(filter, columnType) : new DoubleComparison(comparison, value.doubleValue());
+            }
+            case String:
+                return operand instanceof String
+                        ? new StringComparison(comparison, (String) operand)
+                        : new OpaquePlan(filter, columnType);
+            default: {
+                BigDecimal value = toDecimal(columnType, operand);
+                return value == null ? new OpaquePlan(filter, columnType) : longComparison(comparison, value);
+            }
+        }
+    }
+
+    /**
+     * A comparison against a long column.  A fractional operand is rounded to the equivalent integral comparison,
+     * and an operand beyond the range of long reduces to a constant.
+     */
+    private static FilterPlan longComparison(Comparison comparison, BigDecimal value) {
+        BigDecimal floor = value.setScale(0, RoundingMode.FLOOR);
+        BigDecimal ceiling = value.setScale(0, RoundingMode.CEILING);
+        boolean integral = floor.compareTo(value) == 0;
+        switch (comparison) {
+            case Equal:
+                return integral && fitsLong(value) ? new LongComparison(comparison, value.longValueExact()) : new NullPlan(false, false);
+            case NotEqual:
+                return integral && fitsLong(value) ? new LongComparison(comparison, value.longValueExact()) : new NullPlan(false);
+            case GreaterThan:
+            case LessThanOrEqual:
+                // x > 2.5 is x > 2, and x <= 2.5 is x <= 2
+                return boundedLongComparison(comparison, floor);
+            default:
+                // x >= 2.5 is x >= 3, and x < 2.5 is x < 3
+                return boundedLongComparison(comparison, ceiling);
+        }
+    }
+
+    private static FilterPlan boundedLongComparison(Comparison comparison, BigDecimal integral) {
+        if (fitsLong(integral)) return new LongComparison(comparison, integral.longValueExact());
+        boolean aboveRange = integral.signum() > 0;
+        boolean upperBound = comparison == Comparison.LessThan || comparison == Comparison.LessThanOrEqual;
+        return upperBound == aboveRange ? new NullPlan(false) : new NullPlan(false, false);
+    }
+
+    private static boolean fitsLong(BigDecimal value) {
+        return value.compareTo(BigDecimal.valueOf(Long.MIN_VALUE)) >= 0 && value.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) <= 0;
+    }
+
+    /**
+     * The operand as an exact decimal in the form used for the column type, or null if it cannot be interpreted for the column type.
+     * Date, DateTime and Time operands are interpreted only as java.util.Date, in epoch milliseconds: a String
+     * operand is left to the core reader, whose date formats are its own.
+     */
+    static BigDecimal toDecimal(Reader.ColumnTypes columnType, Object operand) {
+        switch (columnType) {
+            case Date:
+            case DateTime:
+            case Time:
+                return operand instanceof java.util.Date ? BigDecimal.valueOf(((java.util.Date) operand).getTime()) : null;
+            case Boolean:
+                if (operand instanceof Boolean) return (Boolean) operand ? BigDecimal.ONE : BigDecimal.ZERO;
+                if ("true".equalsIgnoreCase(String.valueOf(operand).trim())) return BigDecimal.ONE;
+                if ("false".equalsIgnoreCase(String.valueOf(operand).trim())) return BigDecimal.ZERO;
+                return null;
+            case Double:
+            case Long:
+                if (operand instanceof BigDecimal) return (BigDecimal) operand;
+                if (operand instanceof Double || operand instanceof Float) {
+                    double d = ((Number) operand).doubleValue();
+                    return Double.isNaN(d) || Double.isInfinite(d) ? null : new BigDecimal(d);
+                }
+                if (operand instanceof Number) return BigDecimal.valueOf(((Number) operand).longValue());
+                if (operand instanceof String) {
+                    try {
+                        return new BigDecimal(((String) operand).trim());
+                    } catch (NumberFormatException e) {
+                        return null;
+                    }
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    static long toLong(Object value) {
+        if (value instanceof Boolean) return (Boolean) value ? 1L : 0L;
+        if (value instanceof java.util.Date) return ((java.util.Date) value).getTime();
+        return ((Number) value).longValue();
+    }
+
+    private static final class AndPlan extends FilterPlan {
+        private final List<FilterPlan> children;
+
+        private AndPlan(List<FilterPlan> children) {
+            this.children = children;
+        }
+
+        @Override
+        int cost() {
+            return children.stream().mapToInt(FilterPlan::cost).sum();
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            for (FilterPlan child : children) if (!child.canMatch(zone)) return false;
+            return true;
+        }
+
+        @Override
+        boolean test(Object value) {
+            for (FilterPlan child : children) if (!child.test(value)) return false;
+            return true;
+        }
+
+        @Override
+        KeyRange keyRange() {
+            KeyRange range = null;
+            for (FilterPlan child : children) {
+                KeyRange childRange = child.keyRange();
+                if (childRange != null) range = range == null ? childRange : range.intersect(childRange);
+            }
+            return range;
+        }
+
+        @Override
+        boolean isTestable() {
+            return children.stream().allMatch(FilterPlan::isTestable);
+        }
+    }
+
+    private static final class OrPlan extends FilterPlan {
+        private final List<FilterPlan> children;
+
+        private OrPlan(List<FilterPlan> children) {
+            this.children = children;
+        }
+
+        @Override
+        int cost() {
+            return children.stream().mapToInt(FilterPlan::cost).sum();
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            for (FilterPlan child : children) if (child.canMatch(zone)) return true;
+            return false;
+        }
+
+        @Override
+        boolean test(Object value) {
+            for (FilterPlan child : children) if (child.test(value)) return true;
+            return false;
+        }
+
+        @Override
+        boolean isTestable() {
+            return children.stream().allMatch(FilterPlan::isTestable);
+        }
+    }
+
+    /**
+     * IsNull or IsNotNull; also the constant results of comparisons that reduce to "any non-empty value"
+     * (matchesValues) or to nothing at all (neither).
+     */
+    private static final class NullPlan extends FilterPlan {
+        private final boolean matchesNulls;
+        private final boolean matchesValues;
+
+        private NullPlan(boolean isNull) {
+            this(isNull, !isNull);
+        }
+
+        private NullPlan(boolean matchesNulls, boolean matchesValues) {
+            this.matchesNulls = matchesNulls;
+            this.matchesValues = matchesValues;
+        }
+
+        @Override
+        int cost() {
+            return 1;
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            return (matchesNulls && zone.getNullCount() > 0) || (matchesValues && !zone.isAllNull());
+        }
+
+        @Override
+        boolean test(Object value) {
+            return value == null ? matchesNulls : matchesValues;
+        }
+
+        @Override
+        boolean isTestable() {
+            return true;
+        }
+    }
+
+    private static final class LongComparison extends FilterPlan {
+        private final Comparison comparison;
+        private final long operand;
+
+        private LongComparison(Comparison comparison, long operand) {
+            this.comparison = comparison;
+            this.operand = operand;
+        }
+
+        @Override
+        int cost() {
+            return 2;
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            // a zone holding empty values is kept for NotEqual, however the core reader treats them
+            if (comparison == Comparison.NotEqual && zone.getNullCount() > 0) return true;
+            if (zone.isAllNull()) return false;
+            if (!zone.hasRange()) return true;
+            long min = zone.getLongMin();
+            long max = zone.getLongMax();
+            switch (comparison) {
+                case Equal:
+                    return min <= operand && operand <= max;
+                case NotEqual:
+                    return min != operand || max != operand;
+                case GreaterThan:
+                    return max > operand;
+                case GreaterThanOrEqual:
+                    return max >= operand;
+                case LessThan:
+                    return min < operand;
+                default:
+                    return min <= operand;
+            }
+        }
+
+        @Override
+        boolean test(Object value) {
+            return value != null && testLong(toLong(value));
+        }
+
+        @Override
+        KeyRange keyRange() {
+            return KeyRange.of(comparison, Long.valueOf(operand));
+        }
+
+        boolean testLong(long value) {
+            switch (comparison) {
+                case Equal:
+                    return value == operand;
+                case NotEqual:
+                    return value != operand;
+                case GreaterThan:
+                    return value > operand;
+                case GreaterThanOrEqual:
+                    return value >= operand;
+                case LessThan:
+                    return value < operand;
+                default:
+                    return value <= operand;
+            }
+        }
+
+        @Override
+        boolean isTestable() {
+            return true;
+        }
+    }
+
+    private static final class DoubleComparison extends FilterPlan {
+        private final Comparison comparison;
+        private final double operand;
+
+        private DoubleComparison(Comparison comparison, double operand) {
+            this.comparison = comparison;
+            this.operand = operand;
+        }
+
+        @Override
+        int cost() {
+            return 2;
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            // a zone holding empty values is kept for NotEqual, however the core reader treats them
+            if (comparison == Comparison.NotEqual && zone.getNullCount() > 0) return true;
+            if (zone.isAllNull()) return false;
+            if (!zone.hasRange()) return true;
+            double min = zone.getDoubleMin();
+            double max = zone.getDoubleMax();
+            switch (comparison) {
+                case Equal:
+                    return min <= operand && operand <= max;
+                case NotEqual:
+                    return min != operand || max != operand;
+                case GreaterThan:
+                    return max > operand;
+                case GreaterThanOrEqual:
+                    return max >= operand;
+                case LessThan:
+                    return min < operand;
+                default:
+                    return min <= operand;
+            }
+        }
+
+        @Override
+        boolean test(Object value) {
+            return value != null && testDouble(((Number) value).doubleValue());
+        }
+
+        @Override
+        KeyRange keyRange() {
+            return KeyRange.of(comparison, Double.valueOf(operand));
+        }
+
+        boolean testDouble(double value) {
+            switch (comparison) {
+                case Equal:
+                    return value == operand;
+                case NotEqual:
+                    return value != operand;
+                case GreaterThan:
+                    return value > operand;
+                case GreaterThanOrEqual:
+                    return value >= operand;
+                case LessThan:
+                    return value < operand;
+                default:
+                    return value <= operand;
+            }
+        }
+
+        @Override
+        boolean isTestable() {
+            return true;
+        }
+    }
+
+    private static final class StringComparison extends FilterPlan {
+        private final Comparison comparison;
+        private final String operand;
+
+        private StringComparison(Comparison comparison, String operand) {
+            this.comparison = comparison;
+            this.operand = operand;
+        }
+
+        @Override
+        int cost() {
+            return 4;
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            // a zone holding empty values is kept for NotEqual, however the core reader treats them
+            if (comparison == Comparison.NotEqual && zone.getNullCount() > 0) return true;
+            return !zone.isAllNull() && matchesDictionary(zone);
+        }
+
+        @Override
+        KeyRange keyRange() {
+            return KeyRange.of(comparison, operand);
+        }
+
+        @Override
+        boolean test(Object value) {
+            if (value == null) return false;
+            int order = ((String) value).compareTo(operand);
+            switch (comparison) {
+                case Equal:
+                    return order == 0;
+                case NotEqual:
+                    return order != 0;
+                case GreaterThan:
+                    return order > 0;
+                case GreaterThanOrEqual:
+                    return order >= 0;
+                case LessThan:
+                    return order < 0;
+                default:
+                    return order <= 0;
+            }
+        }
+
+        @Override
+        boolean isTestable() {
+            return true;
+        }
+    }
+
+    private static final class MemoizedPlan extends FilterPlan {
+        /**
+         * The most results remembered; beyond this, further values are tested every time.
+         */
+        private static final int MAX_RESULTS = 1 << 16;
+
+        private final FilterPlan plan;
+        private final Map<Object, Boolean> results = new ConcurrentHashMap<>();
+
+        private MemoizedPlan(FilterPlan plan) {
+            this.plan = plan;
+        }
+
+        @Override
+        int cost() {
+            return Math.min(plan.cost(), 3);
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            return plan.canMatch(zone);
+        }
+
+        @Override
+        boolean test(Object value) {
+            if (value == null) return plan.test(null);
+            Boolean result = results.get(value);
+            if (result == null) {
+                result = plan.test(value);
+                if (results.size() < MAX_RESULTS) results.put(value, result);
+            }
+            return result;
+        }
+
+        @Override
+        boolean isTestable() {
+            return plan.isTestable();
+        }
+
+        @Override
+        FilterPlan memoized() {
+            return this;
+        }
+    }
+
+    /**
+     * A filter that is only ever evaluated by the core reader.
+     */
+    private static final class OpaquePlan extends FilterPlan {
+        private final Filter filter;
+        private final Reader.ColumnTypes columnType;
+
+        private OpaquePlan(Filter filter, Reader.ColumnTypes columnType) {
+            this.filter = filter;
+            this.columnType = columnType;
+        }
+
+        @Override
+        int cost() {
+            return FilterTranslation.estimatedCost(filter);
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            return true;
+        }
+
+        @Override
+        boolean test(Object value) {
+            throw new IllegalArgumentException(String.format("Filter '%s' cannot be evaluated on a %s column",
+                    filter.getClass().getSimpleName(), columnType));
+        }
+
+        @Override
+        boolean isTestable() {
+            return false;
+        }
+    }
+}
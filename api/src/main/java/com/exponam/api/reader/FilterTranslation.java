@@ -5,7 +5,9 @@ import com.exponam.api.reader.filters.Filter;
 import com.exponam.core.internalColumnSegmentFilters.*;
 import com.google.common.collect.ImmutableMap;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -14,7 +16,7 @@ import java.util.stream.Collectors;
 class FilterTranslation {
     static Map<Class<? extends Filter>, Function<Filter, FilterDefinition>> mappings =
             ImmutableMap.<Class<? extends Filter>, Function<Filter, FilterDefinition>>builder()
-                    .put(And.class, filter -> new AndFilterDefinition(map(((And)filter).getFilters())))
+                    .put(And.class, filter -> new AndFilterDefinition(map(flatten(((And)filter).getFilters(), And.class))))
                     .put(IsEqual.class, filter ->
                             new ComparisonFilterDefinition(ComparisonFilterDefinition.Kind.Equal,
                                     ((IsEqual)filter).getOperand()))
@@ -37,7 +39,7 @@ class FilterTranslation {
                             new NullityFilterDefinition(NullityFilterDefinition.Kind.IsNotNull))
                     .put(IsNull.class, filter ->
                             new NullityFilterDefinition(NullityFilterDefinition.Kind.IsNull))
-                    .put(Or.class, filter -> new OrFilterDefinition(map(((Or)filter).getFilters())))
+                    .put(Or.class, filter -> new OrFilterDefinition(map(flatten(((Or)filter).getFilters(), Or.class))))
                     .put(StringContains.class, filter ->
                             new StringFilterDefinition(StringFilterDefinition.Kind.Contains,
                                     ((StringContains)filter).getCaseSensitive(),
@@ -60,8 +62,8 @@ class FilterTranslation {
                                     ((StringEndsWith)filter).getOperand()))
                     .put(StringIsEqual.class, filter ->
                             new StringFilterDefinition(StringFilterDefinition.Kind.Equal,
-                                    ((StringEndsWith)filter).getCaseSensitive(),
-                                    ((StringEndsWith)filter).getOperand()))
+                                    ((StringIsEqual)filter).getCaseSensitive(),
+                                    ((StringIsEqual)filter).getOperand()))
                     .put(StringIsGreaterThan.class, filter ->
                             new StringFilterDefinition(StringFilterDefinition.Kind.GreaterThan,
                                     ((StringIsGreaterThan)filter).getCaseSensitive(),
@@ -88,6 +90,39 @@ class FilterTranslation {
                                     ((StringStartsWith)filter).getOperand()))
                     .build();
 
+    /**
+     * @return true if the core reader can evaluate filter; set-membership filters, for instance, can only be
+     * evaluated by the API
+     */
+    static boolean canMap(Filter filter) {
+        if (filter instanceof And) return Arrays.stream(((And) filter).getFilters()).allMatch(FilterTranslation::canMap);
+        if (filter instanceof Or) return Arrays.stream(((Or) filter).getFilters()).allMatch(FilterTranslation::canMap);
+        return mappings.containsKey(filter.getClass());
+    }
+
+    /**
+     * @return false if filter includes a negative filter, whose treatment of empty values is the core reader's
+     */
+    static boolean isPositive(Filter filter) {
+        if (filter instanceof And) return Arrays.stream(((And) filter).getFilters()).allMatch(FilterTranslation::isPositive);
+        if (filter instanceof Or) return Arrays.stream(((Or) filter).getFilters()).allMatch(FilterTranslation::isPositive);
+        return !(filter instanceof IsNotEqual || filter instanceof IsNotIn || filter instanceof StringIsNotEqual
+                || filter instanceof StringDoesNotContain || filter instanceof StringDoesNotStartWith
+                || filter instanceof StringDoesNotEndWith);
+    }
+
+    /**
+     * @return true if filter is made up only of case-insensitive StringContains and StringDoesNotContain
+     * filters, which the API evaluates through SubstringSearch rather than leaving to the core reader
+     */
+    static boolean isCaseInsensitiveSearch(Filter filter) {
+        if (filter instanceof And) return Arrays.stream(((And) filter).getFilters()).allMatch(FilterTranslation::isCaseInsensitiveSearch);
+        if (filter instanceof Or) return Arrays.stream(((Or) filter).getFilters()).allMatch(FilterTranslation::isCaseInsensitiveSearch);
+        if (filter instanceof StringContains) return !((StringContains) filter).getCaseSensitive();
+        if (filter instanceof StringDoesNotContain) return !((StringDoesNotContain) filter).getCaseSensitive();
+        return false;
+    }
+
     static FilterDefinition map(Filter filter) {
         if (!mappings.containsKey(filter.getClass()))
             throw new IllegalArgumentException(
@@ -95,7 +130,46 @@ class FilterTranslation {
         return mappings.get(filter.getClass()).apply(filter);
     }
 
-    private static List<FilterDefinition> map(Filter[] filters) {
-        return Arrays.stream(filters).map(FilterTranslation::map).collect(Collectors.toList());
+    /**
+     * The filters of a nested And or Or, with any children of the same kind merged into their parent,
+     * in ascending order of estimated cost.
+     */
+    static List<Filter> flatten(Filter[] filters, Class<? extends Filter> kind) {
+        List<Filter> flattened = new ArrayList<>();
+        for (Filter filter : filters) {
+            if (filter.getClass() == kind)
+                flattened.addAll(flatten(kind == And.class ? ((And) filter).getFilters() : ((Or) filter).getFilters(), kind));
+            else
+                flattened.add(filter);
+        }
+        flattened.sort(Comparator.comparingInt(FilterTranslation::estimatedCost));
+        return flattened;
+    }
+
+    /**
+     * The estimated relative cost of evaluating a filter for one value.
+     */
+    static int estimatedCost(Filter filter) {
+        if (filter instanceof And) return Arrays.stream(((And) filter).getFilters()).mapToInt(FilterTranslation::estimatedCost).sum();
+        if (filter instanceof Or) return Arrays.stream(((Or) filter).getFilters()).mapToInt(FilterTranslation::estimatedCost).sum();
+        if (filter instanceof IsNull || filter instanceof IsNotNull) return 1;
+        if (filter instanceof IsEqual || filter instanceof IsNotEqual || filter instanceof IsGreaterThan
+                || filter instanceof IsGreaterThanOrEqual || filter instanceof IsLessThan
+                || filter instanceof IsLessThanOrEqual) return 2;
+        if (filter instanceof IsIn || filter instanceof IsNotIn) return 3;
+        if (filter instanceof StringIsEqual || filter instanceof StringIsNotEqual) return 4;
+        if (filter instanceof StringIsIn) return 5;
+        if (filter instanceof StringLike) return 15;
+        if (filter instanceof StringMatches) return 30;
+        if (filter instanceof StringContains || filter instanceof StringDoesNotContain) return 20;
+        if (filter instanceof StringStartsWith || filter instanceof StringDoesNotStartWith
+                || filter instanceof StringEndsWith || filter instanceof StringDoesNotEndWith
+                || filter instanceof StringIsGreaterThan || filter instanceof StringIsGreaterThanOrEqual
+                || filter instanceof StringIsLessThan || filter instanceof StringIsLessThanOrEqual) return 6;
+        return 10;
+    }
+
+    private static List<FilterDefinition> map(List<Filter> filters) {
+        return filters.stream().map(FilterTranslation::map).collect(Collectors.toList());
      }
 }
@@ -0,0 +1,195 @@
+package com.exponam.api.reader;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events for opening a file, decoding a partition and completing a query, in the
+ * category "Exponam".  The library targets Java 8, which has no jdk.jfr API to compile against, so the
+ * event types are defined at run time through jdk.jfr.EventFactory, by reflection.  Where JFR is not
+ * available, every event type is disabled and begin() returns null; where it is available but not
+ * recording, begin() costs one check.
+ */
+final class FlightRecorderEvents {
+    private static final Jfr JFR = Jfr.load();
+
+    static final EventType READER_OPEN = new EventType("com.exponam.ReaderOpen", "Reader Open",
+            "Opening a .BIG file, including deriving its key",
+            field(String.class, "file", "File"),
+            field(boolean.class, "passwordSupplied", "Password Supplied"));
+
+    static final EventType SEGMENT_DECODE = new EventType("com.exponam.SegmentDecode", "Segment Decode",
+            "Reading, decrypting and decoding the rows of one partition or cached segment",
+            field(int.class, "worksheet", "Worksheet"),
+            field(int.class, "firstRow", "First Row"),
+            field(int.class, "rows", "Rows"),
+            field(int.class, "columns", "Columns"),
+            field(long.class, "bytesRead", "Bytes Read"));
+
+    static final EventType QUERY = new EventType("com.exponam.Query", "Query",
+            "A getRowValues query, from planning to the delivery of its last row",
+            field(int.class, "worksheet", "Worksheet"),
+            field(long.class, "rowsScanned", "Rows Scanned"),
+            field(long.class, "rowsMatched", "Rows Matched"),
+            field(long.class, "partitionsRead", "Partitions Read"),
+            field(long.class, "partitionsSkipped", "Partitions Skipped"),
+            field(long.class, "bytesRead", "Bytes Read"));
+
+    private FlightRecorderEvents() {
+    }
+
+    /**
+     * A dynamically defined event type.
+     */
+    static final class EventType {
+        private final Object factory;
+        private final Object type;
+
+        private EventType(String name, String label, String description, Field... fields) {
+            Object created = null;
+            Object createdType = null;
+            if (JFR != null) {
+                try {
+                    created = JFR.create(name, label, description, fields);
+                    createdType = JFR.getEventType.invoke(created);
+                } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                    created = null;
+                    createdType = null;
+                }
+            }
+            this.factory = created;
+            this.type = createdType;
+        }
+
+        boolean isEnabled() {
+            if (type == null) return false;
+            try {
+                return (Boolean) JFR.isEnabled.invoke(type);
+            } catch (ReflectiveOperationException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Starts timing an event, or returns null if the event type is not being recorded.
+         */
+        Event begin() {
+            if (!isEnabled()) return null;
+            try {
+                Object event = JFR.newEvent.invoke(factory);
+                JFR.begin.invoke(event);
+                return new Event(event);
+            } catch (ReflectiveOperationException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * An event being timed.  commit() sets the fields, in the order the event type declares them, and
+     * records the event.
+     */
+    static final class Event {
+        private final Object event;
+
+        private Event(Object event) {
+            this.event = event;
+        }
+
+        void commit(Object... values) {
+            try {
+                for (int i = 0; i < values.length; i++) JFR.set.invoke(event, i, values[i]);
+                JFR.commit.invoke(event);
+            } catch (ReflectiveOperationException ignored) {
+                // a failure to record an event must not fail the operation being recorded
+            }
+        }
+    }
+
+    private static final class Field {
+        private final Class<?> type;
+        private final String name;
+        private final String label;
+
+        private Field(Class<?> type, String name, String label) {
+            this.type = type;
+            this.name = name;
+            this.label = label;
+        }
+    }
+
+    private static Field field(Class<?> type, String name, String label) {
+        return new Field(type, name, label);
+    }
+
+    /**
+     * The reflective handles on the jdk.jfr API.
+     */
+    private static final class Jfr {
+        private final Constructor<?> annotationElement;
+        private final Constructor<?> valueDescriptor;
+        private final Method create;
+        private final Method newEvent;
+        private final Method getEventType;
+        private final Method isEnabled;
+        private final Method begin;
+        private final Method set;
+        private final Method commit;
+        private final Class<? extends Annotation> nameAnnotation;
+        private final Class<? extends Annotation> labelAnnotation;
+        private final Class<? extends Annotation> descriptionAnnotation;
+        private final Class<? extends Annotation> categoryAnnotation;
+
+        private Jfr() throws ReflectiveOperationException {
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            this.annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+            this.valueDescriptor = valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+            this.create = eventFactoryClass.getMethod("create", List.class, List.class);
+            this.newEvent = eventFactoryClass.getMethod("newEvent");
+            this.getEventType = eventFactoryClass.getMethod("getEventType");
+            this.isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+            this.begin = eventClass.getMethod("begin");
+            this.set = eventClass.getMethod("set", int.class, Object.class);
+            this.commit = eventClass.getMethod("commit");
+            this.nameAnnotation = annotation("jdk.jfr.Name");
+            this.labelAnnotation = annotation("jdk.jfr.Label");
+            this.descriptionAnnotation = annotation("jdk.jfr.Description");
+            this.categoryAnnotation = annotation("jdk.jfr.Category");
+        }
+
+        static Jfr load() {
+            try {
+                return new Jfr();
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                return null;
+            }
+        }
+
+        Object create(String name, String label, String description, Field[] fields)
+                throws ReflectiveOperationException {
+            List<Object> annotations = Arrays.asList(
+                    annotationElement.newInstance(nameAnnotation, name),
+                    annotationElement.newInstance(labelAnnotation, label),
+                    annotationElement.newInstance(descriptionAnnotation, description),
+                    annotationElement.newInstance(categoryAnnotation, new String[]{"Exponam"}));
+            List<Object> descriptors = new ArrayList<>(fields.length);
+            for (Field field : fields)
+                descriptors.add(valueDescriptor.newInstance(field.type, field.name,
+                        Collections.singletonList(annotationElement.newInstance(labelAnnotation, field.label))));
+            return create.invoke(null, annotations, descriptors);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Class<? extends Annotation> annotation(String name) throws ClassNotFoundException {
+            return (Class<? extends Annotation>) Class.forName(name);
+        }
+    }
+}
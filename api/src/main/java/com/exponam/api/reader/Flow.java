@@ -0,0 +1,37 @@
+package com.exponam.api.reader;
+
+/**
+ * The interfaces of a demand-driven publish/subscribe stream, shaped exactly like java.util.concurrent.Flow
+ * (and Reactive Streams), which Java 8 lacks.  A Subscriber receives items only as it requests them, so a
+ * slow consumer holds back the Publisher instead of being buffered against.  Adapting to
+ * java.util.concurrent.Flow or to a Reactive Streams library is a matter of forwarding each method.
+ */
+public final class Flow {
+    private Flow() {
+    }
+
+    public interface Publisher<T> {
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+        /**
+         * Adds n items to the demand of the subscriber.  A non-positive n cancels the subscription and signals
+         * an IllegalArgumentException to onError.
+         * @param n the number of further items the subscriber is ready for
+         */
+        void request(long n);
+
+        void cancel();
+    }
+}
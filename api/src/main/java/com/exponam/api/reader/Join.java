@@ -0,0 +1,109 @@
+package com.exponam.api.reader;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * Equi-joins of the worksheets of two Readers, such as the enrichment of a fact file with the rows of a
+ * dimension file that share its customer code.
+ * <p>
+ * A join is a hash join.  The rows of one side, the build side, are read with its filters applied, each
+ * partition by a task submitted to the executor, and held in a hash table keyed by their key column.  The
+ * rows of the other side, the probe side, are then read with the parallel form of getRowValues, with its
+ * own filters applied, and each is looked up in the table as it is read.  For an inner join, the side with
+ * fewer rows is the build side; for a left join, it is always the right side, so that each left row without
+ * a match can be delivered as it is read.  Only the build side is held in memory, and only its projected
+ * columns.
+ * <p>
+ * The two key columns must be of the same type.  Keys are compared as getValue returns them when Long.class
+ * is requested for Long, Date, DateTime and Time columns, as doubles for Double columns, and as exact
+ * Strings for String columns.  Empty keys match nothing.
+ * <p>
+ * rowConsumer is invoked on the executor's threads, concurrently and in no particular order, once for each
+ * pair of matching rows, and must therefore be thread-safe.  These methods return once every joined row has
+ * been delivered.
+ */
+public final class Join {
+    private Join() {
+    }
+
+    /**
+     * An inner join, on the calling thread.
+     *
+     * @see #inner(JoinSide, JoinSide, ExecutorService, JoinConsumer)
+     * @param left the left side
+     * @param right the right side
+     * @param rowConsumer the callback invoked for each pair of matching rows
+     */
+    public static void inner(JoinSide left, JoinSide right, JoinConsumer rowConsumer) {
+        inner(left, right, MoreExecutors.newDirectExecutorService(), rowConsumer);
+    }
+
+    /**
+     * An inner join: each pair of a left row and a right row whose keys are equal.
+     * @param left the left side
+     * @param right the right side
+     * @param executor the executor on which partitions are read
+     * @param rowConsumer the callback invoked for each pair of matching rows
+     */
+    public static void inner(JoinSide left, JoinSide right, ExecutorService executor, JoinConsumer rowConsumer) {
+        run(left, right, false, executor, rowConsumer);
+    }
+
+    /**
+     * A left join, on the calling thread.
+     *
+     * @see #left(JoinSide, JoinSide, ExecutorService, JoinConsumer)
+     * @param left the left side
+     * @param right the right side
+     * @param rowConsumer the callback invoked for each pair of matching rows, and each unmatched left row
+     */
+    public static void left(JoinSide left, JoinSide right, JoinConsumer rowConsumer) {
+        left(left, right, MoreExecutors.newDirectExecutorService(), rowConsumer);
+    }
+
+    /**
+     * A left join: each pair of a left row and a right row whose keys are equal, and each left row that
+     * matches no right row, with a right row index of -1 and a null right row.
+     * @param left the left side
+     * @param right the right side
+     * @param executor the executor on which partitions are read
+     * @param rowConsumer the callback invoked for each pair of matching rows, and each unmatched left row
+     */
+    public static void left(JoinSide left, JoinSide right, ExecutorService executor, JoinConsumer rowConsumer) {
+        run(left, right, true, executor, rowConsumer);
+    }
+
+    private static void run(JoinSide left, JoinSide right, boolean leftJoin, ExecutorService executor,
+                            JoinConsumer rowConsumer) {
+        Objects.requireNonNull(left, "left");
+        Objects.requireNonNull(right, "right");
+        Objects.requireNonNull(executor, "executor");
+        Objects.requireNonNull(rowConsumer, "rowConsumer");
+        if (left.getKeyType() != right.getKeyType())
+            throw new IllegalArgumentException(String.format("Key columns of types %s and %s cannot be joined",
+                    left.getKeyType(), right.getKeyType()));
+
+        boolean buildLeft = !leftJoin && left.getRowCount() < right.getRowCount();
+        JoinSide build = buildLeft ? left : right;
+        JoinSide probe = buildLeft ? right : left;
+        List<RowBlock> blocks = build.getReader().readBlocks(build.getWorksheetIndex(), build.getReadColumns(), executor);
+        JoinTable table = JoinTable.build(build.getKeyType(), build.getKeyColumnIndex(), blocks);
+        if ((table.size() == 0 && !leftJoin) || probe.getRowCount() == 0) return;
+
+        int probeKey = probe.getKeyColumnIndex();
+        probe.getReader().getRowValues(probe.getWorksheetIndex(), 0, probe.getRowCount() - 1, probe.getReadColumns(),
+                executor, false, (rowIndex, row) -> {
+                    boolean matched = table.forEachMatch(row.apply(probeKey), (block, position) -> {
+                        Function<Integer, Object> buildRow = columnIndex -> block.getValue(position, columnIndex);
+                        if (buildLeft) rowConsumer.accept(block.getRowIndex(position), buildRow, rowIndex, row);
+                        else rowConsumer.accept(rowIndex, row, block.getRowIndex(position), buildRow);
+                    });
+                    if (!matched && leftJoin) rowConsumer.accept(rowIndex, row, -1, null);
+                });
+    }
+}
@@ -0,0 +1,13 @@
+package com.exponam.api.reader;
+
+import java.util.function.Function;
+
+/**
+ * Receives the joined rows of a Join: the index and values of a row of the left side, and those of a matching
+ * row of the right side.  As for getRowValues, each row is a function returning the value of a projected
+ * column, in the type requested for it.  A row of the left side without a match in a left join is delivered
+ * once, with a right row index of -1 and a null right row.
+ */
+public interface JoinConsumer {
+    void accept(int leftRowIndex, Function<Integer, Object> leftRow, int rightRowIndex, Function<Integer, Object> rightRow);
+}
@@ -0,0 +1,73 @@
+package com.exponam.api.reader;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * One side of a Join: a worksheet of a Reader, the column whose values are matched against those of the other
+ * side, and the columns to be read, as for getRowValues.  The column filters of queryColumns select the rows of
+ * this side that take part in the join, and are evaluated as they would be by getRowValues, so they benefit
+ * from zone maps, dictionaries and column indexes just the same.
+ * <p>
+ * The key column is always read and projected, in the type in which SortKey orders it: Long for Long, Date,
+ * DateTime and Time columns, Boolean, Double or String for the others.  Rows with an empty key match no row.
+ */
+public final class JoinSide {
+    private final Reader reader;
+    private final int worksheetIndex;
+    private final int keyColumnIndex;
+    private final Map<Integer, QueryColumn> queryColumns;
+    private final Reader.ColumnTypes keyType;
+
+    private JoinSide(Reader reader, int worksheetIndex, int keyColumnIndex, Map<Integer, QueryColumn> queryColumns) {
+        this.reader = Objects.requireNonNull(reader, "reader");
+        this.worksheetIndex = worksheetIndex;
+        this.keyColumnIndex = keyColumnIndex;
+        this.queryColumns = new HashMap<>(Objects.requireNonNull(queryColumns, "queryColumns"));
+        this.keyType = reader.getColumnType(worksheetIndex, keyColumnIndex);
+    }
+
+    /**
+     * @param reader the Reader of the file
+     * @param worksheetIndex the zero-based worksheet index
+     * @param keyColumnIndex the zero-based index of the column joined on
+     * @param queryColumns map describing the columns to be read, and the filters selecting rows; can be empty
+     * @return the side of a join
+     */
+    public static JoinSide of(Reader reader, int worksheetIndex, int keyColumnIndex, Map<Integer, QueryColumn> queryColumns) {
+        return new JoinSide(reader, worksheetIndex, keyColumnIndex, queryColumns);
+    }
+
+    public Reader getReader() {
+        return reader;
+    }
+
+    public int getWorksheetIndex() {
+        return worksheetIndex;
+    }
+
+    public int getKeyColumnIndex() {
+        return keyColumnIndex;
+    }
+
+    Reader.ColumnTypes getKeyType() {
+        return keyType;
+    }
+
+    int getRowCount() {
+        return reader.getRowCount(worksheetIndex);
+    }
+
+    /**
+     * The columns read for this side: queryColumns, with the key column projected in its key type.
+     */
+    Map<Integer, QueryColumn> getReadColumns() {
+        Map<Integer, QueryColumn> readColumns = new HashMap<>(queryColumns);
+        QueryColumn keyColumn = queryColumns.get(keyColumnIndex);
+        readColumns.put(keyColumnIndex, new QueryColumn(true, ColumnVector.vectorTypeFor(keyType),
+                keyColumn == null ? Optional.empty() : keyColumn.getColumnFilter()));
+        return readColumns;
+    }
+}
@@ -0,0 +1,129 @@
+package com.exponam.api.reader;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The hash table of the build side of a Join.  The rows themselves stay in the RowBlocks they were read into;
+ * the table holds, for each distinct key, the first of the rows with that key, and the rows with the same key
+ * are chained in row order through an array of ints.  Keys are held as primitive longs (a Double's bits, and
+ * the values of the other non-String columns as longs), so probing neither boxes nor allocates; String keys
+ * are held once each, as a dictionary of the distinct keys.  Open addressing with linear probing is used
+ * throughout.  The table is filled once and then only read, so it can be probed from many threads at once.
+ */
+final class JoinTable {
+    private static final int NONE = -1;
+
+    private final Reader.ColumnTypes keyType;
+    private final List<RowBlock> blocks;
+    private final int[] entryBlock;
+    private final int[] entryPosition;
+    private final int[] nextEntry;
+    private final int[] firstEntry;
+    private final long[] longKeys;
+    private final String[] stringKeys;
+    private final int mask;
+    private final int size;
+
+    private JoinTable(Reader.ColumnTypes keyType, int keyColumnIndex, List<RowBlock> blocks) {
+        this.keyType = keyType;
+        this.blocks = blocks;
+        int rows = 0;
+        for (RowBlock block : blocks) rows += block.size();
+        int[] entryBlock = new int[rows];
+        int[] entryPosition = new int[rows];
+        int count = 0;
+        for (int b = 0; b < blocks.size(); b++) {
+            RowBlock block = blocks.get(b);
+            for (int position = 0; position < block.size(); position++) {
+                if (!isKey(block.getValue(position, keyColumnIndex))) continue;
+                entryBlock[count] = b;
+                entryPosition[count++] = position;
+            }
+        }
+        this.entryBlock = entryBlock;
+        this.entryPosition = entryPosition;
+        this.nextEntry = new int[count];
+        this.size = count;
+
+        int capacity = Integer.highestOneBit(Math.max(4, count * 2 - 1)) << 1;
+        this.mask = capacity - 1;
+        this.firstEntry = new int[capacity];
+        Arrays.fill(firstEntry, NONE);
+        boolean strings = keyType == Reader.ColumnTypes.String;
+        this.longKeys = strings ? null : new long[capacity];
+        this.stringKeys = strings ? new String[capacity] : null;
+        // entries are prepended to their chains, last first, so that each chain is in row order
+        for (int entry = count - 1; entry >= 0; entry--) {
+            Object key = blocks.get(entryBlock[entry]).getValue(entryPosition[entry], keyColumnIndex);
+            int slot = strings ? slotOf((String) key) : slotOf(longKey(key));
+            if (firstEntry[slot] == NONE) {
+                if (strings) stringKeys[slot] = (String) key;
+                else longKeys[slot] = longKey(key);
+            }
+            nextEntry[entry] = firstEntry[slot];
+            firstEntry[slot] = entry;
+        }
+    }
+
+    /**
+     * Builds the table over the rows read into blocks, keyed by the values of keyColumnIndex.
+     */
+    static JoinTable build(Reader.ColumnTypes keyType, int keyColumnIndex, List<RowBlock> blocks) {
+        return new JoinTable(keyType, keyColumnIndex, blocks);
+    }
+
+    /**
+     * @return the number of rows in the table; rows with an empty key are not included
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Invokes action with the block and position of each row whose key equals key, in row order.
+     * @return false if there is no such row
+     */
+    boolean forEachMatch(Object key, ObjIntConsumer<RowBlock> action) {
+        if (!isKey(key)) return false;
+        int slot = keyType == Reader.ColumnTypes.String ? slotOf((String) key) : slotOf(longKey(key));
+        int entry = firstEntry[slot];
+        if (entry == NONE) return false;
+        for (; entry != NONE; entry = nextEntry[entry]) action.accept(blocks.get(entryBlock[entry]), entryPosition[entry]);
+        return true;
+    }
+
+    /**
+     * The slot of a key: the slot holding it, or else the empty slot at which the search for it ended.
+     */
+    private int slotOf(long key) {
+        int slot = LongHashSet.hash(key) & mask;
+        while (firstEntry[slot] != NONE && longKeys[slot] != key) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private int slotOf(String key) {
+        int h = key.hashCode();
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (firstEntry[slot] != NONE && !stringKeys[slot].equals(key)) slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * A Double's bits, with -0.0 taken as 0.0, as the comparisons of a FilterPlan do; the value of any other
+     * key as a long.
+     */
+    private long longKey(Object key) {
+        if (keyType != Reader.ColumnTypes.Double) return FilterPlan.toLong(key);
+        double value = ((Number) key).doubleValue();
+        return Double.doubleToLongBits(value == 0.0 ? 0.0 : value);
+    }
+
+    /**
+     * Empty values, and NaN, which equals nothing, match no row.
+     */
+    private static boolean isKey(Object value) {
+        return value != null && !(value instanceof Double && ((Double) value).isNaN());
+    }
+}
@@ -0,0 +1,100 @@
+package com.exponam.api.reader;
+
+/**
+ * A range of the non-empty values of a column, as selected by an equality or range filter: a lower and an
+ * upper bound, each inclusive, exclusive or absent.  Bounds are Longs for the columns whose values a
+ * FilterPlan compares as longs, Doubles for Double columns, and Strings, compared by String.compareTo, for
+ * String columns.
+ */
+final class KeyRange {
+    private final Comparable<?> lower;
+    private final boolean lowerInclusive;
+    private final Comparable<?> upper;
+    private final boolean upperInclusive;
+
+    private KeyRange(Comparable<?> lower, boolean lowerInclusive, Comparable<?> upper, boolean upperInclusive) {
+        this.lower = lower;
+        this.lowerInclusive = lowerInclusive;
+        this.upper = upper;
+        this.upperInclusive = upperInclusive;
+    }
+
+    /**
+     * @return the range of values satisfying a comparison with operand, or null for NotEqual, which selects
+     * two ranges
+     */
+    static KeyRange of(FilterPlan.Comparison comparison, Comparable<?> operand) {
+        switch (comparison) {
+            case Equal:
+                return new KeyRange(operand, true, operand, true);
+            case GreaterThan:
+                return new KeyRange(operand, false, null, false);
+            case GreaterThanOrEqual:
+                return new KeyRange(operand, true, null, false);
+            case LessThan:
+                return new KeyRange(null, false, operand, false);
+            case LessThanOrEqual:
+                return new KeyRange(null, false, operand, true);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return the lower bound, or null if there is none
+     */
+    Comparable<?> getLower() {
+        return lower;
+    }
+
+    boolean getLowerInclusive() {
+        return lowerInclusive;
+    }
+
+    /**
+     * @return the upper bound, or null if there is none
+     */
+    Comparable<?> getUpper() {
+        return upper;
+    }
+
+    boolean getUpperInclusive() {
+        return upperInclusive;
+    }
+
+    /**
+     * @return the values in both this range and other
+     */
+    KeyRange intersect(KeyRange other) {
+        Comparable<?> newLower = lower;
+        boolean newLowerInclusive = lowerInclusive;
+        int lowerOrder = lower == null ? -1 : other.lower == null ? 1 : compare(lower, other.lower);
+        if (lowerOrder < 0) {
+            newLower = other.lower;
+            newLowerInclusive = other.lowerInclusive;
+        } else if (lowerOrder == 0) {
+            newLowerInclusive = lowerInclusive && other.lowerInclusive;
+        }
+        Comparable<?> newUpper = upper;
+        boolean newUpperInclusive = upperInclusive;
+        int upperOrder = upper == null ? 1 : other.upper == null ? -1 : compare(upper, other.upper);
+        if (upperOrder > 0) {
+            newUpper = other.upper;
+            newUpperInclusive = other.upperInclusive;
+        } else if (upperOrder == 0) {
+            newUpperInclusive = upperInclusive && other.upperInclusive;
+        }
+        return new KeyRange(newLower, newLowerInclusive, newUpper, newUpperInclusive);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Comparable<?> a, Comparable<?> b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s, %s%s", lowerInclusive ? "[" : "(", lower == null ? "" : lower,
+                upper == null ? "" : upper, upperInclusive ? "]" : ")");
+    }
+}
@@ -0,0 +1,94 @@
+package com.exponam.api.reader;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing hash set of primitive longs, with linear probing, for membership tests that neither box
+ * nor allocate.  The set is filled once and then only read, so it can be shared between threads once built.
+ */
+final class LongHashSet {
+    private static final long EMPTY = 0L;
+
+    private long[] slots;
+    private int mask;
+    private int size;
+    private boolean containsEmpty;
+
+    LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        this.slots = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !containsEmpty;
+            containsEmpty = true;
+            return added;
+        }
+        int slot = slotOf(value);
+        while (slots[slot] != EMPTY) {
+            if (slots[slot] == value) return false;
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+        if (++size * 2 > slots.length) grow();
+        return true;
+    }
+
+    boolean contains(long value) {
+        if (value == EMPTY) return containsEmpty;
+        int slot = slotOf(value);
+        long found;
+        while ((found = slots[slot]) != EMPTY) {
+            if (found == value) return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size + (containsEmpty ? 1 : 0);
+    }
+
+    /**
+     * @return the values of the set in ascending order
+     */
+    long[] toSortedArray() {
+        long[] values = new long[size()];
+        int count = 0;
+        if (containsEmpty) values[count++] = EMPTY;
+        for (long slot : slots) if (slot != EMPTY) values[count++] = slot;
+        Arrays.sort(values);
+        return values;
+    }
+
+    private int slotOf(long value) {
+        return hash(value) & mask;
+    }
+
+    /**
+     * The 64-bit finalizer of MurmurHash3, so that sequential ids spread across a table.
+     */
+    static int hash(long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53ec6e1L;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private void grow() {
+        long[] old = slots;
+        slots = new long[old.length * 2];
+        mask = slots.length - 1;
+        for (long value : old) {
+            if (value == EMPTY) continue;
+            int slot = slotOf(value);
+            while (slots[slot] != EMPTY) slot = (slot + 1) & mask;
+            slots[slot] = value;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.exponam.api.reader;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Runs a row query as one task per partition on a caller-supplied executor, each task reading through
+ * a ReaderSession of its own.
+ */
+final class ParallelScan {
+    private final SessionPool sessions;
+    private final RowQuery query;
+    private final Collection<Integer> projectedColumns;
+    private final QueryRecorder recorder;
+
+    ParallelScan(SessionPool sessions, RowQuery query, Collection<Integer> projectedColumns) {
+        this(sessions, query, projectedColumns, null);
+    }
+
+    /**
+     * @param recorder the recorder to which each partition's bytes and time are added, or null
+     */
+    ParallelScan(SessionPool sessions, RowQuery query, Collection<Integer> projectedColumns, QueryRecorder recorder) {
+        this.sessions = sessions;
+        this.query = query;
+        this.projectedColumns = projectedColumns;
+        this.recorder = recorder;
+    }
+
+    /**
+     * Delivers rows to rowConsumer on the worker threads, as soon as they are read.
+     */
+    void runUnordered(List<RowRange> partitions, ExecutorService executor,
+                      BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        List<Future<?>> futures = new ArrayList<>(partitions.size());
+        try {
+            for (RowRange partition : partitions)
+                futures.add(executor.submit(() -> fetch(partition, rowConsumer)));
+            for (Future<?> future : futures) Tasks.await(future);
+        } catch (RuntimeException | Error e) {
+            Tasks.cancelAll(futures);
+            throw e;
+        }
+    }
+
+    /**
+     * Delivers rows to rowConsumer on the calling thread, in row order.  Partitions are read ahead of
+     * the consumer, but no more than maxInFlight of them are held in memory at once.
+     */
+    void runOrdered(List<RowRange> partitions, ExecutorService executor, int maxInFlight,
+                    BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        Deque<Future<RowBlock>> inFlight = new ArrayDeque<>(maxInFlight);
+        Iterator<RowRange> pending = partitions.iterator();
+        try {
+            while (inFlight.size() < maxInFlight && pending.hasNext())
+                inFlight.add(submitBuffered(pending.next(), executor));
+            while (!inFlight.isEmpty()) {
+                RowBlock block = Tasks.await(inFlight.poll());
+                if (pending.hasNext()) inFlight.add(submitBuffered(pending.next(), executor));
+                block.forEach(rowConsumer);
+            }
+        } catch (RuntimeException | Error e) {
+            Tasks.cancelAll(inFlight);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads each partition into a row consumer of its own, created by newPartial, and returns the consumers
+     * in partition order once every partition has been read.
+     */
+    <P extends BiConsumer<Integer, Function<Integer, Object>>> List<P> runPartitioned(
+            List<RowRange> partitions, ExecutorService executor, Supplier<P> newPartial) {
+        List<Future<P>> futures = new ArrayList<>(partitions.size());
+        try {
+            for (RowRange partition : partitions)
+                futures.add(executor.submit(() -> {
+                    P partial = newPartial.get();
+                    fetch(partition, partial);
+                    return partial;
+                }));
+            List<P> partials = new ArrayList<>(futures.size());
+            for (Future<P> future : futures) partials.add(Tasks.await(future));
+            return partials;
+        } catch (RuntimeException | Error e) {
+            Tasks.cancelAll(futures);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads each partition into a RowBlock, and returns the blocks in partition order once every partition
+     * has been read.
+     */
+    List<RowBlock> runBuffered(List<RowRange> partitions, ExecutorService executor) {
+        List<Future<RowBlock>> futures = new ArrayList<>(partitions.size());
+        try {
+            for (RowRange partition : partitions) futures.add(submitBuffered(partition, executor));
+            List<RowBlock> blocks = new ArrayList<>(futures.size());
+            for (Future<RowBlock> future : futures) blocks.add(Tasks.await(future));
+            return blocks;
+        } catch (RuntimeException | Error e) {
+            Tasks.cancelAll(futures);
+            throw e;
+        }
+    }
+
+    private Future<RowBlock> submitBuffered(RowRange partition, ExecutorService executor) {
+        return executor.submit(() -> readBlock(partition));
+    }
+
+    /**
+     * Reads the rows of a partition into a RowBlock, on the calling thread.
+     */
+    RowBlock readBlock(RowRange partition) {
+        RowBlock block = new RowBlock(projectedColumns);
+        fetch(partition, block::add);
+        return block;
+    }
+
+    /**
+     * Reads the rows of a partition through a pooled ReaderSession, on the calling thread.
+     */
+    void fetch(RowRange partition, BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        FlightRecorderEvents.Event event = FlightRecorderEvents.SEGMENT_DECODE.begin();
+        ReaderSession session = sessions.borrow();
+        long startNanos = System.nanoTime();
+        long startBytes = session.getBytesRead();
+        boolean completed = false;
+        try {
+            query.fetchRows(session.getMarshaller(), partition.getStartRow(), partition.getEndRow(), rowConsumer);
+            completed = true;
+        } finally {
+            long bytesRead = session.getBytesRead() - startBytes;
+            if (completed) sessions.release(session);
+            else sessions.discard(session);
+            if (recorder != null) recorder.scanned(bytesRead, System.nanoTime() - startNanos);
+            if (event != null && completed)
+                event.commit(query.getWorksheetIndex(), partition.getStartRow(),
+                        partition.getEndRow() - partition.getStartRow() + 1, projectedColumns.size(), bytesRead);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.Filter;
+import com.exponam.api.reader.filters.StringLike;
+import com.exponam.api.reader.filters.StringMatches;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * StringMatches and StringLike, compiled once per query.
+ * <p>
+ * A StringMatches value must match the whole regular expression, as for String.matches.  The Pattern is
+ * compiled when the plan is, and each thread reuses a Matcher of its own, so testing a value allocates nothing.
+ * <p>
+ * A StringLike pattern follows SQL: % matches any sequence of characters, _ matches any one character, and a
+ * backslash makes the character after it literal.  Patterns made only of literals and % are tested without a
+ * regular expression, by anchoring the first and last literal and searching for the rest in order with
+ * SubstringSearch; patterns using _ are compiled into a regular expression.
+ */
+abstract class PatternPlan extends FilterPlan {
+    /**
+     * @return the compiled filter, or null if filter is not a pattern filter
+     */
+    static PatternPlan compile(Filter filter) {
+        if (filter instanceof StringMatches) {
+            StringMatches matches = (StringMatches) filter;
+            int flags = matches.getCaseSensitive() ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+            return new RegexPlan(Pattern.compile(matches.getPattern(), flags), 30);
+        }
+        if (filter instanceof StringLike) return like(((StringLike) filter).getPattern(), ((StringLike) filter).getCaseSensitive());
+        return null;
+    }
+
+    private static PatternPlan like(String pattern, boolean caseSensitive) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        boolean usesAnyCharacter = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                literal.append(pattern.charAt(++i));
+            } else if (c == '%' || c == '_') {
+                literals.add(literal.toString());
+                regex.append(Pattern.quote(literal.toString())).append(c == '%' ? ".*" : ".");
+                literal.setLength(0);
+                usesAnyCharacter |= c == '_';
+            } else {
+                literal.append(c);
+            }
+        }
+        literals.add(literal.toString());
+        regex.append(Pattern.quote(literal.toString()));
+
+        if (usesAnyCharacter) {
+            int flags = Pattern.DOTALL | (caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+            return new RegexPlan(Pattern.compile(regex.toString(), flags), 15);
+        }
+        return new LikePlan(literals, caseSensitive);
+    }
+
+    @Override
+    boolean canMatch(ColumnZone zone) {
+        return !zone.isAllNull() && matchesDictionary(zone);
+    }
+
+    @Override
+    boolean isTestable() {
+        return true;
+    }
+
+    private static final class RegexPlan extends PatternPlan {
+        private final int cost;
+        private final ThreadLocal<Matcher> matchers;
+
+        private RegexPlan(Pattern pattern, int cost) {
+            this.cost = cost;
+            this.matchers = ThreadLocal.withInitial(() -> pattern.matcher(""));
+        }
+
+        @Override
+        int cost() {
+            return cost;
+        }
+
+        @Override
+        boolean test(Object value) {
+            return value != null && matchers.get().reset((String) value).matches();
+        }
+    }
+
+    /**
+     * A LIKE pattern of literals separated by %: the first literal must start the value, the last must end
+     * it, and the others must occur between them, in order and without overlapping.
+     */
+    private static final class LikePlan extends PatternPlan {
+        private final String prefix;
+        private final String suffix;
+        private final SubstringSearch[] middles;
+        private final boolean caseSensitive;
+        private final boolean exact;
+
+        private LikePlan(List<String> literals, boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+            this.exact = literals.size() == 1;
+            this.prefix = literals.get(0);
+            this.suffix = exact ? "" : literals.get(literals.size() - 1);
+            this.middles = new SubstringSearch[Math.max(literals.size() - 2, 0)];
+            for (int i = 0; i < middles.length; i++) middles[i] = SubstringSearch.of(literals.get(i + 1), caseSensitive);
+        }
+
+        @Override
+        int cost() {
+            return middles.length == 0 ? 6 : 20;
+        }
+
+        @Override
+        boolean test(Object value) {
+            if (value == null) return false;
+            String string = (String) value;
+            if (exact) return caseSensitive ? string.equals(prefix) : string.equalsIgnoreCase(prefix);
+
+            int end = string.length() - suffix.length();
+            if (end < prefix.length()) return false;
+            if (!string.regionMatches(!caseSensitive, 0, prefix, 0, prefix.length())) return false;
+            if (!string.regionMatches(!caseSensitive, end, suffix, 0, suffix.length())) return false;
+            int offset = prefix.length();
+            for (SubstringSearch middle : middles) {
+                int found = middle.indexIn(string, offset);
+                if (found < 0 || found + middle.length() > end) return false;
+                offset = found + middle.length();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.exponam.api.reader;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A query of one worksheet whose column filters have been compiled, for repeated use with getRowValues and
+ * stream.  Preparing a query translates each filter for the core reader and compiles it into a FilterPlan
+ * once, rather than on every call.
+ * <p>
+ * A PreparedQuery is immutable and can be shared between threads.  It can only be used with the Reader that
+ * prepared it.
+ */
+public final class PreparedQuery {
+    private final Reader reader;
+    private final int worksheetIndex;
+    private final ImmutableMap<Integer, QueryColumn> queryColumns;
+    private final RowQuery rowQuery;
+    private final ImmutableList<Integer> projectedColumns;
+
+    PreparedQuery(Reader reader, int worksheetIndex, Map<Integer, QueryColumn> queryColumns, RowQuery rowQuery) {
+        this.reader = reader;
+        this.worksheetIndex = worksheetIndex;
+        this.queryColumns = ImmutableMap.copyOf(queryColumns);
+        this.rowQuery = rowQuery;
+        this.projectedColumns = ImmutableList.sortedCopyOf(Maps.filterValues(this.queryColumns, QueryColumn::getProject).keySet());
+    }
+
+    public int getWorksheetIndex() {
+        return worksheetIndex;
+    }
+
+    public Map<Integer, QueryColumn> getQueryColumns() {
+        return queryColumns;
+    }
+
+    RowQuery getRowQuery() {
+        return rowQuery;
+    }
+
+    Map<Integer, FilterPlan> getFilterPlans() {
+        return rowQuery.getFilterPlans();
+    }
+
+    boolean hasFilters() {
+        return !rowQuery.getFilterPlans().isEmpty();
+    }
+
+    /**
+     * @return the zero-based indices of the projected columns, in ascending order
+     */
+    ImmutableList<Integer> getProjectedColumns() {
+        return projectedColumns;
+    }
+
+    void checkPreparedBy(Reader reader) {
+        if (this.reader != Objects.requireNonNull(reader, "reader"))
+            throw new IllegalArgumentException("The query was prepared by a different Reader");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("worksheetIndex=%d, queryColumns=%s", worksheetIndex, queryColumns);
+    }
+}
@@ -0,0 +1,10 @@
+package com.exponam.api.reader;
+
+/**
+ * Receives the execution statistics of each getRowValues query of a Reader, as set through
+ * ReaderOptions.withQueryListener.  queryCompleted is invoked on the thread that ran the query, once
+ * the last row has been delivered; queries that fail are not reported.
+ */
+public interface QueryListener {
+    void queryCompleted(QueryStats stats);
+}
@@ -0,0 +1,83 @@
+package com.exponam.api.reader;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Collects the statistics of one query as it runs, possibly on several threads at once, for QueryStats and
+ * the Query flight recorder event.
+ */
+final class QueryRecorder {
+    private final int worksheetIndex;
+    private final int startRow;
+    private final int endRow;
+    private final QueryListener listener;
+    private final FlightRecorderEvents.Event event;
+    private final long startNanos = System.nanoTime();
+    private final LongAdder rowsMatched = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder scanNanos = new LongAdder();
+    private volatile long planningNanos;
+    private volatile long rowsScanned;
+    private volatile long partitionsRead;
+    private volatile long partitionsSkipped;
+
+    private QueryRecorder(int worksheetIndex, int startRow, int endRow, QueryListener listener,
+                          FlightRecorderEvents.Event event) {
+        this.worksheetIndex = worksheetIndex;
+        this.startRow = startRow;
+        this.endRow = endRow;
+        this.listener = listener;
+        this.event = event;
+    }
+
+    /**
+     * Starts recording a query, or returns null if there is neither a listener nor a flight recording to
+     * report it to.
+     */
+    static QueryRecorder start(int worksheetIndex, int startRow, int endRow, QueryListener listener) {
+        FlightRecorderEvents.Event event = FlightRecorderEvents.QUERY.begin();
+        if (listener == null && event == null) return null;
+        return new QueryRecorder(worksheetIndex, startRow, endRow, listener, event);
+    }
+
+    /**
+     * Records the end of planning: of the partitions of the row range, those in partitionsToRead are to be
+     * read.
+     */
+    void planned(List<RowRange> partitions, List<RowRange> partitionsToRead) {
+        long rows = 0;
+        for (RowRange partition : partitionsToRead) rows += partition.getEndRow() - partition.getStartRow() + 1;
+        rowsScanned = rows;
+        partitionsRead = partitionsToRead.size();
+        partitionsSkipped = partitions.size() - partitionsToRead.size();
+        planningNanos = System.nanoTime() - startNanos;
+    }
+
+    BiConsumer<Integer, Function<Integer, Object>> counting(BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        return (rowIndex, row) -> {
+            rowsMatched.increment();
+            rowConsumer.accept(rowIndex, row);
+        };
+    }
+
+    void scanned(long bytes, long nanos) {
+        bytesRead.add(bytes);
+        scanNanos.add(nanos);
+    }
+
+    /**
+     * Reports the completed query to the listener and the flight recorder.
+     */
+    void finish() {
+        QueryStats stats = new QueryStats(worksheetIndex, startRow, endRow, rowsScanned, rowsMatched.sum(),
+                partitionsRead, partitionsSkipped, bytesRead.sum(), planningNanos, scanNanos.sum(),
+                System.nanoTime() - startNanos);
+        if (event != null)
+            event.commit(worksheetIndex, stats.getRowsScanned(), stats.getRowsMatched(), stats.getPartitionsRead(),
+                    stats.getPartitionsSkipped(), stats.getBytesRead());
+        if (listener != null) listener.queryCompleted(stats);
+    }
+}
@@ -0,0 +1,107 @@
+package com.exponam.api.reader;
+
+/**
+ * The execution statistics of one getRowValues query, delivered to the QueryListener of ReaderOptions when
+ * the query completes.
+ * <p>
+ * Time is split into planning (choosing the partitions to read, including computing any zone map
+ * statistics that were missing) and scanning (reading, decrypting, decompressing and decoding
+ * the partitions, applying filters, and running the row consumer).  Decryption, decompression and decoding
+ * happen together inside the file format library, so they are reported as a whole.  For parallel queries,
+ * scanning time is summed over the tasks, and so can exceed the elapsed time.
+ */
+public final class QueryStats {
+    private final int worksheetIndex;
+    private final int startRow;
+    private final int endRow;
+    private final long rowsScanned;
+    private final long rowsMatched;
+    private final long partitionsRead;
+    private final long partitionsSkipped;
+    private final long bytesRead;
+    private final long planningNanos;
+    private final long scanNanos;
+    private final long totalNanos;
+
+    QueryStats(int worksheetIndex, int startRow, int endRow, long rowsScanned, long rowsMatched,
+               long partitionsRead, long partitionsSkipped, long bytesRead,
+               long planningNanos, long scanNanos, long totalNanos) {
+        this.worksheetIndex = worksheetIndex;
+        this.startRow = startRow;
+        this.endRow = endRow;
+        this.rowsScanned = rowsScanned;
+        this.rowsMatched = rowsMatched;
+        this.partitionsRead = partitionsRead;
+        this.partitionsSkipped = partitionsSkipped;
+        this.bytesRead = bytesRead;
+        this.planningNanos = planningNanos;
+        this.scanNanos = scanNanos;
+        this.totalNanos = totalNanos;
+    }
+
+    public int getWorksheetIndex() {
+        return worksheetIndex;
+    }
+
+    public int getStartRow() {
+        return startRow;
+    }
+
+    public int getEndRow() {
+        return endRow;
+    }
+
+    /**
+     * @return the number of rows in the partitions that were read
+     */
+    public long getRowsScanned() {
+        return rowsScanned;
+    }
+
+    /**
+     * @return the number of rows delivered to the row consumer
+     */
+    public long getRowsMatched() {
+        return rowsMatched;
+    }
+
+    /**
+     * @return the number of partitions that were read
+     */
+    public long getPartitionsRead() {
+        return partitionsRead;
+    }
+
+    /**
+     * @return the number of partitions skipped, through zone maps, because no row could match
+     */
+    public long getPartitionsSkipped() {
+        return partitionsSkipped;
+    }
+
+    /**
+     * @return the number of bytes read from the file, before decryption, while scanning
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getPlanningNanos() {
+        return planningNanos;
+    }
+
+    public long getScanNanos() {
+        return scanNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public String toString() {
+        return String.format("worksheetIndex=%d, rows=%d..%d, rowsScanned=%d, rowsMatched=%d, partitionsRead=%d, "
+                        + "partitionsSkipped=%d, bytesRead=%d, planningNanos=%d, scanNanos=%d, totalNanos=%d",
+                worksheetIndex, startRow, endRow, rowsScanned, rowsMatched, partitionsRead, partitionsSkipped,
+                bytesRead, planningNanos, scanNanos, totalNanos);
+    }
+}
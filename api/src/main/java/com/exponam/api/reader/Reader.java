@@ -1,21 +1,48 @@
 package com.exponam.api.reader;
 
-import com.exponam.core.crypto.DecryptionUtilities;
+import com.exponam.api.reader.filters.RowPredicate;
 import com.exponam.core.reader.BigReader;
 import com.exponam.core.reader.Marshaller;
 import com.exponam.core.reader.QueryColumnAttributes;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Reader is the single point of entry for accessing the contents of Exponam .BIG files.
@@ -36,6 +63,9 @@ import java.util.stream.Collectors;
  * For example, if you request that a value for a Boolean column be returned as a Date, you will receive an
  * IllegalArgumentException.
  * <p>
+ * A Reader is safe for use by many threads at once.  Each read borrows one of a pool of underlying streams
+ * over the file, so concurrent getValue and getRowValues callers do not contend for a single stream.
+ * <p>
  * Note that Reader is Closeable.  Failure to call close() can result in dangling references to underlying
  * structures.
  */
@@ -53,27 +83,182 @@ public final class Reader implements Closeable {
         Time
     }
 
-    private BigReader bigReader;
-    private final Marshaller marshaller;
+    /**
+     * The ways in which a Reader opened from a Path can access the file
+     */
+    public enum FileAccess {
+        /**
+         * Positional reads on a FileChannel; concurrent reads never contend over a shared stream position
+         */
+        Channel,
+        /**
+         * The file is memory-mapped; page-cache-resident files are read without system calls
+         */
+        Mapped
+    }
+
+    /**
+     * The most distinct values a String column can have for its filters to be evaluated against its values
+     * rather than against each row, when ReaderOptions.withDictionaryFilters is enabled.
+     */
+    public static final int DICTIONARY_VALUES = 4096;
+
+    /**
+     * A column index is used for a filter only if the filter selects at most this fraction (1/8) of the rows,
+     * or a partition's worth, whichever is more; beyond that, a scan reads little more than the selected rows.
+     */
+    private static final int MAX_INDEXED_FRACTION = 8;
+
+    private final SessionPool sessions;
+    private final BigReaderSource source;
+    private final ReaderOptions options;
+    private final SegmentCache segmentCache;
+    private final Schema schema;
+    private final ZoneMaps zoneMaps;
+    private final ExecutorService prefetchExecutor;
+    private final Map<Long, Map<Object, Long>> valueCounts = new ConcurrentHashMap<>();
+    private final Map<Long, Boolean> dictionaryColumns = new ConcurrentHashMap<>();
+    private final Map<Long, Optional<ColumnIndex>> columnIndexes = new ConcurrentHashMap<>();
+    private volatile Long fingerprint;
 
     /**
      * Constructs an object that can read from an Exponam .BIG file.  Note that the
      * password is made available to Reader via a Supplier.  This is to facilitate
      * password mechanisms by the caller and minimize the amount of time during which
-     * Reader retains access to that password.
+     * Reader retains access to that password.  The password is dropped as soon as a
+     * decryptor has been derived from it; should the decryptor not be copyable for the
+     * further streams Reader opens for concurrent reads, the supplier is invoked again.
      * @param bigFile the Exponam .BIG file to be accessed
      * @param passwordSupplier a caller-supplier function returning the password for the BigFile; can be null or return an empty String for unencrypted files
      * @throws IOException if there is a problem accessing the file
      * @throws BigReader.UnsupportedFileVersionException if the file version is more recent than supported by this version of the API
      */
     public Reader(File bigFile, Supplier<String> passwordSupplier) throws IOException, BigReader.UnsupportedFileVersionException {
-        File validatedBigFile = validateBigFileParameter(bigFile);
-        bigReader = new BigReader(new FileInputStream(validatedBigFile));
+        this(bigFile, passwordSupplier, ReaderOptions.defaults());
+    }
 
-        String password = passwordSupplier == null ? "" : passwordSupplier.get();
-        bigReader.setDecryptor(DecryptionUtilities.setupDecryptionForPassword(password, bigReader).get());
+    /**
+     * Constructs an object that can read from an Exponam .BIG file, with the given options.
+     * @param bigFile the Exponam .BIG file to be accessed
+     * @param passwordSupplier a caller-supplier function returning the password for the BigFile; can be null or return an empty String for unencrypted files
+     * @param options optional settings for the Reader
+     * @throws IOException if there is a problem accessing the file
+     * @throws BigReader.UnsupportedFileVersionException if the file version is more recent than supported by this version of the API
+     */
+    public Reader(File bigFile, Supplier<String> passwordSupplier, ReaderOptions options) throws IOException, BigReader.UnsupportedFileVersionException {
+        this(SessionFactory.create(BigReaderSource.forFile(validateBigFileParameter(bigFile)), passwordSupplier), options);
+    }
 
-        this.marshaller = new Marshaller(this.bigReader);
+    /**
+     * Constructs an object that can read from an Exponam .BIG file, accessing the file through
+     * positional reads on a FileChannel.
+     * @param bigFile the Exponam .BIG file to be accessed
+     * @param passwordSupplier a caller-supplier function returning the password for the BigFile; can be null or return an empty String for unencrypted files
+     * @throws IOException if there is a problem accessing the file
+     * @throws BigReader.UnsupportedFileVersionException if the file version is more recent than supported by this version of the API
+     */
+    public Reader(Path bigFile, Supplier<String> passwordSupplier) throws IOException, BigReader.UnsupportedFileVersionException {
+        this(bigFile, passwordSupplier, FileAccess.Channel);
+    }
+
+    /**
+     * Constructs an object that can read from an Exponam .BIG file, accessing the file as specified
+     * by fileAccess.
+     * <p>
+     * With FileAccess.Mapped the file is mapped for the lifetime of the Reader; the mapping is released
+     * by the garbage collector some time after the Reader is closed.
+     * @param bigFile the Exponam .BIG file to be accessed
+     * @param passwordSupplier a caller-supplier function returning the password for the BigFile; can be null or return an empty String for unencrypted files
+     * @param fileAccess how the file is to be accessed
+     * @throws IOException if there is a problem accessing the file
+     * @throws BigReader.UnsupportedFileVersionException if the file version is more recent than supported by this version of the API
+     */
+    public Reader(Path bigFile, Supplier<String> passwordSupplier, FileAccess fileAccess) throws IOException, BigReader.UnsupportedFileVersionException {
+        this(bigFile, passwordSupplier, fileAccess, ReaderOptions.defaults());
+    }
+
+    /**
+     * Constructs an object that can read from an Exponam .BIG file, accessing the file as specified
+     * by fileAccess, with the given options.
+     * @param bigFile the Exponam .BIG file to be accessed
+     * @param passwordSupplier a caller-supplier function returning the password for the BigFile; can be null or return an empty String for unencrypted files
+     * @param fileAccess how the file is to be accessed
+     * @param options optional settings for the Reader
+     * @throws IOException if there is a problem accessing the file
+     * @throws BigReader.UnsupportedFileVersionException if the file version is more recent than supported by this version of the API
+     */
+    public Reader(Path bigFile, Supplier<String> passwordSupplier, FileAccess fileAccess, ReaderOptions options) throws IOException, BigReader.UnsupportedFileVersionException {
+        this(SessionFactory.create(openSource(validateBigFileParameter(bigFile), fileAccess), passwordSupplier), options);
+    }
+
+    /**
+     * Constructs an object that can read from an Exponam .BIG file that is already held in memory,
+     * such as one that has just been downloaded.
+     * <p>
+     * The remaining bytes of bigFile must hold the entire file.  The buffer is read through views of its
+     * own, so its position and limit are not changed, but its contents must not be modified while the
+     * Reader is open.
+     * @param bigFile a buffer holding the Exponam .BIG file to be accessed
+     * @param passwordSupplier a caller-supplier function returning the password for the BigFile; can be null or return an empty String for unencrypted files
+     * @throws IOException if there is a problem accessing the file
+     * @throws BigReader.UnsupportedFileVersionException if the file version is more recent than supported by this version of the API
+     */
+    public Reader(ByteBuffer bigFile, Supplier<String> passwordSupplier) throws IOException, BigReader.UnsupportedFileVersionException {
+        this(bigFile, passwordSupplier, ReaderOptions.defaults());
+    }
+
+    /**
+     * Constructs an object that can read from an Exponam .BIG file that is already held in memory,
+     * with the given options.
+     * @param bigFile a buffer holding the Exponam .BIG file to be accessed
+     * @param passwordSupplier a caller-supplier function returning the password for the BigFile; can be null or return an empty String for unencrypted files
+     * @param options optional settings for the Reader
+     * @throws IOException if there is a problem accessing the file
+     * @throws BigReader.UnsupportedFileVersionException if the file version is more recent than supported by this version of the API
+     */
+    public Reader(ByteBuffer bigFile, Supplier<String> passwordSupplier, ReaderOptions options) throws IOException, BigReader.UnsupportedFileVersionException {
+        this(SessionFactory.create(BigReaderSource.forBuffer(Objects.requireNonNull(bigFile, "bigFile")), passwordSupplier), options);
+    }
+
+    /**
+     * If the Reader cannot be constructed, its sessions and source are closed, as close() would close them,
+     * before the failure is rethrown; the caller has no Reader to close.
+     */
+    Reader(SessionFactory sessionFactory, ReaderOptions options) throws IOException, BigReader.UnsupportedFileVersionException {
+        this.sessions = new SessionPool(sessionFactory);
+        this.source = sessionFactory.getSource();
+        try {
+            this.options = Objects.requireNonNull(options, "options");
+            this.segmentCache = options.getSegmentCacheBytes() > 0 ? new SegmentCache(options.getSegmentCacheBytes()) : null;
+            this.schema = inSession(session -> readSchema(session.getBigReader()));
+            this.zoneMaps = options.getZoneMaps() ? new ZoneMaps(sessions, schema, options.getDictionaryFilters()) : null;
+        } catch (RuntimeException | Error e) {
+            try {
+                sessions.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            } finally {
+                try {
+                    source.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw e;
+        }
+        this.prefetchExecutor = options.getPrefetchDepth() > 0
+                ? Executors.newFixedThreadPool(options.getPrefetchDepth(),
+                        new ThreadFactoryBuilder().setNameFormat("exponam-prefetch-%d").setDaemon(true).build())
+                : null;
+    }
+
+    /**
+     * The structure of the file, captured when the Reader was opened.
+     *
+     * @return the schema
+     */
+    public Schema getSchema() {
+        return schema;
     }
 
     /**
@@ -93,8 +278,7 @@ public final class Reader implements Closeable {
      * @return the worksheet name
      */
     public String getWorksheetName(int worksheetIndex) {
-        validateWorksheetIndex(worksheetIndex);
-        return "Worksheet";
+        return schema.getWorksheet(worksheetIndex).getName();
     }
 
     /**
@@ -104,8 +288,7 @@ public final class Reader implements Closeable {
      * @return the number of rows in that worksheet
      */
     public int getRowCount(int worksheetIndex) {
-        validateWorksheetIndex(worksheetIndex);
-        return bigReader.getWorksheet(worksheetIndex).getNumRows();
+        return schema.getWorksheet(worksheetIndex).getRowCount();
     }
 
     /**
@@ -115,8 +298,7 @@ public final class Reader implements Closeable {
      * @return the number of columns in that worksheet
      */
     public int getColumnCount(int worksheetIndex) {
-        validateWorksheetIndex(worksheetIndex);
-        return bigReader.getWorksheet(worksheetIndex).getColumns().count();
+        return schema.getWorksheet(worksheetIndex).getColumnCount();
     }
 
     /**
@@ -127,8 +309,7 @@ public final class Reader implements Closeable {
      * @return the column name
      */
     public String getColumnName(int worksheetIndex, int columnIndex) {
-        validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
-        return bigReader.getWorksheet(worksheetIndex).getColumns().get(columnIndex).getName();
+        return schema.getWorksheet(worksheetIndex).getColumn(columnIndex).getName();
     }
 
     /**
@@ -139,25 +320,25 @@ public final class Reader implements Closeable {
      * @return the column type
      */
     public ColumnTypes getColumnType(int worksheetIndex, int columnIndex) {
-        validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
-        switch (bigReader.getWorksheet(worksheetIndex).getColumns().get(columnIndex).getType()) {
-            case Boolean:
-                return ColumnTypes.Boolean;
-            case Date:
-                return ColumnTypes.Date;
-            case DateTime:
-                return ColumnTypes.DateTime;
-            case Double:
-                return ColumnTypes.Double;
-            case Long:
-                return ColumnTypes.Long;
-            case String:
-                return ColumnTypes.String;
-            case Time:
-                return ColumnTypes.Time;
-            default:
-                throw new IllegalArgumentException("Unknown column type");
-        }
+        return schema.getWorksheet(worksheetIndex).getColumn(columnIndex).getType();
+    }
+
+    /**
+     * A typed accessor for the values of a column.  The column and the conversion to desiredClass are
+     * validated once, here, rather than on each read, which makes a handle the cheapest way to read many
+     * individual values from one column.  The supported conversions are those given for getValue.
+     *
+     * @param <T> the type to be returned by the handle
+     * @param worksheetIndex the zero-based worksheet index
+     * @param columnIndex the zero-based column index
+     * @param desiredClass the desired type for the values
+     * @return the column handle
+     */
+    public <T> ColumnHandle<T> column(int worksheetIndex, int columnIndex, Class<T> desiredClass) {
+        Schema.Worksheet worksheet = schema.getWorksheet(worksheetIndex);
+        Schema.Column column = worksheet.getColumn(columnIndex);
+        Conversions.validate(column.getType(), Objects.requireNonNull(desiredClass, "desiredClass"));
+        return new ColumnHandle<>(this, worksheetIndex, column, worksheet.getRowCount(), desiredClass);
     }
 
     /**
@@ -222,7 +403,31 @@ public final class Reader implements Closeable {
     public <T> T getValue(int worksheetIndex, int rowIndex, int columnIndex, Type desiredClass) {
         validateWorksheetColumnAndRowIndex(worksheetIndex, rowIndex, columnIndex);
         Objects.requireNonNull(desiredClass, "desiredClass");
-        return marshaller.getColumnValueAs(worksheetIndex, rowIndex, columnIndex, desiredClass);
+        @SuppressWarnings("unchecked")
+        T value = (T) readValue(worksheetIndex, rowIndex, columnIndex, desiredClass);
+        return value;
+    }
+
+    /**
+     * Reads a value whose indices have already been validated.
+     */
+    Object readValue(int worksheetIndex, int rowIndex, int columnIndex, Type desiredClass) {
+        if (segmentCache != null) {
+            int segment = SegmentCache.segmentOf(rowIndex);
+            Object[] values = segmentCache.getIfPresent(worksheetIndex, columnIndex, segment, desiredClass);
+            if (values != null) return values[rowIndex - SegmentCache.firstRowOf(segment)];
+        }
+        return inSession(session -> readValue(session, worksheetIndex, rowIndex, columnIndex, desiredClass));
+    }
+
+    private Object readValue(ReaderSession session, int worksheetIndex, int rowIndex, int columnIndex, Type desiredClass) {
+        if (segmentCache == null)
+            return session.getMarshaller().getColumnValueAs(worksheetIndex, rowIndex, columnIndex, desiredClass);
+
+        int segment = SegmentCache.segmentOf(rowIndex);
+        Object[] values = segmentCache.get(worksheetIndex, columnIndex, segment, desiredClass,
+                () -> loadSegment(session, worksheetIndex, columnIndex, segment, desiredClass));
+        return values[rowIndex - SegmentCache.firstRowOf(segment)];
     }
 
     /**
@@ -241,7 +446,8 @@ public final class Reader implements Closeable {
      * <p>
      * The optional filter that is applied to QueryColumnAttributes acts only within that column.  The filter
      * can be simple, such as a simple comparison filter, string filter, or check for null.  Complex filters
-     * can also be formed using And and Or logic.
+     * can also be formed using And and Or logic.  The filters of different columns must all be satisfied; for
+     * conditions that combine columns in other ways, use the form of getRowValues that takes a RowPredicate.
      * @param worksheetIndex the zero-based worksheet index
      * @param startRow the zero-based index for the first row in the range of rows to be retrieved
      * @param endRow the zero-based index for the last row in the range of rows to be retrieved
@@ -251,35 +457,1067 @@ public final class Reader implements Closeable {
     public void getRowValues(int worksheetIndex, int startRow, int endRow,
                              Map<Integer, QueryColumn> queryColumns,
                              BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        validateRowRange(worksheetIndex, startRow, endRow);
+        getRowValues(prepare(worksheetIndex, queryColumns), startRow, endRow, rowConsumer);
+    }
+
+    /**
+     * Compiles a query for repeated use.  The column filters of queryColumns are translated and compiled once,
+     * here, instead of on every call to getRowValues or stream.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param queryColumns map describing the columns to be fetched, as for getRowValues
+     * @return the prepared query, usable only with this Reader
+     */
+    public PreparedQuery prepare(int worksheetIndex, Map<Integer, QueryColumn> queryColumns) {
         validateWorksheetIndex(worksheetIndex);
-        if (startRow < 0) throw new IllegalArgumentException("Start row must be >= 0");
-        if (endRow >= getRowCount(worksheetIndex)) throw new IllegalArgumentException(
-                String.format("End row must be < %d", getRowCount(worksheetIndex)));
-        if (startRow > endRow) throw new IllegalArgumentException("Start row must be <= end row");
-        Objects.requireNonNull(queryColumns, "queryColumns");
-        if (queryColumns.isEmpty()) throw new IllegalArgumentException("queryColumns cannot be empty");
+        validateQueryColumns(queryColumns);
+        for (int columnIndex : queryColumns.keySet()) validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
+        return new PreparedQuery(this, worksheetIndex, queryColumns, compileRowQuery(worksheetIndex, queryColumns,
+                (columnIndex, queryColumn) -> queryColumn.getDesiredType()));
+    }
+
+    /**
+     * The form of getRowValues for a prepared query.
+     *
+     * @see #getRowValues(int, int, int, Map, BiConsumer)
+     * @param query a query prepared by this Reader
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param rowConsumer the callback invoked for each row that is retrieved
+     */
+    public void getRowValues(PreparedQuery query, int startRow, int endRow,
+                             BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        query.checkPreparedBy(this);
+        int worksheetIndex = query.getWorksheetIndex();
+        validateRowRange(worksheetIndex, startRow, endRow);
+        RowSet indexed = indexedRows(worksheetIndex, query.getFilterPlans(), startRow, endRow);
+        if (indexed != null) {
+            getRowValues(query, indexed, rowConsumer);
+            return;
+        }
+        QueryRecorder recorder = QueryRecorder.start(worksheetIndex, startRow, endRow, options.getQueryListener());
+        BiConsumer<Integer, Function<Integer, Object>> consumer = recorder == null ? rowConsumer : recorder.counting(rowConsumer);
+
+        List<RowRange> partitions = zoneMaps != null && query.hasFilters()
+                ? partitionsFor(query, startRow, endRow) : RowRange.partition(startRow, endRow);
+        if (recorder != null) recorder.planned(RowRange.partition(startRow, endRow), partitions);
+        if (prefetchExecutor != null && !(segmentCache != null && !query.hasFilters())) {
+            prefetch(query.getRowQuery(), query.getProjectedColumns(), partitions, recorder, consumer);
+            if (recorder != null) recorder.finish();
+            return;
+        }
+        inSession(session -> {
+            long startNanos = System.nanoTime();
+            long startBytes = session.getBytesRead();
+            Marshaller marshaller = session.getMarshaller();
+            if (zoneMaps != null && query.hasFilters()) {
+                for (RowRange run : RowRange.coalesce(partitions))
+                    query.getRowQuery().fetchRows(marshaller, run.getStartRow(), run.getEndRow(), consumer);
+            } else if (segmentCache != null && !query.hasFilters()) {
+                fetchRowsThroughCache(marshaller, query, startRow, endRow, consumer);
+            } else {
+                query.getRowQuery().fetchRows(marshaller, startRow, endRow, consumer);
+            }
+            if (recorder != null) recorder.scanned(session.getBytesRead() - startBytes, System.nanoTime() - startNanos);
+            return null;
+        });
+        if (recorder != null) recorder.finish();
+    }
+
+    /**
+     * A form of getRowValues whose rows are selected by a predicate that can span several columns, such as
+     * AnyOf.of(AllOf.of(ColumnMatches.of(region, StringIsEqual.of("EU", true)), ColumnMatches.of(amount,
+     * IsGreaterThan.of(1000))), ColumnMatches.of(priority, StringIsEqual.of("HIGH", true))).
+     * <p>
+     * The predicate is evaluated one column at a time over each partition of the rows, keeping the rows still
+     * selected in a bitmap, so that each column is read only for rows that earlier columns have not already
+     * ruled in or out.  The projected columns are then read for the selected rows only.  Any filters given in
+     * queryColumns also apply, exactly as for getRowValues.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param predicate the condition that selects rows
+     * @param queryColumns map describing the columns to be fetched
+     * @param rowConsumer the callback invoked for each row that is retrieved
+     */
+    public void getRowValues(int worksheetIndex, int startRow, int endRow, RowPredicate predicate,
+                             Map<Integer, QueryColumn> queryColumns,
+                             BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        validateRowRange(worksheetIndex, startRow, endRow);
+        PreparedQuery query = prepare(worksheetIndex, queryColumns);
+        RowQuery rowQuery = query.getRowQuery()
+                .and(RowPredicatePlan.compile(predicate, schema.getWorksheet(worksheetIndex)));
+        Objects.requireNonNull(rowConsumer, "rowConsumer");
+        QueryRecorder recorder = QueryRecorder.start(worksheetIndex, startRow, endRow, options.getQueryListener());
+        BiConsumer<Integer, Function<Integer, Object>> consumer = recorder == null ? rowConsumer : recorder.counting(rowConsumer);
+
+        List<RowRange> partitions = partitionsFor(query, startRow, endRow);
+        if (recorder != null) recorder.planned(RowRange.partition(startRow, endRow), partitions);
+        if (prefetchExecutor != null) {
+            prefetch(rowQuery, query.getProjectedColumns(), partitions, recorder, consumer);
+            if (recorder != null) recorder.finish();
+            return;
+        }
+        inSession(session -> {
+            long startNanos = System.nanoTime();
+            long startBytes = session.getBytesRead();
+            for (RowRange partition : partitions)
+                rowQuery.fetchRows(session.getMarshaller(), partition.getStartRow(), partition.getEndRow(), consumer);
+            if (recorder != null) recorder.scanned(session.getBytesRead() - startBytes, System.nanoTime() - startNanos);
+            return null;
+        });
+        if (recorder != null) recorder.finish();
+    }
+
+    /**
+     * Evaluates the column filters of queryColumns over every row of a worksheet, and returns the rows that
+     * satisfy them all, on the calling thread.  Columns without filters are ignored, and nothing is projected.
+     *
+     * @see #select(int, Map, ExecutorService)
+     * @param worksheetIndex the zero-based worksheet index
+     * @param queryColumns map of the column filters that select the rows
+     * @return the selected rows
+     */
+    public RowSet select(int worksheetIndex, Map<Integer, QueryColumn> queryColumns) {
+        return select(worksheetIndex, queryColumns, MoreExecutors.newDirectExecutorService());
+    }
+
+    /**
+     * Evaluates the column filters of queryColumns over every row of a worksheet, and returns the rows that
+     * satisfy them all, as a RowSet.  The RowSet can then be passed to getRowValues, once or many times, to read
+     * the matching rows without evaluating the filters again, and combined with other RowSets.
+     * <p>
+     * Each partition of the rows is evaluated by a task submitted to the executor, as for the parallel form of
+     * getRowValues.  The executor is not shut down by this method.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param queryColumns map of the column filters that select the rows
+     * @param executor the executor on which partitions are evaluated
+     * @return the selected rows
+     */
+    public RowSet select(int worksheetIndex, Map<Integer, QueryColumn> queryColumns, ExecutorService executor) {
+        validateWorksheetIndex(worksheetIndex);
+        validateQueryColumns(queryColumns);
+        Objects.requireNonNull(executor, "executor");
+        for (int columnIndex : queryColumns.keySet()) validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
+
+        int rowCount = getRowCount(worksheetIndex);
+        if (rowCount == 0) return RowSet.empty();
+        Map<Integer, QueryColumn> filterColumns = new HashMap<>();
+        for (Map.Entry<Integer, QueryColumn> entry : queryColumns.entrySet())
+            if (entry.getValue().getColumnFilter().isPresent())
+                filterColumns.put(entry.getKey(), new QueryColumn(false, Object.class, entry.getValue().getColumnFilter()));
+        if (filterColumns.isEmpty()) return RowSet.range(0, rowCount - 1);
+
+        RowQuery rowQuery = compileRowQuery(worksheetIndex, filterColumns,
+                (columnIndex, queryColumn) -> queryColumn.getDesiredType());
+        RowSet indexed = indexedRows(worksheetIndex, rowQuery.getFilterPlans(), 0, rowCount - 1);
+        if (indexed != null) {
+            // the other filters, if any, are evaluated over the rows selected by the index
+            RowSet.Collector collector = new RowSet.Collector();
+            getRowValues(new PreparedQuery(this, worksheetIndex, filterColumns, rowQuery), indexed, collector);
+            return collector.build();
+        }
+        sessions.enter();
+        try {
+            List<RowSet.Collector> partials = new ParallelScan(sessions, rowQuery, Collections.emptyList())
+                    .runPartitioned(partitionsFor(worksheetIndex, 0, rowCount - 1, rowQuery.getFilterPlans()),
+                            executor, RowSet.Collector::new);
+            RowSet rows = RowSet.empty();
+            for (RowSet.Collector partial : partials) rows = rows.or(partial.build());
+            return rows;
+        } finally {
+            sessions.exit();
+        }
+    }
+
+    /**
+     * A form of getRowValues that reads the rows of a RowSet, such as one returned by select, in place of a
+     * range of rows.  Only the partitions holding rows of the set are read, and within them only the runs of
+     * rows it selects.  Any filters given in queryColumns also apply, exactly as for getRowValues.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param rows the rows to be retrieved
+     * @param queryColumns map describing the columns to be fetched
+     * @param rowConsumer the callback invoked for each row that is retrieved
+     */
+    public void getRowValues(int worksheetIndex, RowSet rows, Map<Integer, QueryColumn> queryColumns,
+                             BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        validateRowSet(worksheetIndex, rows);
+        getRowValues(prepare(worksheetIndex, queryColumns), rows, rowConsumer);
+    }
+
+    /**
+     * The form of getRowValues for a prepared query and a RowSet.
+     *
+     * @see #getRowValues(int, RowSet, Map, BiConsumer)
+     * @param query a query prepared by this Reader
+     * @param rows the rows to be retrieved
+     * @param rowConsumer the callback invoked for each row that is retrieved
+     */
+    public void getRowValues(PreparedQuery query, RowSet rows,
+                             BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        query.checkPreparedBy(this);
+        int worksheetIndex = query.getWorksheetIndex();
+        validateRowSet(worksheetIndex, rows);
+        Objects.requireNonNull(rowConsumer, "rowConsumer");
+        if (rows.isEmpty()) return;
+        QueryRecorder recorder = QueryRecorder.start(worksheetIndex, rows.first(), rows.last(), options.getQueryListener());
+        BiConsumer<Integer, Function<Integer, Object>> consumer = recorder == null ? rowConsumer : recorder.counting(rowConsumer);
+
+        List<RowRange> partitions = new ArrayList<>(rows.chunkCount());
+        for (int chunk = 0; chunk < rows.chunkCount(); chunk++) {
+            BitSet selected = rows.chunkRows(chunk);
+            int firstRow = rows.chunkStartRow(chunk);
+            partitions.add(new RowRange(firstRow + selected.nextSetBit(0), firstRow + selected.length() - 1));
+        }
+        if (recorder != null) recorder.planned(RowRange.partition(rows.first(), rows.last()), partitions);
+        inSession(session -> {
+            long startNanos = System.nanoTime();
+            long startBytes = session.getBytesRead();
+            for (int chunk = 0; chunk < rows.chunkCount(); chunk++) {
+                BitSet selected = rows.chunkRows(chunk);
+                int firstRow = rows.chunkStartRow(chunk);
+                for (RowRange run : RowRange.runsOf(selected, firstRow, RowPredicatePlan.MAX_GAP_ROWS))
+                    query.getRowQuery().fetchRows(session.getMarshaller(), run.getStartRow(), run.getEndRow(),
+                            (rowIndex, row) -> {
+                                if (selected.get(rowIndex - firstRow)) consumer.accept(rowIndex, row);
+                            });
+            }
+            if (recorder != null) recorder.scanned(session.getBytesRead() - startBytes, System.nanoTime() - startNanos);
+            return null;
+        });
+        if (recorder != null) recorder.finish();
+    }
+
+    /**
+     * A parallel form of getRowValues, intended for scanning large ranges of rows on many cores.
+     * <p>
+     * The range of rows is split into partitions aligned on multiples of 65536 rows, and each partition
+     * is read, decrypted, decoded and filtered by a task submitted to the executor you supply (which can be a
+     * ForkJoinPool).  Each task reads through its own underlying stream, so partitions do not contend with one
+     * another.  The executor is not shut down by this method.
+     * <p>
+     * If preserveOrder is false, rowConsumer is invoked on the executor's threads, concurrently and in no
+     * particular order, as soon as each row is read; rowConsumer must therefore be thread-safe.
+     * <p>
+     * If preserveOrder is true, rowConsumer is invoked on the calling thread, one row at a time and in
+     * ascending row order, exactly as for getRowValues.  Partitions are read ahead of the consumer, with
+     * the number of partitions held in memory bounded by the number of available processors.
+     * <p>
+     * This method returns once every row has been delivered.  If any partition fails, the remaining
+     * partitions are cancelled and the failure is rethrown.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param queryColumns map describing the columns to be fetched
+     * @param executor the executor on which partitions are read
+     * @param preserveOrder whether rows must be delivered in row order on the calling thread
+     * @param rowConsumer the callback invoked for each row that is retrieved
+     */
+    public void getRowValues(int worksheetIndex, int startRow, int endRow,
+                             Map<Integer, QueryColumn> queryColumns,
+                             ExecutorService executor, boolean preserveOrder,
+                             BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        validateRowRange(worksheetIndex, startRow, endRow);
+        getRowValues(prepare(worksheetIndex, queryColumns), startRow, endRow, executor, preserveOrder, rowConsumer);
+    }
+
+    /**
+     * The parallel form of getRowValues for a prepared query.
+     *
+     * @see #getRowValues(int, int, int, Map, ExecutorService, boolean, BiConsumer)
+     * @param query a query prepared by this Reader
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param executor the executor on which partitions are read
+     * @param preserveOrder whether rows must be delivered in row order on the calling thread
+     * @param rowConsumer the callback invoked for each row that is retrieved
+     */
+    public void getRowValues(PreparedQuery query, int startRow, int endRow,
+                             ExecutorService executor, boolean preserveOrder,
+                             BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        query.checkPreparedBy(this);
+        validateRowRange(query.getWorksheetIndex(), startRow, endRow);
+        Objects.requireNonNull(executor, "executor");
+        Objects.requireNonNull(rowConsumer, "rowConsumer");
+        RowSet indexed = indexedRows(query.getWorksheetIndex(), query.getFilterPlans(), startRow, endRow);
+        if (indexed != null) {
+            // an index lookup selects few rows, which are read on the calling thread
+            getRowValues(query, indexed, rowConsumer);
+            return;
+        }
+
+        QueryRecorder recorder = QueryRecorder.start(query.getWorksheetIndex(), startRow, endRow, options.getQueryListener());
+        BiConsumer<Integer, Function<Integer, Object>> consumer = recorder == null ? rowConsumer : recorder.counting(rowConsumer);
+
+        sessions.enter();
+        try {
+            ParallelScan scan = new ParallelScan(sessions, query.getRowQuery(), query.getProjectedColumns(), recorder);
+            List<RowRange> partitions = partitionsFor(query, startRow, endRow);
+            if (recorder != null) recorder.planned(RowRange.partition(startRow, endRow), partitions);
+            if (preserveOrder)
+                scan.runOrdered(partitions, executor, 2 * Runtime.getRuntime().availableProcessors(), consumer);
+            else
+                scan.runUnordered(partitions, executor, consumer);
+        } finally {
+            sessions.exit();
+        }
+        if (recorder != null) recorder.finish();
+    }
+
+    /**
+     * The rows of a query as a lazy Stream.  Rows are selected and projected exactly as for getRowValues,
+     * and each Row holds the values of the projected columns.
+     * <p>
+     * Nothing is read until the stream is traversed, and rows are then read in chunks, on demand, so that
+     * short-circuiting operations such as limit(), findFirst() and anyMatch() stop reading as soon as they
+     * are satisfied.  The stream splits on partition boundaries, so a parallel() stream reads disjoint
+     * partitions on each thread, each through its own underlying stream.
+     * <p>
+     * The Reader must remain open until the stream has been consumed.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param queryColumns map describing the columns to be fetched
+     * @return a sequential, ordered stream of the rows
+     */
+    public Stream<Row> stream(int worksheetIndex, int startRow, int endRow, Map<Integer, QueryColumn> queryColumns) {
+        validateRowRange(worksheetIndex, startRow, endRow);
+        return stream(prepare(worksheetIndex, queryColumns), startRow, endRow);
+    }
+
+    /**
+     * The form of stream for a prepared query.
+     *
+     * @see #stream(int, int, int, Map)
+     * @param query a query prepared by this Reader
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @return a sequential, ordered stream of the rows
+     */
+    public Stream<Row> stream(PreparedQuery query, int startRow, int endRow) {
+        query.checkPreparedBy(this);
+        validateRowRange(query.getWorksheetIndex(), startRow, endRow);
+
+        return StreamSupport.stream(new RowSpliterator(sessions, query.getRowQuery(), query.getProjectedColumns(),
+                partitionsFor(query, startRow, endRow)), false);
+    }
+
+    /**
+     * The asynchronous form of getValue.  The value is read, decrypted and decoded by a task on the executor
+     * you supply, through a stream of its own, so any number of lookups can be in flight at once without
+     * blocking the calling thread or contending for a shared stream.  No monitors are held while reading,
+     * so the executor can equally be a small pool of platform threads or one that starts a virtual thread
+     * per task.
+     * <p>
+     * The indices are validated on the calling thread; a failure to read the value completes the future
+     * exceptionally.
+     *
+     * @see #getValue(int, int, int, Type)
+     * @param <T> the type to be returned, must match the desiredClass
+     * @param worksheetIndex the zero-based worksheet index
+     * @param rowIndex the zero-based row index
+     * @param columnIndex the zero-based column index
+     * @param desiredClass the desired type for the value
+     * @param executor the executor on which the value is read
+     * @return a future completed with the value
+     */
+    public <T> CompletableFuture<T> getValueAsync(int worksheetIndex, int rowIndex, int columnIndex, Type desiredClass,
+                                                  Executor executor) {
+        validateWorksheetColumnAndRowIndex(worksheetIndex, rowIndex, columnIndex);
+        Objects.requireNonNull(desiredClass, "desiredClass");
+        Objects.requireNonNull(executor, "executor");
+        return CompletableFuture.supplyAsync(() -> {
+            @SuppressWarnings("unchecked")
+            T value = (T) readValue(worksheetIndex, rowIndex, columnIndex, desiredClass);
+            return value;
+        }, executor);
+    }
+
+    /**
+     * The asynchronous form of getRowValues.
+     *
+     * @see #getRowValuesAsync(PreparedQuery, int, int, Executor, BiConsumer)
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param queryColumns map describing the columns to be fetched
+     * @param executor the executor on which rows are read
+     * @param rowConsumer the callback invoked for each row that is retrieved
+     * @return a future completed once every row has been delivered
+     */
+    public CompletableFuture<Void> getRowValuesAsync(int worksheetIndex, int startRow, int endRow,
+                                                     Map<Integer, QueryColumn> queryColumns, Executor executor,
+                                                     BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        validateRowRange(worksheetIndex, startRow, endRow);
+        return getRowValuesAsync(prepare(worksheetIndex, queryColumns), startRow, endRow, executor, rowConsumer);
+    }
+
+    /**
+     * The asynchronous form of getRowValues for a prepared query.  The rows are read by a single task on the
+     * executor you supply, through a stream of its own, and rowConsumer is invoked on that task's thread, one
+     * row at a time and in ascending row order.  Cancelling the returned future stops the read at the next
+     * partition boundary.
+     *
+     * @see #getRowValues(PreparedQuery, int, int, BiConsumer)
+     * @param query a query prepared by this Reader
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param executor the executor on which rows are read
+     * @param rowConsumer the callback invoked for each row that is retrieved
+     * @return a future completed once every row has been delivered
+     */
+    public CompletableFuture<Void> getRowValuesAsync(PreparedQuery query, int startRow, int endRow, Executor executor,
+                                                     BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        query.checkPreparedBy(this);
+        validateRowRange(query.getWorksheetIndex(), startRow, endRow);
+        Objects.requireNonNull(executor, "executor");
+        Objects.requireNonNull(rowConsumer, "rowConsumer");
+
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    sessions.enter();
+                } catch (IllegalStateException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                try {
+                    QueryRecorder recorder = QueryRecorder.start(query.getWorksheetIndex(), startRow, endRow,
+                            options.getQueryListener());
+                    BiConsumer<Integer, Function<Integer, Object>> consumer =
+                            recorder == null ? rowConsumer : recorder.counting(rowConsumer);
+                    ParallelScan scan = new ParallelScan(sessions, query.getRowQuery(), query.getProjectedColumns(), recorder);
+                    List<RowRange> partitions = partitionsFor(query, startRow, endRow);
+                    if (recorder != null) recorder.planned(RowRange.partition(startRow, endRow), partitions);
+                    for (RowRange partition : partitions) {
+                        if (result.isDone()) return;
+                        scan.fetch(partition, consumer);
+                    }
+                    if (recorder != null) recorder.finish();
+                    result.complete(null);
+                } catch (RuntimeException | Error e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    sessions.exit();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * The rows of a query as a Flow.Publisher of RowBatch, for consumers that apply backpressure.
+     *
+     * @see #publish(PreparedQuery, int, int, Executor)
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param queryColumns map describing the columns to be fetched
+     * @param executor the executor on which rows are read and delivered
+     * @return a publisher of the rows, in batches
+     */
+    public Flow.Publisher<RowBatch> publish(int worksheetIndex, int startRow, int endRow,
+                                            Map<Integer, QueryColumn> queryColumns, Executor executor) {
+        validateRowRange(worksheetIndex, startRow, endRow);
+        return publish(prepare(worksheetIndex, queryColumns), startRow, endRow, executor);
+    }
+
+    /**
+     * The rows of a prepared query as a Flow.Publisher of RowBatch.  Rows are selected and projected exactly
+     * as for getRowValues, and each batch holds the matching rows of one partition, in row order.
+     * <p>
+     * Reading is driven by demand: a partition is read only when the subscriber has requested another batch,
+     * so a slow subscriber holds back the read instead of having batches queued up for it.  Reading, and
+     * every call to the subscriber, happen on the executor you supply, one batch at a time.  Each subscriber
+     * gets a read of its own.  The Reader must remain open until the subscription completes or is cancelled.
+     * @param query a query prepared by this Reader
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param executor the executor on which rows are read and delivered
+     * @return a publisher of the rows, in batches
+     */
+    public Flow.Publisher<RowBatch> publish(PreparedQuery query, int startRow, int endRow, Executor executor) {
+        query.checkPreparedBy(this);
+        validateRowRange(query.getWorksheetIndex(), startRow, endRow);
+        Objects.requireNonNull(executor, "executor");
+
+        return new RowBatchPublisher(new ParallelScan(sessions, query.getRowQuery(), query.getProjectedColumns()),
+                partitionsFor(query, startRow, endRow), executor);
+    }
+
+    /**
+     * Reads rows column-wise, in batches of ColumnBatch.DEFAULT_SIZE rows.
+     *
+     * @see #getColumnBatches(int, int, int, Map, int, Consumer)
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param queryColumns map describing the columns to be fetched
+     * @param batchConsumer the callback invoked for each batch of rows
+     */
+    public void getColumnBatches(int worksheetIndex, int startRow, int endRow,
+                                 Map<Integer, QueryColumn> queryColumns,
+                                 Consumer<ColumnBatch> batchConsumer) {
+        getColumnBatches(worksheetIndex, startRow, endRow, queryColumns, ColumnBatch.DEFAULT_SIZE, batchConsumer);
+    }
+
+    /**
+     * This method is recommended for numeric scans over large numbers of rows.  It selects rows exactly as
+     * getRowValues does, but delivers them column-wise, in batches of up to batchSize rows, with the values
+     * of each projected column held in a primitive array (see ColumnVector).
+     * <p>
+     * The desired type given in each QueryColumn is ignored: values are always delivered in the form
+     * determined by the column type.  Filters apply exactly as they do for getRowValues.
+     * <p>
+     * A single ColumnBatch is allocated for the call and refilled for each callback, so steady-state scanning
+     * allocates nothing on behalf of the caller.  The batch must not be retained once batchConsumer returns.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be retrieved
+     * @param endRow the zero-based index for the last row in the range of rows to be retrieved
+     * @param queryColumns map describing the columns to be fetched
+     * @param batchSize the maximum number of rows in a batch
+     * @param batchConsumer the callback invoked for each batch of rows
+     */
+    public void getColumnBatches(int worksheetIndex, int startRow, int endRow,
+                                 Map<Integer, QueryColumn> queryColumns, int batchSize,
+                                 Consumer<ColumnBatch> batchConsumer) {
+        validateRowRange(worksheetIndex, startRow, endRow);
+        validateQueryColumns(queryColumns);
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be > 0");
+        Objects.requireNonNull(batchConsumer, "batchConsumer");
+
+        Map<Integer, ColumnTypes> projectedColumnTypes = new TreeMap<>();
+        for (int columnIndex : projectedColumns(queryColumns)) {
+            validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
+            projectedColumnTypes.put(columnIndex, getColumnType(worksheetIndex, columnIndex));
+        }
+
+        ColumnBatch batch = new ColumnBatch(batchSize, projectedColumnTypes);
+        RowQuery rowQuery = compileRowQuery(worksheetIndex, queryColumns,
+                (columnIndex, queryColumn) -> ColumnVector.vectorTypeFor(projectedColumnTypes.get(columnIndex)));
+        inSession(session -> {
+            rowQuery.fetchRows(session.getMarshaller(), startRow, endRow,
+                    (rowIndex, row) -> {
+                        batch.add(rowIndex, row);
+                        if (batch.isFull()) {
+                            batchConsumer.accept(batch);
+                            batch.clear();
+                        }
+                    });
+            return null;
+        });
+        if (batch.getSize() > 0) {
+            batchConsumer.accept(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * The first rows of a query in the order given by sortKeys, on the calling thread.
+     *
+     * @see #getTopRows(int, int, int, Map, List, int, ExecutorService, BiConsumer)
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be considered
+     * @param endRow the zero-based index for the last row in the range of rows to be considered
+     * @param queryColumns map describing the columns to be fetched and filtered
+     * @param sortKeys the columns to order rows by, most significant first
+     * @param limit the maximum number of rows to deliver
+     * @param rowConsumer the callback invoked for each row delivered, in sort order
+     */
+    public void getTopRows(int worksheetIndex, int startRow, int endRow, Map<Integer, QueryColumn> queryColumns,
+                           List<SortKey> sortKeys, int limit,
+                           BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        getTopRows(worksheetIndex, startRow, endRow, queryColumns, sortKeys, limit,
+                MoreExecutors.newDirectExecutorService(), rowConsumer);
+    }
+
+    /**
+     * Delivers the first limit rows of a query in the order given by sortKeys, such as the 50 largest amounts
+     * matching a set of filters.  Rows are selected exactly as for getRowValues; ties between rows with equal
+     * sort keys are broken by row index.
+     * <p>
+     * Each partition is read by a task on the executor you supply, decoding only the sort key and filter
+     * columns, into a heap that holds at most limit rows' sort keys.  The heaps are merged once every partition
+     * is done, and the projected columns are then read for the winning rows only.  Memory is therefore bounded
+     * by limit for each partition in flight, whatever the number of matching rows.
+     * <p>
+     * rowConsumer is invoked on the calling thread, in sort order.  The executor is not shut down by this
+     * method.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be considered
+     * @param endRow the zero-based index for the last row in the range of rows to be considered
+     * @param queryColumns map describing the columns to be fetched and filtered
+     * @param sortKeys the columns to order rows by, most significant first
+     * @param limit the maximum number of rows to deliver
+     * @param executor the executor on which partitions are read
+     * @param rowConsumer the callback invoked for each row delivered, in sort order
+     */
+    public void getTopRows(int worksheetIndex, int startRow, int endRow, Map<Integer, QueryColumn> queryColumns,
+                           List<SortKey> sortKeys, int limit, ExecutorService executor,
+                           BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        validateRowRange(worksheetIndex, startRow, endRow);
+        validateQueryColumns(queryColumns);
+        Objects.requireNonNull(sortKeys, "sortKeys");
+        if (sortKeys.isEmpty()) throw new IllegalArgumentException("sortKeys cannot be empty");
+        if (limit <= 0) throw new IllegalArgumentException("Limit must be > 0");
+        Objects.requireNonNull(executor, "executor");
+        Objects.requireNonNull(rowConsumer, "rowConsumer");
+        for (int columnIndex : queryColumns.keySet()) validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
+        for (SortKey sortKey : sortKeys) validateWorksheetAndColumnIndex(worksheetIndex, sortKey.getColumnIndex());
+
+        // first pass: filter columns and sort keys only, into a bounded heap per partition
+        Schema.Worksheet worksheet = schema.getWorksheet(worksheetIndex);
+        Map<Integer, QueryColumn> keyColumns = new HashMap<>();
+        for (Map.Entry<Integer, QueryColumn> entry : queryColumns.entrySet())
+            if (entry.getValue().getColumnFilter().isPresent())
+                keyColumns.put(entry.getKey(), new QueryColumn(false, Object.class, entry.getValue().getColumnFilter()));
+        List<Integer> keyIndexes = new ArrayList<>();
+        for (SortKey sortKey : sortKeys) {
+            int columnIndex = sortKey.getColumnIndex();
+            QueryColumn queryColumn = queryColumns.get(columnIndex);
+            keyColumns.put(columnIndex, new QueryColumn(true,
+                    ColumnVector.vectorTypeFor(worksheet.getColumn(columnIndex).getType()),
+                    queryColumn == null ? Optional.empty() : queryColumn.getColumnFilter()));
+            if (!keyIndexes.contains(columnIndex)) keyIndexes.add(columnIndex);
+        }
+        RowQuery keyQuery = compileRowQuery(worksheetIndex, keyColumns,
+                (columnIndex, queryColumn) -> queryColumn.getDesiredType());
+        sessions.enter();
+        try {
+            List<TopRows> partials = new ParallelScan(sessions, keyQuery, keyIndexes).runPartitioned(
+                    partitionsFor(worksheetIndex, startRow, endRow, keyQuery.getFilterPlans()), executor,
+                    () -> new TopRows(sortKeys, worksheet, limit));
+            TopRows top = new TopRows(sortKeys, worksheet, limit);
+            for (TopRows partial : partials) top.addAll(partial);
+            int[] winners = top.sortedRowIndexes();
+            if (winners.length == 0) return;
+
+            // second pass: the projected columns of the winning rows only
+            Map<Integer, QueryColumn> projectedColumns = new HashMap<>();
+            for (Map.Entry<Integer, QueryColumn> entry : queryColumns.entrySet())
+                if (entry.getValue().getProject())
+                    projectedColumns.put(entry.getKey(), new QueryColumn(entry.getValue().getDesiredType()));
+            List<Integer> projected = projectedColumns(queryColumns);
+            int[] byRow = winners.clone();
+            Arrays.sort(byRow);
+            RowBlock block = new RowBlock(projected);
+            if (projectedColumns.isEmpty()) {
+                for (int rowIndex : byRow) block.add(rowIndex, columnIndex -> null);
+            } else {
+                BitSet selected = new BitSet();
+                for (int rowIndex : byRow) selected.set(rowIndex - byRow[0]);
+                RowQuery projection = compileRowQuery(worksheetIndex, projectedColumns,
+                        (columnIndex, queryColumn) -> queryColumn.getDesiredType());
+                ParallelScan scan = new ParallelScan(sessions, projection, projected);
+                for (RowRange run : RowRange.runsOf(selected, byRow[0], RowPredicatePlan.MAX_GAP_ROWS))
+                    scan.fetch(run, (rowIndex, row) -> {
+                        if (selected.get(rowIndex - byRow[0])) block.add(rowIndex, row);
+                    });
+            }
+            for (int rowIndex : winners) {
+                int position = Arrays.binarySearch(byRow, rowIndex);
+                rowConsumer.accept(rowIndex, columnIndex -> block.getValue(position, columnIndex));
+            }
+        } finally {
+            sessions.exit();
+        }
+    }
+
+    /**
+     * Computes aggregates over the rows that match a query, on the calling thread.
+     *
+     * @see #aggregate(int, int, int, Map, List, List, ExecutorService)
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be aggregated
+     * @param endRow the zero-based index for the last row in the range of rows to be aggregated
+     * @param filterColumns map of the column filters that select the rows to be aggregated; can be empty
+     * @param groupByColumns the zero-based indices of the columns to group by; can be empty
+     * @param aggregates the aggregates to compute
+     * @return the aggregate values of each group
+     */
+    public AggregateResult aggregate(int worksheetIndex, int startRow, int endRow,
+                                     Map<Integer, QueryColumn> filterColumns,
+                                     List<Integer> groupByColumns, List<Aggregate> aggregates) {
+        return aggregate(worksheetIndex, startRow, endRow, filterColumns, groupByColumns, aggregates,
+                MoreExecutors.newDirectExecutorService());
+    }
+
+    /**
+     * Computes aggregates over the rows that match a query, without materializing the rows.
+     * <p>
+     * Rows are selected by the column filters in filterColumns, which apply exactly as they do for getRowValues;
+     * whether those columns are projected is ignored.  The aggregates are then computed for each distinct
+     * combination of values of the groupByColumns, or over all matching rows if there are none.
+     * <p>
+     * Each partition of the rows is aggregated by its own task on the executor, folding values into primitive
+     * partial states as they are decoded, and the partial states are merged once all partitions are done.
+     * Groups are returned in the order in which they first occur in the file.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param startRow the zero-based index for the first row in the range of rows to be aggregated
+     * @param endRow the zero-based index for the last row in the range of rows to be aggregated
+     * @param filterColumns map of the column filters that select the rows to be aggregated; can be empty
+     * @param groupByColumns the zero-based indices of the columns to group by; can be empty
+     * @param aggregates the aggregates to compute
+     * @param executor the executor on which partitions are aggregated
+     * @return the aggregate values of each group
+     */
+    public AggregateResult aggregate(int worksheetIndex, int startRow, int endRow,
+                                     Map<Integer, QueryColumn> filterColumns,
+                                     List<Integer> groupByColumns, List<Aggregate> aggregates,
+                                     ExecutorService executor) {
+        validateRowRange(worksheetIndex, startRow, endRow);
+        Objects.requireNonNull(filterColumns, "filterColumns");
+        Objects.requireNonNull(groupByColumns, "groupByColumns");
+        Objects.requireNonNull(aggregates, "aggregates");
+        if (aggregates.isEmpty()) throw new IllegalArgumentException("aggregates cannot be empty");
+        Objects.requireNonNull(executor, "executor");
+        for (int columnIndex : filterColumns.keySet()) validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
+
+        Aggregation aggregation = new Aggregation(schema.getWorksheet(worksheetIndex), groupByColumns, aggregates);
+        return aggregation.finish(aggregatePartials(worksheetIndex, startRow, endRow, filterColumns, aggregation, executor));
+    }
+
+    /**
+     * The partial states of an aggregation over the rows of startRow..endRow that match filterColumns, for the
+     * caller to finish, possibly together with the partial states of other Readers.
+     */
+    List<Aggregation.Partial> aggregatePartials(int worksheetIndex, int startRow, int endRow,
+                                                Map<Integer, QueryColumn> filterColumns, Aggregation aggregation,
+                                                ExecutorService executor) {
+        Schema.Worksheet worksheet = schema.getWorksheet(worksheetIndex);
+        Map<Integer, QueryColumn> scanColumns = new HashMap<>();
+        for (Map.Entry<Integer, QueryColumn> entry : filterColumns.entrySet())
+            if (entry.getValue().getColumnFilter().isPresent())
+                scanColumns.put(entry.getKey(), new QueryColumn(false, Object.class, entry.getValue().getColumnFilter()));
+        List<Integer> projected = aggregation.getProjectedColumns();
+        for (int columnIndex : projected) {
+            QueryColumn queryColumn = filterColumns.get(columnIndex);
+            scanColumns.put(columnIndex, new QueryColumn(true,
+                    ColumnVector.vectorTypeFor(worksheet.getColumn(columnIndex).getType()),
+                    queryColumn == null ? Optional.empty() : queryColumn.getColumnFilter()));
+        }
+
+        if (scanColumns.isEmpty()) {
+            // only unfiltered row counts: the answer is the size of the range
+            Aggregation.Partial partial = aggregation.newPartial();
+            partial.addRows(endRow - startRow + 1L);
+            return Collections.singletonList(partial);
+        }
+
+        RowQuery rowQuery = compileRowQuery(worksheetIndex, scanColumns,
+                (columnIndex, queryColumn) -> queryColumn.getDesiredType());
+        sessions.enter();
+        try {
+            ParallelScan scan = new ParallelScan(sessions, rowQuery, projected);
+            return scan.runPartitioned(partitionsFor(worksheetIndex, startRow, endRow, rowQuery.getFilterPlans()),
+                    executor, aggregation::newPartial);
+        } finally {
+            sessions.exit();
+        }
+    }
+
+    /**
+     * Reads the rows of a worksheet that match a query into blocks, one for each partition read, in row order.
+     */
+    List<RowBlock> readBlocks(int worksheetIndex, Map<Integer, QueryColumn> queryColumns, ExecutorService executor) {
+        PreparedQuery query = prepare(worksheetIndex, queryColumns);
+        int rowCount = getRowCount(worksheetIndex);
+        if (rowCount == 0) return Collections.emptyList();
+        sessions.enter();
+        try {
+            return new ParallelScan(sessions, query.getRowQuery(), query.getProjectedColumns())
+                    .runBuffered(partitionsFor(query, 0, rowCount - 1), executor);
+        } finally {
+            sessions.exit();
+        }
+    }
+
+    /**
+     * Statistics for all the values of a column, merged from its zone maps if they are enabled and otherwise
+     * computed with a single pass over the column.
+     */
+    ColumnZone columnZone(int worksheetIndex, int columnIndex) {
+        Schema.Worksheet worksheet = schema.getWorksheet(worksheetIndex);
+        ColumnTypes columnType = worksheet.getColumn(columnIndex).getType();
+        ColumnZone zone = new ColumnZone(columnType, worksheet.getRowCount(), options.getDictionaryFilters());
+        if (worksheet.getRowCount() == 0) return zone;
+
+        if (zoneMaps != null) {
+            for (RowRange partition : RowRange.partition(0, worksheet.getRowCount() - 1))
+                zone.merge(zoneMaps.zone(worksheetIndex, columnIndex, partition));
+        } else {
+            inSession(session -> {
+                session.getMarshaller().fetchRows(worksheetIndex, 0, worksheet.getRowCount() - 1,
+                        Collections.singletonMap(columnIndex,
+                                new QueryColumnAttributes(true, FilterPlan.valueTypeFor(columnType), Optional.empty())),
+                        (rowIndex, row) -> zone.add(row.apply(columnIndex)));
+                return null;
+            });
+        }
+        return zone;
+    }
+
+    /**
+     * The counters of the segment cache configured through ReaderOptions.withSegmentCacheBytes.  If there is
+     * no cache, all counters are zero.
+     * <p>
+     * The segment cache serves getValue, and those rows of unfiltered getRowValues queries whose segments are
+     * already cached.  Scans read through the cache but do not populate it, so that a large scan does not
+     * flush the working set of point lookups.
+     * @return a snapshot of the cache counters
+     */
+    public SegmentCacheStats getSegmentCacheStats() {
+        return segmentCache == null ? new SegmentCacheStats(0, 0, 0, 0, 0, 0) : segmentCache.stats();
+    }
+
+    /**
+     * The distinct non-empty values of a column, in the order in which they first occur.
+     *
+     * @see #getValueCounts(int, int)
+     * @param worksheetIndex the zero-based worksheet index
+     * @param columnIndex the zero-based column index
+     * @return the distinct values
+     */
+    public List<Object> getDistinctValues(int worksheetIndex, int columnIndex) {
+        List<Object> values = new ArrayList<>(getValueCounts(worksheetIndex, columnIndex).keySet());
+        values.remove(null);
+        return values;
+    }
+
+    /**
+     * The number of rows holding each distinct value of a column, in the order in which the values first occur,
+     * with empty values counted under the null key.  Values are given in the form described by ColumnVector:
+     * Boolean, Double, String with display formats applied, or Long for the other column types.
+     * <p>
+     * The counts are computed with a single pass over the column the first time they are requested, and are
+     * then kept for the life of the Reader.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param columnIndex the zero-based column index
+     * @return the count of rows holding each distinct value
+     */
+    public Map<Object, Long> getValueCounts(int worksheetIndex, int columnIndex) {
+        validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
+        Long key = columnKey(worksheetIndex, columnIndex);
+        Map<Object, Long> counts = valueCounts.get(key);
+        if (counts == null) {
+            Map<Object, Long> computed = new LinkedHashMap<>();
+            int rowCount = getRowCount(worksheetIndex);
+            if (rowCount > 0) {
+                AggregateResult result = aggregate(worksheetIndex, 0, rowCount - 1,
+                        Collections.emptyMap(), Collections.singletonList(columnIndex),
+                        Collections.singletonList(Aggregate.count()));
+                for (AggregateResult.Group group : result.getGroups())
+                    computed.put(group.getKey().get(0), group.getValue(0).longValue());
+            }
+            counts = Collections.unmodifiableMap(computed);
+            Map<Object, Long> raced = valueCounts.putIfAbsent(key, counts);
+            if (raced != null) counts = raced;
+        }
+        return counts;
+    }
+
+    /**
+     * Builds a secondary index of a column, for fast lookups of the rows holding a value or a range of
+     * values, and writes it to a sidecar file next to the .BIG file, replacing any index of the column that is
+     * already there.  The column is read once, in full, to build the index.
+     * <p>
+     * Once a column has an index, getRowValues and select answer the equality and range filters on that
+     * column (IsEqual, IsGreaterThan and the other comparisons, and the case-sensitive StringIsEqual,
+     * StringStartsWith and string comparisons) by looking the filter up in the index, and then read only the
+     * rows it selects, so that a point lookup in a large file takes microseconds rather than a scan.  Any
+     * Reader opened over the file uses the index automatically.
+     * <p>
+     * An index records the size and last-modified time of the .BIG file and a checksum of samples of its
+     * content, and is ignored once these no longer match the file.  A rewrite that keeps the size and the
+     * modification time, and changes only bytes outside the samples, goes undetected, so indexes must be
+     * rebuilt whenever the file changes.
+     * @param worksheetIndex the zero-based worksheet index
+     * @param columnIndex the zero-based column index
+     * @return the path of the sidecar file
+     * @throws IOException if the index cannot be written
+     * @throws IllegalStateException if the Reader was not opened from a file
+     */
+    public Path buildIndex(int worksheetIndex, int columnIndex) throws IOException {
+        validateWorksheetIndex(worksheetIndex);
+        validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
+        Path bigFile = source.getPath();
+        if (bigFile == null) throw new IllegalStateException("Indexes can only be built for a Reader opened from a file");
 
-        Map<Integer, QueryColumnAttributes> internalQueryColumns =
-                queryColumns.entrySet().stream()
-                        .collect(
-                                Collectors.toMap(Map.Entry::getKey,
-                                        entry -> new QueryColumnAttributes(entry.getValue().getProject(),
-                                                entry.getValue().getDesiredType(),
-                                                entry.getValue().getColumnFilter().map(FilterTranslation::map))));
-        marshaller.fetchRows(worksheetIndex, startRow, endRow,
-                internalQueryColumns, rowConsumer);
+        Schema.Worksheet worksheet = schema.getWorksheet(worksheetIndex);
+        ColumnTypes columnType = worksheet.getColumn(columnIndex).getType();
+        ColumnIndex.Writer writer = new ColumnIndex.Writer(columnType, worksheetIndex, columnIndex, worksheet.getRowCount());
+        if (worksheet.getRowCount() > 0)
+            inSession(session -> {
+                session.getMarshaller().fetchRows(worksheetIndex, 0, worksheet.getRowCount() - 1,
+                        Collections.singletonMap(columnIndex,
+                                new QueryColumnAttributes(true, FilterPlan.valueTypeFor(columnType), Optional.empty())),
+                        (rowIndex, row) -> writer.add(rowIndex, row.apply(columnIndex)));
+                return null;
+            });
+        Path sidecar = ColumnIndex.sidecarFor(bigFile, worksheetIndex, columnIndex);
+        writer.write(sidecar, Files.size(bigFile), Files.getLastModifiedTime(bigFile).toMillis(), fingerprint());
+        columnIndexes.remove(columnKey(worksheetIndex, columnIndex));
+        return sidecar;
+    }
+
+    /**
+     * The counters of the zone maps enabled through ReaderOptions.withZoneMaps, including the number of
+     * partitions that filtered queries have skipped.  If zone maps are not enabled, all counters are zero.
+     * @return a snapshot of the zone map counters
+     */
+    public ZoneMapStats getZoneMapStats() {
+        return zoneMaps == null ? new ZoneMapStats(0, 0, 0) : zoneMaps.stats();
     }
 
     /**
      * Close the Reader when through, allowing underlying resources to be properly released.
+     * <p>
+     * Queries already running on other threads are allowed to finish first: close() blocks until they
+     * have, and any query started after close() has begun fails with an IllegalStateException.  For that
+     * reason close() must not be called from within a row callback of the same Reader.  Calling close()
+     * more than once has no further effect.
      *
      * @throws IOException exception
      */
     @Override
     public void close() throws IOException {
-        if (bigReader != null) {
-            bigReader.close();
-            bigReader = null;
+        if (!sessions.isOpen()) return;
+        try {
+            sessions.close();
+        } finally {
+            if (prefetchExecutor != null) prefetchExecutor.shutdown();
+            if (segmentCache != null) segmentCache.invalidateAll();
+            source.close();
+        }
+    }
+
+    private static ColumnTypes readColumnType(BigReader bigReader, int worksheetIndex, int columnIndex) {
+        switch (bigReader.getWorksheet(worksheetIndex).getColumns().get(columnIndex).getType()) {
+            case Boolean:
+                return ColumnTypes.Boolean;
+            case Date:
+                return ColumnTypes.Date;
+            case DateTime:
+                return ColumnTypes.DateTime;
+            case Double:
+                return ColumnTypes.Double;
+            case Long:
+                return ColumnTypes.Long;
+            case String:
+                return ColumnTypes.String;
+            case Time:
+                return ColumnTypes.Time;
+            default:
+                throw new IllegalArgumentException("Unknown column type");
+        }
+    }
+
+    private Schema readSchema(BigReader bigReader) {
+        List<Schema.Worksheet> worksheets = new ArrayList<>();
+        for (int worksheetIndex = 0; worksheetIndex < getWorksheetCount(); worksheetIndex++) {
+            List<Schema.Column> columns = new ArrayList<>();
+            int columnCount = bigReader.getWorksheet(worksheetIndex).getColumns().count();
+            for (int columnIndex = 0; columnIndex < columnCount; columnIndex++)
+                columns.add(new Schema.Column(columnIndex,
+                        bigReader.getWorksheet(worksheetIndex).getColumns().get(columnIndex).getName(),
+                        readColumnType(bigReader, worksheetIndex, columnIndex)));
+            worksheets.add(new Schema.Worksheet(worksheetIndex, "Worksheet",
+                    bigReader.getWorksheet(worksheetIndex).getNumRows(), columns));
+        }
+        return new Schema(worksheets);
+    }
+
+    private Object[] loadSegment(ReaderSession session, int worksheetIndex, int columnIndex, int segment, Type desiredClass) {
+        FlightRecorderEvents.Event event = FlightRecorderEvents.SEGMENT_DECODE.begin();
+        long startBytes = session.getBytesRead();
+        int firstRow = SegmentCache.firstRowOf(segment);
+        int lastRow = Math.min(firstRow + SegmentCache.SEGMENT_ROWS, getRowCount(worksheetIndex)) - 1;
+        Object[] values = new Object[lastRow - firstRow + 1];
+        session.getMarshaller().fetchRows(worksheetIndex, firstRow, lastRow,
+                Collections.singletonMap(columnIndex, new QueryColumnAttributes(true, desiredClass, Optional.empty())),
+                (rowIndex, row) -> values[rowIndex - firstRow] = row.apply(columnIndex));
+        if (event != null)
+            event.commit(worksheetIndex, firstRow, values.length, 1, session.getBytesRead() - startBytes);
+        return values;
+    }
+
+    /**
+     * Serves the rows of cached segments from the cache, and fetches each run of rows that is not fully
+     * cached with a single call to the marshaller.
+     */
+    private void fetchRowsThroughCache(Marshaller marshaller, PreparedQuery query, int startRow, int endRow,
+                                       BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        int worksheetIndex = query.getWorksheetIndex();
+        Map<Integer, QueryColumn> queryColumns = query.getQueryColumns();
+        List<Integer> projected = query.getProjectedColumns();
+        RowQuery rowQuery = query.getRowQuery();
+        int uncachedFrom = startRow;
+        for (int segment = SegmentCache.segmentOf(startRow); segment <= SegmentCache.segmentOf(endRow); segment++) {
+            Map<Integer, Object[]> cached = new HashMap<>();
+            for (int columnIndex : projected) {
+                Object[] values = segmentCache.getIfPresent(worksheetIndex, columnIndex, segment,
+                        queryColumns.get(columnIndex).getDesiredType());
+                if (values == null) break;
+                cached.put(columnIndex, values);
+            }
+            if (projected.isEmpty() || cached.size() < projected.size()) continue;
+
+            int segmentFirstRow = SegmentCache.firstRowOf(segment);
+            int from = Math.max(startRow, segmentFirstRow);
+            int to = Math.min(endRow, segmentFirstRow + SegmentCache.SEGMENT_ROWS - 1);
+            if (uncachedFrom < from)
+                rowQuery.fetchRows(marshaller, uncachedFrom, from - 1, rowConsumer);
+            for (int rowIndex = from; rowIndex <= to; rowIndex++) {
+                int offset = rowIndex - segmentFirstRow;
+                rowConsumer.accept(rowIndex, columnIndex -> {
+                    Object[] values = cached.get(columnIndex);
+                    if (values == null)
+                        throw new IllegalArgumentException(String.format("Column '%d' was not projected", columnIndex));
+                    return values[offset];
+                });
+            }
+            uncachedFrom = to + 1;
+        }
+        if (uncachedFrom <= endRow)
+            rowQuery.fetchRows(marshaller, uncachedFrom, endRow, rowConsumer);
+    }
+
+    boolean isOpen() {
+        return sessions.isOpen();
+    }
+
+    /**
+     * Reads partitions on the prefetch threads, up to the prefetch depth ahead of rowConsumer, which is
+     * invoked on the calling thread in row order.
+     */
+    private void prefetch(RowQuery rowQuery, Collection<Integer> projectedColumns, List<RowRange> partitions,
+                          QueryRecorder recorder, BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        sessions.enter();
+        try {
+            new ParallelScan(sessions, rowQuery, projectedColumns, recorder)
+                    .runOrdered(partitions, prefetchExecutor, options.getPrefetchDepth(), rowConsumer);
+        } finally {
+            sessions.exit();
+        }
+    }
+
+    /**
+     * Runs work with a session borrowed from the pool, returning the session afterwards, or discarding it
+     * if work fails.
+     */
+    private <T> T inSession(Function<ReaderSession, T> work) {
+        ReaderSession session = sessions.borrow();
+        boolean completed = false;
+        try {
+            T result = work.apply(session);
+            completed = true;
+            return result;
+        } finally {
+            if (completed) sessions.release(session);
+            else sessions.discard(session);
         }
     }
 
@@ -290,20 +1528,180 @@ public final class Reader implements Closeable {
         return bigFile;
     }
 
+    private static Path validateBigFileParameter(Path bigFile) {
+        Objects.requireNonNull(bigFile, "bigFile");
+        if (Files.isDirectory(bigFile)) throw new IllegalArgumentException(String.format("'%s' is a directory.", bigFile.getFileName()));
+        if (!Files.exists(bigFile)) throw new IllegalArgumentException(String.format("'%s' does not exist", bigFile.getFileName()));
+        return bigFile;
+    }
+
+    private static BigReaderSource openSource(Path bigFile, FileAccess fileAccess) throws IOException {
+        switch (Objects.requireNonNull(fileAccess, "fileAccess")) {
+            case Channel:
+                return BigReaderSource.forChannel(bigFile);
+            case Mapped:
+                return BigReaderSource.forMappedFile(bigFile);
+            default:
+                throw new IllegalArgumentException("Unknown file access");
+        }
+    }
+
+    private RowQuery compileRowQuery(int worksheetIndex, Map<Integer, QueryColumn> queryColumns,
+                                     BiFunction<Integer, QueryColumn, Type> desiredType) {
+        return RowQuery.compile(schema.getWorksheet(worksheetIndex), worksheetIndex, queryColumns, desiredType,
+                columnIndex -> hasDictionary(worksheetIndex, columnIndex), zoneMaps);
+    }
+
+    /**
+     * @return true if dictionary filters are enabled and the column has few enough distinct values to evaluate
+     * filters against; the answer depends only on the file, so that it never changes over the life of the Reader
+     */
+    private boolean hasDictionary(int worksheetIndex, int columnIndex) {
+        if (!options.getDictionaryFilters()) return false;
+        Long key = columnKey(worksheetIndex, columnIndex);
+        Boolean few = dictionaryColumns.get(key);
+        if (few == null) {
+            few = countDistinctValues(worksheetIndex, columnIndex, DICTIONARY_VALUES) <= DICTIONARY_VALUES;
+            Boolean raced = dictionaryColumns.putIfAbsent(key, few);
+            if (raced != null) few = raced;
+        }
+        return few;
+    }
+
+    /**
+     * The number of distinct values of a column, empty values included, counted one partition at a time and
+     * only until more than limit have been seen.
+     */
+    private int countDistinctValues(int worksheetIndex, int columnIndex, int limit) {
+        Map<Object, Long> counts = valueCounts.get(columnKey(worksheetIndex, columnIndex));
+        if (counts != null) return counts.size();
+        int rowCount = getRowCount(worksheetIndex);
+        if (rowCount == 0) return 0;
+        Map<Integer, QueryColumnAttributes> column = Collections.singletonMap(columnIndex,
+                new QueryColumnAttributes(true, String.class, Optional.empty()));
+        return inSession(session -> {
+            Set<Object> distinct = new HashSet<>();
+            for (RowRange partition : RowRange.partition(0, rowCount - 1)) {
+                session.getMarshaller().fetchRows(worksheetIndex, partition.getStartRow(), partition.getEndRow(), column,
+                        (rowIndex, row) -> {
+                            if (distinct.size() <= limit) distinct.add(row.apply(columnIndex));
+                        });
+                if (distinct.size() > limit) break;
+            }
+            return distinct.size();
+        });
+    }
+
+    /**
+     * The rows of startRow..endRow selected by the indexes of the filtered columns, or null if no filter can be
+     * answered by an index.  The filters themselves still apply to the rows that are read.
+     */
+    private RowSet indexedRows(int worksheetIndex, Map<Integer, FilterPlan> filterPlans, int startRow, int endRow) {
+        if (source.getPath() == null) return null;
+        int rowCount = getRowCount(worksheetIndex);
+        RowSet rows = null;
+        for (Map.Entry<Integer, FilterPlan> entry : filterPlans.entrySet()) {
+            KeyRange range = entry.getValue().keyRange();
+            if (range == null) continue;
+            ColumnIndex index = columnIndex(worksheetIndex, entry.getKey());
+            if (index == null) continue;
+            int[] selected = index.lookup(range, Math.max(RowRange.PARTITION_ROWS, rowCount / MAX_INDEXED_FRACTION));
+            if (selected == null) continue;
+            RowSet indexed = RowSet.of(selected);
+            rows = rows == null ? indexed : rows.and(indexed);
+        }
+        if (rows != null && (startRow > 0 || endRow < rowCount - 1)) rows = rows.and(RowSet.range(startRow, endRow));
+        return rows;
+    }
+
+    /**
+     * The index of a column, opened from its sidecar file the first time a query needs it; null if the column
+     * has no index, or its index does not match the file.
+     */
+    private ColumnIndex columnIndex(int worksheetIndex, int columnIndex) {
+        Path bigFile = source.getPath();
+        return columnIndexes.computeIfAbsent(columnKey(worksheetIndex, columnIndex), key -> {
+            Path sidecar = ColumnIndex.sidecarFor(bigFile, worksheetIndex, columnIndex);
+            if (!Files.isRegularFile(sidecar)) return Optional.empty();
+            Schema.Worksheet worksheet = schema.getWorksheet(worksheetIndex);
+            try {
+                return Optional.ofNullable(ColumnIndex.open(sidecar, worksheet.getColumn(columnIndex).getType(),
+                        worksheetIndex, columnIndex, worksheet.getRowCount(), Files.size(bigFile),
+                        Files.getLastModifiedTime(bigFile).toMillis(), fingerprint()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).orElse(null);
+    }
+
+    /**
+     * The fingerprint of the .BIG file against which column indexes are validated, computed once.
+     */
+    private long fingerprint() throws IOException {
+        Long value = fingerprint;
+        if (value == null) fingerprint = value = ColumnIndex.fingerprint(source.getPath());
+        return value;
+    }
+
+    private static Long columnKey(int worksheetIndex, int columnIndex) {
+        return ((long) worksheetIndex << 32) | columnIndex;
+    }
+
+    private static List<Integer> projectedColumns(Map<Integer, QueryColumn> queryColumns) {
+        return queryColumns.entrySet().stream()
+                .filter(entry -> entry.getValue().getProject())
+                .map(Map.Entry::getKey)
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * The partitions of startRow..endRow that a query must read: all of them, unless zone maps show that no
+     * row of a partition can satisfy the query's filters.
+     */
+    private List<RowRange> partitionsFor(PreparedQuery query, int startRow, int endRow) {
+        return partitionsFor(query.getWorksheetIndex(), startRow, endRow, query.getFilterPlans());
+    }
+
+    private List<RowRange> partitionsFor(int worksheetIndex, int startRow, int endRow, Map<Integer, FilterPlan> filterPlans) {
+        List<RowRange> partitions = RowRange.partition(startRow, endRow);
+        if (zoneMaps == null || filterPlans.isEmpty()) return partitions;
+        return zoneMaps.prune(worksheetIndex, partitions, filterPlans);
+    }
+
+    private static void validateQueryColumns(Map<Integer, QueryColumn> queryColumns) {
+        Objects.requireNonNull(queryColumns, "queryColumns");
+        if (queryColumns.isEmpty()) throw new IllegalArgumentException("queryColumns cannot be empty");
+    }
+
+    private void validateRowRange(int worksheetIndex, int startRow, int endRow) {
+        validateWorksheetIndex(worksheetIndex);
+        if (startRow < 0) throw new IllegalArgumentException("Start row must be >= 0");
+        if (endRow >= getRowCount(worksheetIndex)) throw new IllegalArgumentException(
+                String.format("End row must be < %d", getRowCount(worksheetIndex)));
+        if (startRow > endRow) throw new IllegalArgumentException("Start row must be <= end row");
+    }
+
+    private void validateRowSet(int worksheetIndex, RowSet rows) {
+        validateWorksheetIndex(worksheetIndex);
+        Objects.requireNonNull(rows, "rows");
+        if (!rows.isEmpty() && rows.last() >= getRowCount(worksheetIndex))
+            throw new IllegalArgumentException(String.format("Row index '%d' out of range", rows.last()));
+    }
+
     private void validateWorksheetIndex(int worksheetIndex) {
         if (worksheetIndex < 0 || worksheetIndex >= getWorksheetCount())
             throw new IllegalArgumentException(String.format("Worksheet index '%d' out of range", worksheetIndex));
     }
 
     private void validateWorksheetAndColumnIndex(int worksheetIndex, int columnIndex) {
-        validateWorksheetIndex(worksheetIndex);
-        if (columnIndex < 0 || columnIndex >= getColumnCount(worksheetIndex))
-            throw new IllegalArgumentException(String.format("Column index '%d' out of range", columnIndex));
+        schema.getWorksheet(worksheetIndex).getColumn(columnIndex);
     }
 
     private void validateWorksheetColumnAndRowIndex(int worksheetIndex, int rowIndex, int columnIndex) {
-        validateWorksheetAndColumnIndex(worksheetIndex, columnIndex);
-        if (rowIndex < 0 || rowIndex >= getRowCount(worksheetIndex))
+        Schema.Worksheet worksheet = schema.getWorksheet(worksheetIndex);
+        worksheet.getColumn(columnIndex);
+        if (rowIndex < 0 || rowIndex >= worksheet.getRowCount())
             throw new IllegalArgumentException(String.format("Row index '%d' out of range", rowIndex));
     }
 }
@@ -0,0 +1,129 @@
+package com.exponam.api.reader;
+
+/**
+ * Optional settings for a Reader.  ReaderOptions is immutable; each with... method returns a copy with one
+ * setting changed, starting from defaults().
+ */
+public final class ReaderOptions {
+    private static final ReaderOptions DEFAULTS = new ReaderOptions(0, false, null, 0, false);
+
+    private final long segmentCacheBytes;
+    private final boolean zoneMaps;
+    private final QueryListener queryListener;
+    private final int prefetchDepth;
+    private final boolean dictionaryFilters;
+
+    private ReaderOptions(long segmentCacheBytes, boolean zoneMaps, QueryListener queryListener, int prefetchDepth,
+                          boolean dictionaryFilters) {
+        this.segmentCacheBytes = segmentCacheBytes;
+        this.zoneMaps = zoneMaps;
+        this.queryListener = queryListener;
+        this.prefetchDepth = prefetchDepth;
+        this.dictionaryFilters = dictionaryFilters;
+    }
+
+    /**
+     * @return the default options, with no segment cache, no zone maps, no query listener, no prefetch and no
+     * dictionary filters
+     */
+    public static ReaderOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * The approximate number of bytes of decoded column segments that a Reader may cache, to serve
+     * repeated point lookups and scans over the same rows without decoding them again.  Zero disables
+     * the cache.
+     * @param segmentCacheBytes the cache budget, in bytes
+     * @return options with the given cache budget
+     */
+    public ReaderOptions withSegmentCacheBytes(long segmentCacheBytes) {
+        if (segmentCacheBytes < 0) throw new IllegalArgumentException("Segment cache bytes must be >= 0");
+        return new ReaderOptions(segmentCacheBytes, zoneMaps, queryListener, prefetchDepth, dictionaryFilters);
+    }
+
+    /**
+     * Whether filtered queries use zone maps: per-partition minimum, maximum and empty-value counts of each
+     * filtered column, used to skip partitions in which no row can match.  The statistics for a column are
+     * computed the first time a filtered query needs them, at the cost of one extra pass over that column in
+     * each partition, and kept for the life of the Reader.  Queries over files that are sorted or clustered
+     * on the filtered column, such as time ranges over date-ordered files, then read only the partitions
+     * that can match.
+     * @param zoneMaps whether to use zone maps
+     * @return options with zone maps enabled or disabled
+     */
+    public ReaderOptions withZoneMaps(boolean zoneMaps) {
+        return new ReaderOptions(segmentCacheBytes, zoneMaps, queryListener, prefetchDepth, dictionaryFilters);
+    }
+
+    /**
+     * A listener to receive the execution statistics of each getRowValues query: rows scanned and matched,
+     * partitions read and skipped, bytes read, and time spent planning and scanning.  The statistics are
+     * only collected when there is a listener or a flight recording of the Query event.
+     * @param queryListener the listener, or null for none
+     * @return options with the given query listener
+     */
+    public ReaderOptions withQueryListener(QueryListener queryListener) {
+        return new ReaderOptions(segmentCacheBytes, zoneMaps, queryListener, prefetchDepth, dictionaryFilters);
+    }
+
+    /**
+     * The number of partitions that a sequential getRowValues scan reads ahead of its row consumer.  With a
+     * depth of k, background threads owned by the Reader read, decrypt, decode and filter partitions N+1 to
+     * N+k while the consumer is handed the rows of partition N, so that disk and CPU work overlap with the
+     * consumer's own work.  Rows are still delivered in row order on the calling thread.  No more than k + 1
+     * partitions of rows are held in memory at once, and a consumer that falls behind stops further reads
+     * until it catches up.  Zero, the default, reads each partition only when the consumer reaches it.
+     * @param prefetchDepth the number of partitions to read ahead
+     * @return options with the given prefetch depth
+     */
+    public ReaderOptions withPrefetchDepth(int prefetchDepth) {
+        if (prefetchDepth < 0) throw new IllegalArgumentException("Prefetch depth must be >= 0");
+        return new ReaderOptions(segmentCacheBytes, zoneMaps, queryListener, prefetchDepth, dictionaryFilters);
+    }
+
+    /**
+     * Whether the string filters of String columns with few distinct values, no more than
+     * Reader.DICTIONARY_VALUES, are evaluated by the API once per distinct value rather than by the core
+     * reader once per row.  Whether a column has few enough values is found the first time a query filters on
+     * it, with a pass over the column that stops as soon as it has seen too many, and is kept for the life of
+     * the Reader.
+     * <p>
+     * The API evaluates string filters with Java's String comparisons (equals, equalsIgnoreCase and
+     * compareTo), which need not agree with the core reader's case folding and ordering in every case.  Whether
+     * a query is evaluated by the API depends only on this option and the file, never on which other methods
+     * have been called on the Reader.  For the same reason, the zone maps of String columns are used to skip
+     * partitions by their distinct values only while this option is enabled.
+     * @param dictionaryFilters whether to evaluate string filters per distinct value
+     * @return options with dictionary filters enabled or disabled
+     */
+    public ReaderOptions withDictionaryFilters(boolean dictionaryFilters) {
+        return new ReaderOptions(segmentCacheBytes, zoneMaps, queryListener, prefetchDepth, dictionaryFilters);
+    }
+
+    public long getSegmentCacheBytes() {
+        return segmentCacheBytes;
+    }
+
+    public boolean getZoneMaps() {
+        return zoneMaps;
+    }
+
+    public QueryListener getQueryListener() {
+        return queryListener;
+    }
+
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
+    public boolean getDictionaryFilters() {
+        return dictionaryFilters;
+    }
+
+    public String toString() {
+        return String.format("segmentCacheBytes=%d, zoneMaps=%s, queryListener=%s, prefetchDepth=%d, dictionaryFilters=%s",
+                segmentCacheBytes, Boolean.valueOf(zoneMaps).toString(), queryListener, prefetchDepth,
+                Boolean.valueOf(dictionaryFilters).toString());
+    }
+}
@@ -0,0 +1,333 @@
+package com.exponam.api.reader;
+
+import com.exponam.core.reader.BigReader;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A pool of open Readers, for services that open the same .BIG files over and over again.
+ * <p>
+ * Readers are pooled per file, where a file is identified by its canonical path, size and modification
+ * time, so a file that is replaced on disk is never served from a stale Reader.  Each version of a file is
+ * opened by one Reader, which is shared by every Lease on it: Readers are safe for concurrent queries, and
+ * serve them from streams of their own, so password-based key derivation and the schema, zone map and index
+ * caches are paid for once per file rather than once per concurrent acquire.  The password itself is not
+ * kept: the pool is keyed by a keyed hash of it, so that a different password for the same file is never
+ * served from the cache.
+ * <p>
+ * A Reader is borrowed through a Lease, and is counted as in use until every Lease on it is closed.  Do not
+ * close a leased Reader directly.
+ * <p>
+ * Readers that are not leased are kept open until either more than maxIdleReaders are idle in the pool,
+ * in which case the least recently used are closed, or they have been idle for longer than maxIdleTime.
+ * Idle readers are evicted whenever a Reader is acquired or released, and when evictIdle() is called.
+ */
+public final class ReaderPool implements Closeable {
+    private final ReaderOptions options;
+    private final int maxIdleReaders;
+    private final long maxIdleNanos;
+    private final Mac passwordHash;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<FileKey, Entry> entries = new HashMap<>();
+    private final Deque<Entry> idleEntries = new ArrayDeque<>();
+    private boolean closed;
+
+    /**
+     * Creates a pool.
+     * @param maxIdleReaders the maximum number of Readers to keep open while not leased
+     * @param maxIdleTime the maximum time for which a Reader is kept open while not leased
+     * @param unit the unit of maxIdleTime
+     */
+    public ReaderPool(int maxIdleReaders, long maxIdleTime, TimeUnit unit) {
+        this(maxIdleReaders, maxIdleTime, unit, ReaderOptions.defaults());
+    }
+
+    /**
+     * Creates a pool whose Readers are opened with the given options.
+     * @param maxIdleReaders the maximum number of Readers to keep open while not leased
+     * @param maxIdleTime the maximum time for which a Reader is kept open while not leased
+     * @param unit the unit of maxIdleTime
+     * @param options optional settings for the pooled Readers
+     */
+    public ReaderPool(int maxIdleReaders, long maxIdleTime, TimeUnit unit, ReaderOptions options) {
+        this.options = Objects.requireNonNull(options, "options");
+        if (maxIdleReaders < 0) throw new IllegalArgumentException("Maximum idle readers must be >= 0");
+        if (maxIdleTime < 0) throw new IllegalArgumentException("Maximum idle time must be >= 0");
+        this.maxIdleReaders = maxIdleReaders;
+        this.maxIdleNanos = Objects.requireNonNull(unit, "unit").toNanos(maxIdleTime);
+        this.passwordHash = newPasswordHash();
+    }
+
+    /**
+     * A Reader borrowed from the pool, and shared with any other Leases on the same file.  Closing the Lease
+     * returns the Reader to the pool.
+     */
+    public final class Lease implements Closeable {
+        private Entry entry;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        /**
+         * @return the leased Reader, which must not be used once the Lease is closed
+         */
+        public Reader getReader() {
+            if (entry == null) throw new IllegalStateException("Lease has been closed");
+            return entry.reader;
+        }
+
+        /**
+         * Returns the Reader to the pool.
+         */
+        @Override
+        public void close() throws IOException {
+            if (entry != null) {
+                Entry released = entry;
+                entry = null;
+                release(released);
+            }
+        }
+    }
+
+    /**
+     * Leases the Reader for bigFile, opening one only if the pool does not already have one open.
+     * @param bigFile the Exponam .BIG file to be accessed
+     * @param passwordSupplier a caller-supplier function returning the password for the BigFile; can be null or return an empty String for unencrypted files
+     * @return a Lease on the Reader
+     * @throws IOException if there is a problem accessing the file
+     * @throws BigReader.UnsupportedFileVersionException if the file version is more recent than supported by this version of the API
+     */
+    public Lease acquire(File bigFile, Supplier<String> passwordSupplier) throws IOException, BigReader.UnsupportedFileVersionException {
+        Objects.requireNonNull(bigFile, "bigFile");
+        if (bigFile.isDirectory()) throw new IllegalArgumentException(String.format("'%s' is a directory.", bigFile.getName()));
+        if (!bigFile.exists()) throw new IllegalArgumentException(String.format("'%s' does not exist", bigFile.getName()));
+
+        String password = passwordSupplier == null ? "" : passwordSupplier.get();
+        FileKey key = new FileKey(bigFile.getCanonicalPath(), bigFile.length(), bigFile.lastModified(),
+                hashPassword(password == null ? "" : password));
+
+        List<Reader> evicted = new ArrayList<>();
+        Entry entry;
+        lock.lock();
+        try {
+            ensureOpen();
+            evictStale(key, evicted);
+            evictExpired(System.nanoTime(), evicted);
+            entry = entries.get(key);
+            if (entry != null) lease(entry);
+        } finally {
+            lock.unlock();
+        }
+        closeAll(evicted);
+        if (entry != null) return new Lease(entry);
+
+        Reader reader = new Reader(bigFile, passwordSupplier, options);
+        lock.lock();
+        try {
+            if (!closed) {
+                entry = entries.get(key);
+                if (entry == null) {
+                    entry = new Entry(key, reader);
+                    entries.put(key, entry);
+                    entry.leases++;
+                    return new Lease(entry);
+                }
+                lease(entry);
+            }
+        } finally {
+            lock.unlock();
+        }
+        // another thread opened this file first, or the pool was closed meanwhile; discard ours
+        reader.close();
+        ensureOpen();
+        return new Lease(entry);
+    }
+
+    /**
+     * Closes Readers that have been idle for longer than the maximum idle time.  This happens anyway on every
+     * acquire and release; call this periodically if the pool can go quiet for long periods.
+     */
+    public void evictIdle() throws IOException {
+        List<Reader> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            evictExpired(System.nanoTime(), evicted);
+        } finally {
+            lock.unlock();
+        }
+        closeAll(evicted);
+    }
+
+    /**
+     * Closes every idle Reader.  Readers that are currently leased are closed as their last Leases are closed.
+     */
+    @Override
+    public void close() throws IOException {
+        List<Reader> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            closed = true;
+            for (Entry idle : idleEntries) evicted.add(idle.reader);
+            idleEntries.clear();
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+        closeAll(evicted);
+    }
+
+    private void lease(Entry entry) {
+        if (entry.leases++ == 0) idleEntries.remove(entry);
+    }
+
+    private void release(Entry entry) throws IOException {
+        List<Reader> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            if (--entry.leases == 0) {
+                if (closed || !entry.reader.isOpen() || entries.get(entry.key) != entry) {
+                    entries.remove(entry.key, entry);
+                    evicted.add(entry.reader);
+                } else {
+                    entry.idleSince = System.nanoTime();
+                    idleEntries.addFirst(entry);
+                }
+            }
+            evictExpired(System.nanoTime(), evicted);
+            while (idleEntries.size() > maxIdleReaders) evict(idleEntries.removeLast(), evicted);
+        } finally {
+            lock.unlock();
+        }
+        closeAll(evicted);
+    }
+
+    /**
+     * Drops the Readers of other versions of key's file: idle ones are closed now, and leased ones once their
+     * last Lease is closed.
+     */
+    private void evictStale(FileKey key, List<Reader> evicted) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.key.canonicalPath.equals(key.canonicalPath) && !entry.key.sameFileVersion(key)) {
+                it.remove();
+                if (entry.leases == 0) {
+                    idleEntries.remove(entry);
+                    evicted.add(entry.reader);
+                }
+            }
+        }
+    }
+
+    private void evictExpired(long now, List<Reader> evicted) {
+        while (!idleEntries.isEmpty() && now - idleEntries.peekLast().idleSince > maxIdleNanos)
+            evict(idleEntries.removeLast(), evicted);
+    }
+
+    private void evict(Entry idle, List<Reader> evicted) {
+        entries.remove(idle.key, idle);
+        evicted.add(idle.reader);
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("ReaderPool has been closed");
+    }
+
+    private static void closeAll(List<Reader> readers) throws IOException {
+        IOException failure = null;
+        for (Reader reader : readers) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    private byte[] hashPassword(String password) {
+        Mac mac;
+        try {
+            mac = (Mac) passwordHash.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+        return mac.doFinal(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Mac newPasswordHash() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class FileKey {
+        private final String canonicalPath;
+        private final long length;
+        private final long lastModified;
+        private final byte[] passwordHash;
+
+        private FileKey(String canonicalPath, long length, long lastModified, byte[] passwordHash) {
+            this.canonicalPath = canonicalPath;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.passwordHash = passwordHash;
+        }
+
+        private boolean sameFileVersion(FileKey other) {
+            return length == other.length && lastModified == other.lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FileKey)) return false;
+            FileKey other = (FileKey) o;
+            return canonicalPath.equals(other.canonicalPath) && sameFileVersion(other)
+                    && Arrays.equals(passwordHash, other.passwordHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(canonicalPath, length, lastModified, Arrays.hashCode(passwordHash));
+        }
+    }
+
+    private static final class Entry {
+        private final FileKey key;
+        private final Reader reader;
+        private int leases;
+        private long idleSince;
+
+        private Entry(FileKey key, Reader reader) {
+            this.key = key;
+            this.reader = reader;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.exponam.api.reader;
+
+import com.exponam.core.reader.BigReader;
+import com.exponam.core.reader.Marshaller;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A BigReader together with the Marshaller that reads from it.  A session owns its underlying stream
+ * and its decryptor, and so must only be used by one thread at a time.
+ */
+final class ReaderSession implements Closeable {
+    private final BigReader bigReader;
+    private final Marshaller marshaller;
+    private final CountingInputStream stream;
+
+    ReaderSession(BigReader bigReader, CountingInputStream stream) {
+        this.bigReader = bigReader;
+        this.marshaller = new Marshaller(bigReader);
+        this.stream = stream;
+    }
+
+    BigReader getBigReader() {
+        return bigReader;
+    }
+
+    Marshaller getMarshaller() {
+        return marshaller;
+    }
+
+    /**
+     * @return the number of bytes of the file read by this session so far
+     */
+    long getBytesRead() {
+        return stream.getBytesRead();
+    }
+
+    @Override
+    public void close() throws IOException {
+        bigReader.close();
+    }
+}
@@ -0,0 +1,37 @@
+package com.exponam.api.reader;
+
+/**
+ * A single result row of a query, holding the values of the projected columns.  Each value has the type
+ * requested for its column in the query.
+ */
+public final class Row {
+    private final RowBlock block;
+    private final int position;
+
+    Row(RowBlock block, int position) {
+        this.block = block;
+        this.position = position;
+    }
+
+    /**
+     * @return the zero-based index of the row within its worksheet
+     */
+    public int getRowIndex() {
+        return block.getRowIndex(position);
+    }
+
+    /**
+     * @param <T> the type requested for the column in the query
+     * @param columnIndex the zero-based index of a projected column
+     * @return the value of that column in this row
+     */
+    public <T> T getValue(int columnIndex) {
+        @SuppressWarnings("unchecked")
+        T value = (T) block.getValue(position, columnIndex);
+        return value;
+    }
+
+    public String toString() {
+        return String.format("row=%d", getRowIndex());
+    }
+}
@@ -0,0 +1,62 @@
+package com.exponam.api.reader;
+
+/**
+ * A batch of consecutive result rows of a query, published by Reader.publish.  A batch holds the rows of
+ * one partition of the worksheet that matched the query, with the values of the projected columns.  Unlike
+ * ColumnBatch, a RowBatch is never recycled, and can be retained or handed to another thread.
+ */
+public final class RowBatch {
+    private final RowBlock block;
+
+    RowBatch(RowBlock block) {
+        this.block = block;
+    }
+
+    /**
+     * @return the number of rows in the batch
+     */
+    public int getSize() {
+        return block.size();
+    }
+
+    /**
+     * @param position the zero-based position of a row in the batch
+     * @return the zero-based index of that row within its worksheet
+     */
+    public int getRowIndex(int position) {
+        validatePosition(position);
+        return block.getRowIndex(position);
+    }
+
+    /**
+     * @param <T> the type requested for the column in the query
+     * @param position the zero-based position of a row in the batch
+     * @param columnIndex the zero-based index of a projected column
+     * @return the value of that column in that row
+     */
+    public <T> T getValue(int position, int columnIndex) {
+        validatePosition(position);
+        @SuppressWarnings("unchecked")
+        T value = (T) block.getValue(position, columnIndex);
+        return value;
+    }
+
+    /**
+     * @param position the zero-based position of a row in the batch
+     * @return that row
+     */
+    public Row getRow(int position) {
+        validatePosition(position);
+        return new Row(block, position);
+    }
+
+    public String toString() {
+        return block.size() == 0 ? "size=0"
+                : String.format("size=%d, rows=%d..%d", block.size(), block.getRowIndex(0), block.getRowIndex(block.size() - 1));
+    }
+
+    private void validatePosition(int position) {
+        if (position < 0 || position >= block.size())
+            throw new IllegalArgumentException(String.format("Position '%d' out of range", position));
+    }
+}
@@ -0,0 +1,120 @@
+package com.exponam.api.reader;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the rows of a query as one RowBatch per partition that has matching rows.  Each subscriber gets
+ * a scan of its own.  A partition is read only once the subscriber has requested another batch, so at most
+ * one batch is ever read ahead of demand; reading, and the calls to the subscriber, happen on the executor,
+ * one partition after another.
+ */
+final class RowBatchPublisher implements Flow.Publisher<RowBatch> {
+    private final ParallelScan scan;
+    private final List<RowRange> partitions;
+    private final Executor executor;
+
+    RowBatchPublisher(ParallelScan scan, List<RowRange> partitions, Executor executor) {
+        this.scan = scan;
+        this.partitions = partitions;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super RowBatch> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        subscriber.onSubscribe(new RowSubscription(subscriber));
+    }
+
+    /**
+     * A subscription whose signals are delivered by a drain loop that runs on the executor whenever there is
+     * new demand, and never on more than one thread at once.
+     */
+    private final class RowSubscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super RowBatch> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingDrains = new AtomicInteger();
+        private volatile boolean done;
+        private volatile IllegalArgumentException invalidRequest;
+        private int nextPartition;
+
+        private RowSubscription(Flow.Subscriber<? super RowBatch> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0)
+                invalidRequest = new IllegalArgumentException(String.format("Requested batches must be > 0, was %d", n));
+            else
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            scheduleDrain();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                if (!drain()) return;
+                missed = pendingDrains.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void scheduleDrain() {
+            if (pendingDrains.getAndIncrement() != 0) return;
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                done = true;
+                subscriber.onError(e);
+            }
+        }
+
+        /**
+         * Delivers batches while there is demand.  Returns false once the subscription has terminated.
+         */
+        private boolean drain() {
+            while (!done) {
+                if (invalidRequest != null) {
+                    done = true;
+                    subscriber.onError(invalidRequest);
+                    return false;
+                }
+                if (nextPartition == partitions.size()) {
+                    done = true;
+                    subscriber.onComplete();
+                    return false;
+                }
+                if (demand.get() == 0) return true;
+
+                RowBlock block;
+                try {
+                    block = scan.readBlock(partitions.get(nextPartition++));
+                } catch (RuntimeException | Error e) {
+                    done = true;
+                    subscriber.onError(e);
+                    return false;
+                }
+                if (block.size() > 0 && !done) {
+                    demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(new RowBatch(block));
+                    } catch (RuntimeException | Error e) {
+                        done = true;
+                        throw e;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.exponam.api.reader;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Rows copied out of a row callback, so that they can be handed on later or on another thread.
+ * Only projected columns are retained; a column's values are those of the type requested for it.
+ */
+final class RowBlock {
+    private final int[] slotOfColumn;
+    private final int width;
+    private int[] rowIndexes = new int[64];
+    private Object[] values;
+    private int size;
+
+    RowBlock(Collection<Integer> projectedColumns) {
+        int maxColumn = projectedColumns.stream().mapToInt(Integer::intValue).max().orElse(-1);
+        this.slotOfColumn = new int[maxColumn + 1];
+        Arrays.fill(this.slotOfColumn, -1);
+        int slot = 0;
+        for (int column : projectedColumns) slotOfColumn[column] = slot++;
+        this.width = slot;
+        this.values = new Object[rowIndexes.length * width];
+    }
+
+    void add(int rowIndex, Function<Integer, Object> row) {
+        if (size == rowIndexes.length) {
+            rowIndexes = Arrays.copyOf(rowIndexes, size * 2);
+            values = Arrays.copyOf(values, size * 2 * width);
+        }
+        rowIndexes[size] = rowIndex;
+        int base = size * width;
+        for (int column = 0; column < slotOfColumn.length; column++) {
+            int slot = slotOfColumn[column];
+            if (slot >= 0) values[base + slot] = row.apply(column);
+        }
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getRowIndex(int position) {
+        return rowIndexes[position];
+    }
+
+    Object getValue(int position, int columnIndex) {
+        int slot = columnIndex >= 0 && columnIndex < slotOfColumn.length ? slotOfColumn[columnIndex] : -1;
+        if (slot < 0)
+            throw new IllegalArgumentException(String.format("Column '%d' was not projected", columnIndex));
+        return values[position * width + slot];
+    }
+
+    void forEach(BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        for (int position = 0; position < size; position++) {
+            int current = position;
+            rowConsumer.accept(rowIndexes[position], columnIndex -> getValue(current, columnIndex));
+        }
+    }
+}
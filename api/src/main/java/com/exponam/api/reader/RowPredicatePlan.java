@@ -0,0 +1,218 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.AllOf;
+import com.exponam.api.reader.filters.AnyOf;
+import com.exponam.api.reader.filters.ColumnMatches;
+import com.exponam.api.reader.filters.Filter;
+import com.exponam.api.reader.filters.RowPredicate;
+import com.exponam.core.reader.Marshaller;
+import com.exponam.core.reader.QueryColumnAttributes;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A RowPredicate compiled for one worksheet, and evaluated over a partition one column at a time.
+ * <p>
+ * The rows of the partition that remain candidates are held in a selection bitmap.  Each ColumnMatches is
+ * evaluated over only the runs of rows still selected, by testing the column's values against the compiled
+ * FilterPlan or, for the filters whose results are the core reader's to decide, by the core reader, so
+ * a column is never read for rows that an earlier predicate has already decided.  AllOf narrows the
+ * selection with each child in turn, cheapest first, and stops once it is empty; AnyOf evaluates each child
+ * only on the rows that no earlier child has accepted.  A ColumnMatches whose zone map shows that no row of
+ * the partition can match is decided without reading the column.
+ */
+abstract class RowPredicatePlan {
+    /**
+     * Selected rows separated by fewer unselected rows than this are read with one call, since the
+     * overhead of a call outweighs decoding a short gap.
+     */
+    static final int MAX_GAP_ROWS = 256;
+
+    abstract int cost();
+
+    /**
+     * @param candidates the rows of the partition still to be decided, indexed from the partition's first row;
+     *                   not modified
+     * @return the candidates that satisfy the predicate
+     */
+    abstract BitSet select(Marshaller marshaller, int worksheetIndex, RowRange partition, BitSet candidates,
+                           ZoneMaps zoneMaps);
+
+    /**
+     * @return the rows of the partition that satisfy the predicate, indexed from the partition's first row
+     */
+    BitSet select(Marshaller marshaller, int worksheetIndex, RowRange partition, ZoneMaps zoneMaps) {
+        BitSet all = new BitSet(partition.size());
+        all.set(0, partition.size());
+        return select(marshaller, worksheetIndex, partition, all, zoneMaps);
+    }
+
+    static RowPredicatePlan compile(RowPredicate predicate, Schema.Worksheet worksheet) {
+        Objects.requireNonNull(predicate, "predicate");
+        if (predicate instanceof ColumnMatches) {
+            ColumnMatches matches = (ColumnMatches) predicate;
+            Reader.ColumnTypes columnType = worksheet.getColumn(matches.getColumnIndex()).getType();
+            return column(matches.getColumnIndex(), matches.getFilter(),
+                    FilterPlan.compile(matches.getFilter(), columnType), columnType);
+        }
+        if (predicate instanceof AllOf)
+            return new AllOfPlan(compileAll(((AllOf) predicate).getPredicates(), worksheet));
+        if (predicate instanceof AnyOf)
+            return new AnyOfPlan(compileAll(((AnyOf) predicate).getPredicates(), worksheet));
+        throw new IllegalArgumentException(
+                String.format("Unknown predicate: '%s'", predicate.getClass().getCanonicalName()));
+    }
+
+    /**
+     * A predicate applying filter to one column, evaluated by its FilterPlan on values read for the purpose
+     * if isEvaluated, and otherwise pushed down to the core reader.
+     */
+    static RowPredicatePlan column(int columnIndex, Filter filter, FilterPlan filterPlan, Reader.ColumnTypes columnType) {
+        if (!isEvaluated(filter, filterPlan, columnType))
+            return new ColumnPlan(columnIndex, filterPlan, false,
+                    new QueryColumnAttributes(false, Object.class, Optional.of(FilterTranslation.map(filter))));
+        if (!filterPlan.isTestable())
+            throw new IllegalArgumentException(String.format("Filter '%s' cannot be evaluated on a %s column",
+                    filter.getClass().getSimpleName(), columnType));
+        return evaluated(columnIndex, filterPlan, columnType);
+    }
+
+    /**
+     * Whether filter is evaluated by its FilterPlan rather than pushed down to the core reader.  Filters the
+     * core reader cannot evaluate always are.  Of the rest, the API evaluates the positive comparisons and
+     * null checks of columns other than String columns, whose results it decides exactly on the values read as
+     * longs, doubles or epoch milliseconds, and the case-insensitive StringContains and StringDoesNotContain
+     * filters of String columns, which it searches for through SubstringSearch without lower-casing each value;
+     * an empty value satisfies neither of these.  Other String filters, whose case folding and ordering are the
+     * core reader's, and other negative filters, whose treatment of empty values is the core reader's, are
+     * pushed down.
+     */
+    static boolean isEvaluated(Filter filter, FilterPlan filterPlan, Reader.ColumnTypes columnType) {
+        if (!FilterTranslation.canMap(filter)) return true;
+        if (!filterPlan.isTestable()) return false;
+        if (columnType == Reader.ColumnTypes.String) return FilterTranslation.isCaseInsensitiveSearch(filter);
+        return FilterTranslation.isPositive(filter);
+    }
+
+    /**
+     * A predicate applying filterPlan to one column, always evaluated by the plan on values read for the purpose.
+     */
+    static RowPredicatePlan evaluated(int columnIndex, FilterPlan filterPlan, Reader.ColumnTypes columnType) {
+        return new ColumnPlan(columnIndex, filterPlan, true,
+                new QueryColumnAttributes(true, FilterPlan.valueTypeFor(columnType), Optional.empty()));
+    }
+
+    static RowPredicatePlan allOf(List<RowPredicatePlan> plans) {
+        List<RowPredicatePlan> children = new ArrayList<>(plans);
+        children.sort(Comparator.comparingInt(RowPredicatePlan::cost));
+        return children.size() == 1 ? children.get(0) : new AllOfPlan(children);
+    }
+
+    private static List<RowPredicatePlan> compileAll(RowPredicate[] predicates, Schema.Worksheet worksheet) {
+        if (predicates.length == 0) throw new IllegalArgumentException("predicates cannot be empty");
+        List<RowPredicatePlan> plans = new ArrayList<>();
+        for (RowPredicate predicate : predicates) plans.add(compile(predicate, worksheet));
+        plans.sort(Comparator.comparingInt(RowPredicatePlan::cost));
+        return plans;
+    }
+
+    private static final class ColumnPlan extends RowPredicatePlan {
+        private final int columnIndex;
+        private final FilterPlan filterPlan;
+        private final boolean evaluated;
+        private final Map<Integer, QueryColumnAttributes> queryColumn;
+
+        /**
+         * @param evaluated true if the column is read and filterPlan tested here; false if the filter is
+         *                  pushed down to the core reader
+         */
+        private ColumnPlan(int columnIndex, FilterPlan filterPlan, boolean evaluated, QueryColumnAttributes attributes) {
+            this.columnIndex = columnIndex;
+            this.filterPlan = filterPlan;
+            this.evaluated = evaluated;
+            this.queryColumn = Collections.singletonMap(columnIndex, attributes);
+        }
+
+        @Override
+        int cost() {
+            return filterPlan.cost();
+        }
+
+        @Override
+        BitSet select(Marshaller marshaller, int worksheetIndex, RowRange partition, BitSet candidates,
+                      ZoneMaps zoneMaps) {
+            BitSet selected = new BitSet(partition.size());
+            if (candidates.isEmpty()) return selected;
+            if (zoneMaps != null && !filterPlan.canMatch(zoneMaps.zone(worksheetIndex, columnIndex, partition)))
+                return selected;
+
+            int firstRow = partition.getStartRow();
+            for (RowRange run : RowRange.runsOf(candidates, firstRow, MAX_GAP_ROWS))
+                marshaller.fetchRows(worksheetIndex, run.getStartRow(), run.getEndRow(), queryColumn,
+                        (rowIndex, row) -> {
+                            int position = rowIndex - firstRow;
+                            if (candidates.get(position) && (!evaluated || filterPlan.test(row.apply(columnIndex))))
+                                selected.set(position);
+                        });
+            return selected;
+        }
+    }
+
+    private static final class AllOfPlan extends RowPredicatePlan {
+        private final List<RowPredicatePlan> children;
+
+        private AllOfPlan(List<RowPredicatePlan> children) {
+            this.children = children;
+        }
+
+        @Override
+        int cost() {
+            return children.stream().mapToInt(RowPredicatePlan::cost).sum();
+        }
+
+        @Override
+        BitSet select(Marshaller marshaller, int worksheetIndex, RowRange partition, BitSet candidates,
+                      ZoneMaps zoneMaps) {
+            BitSet selected = candidates;
+            for (RowPredicatePlan child : children) {
+                if (selected.isEmpty()) break;
+                selected = child.select(marshaller, worksheetIndex, partition, selected, zoneMaps);
+            }
+            return selected == candidates ? (BitSet) candidates.clone() : selected;
+        }
+    }
+
+    private static final class AnyOfPlan extends RowPredicatePlan {
+        private final List<RowPredicatePlan> children;
+
+        private AnyOfPlan(List<RowPredicatePlan> children) {
+            this.children = children;
+        }
+
+        @Override
+        int cost() {
+            return children.stream().mapToInt(RowPredicatePlan::cost).sum();
+        }
+
+        @Override
+        BitSet select(Marshaller marshaller, int worksheetIndex, RowRange partition, BitSet candidates,
+                      ZoneMaps zoneMaps) {
+            BitSet selected = new BitSet(partition.size());
+            BitSet undecided = (BitSet) candidates.clone();
+            for (RowPredicatePlan child : children) {
+                if (undecided.isEmpty()) break;
+                BitSet accepted = child.select(marshaller, worksheetIndex, partition, undecided, zoneMaps);
+                selected.or(accepted);
+                undecided.andNot(accepted);
+            }
+            return selected;
+        }
+    }
+}
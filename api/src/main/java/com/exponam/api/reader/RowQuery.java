@@ -0,0 +1,138 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.*;
+import com.exponam.core.reader.Marshaller;
+import com.exponam.core.reader.QueryColumnAttributes;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * A row query of one worksheet in the form in which it is read: the query columns handed to the core reader,
+ * with the filters it is left to evaluate pushed down, and a residual RowPredicatePlan for the rest.  The
+ * residual holds every filter that the API evaluates with its compiled FilterPlan (see
+ * RowPredicatePlan.isEvaluated): those the core reader cannot evaluate, such as set-membership filters, and
+ * the positive comparisons and null checks of other than String columns, which are tested on longs, doubles
+ * or epoch milliseconds, and the case-insensitive substring searches of String columns.  Cross-column predicates are added to the residual, as are, when
+ * ReaderOptions.withDictionaryFilters is enabled, the string filters of columns with few distinct values,
+ * which are evaluated once per distinct value.  When there is a residual, the rows of
+ * each partition are selected by it before the query columns are read for the selected rows.
+ */
+final class RowQuery {
+    private static final Function<Integer, Object> NO_COLUMNS = columnIndex -> {
+        throw new IllegalArgumentException(String.format("Column '%d' was not projected", columnIndex));
+    };
+
+    private final int worksheetIndex;
+    private final ImmutableMap<Integer, QueryColumnAttributes> queryColumns;
+    private final ImmutableMap<Integer, FilterPlan> filterPlans;
+    private final RowPredicatePlan residual;
+    private final ZoneMaps zoneMaps;
+
+    private RowQuery(int worksheetIndex, ImmutableMap<Integer, QueryColumnAttributes> queryColumns,
+                     ImmutableMap<Integer, FilterPlan> filterPlans, RowPredicatePlan residual, ZoneMaps zoneMaps) {
+        this.worksheetIndex = worksheetIndex;
+        this.queryColumns = queryColumns;
+        this.filterPlans = filterPlans;
+        this.residual = residual;
+        this.zoneMaps = zoneMaps;
+    }
+
+    /**
+     * @param desiredType the type in which each projected column is read
+     * @param dictionaryColumns the String columns known to have few distinct values; their string filters are
+     *                          evaluated once per distinct value, instead of by the core reader once per row
+     * @param zoneMaps the zone maps consulted by the residual, or null
+     */
+    static RowQuery compile(Schema.Worksheet worksheet, int worksheetIndex, Map<Integer, QueryColumn> queryColumns,
+                            BiFunction<Integer, QueryColumn, Type> desiredType, IntPredicate dictionaryColumns,
+                            ZoneMaps zoneMaps) {
+        ImmutableMap.Builder<Integer, QueryColumnAttributes> internal = ImmutableMap.builder();
+        ImmutableMap.Builder<Integer, FilterPlan> plans = ImmutableMap.builder();
+        List<RowPredicatePlan> residuals = new ArrayList<>();
+        for (Map.Entry<Integer, QueryColumn> entry : queryColumns.entrySet()) {
+            int columnIndex = entry.getKey();
+            QueryColumn queryColumn = entry.getValue();
+            Optional<Filter> filter = queryColumn.getColumnFilter();
+            Reader.ColumnTypes columnType = worksheet.getColumn(columnIndex).getType();
+            FilterPlan plan = filter.map(f -> FilterPlan.compile(f, columnType)).orElse(null);
+            if (plan != null) plans.put(columnIndex, plan);
+
+            boolean byDictionary = plan != null && columnType == Reader.ColumnTypes.String && plan.isTestable()
+                    && FilterTranslation.isPositive(filter.get()) && dictionaryColumns.test(columnIndex);
+            boolean pushedDown = plan != null && !byDictionary
+                    && !RowPredicatePlan.isEvaluated(filter.get(), plan, columnType);
+            if (byDictionary)
+                residuals.add(RowPredicatePlan.evaluated(columnIndex, plan.memoized(), columnType));
+            else if (plan != null && !pushedDown)
+                residuals.add(RowPredicatePlan.column(columnIndex, filter.get(), plan, columnType));
+            if (queryColumn.getProject() || pushedDown)
+                internal.put(columnIndex, new QueryColumnAttributes(queryColumn.getProject(),
+                        queryColumn.getProject() ? desiredType.apply(columnIndex, queryColumn) : Object.class,
+                        pushedDown ? filter.map(FilterTranslation::map) : Optional.empty()));
+        }
+        return new RowQuery(worksheetIndex, internal.build(), plans.build(),
+                residuals.isEmpty() ? null : RowPredicatePlan.allOf(residuals), zoneMaps);
+    }
+
+    /**
+     * This query, with its rows further restricted to those satisfying predicate.
+     */
+    RowQuery and(RowPredicatePlan predicate) {
+        return new RowQuery(worksheetIndex, queryColumns, filterPlans,
+                residual == null ? predicate : RowPredicatePlan.allOf(ImmutableList.of(predicate, residual)), zoneMaps);
+    }
+
+    int getWorksheetIndex() {
+        return worksheetIndex;
+    }
+
+    /**
+     * The query columns handed to the core reader.
+     */
+    Map<Integer, QueryColumnAttributes> getQueryColumns() {
+        return queryColumns;
+    }
+
+    /**
+     * The compiled filter of each filtered column, whether pushed down or not.
+     */
+    Map<Integer, FilterPlan> getFilterPlans() {
+        return filterPlans;
+    }
+
+    /**
+     * Reads the rows of startRow..endRow that satisfy the query.
+     */
+    void fetchRows(Marshaller marshaller, int startRow, int endRow,
+                   BiConsumer<Integer, Function<Integer, Object>> rowConsumer) {
+        if (residual == null) {
+            marshaller.fetchRows(worksheetIndex, startRow, endRow, queryColumns, rowConsumer);
+            return;
+        }
+        for (RowRange partition : RowRange.partition(startRow, endRow)) {
+            BitSet selected = residual.select(marshaller, worksheetIndex, partition, zoneMaps);
+            int firstRow = partition.getStartRow();
+            if (queryColumns.isEmpty()) {
+                for (int position = selected.nextSetBit(0); position >= 0; position = selected.nextSetBit(position + 1))
+                    rowConsumer.accept(firstRow + position, NO_COLUMNS);
+                continue;
+            }
+            for (RowRange run : RowRange.runsOf(selected, firstRow, RowPredicatePlan.MAX_GAP_ROWS))
+                marshaller.fetchRows(worksheetIndex, run.getStartRow(), run.getEndRow(), queryColumns,
+                        (rowIndex, row) -> {
+                            if (selected.get(rowIndex - firstRow)) rowConsumer.accept(rowIndex, row);
+                        });
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.exponam.api.reader;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * An inclusive range of zero-based row indices, the unit of work handed to a single ReaderSession.
+ */
+final class RowRange {
+    /**
+     * Rows per partition.  Partitions are aligned on multiples of this value, so that a partition
+     * covers whole column segments of the underlying file and no segment is decoded by two workers.
+     */
+    static final int PARTITION_ROWS = 1 << 16;
+
+    private final int startRow;
+    private final int endRow;
+
+    RowRange(int startRow, int endRow) {
+        this.startRow = startRow;
+        this.endRow = endRow;
+    }
+
+    int getStartRow() {
+        return startRow;
+    }
+
+    int getEndRow() {
+        return endRow;
+    }
+
+    int size() {
+        return endRow - startRow + 1;
+    }
+
+    /**
+     * Splits startRow..endRow into partitions aligned on PARTITION_ROWS boundaries; only the first and
+     * last partition can be partial.
+     */
+    static List<RowRange> partition(int startRow, int endRow) {
+        List<RowRange> partitions = new ArrayList<>();
+        int start = startRow;
+        while (start <= endRow) {
+            long boundary = ((long) start / PARTITION_ROWS + 1) * PARTITION_ROWS - 1;
+            int end = (int) Math.min(boundary, endRow);
+            partitions.add(new RowRange(start, end));
+            start = end + 1;
+        }
+        return partitions;
+    }
+
+    /**
+     * Merges adjacent ranges, so that a run of consecutive partitions can be read with one call.
+     */
+    static List<RowRange> coalesce(List<RowRange> ranges) {
+        List<RowRange> runs = new ArrayList<>();
+        RowRange run = null;
+        for (RowRange range : ranges) {
+            if (run != null && run.endRow + 1 == range.startRow) {
+                run = new RowRange(run.startRow, range.endRow);
+            } else {
+                if (run != null) runs.add(run);
+                run = range;
+            }
+        }
+        if (run != null) runs.add(run);
+        return runs;
+    }
+
+    /**
+     * The runs of set bits of selected, as ranges of rows numbered from firstRow.  Runs separated by fewer
+     * than maxGap clear bits are merged, so a run can include rows that are not selected.
+     */
+    static List<RowRange> runsOf(BitSet selected, int firstRow, int maxGap) {
+        List<RowRange> runs = new ArrayList<>();
+        int start = selected.nextSetBit(0);
+        while (start >= 0) {
+            int end = selected.nextClearBit(start);
+            int next = selected.nextSetBit(end);
+            while (next >= 0 && next - end < maxGap) {
+                end = selected.nextClearBit(next);
+                next = selected.nextSetBit(end);
+            }
+            runs.add(new RowRange(firstRow + start, firstRow + end - 1));
+            start = next;
+        }
+        return runs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d..%d", startRow, endRow);
+    }
+}
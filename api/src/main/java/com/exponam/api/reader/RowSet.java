@@ -0,0 +1,590 @@
+package com.exponam.api.reader;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable set of zero-based row indices, such as the rows of a worksheet that satisfy a filter, as
+ * returned by Reader.select.  A RowSet can be passed to getRowValues in place of a range of rows, so that an
+ * expensive filter is evaluated once and its result reused by several queries, and RowSets can be combined
+ * with and, or and andNot.
+ * <p>
+ * Rows are held compressed, in the manner of a Roaring bitmap: the rows are divided into chunks of 65536,
+ * and the rows present in each chunk are held either as a sorted array of 16-bit offsets, when there are few
+ * of them, or as a 65536-bit bitmap.  Chunks without rows take no space.  A chunk of rows is also a partition
+ * of the rows read by a Reader, so a query over a RowSet reads only the partitions, and within them only the
+ * runs of rows, that the RowSet selects.
+ */
+public final class RowSet {
+    /**
+     * The most rows a chunk holds as an array; beyond this, a bitmap is smaller.
+     */
+    private static final int MAX_ARRAY_SIZE = 4096;
+    private static final int CHUNK_ROWS = 1 << 16;
+    private static final int BITMAP_WORDS = CHUNK_ROWS / Long.SIZE;
+    private static final RowSet EMPTY = new RowSet(new int[0], new Container[0]);
+
+    private final int[] keys;
+    private final Container[] containers;
+    private final long cardinality;
+
+    private RowSet(int[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+        long cardinality = 0;
+        for (Container container : containers) cardinality += container.cardinality();
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * @return a RowSet holding no rows
+     */
+    public static RowSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @param rowIndexes the zero-based row indices, in any order and possibly repeated
+     * @return a RowSet holding the given rows
+     */
+    public static RowSet of(int... rowIndexes) {
+        int[] sorted = rowIndexes.clone();
+        Arrays.sort(sorted);
+        if (sorted.length > 0 && sorted[0] < 0)
+            throw new IllegalArgumentException(String.format("Row index '%d' out of range", sorted[0]));
+        Builder builder = new Builder();
+        BitSet chunk = new BitSet();
+        int chunkStart = -1;
+        for (int rowIndex : sorted) {
+            int start = rowIndex & -CHUNK_ROWS;
+            if (start != chunkStart) {
+                if (chunkStart >= 0) builder.add(chunkStart, chunk);
+                chunk.clear();
+                chunkStart = start;
+            }
+            chunk.set(rowIndex - start);
+        }
+        if (chunkStart >= 0) builder.add(chunkStart, chunk);
+        return builder.build();
+    }
+
+    /**
+     * @param startRow the zero-based index of the first row
+     * @param endRow the zero-based index of the last row
+     * @return a RowSet holding every row from startRow to endRow
+     */
+    public static RowSet range(int startRow, int endRow) {
+        if (startRow < 0) throw new IllegalArgumentException("Start row must be >= 0");
+        if (startRow > endRow) throw new IllegalArgumentException("Start row must be <= end row");
+        Builder builder = new Builder();
+        BitSet chunk = new BitSet();
+        for (RowRange partition : RowRange.partition(startRow, endRow)) {
+            int firstRow = partition.getStartRow();
+            chunk.clear();
+            chunk.set(0, partition.size());
+            builder.add(firstRow, chunk);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return the number of rows in the set
+     */
+    public long getCardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * @param rowIndex a zero-based row index
+     * @return whether the row is in the set
+     */
+    public boolean contains(int rowIndex) {
+        if (rowIndex < 0) return false;
+        int position = Arrays.binarySearch(keys, rowIndex >>> 16);
+        return position >= 0 && containers[position].contains((char) rowIndex);
+    }
+
+    /**
+     * @return the smallest row index in the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    public int first() {
+        if (keys.length == 0) throw new NoSuchElementException("RowSet is empty");
+        return keys[0] << 16 | containers[0].first();
+    }
+
+    /**
+     * @return the largest row index in the set
+     * @throws NoSuchElementException if the set is empty
+     */
+    public int last() {
+        if (keys.length == 0) throw new NoSuchElementException("RowSet is empty");
+        return keys[keys.length - 1] << 16 | containers[keys.length - 1].last();
+    }
+
+    /**
+     * @param other another RowSet
+     * @return the rows in both this set and other
+     */
+    public RowSet and(RowSet other) {
+        int[] resultKeys = new int[Math.min(keys.length, other.keys.length)];
+        Container[] resultContainers = new Container[resultKeys.length];
+        int count = 0;
+        for (int i = 0, j = 0; i < keys.length && j < other.keys.length; ) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container != null) {
+                    resultKeys[count] = keys[i];
+                    resultContainers[count++] = container;
+                }
+                i++;
+                j++;
+            }
+        }
+        return new RowSet(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultContainers, count));
+    }
+
+    /**
+     * @param other another RowSet
+     * @return the rows in either this set or other
+     */
+    public RowSet or(RowSet other) {
+        int[] resultKeys = new int[keys.length + other.keys.length];
+        Container[] resultContainers = new Container[resultKeys.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length || j < other.keys.length) {
+            if (j == other.keys.length || i < keys.length && keys[i] < other.keys[j]) {
+                resultKeys[count] = keys[i];
+                resultContainers[count++] = containers[i++];
+            } else if (i == keys.length || keys[i] > other.keys[j]) {
+                resultKeys[count] = other.keys[j];
+                resultContainers[count++] = other.containers[j++];
+            } else {
+                resultKeys[count] = keys[i];
+                resultContainers[count++] = containers[i++].or(other.containers[j++]);
+            }
+        }
+        return new RowSet(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultContainers, count));
+    }
+
+    /**
+     * @param other another RowSet
+     * @return the rows in this set that are not in other
+     */
+    public RowSet andNot(RowSet other) {
+        int[] resultKeys = new int[keys.length];
+        Container[] resultContainers = new Container[keys.length];
+        int count = 0;
+        for (int i = 0, j = 0; i < keys.length; i++) {
+            while (j < other.keys.length && other.keys[j] < keys[i]) j++;
+            Container container = j < other.keys.length && other.keys[j] == keys[i]
+                    ? containers[i].andNot(other.containers[j]) : containers[i];
+            if (container != null) {
+                resultKeys[count] = keys[i];
+                resultContainers[count++] = container;
+            }
+        }
+        return new RowSet(Arrays.copyOf(resultKeys, count), Arrays.copyOf(resultContainers, count));
+    }
+
+    /**
+     * Invokes action with each row index of the set, in ascending order.
+     * @param action the action to be invoked
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < keys.length; i++) containers[i].forEach(keys[i] << 16, action);
+    }
+
+    /**
+     * @return an iterator over the row indices of the set, in ascending order
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int chunk;
+            private int offset = keys.length == 0 ? -1 : containers[0].first();
+
+            @Override
+            public boolean hasNext() {
+                return offset >= 0;
+            }
+
+            @Override
+            public int nextInt() {
+                if (offset < 0) throw new NoSuchElementException();
+                int rowIndex = keys[chunk] << 16 | offset;
+                offset = containers[chunk].next(offset + 1);
+                if (offset < 0 && ++chunk < keys.length) offset = containers[chunk].first();
+                return rowIndex;
+            }
+        };
+    }
+
+    /**
+     * @return a sequential stream of the row indices of the set, in ascending order
+     */
+    public IntStream stream() {
+        return StreamSupport.intStream(Spliterators.spliterator(iterator(), cardinality,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL
+                        | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * The number of chunks holding at least one row.
+     */
+    int chunkCount() {
+        return keys.length;
+    }
+
+    /**
+     * The first row of a chunk, whether or not it is in the set.
+     */
+    int chunkStartRow(int chunk) {
+        return keys[chunk] << 16;
+    }
+
+    /**
+     * The rows of a chunk, indexed from its first row.
+     */
+    BitSet chunkRows(int chunk) {
+        return containers[chunk].toBitSet();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RowSet)) return false;
+        RowSet other = (RowSet) o;
+        if (cardinality != other.cardinality || !Arrays.equals(keys, other.keys)) return false;
+        for (int i = 0; i < keys.length; i++)
+            if (!containers[i].toBitSet().equals(other.containers[i].toBitSet())) return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Long.hashCode(cardinality);
+        for (int i = 0; i < keys.length; i++) hash = 31 * hash + containers[i].toBitSet().hashCode() + keys[i];
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return keys.length == 0
+                ? "RowSet[]"
+                : String.format("RowSet[cardinality=%d, first=%d, last=%d]", cardinality, first(), last());
+    }
+
+    /**
+     * Collects the rows of successive chunks, or of partitions within them, in ascending row order.
+     */
+    static final class Builder {
+        private int[] keys = new int[4];
+        private Container[] containers = new Container[4];
+        private int count;
+
+        /**
+         * Adds the rows of selected, indexed from firstRow, which must lie in a later chunk than any
+         * rows already added, or later in the same chunk.
+         */
+        void add(int firstRow, BitSet selected) {
+            if (selected.isEmpty()) return;
+            int key = firstRow >>> 16;
+            int offset = firstRow & (CHUNK_ROWS - 1);
+            if (offset + selected.length() > CHUNK_ROWS)
+                throw new IllegalArgumentException(String.format("Rows from %d cross a chunk boundary", firstRow));
+            BitSet chunk;
+            if (count > 0 && keys[count - 1] == key) {
+                chunk = containers[count - 1].toBitSet();
+                if (chunk.length() > offset)
+                    throw new IllegalArgumentException(String.format("Rows from %d added out of order", firstRow));
+                count--;
+            } else if (count > 0 && keys[count - 1] > key) {
+                throw new IllegalArgumentException(String.format("Rows from %d added out of order", firstRow));
+            } else {
+                chunk = new BitSet();
+            }
+            for (int position = selected.nextSetBit(0); position >= 0; position = selected.nextSetBit(position + 1))
+                chunk.set(offset + position);
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                containers = Arrays.copyOf(containers, count * 2);
+            }
+            keys[count] = key;
+            containers[count++] = Container.of(chunk);
+        }
+
+        RowSet build() {
+            return count == 0 ? EMPTY : new RowSet(Arrays.copyOf(keys, count), Arrays.copyOf(containers, count));
+        }
+    }
+
+    /**
+     * Collects the rows delivered by a read, which arrive in ascending order, into a RowSet.
+     */
+    static final class Collector implements BiConsumer<Integer, Function<Integer, Object>> {
+        private final Builder builder = new Builder();
+        private final BitSet rows = new BitSet();
+        private int chunkStartRow = -1;
+
+        @Override
+        public void accept(Integer rowIndex, Function<Integer, Object> row) {
+            int startRow = rowIndex & -CHUNK_ROWS;
+            if (startRow != chunkStartRow) {
+                flush();
+                chunkStartRow = startRow;
+            }
+            rows.set(rowIndex - startRow);
+        }
+
+        RowSet build() {
+            flush();
+            return builder.build();
+        }
+
+        private void flush() {
+            if (chunkStartRow < 0) return;
+            builder.add(chunkStartRow, rows);
+            rows.clear();
+            chunkStartRow = -1;
+        }
+    }
+
+    /**
+     * The rows of one chunk, as 16-bit offsets from its first row.  A container is never empty: operations
+     * whose result would be empty return null instead.
+     */
+    private abstract static class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char offset);
+
+        abstract int first();
+
+        abstract int last();
+
+        /**
+         * @return the smallest offset in the container that is >= from, or -1 if there is none
+         */
+        abstract int next(int from);
+
+        abstract void forEach(int firstRow, IntConsumer action);
+
+        abstract long[] toWords();
+
+        abstract Container and(Container other);
+
+        abstract Container andNot(Container other);
+
+        Container or(Container other) {
+            long[] words = toWords();
+            long[] otherWords = other.toWords();
+            for (int i = 0; i < BITMAP_WORDS; i++) words[i] |= otherWords[i];
+            return of(words);
+        }
+
+        BitSet toBitSet() {
+            return BitSet.valueOf(toWords());
+        }
+
+        static Container of(BitSet rows) {
+            return of(Arrays.copyOf(rows.toLongArray(), BITMAP_WORDS));
+        }
+
+        /**
+         * The container for the rows of a bitmap, as an array if it holds few enough rows; null if it
+         * holds none.
+         */
+        static Container of(long[] words) {
+            int cardinality = 0;
+            for (long word : words) cardinality += Long.bitCount(word);
+            if (cardinality == 0) return null;
+            if (cardinality > MAX_ARRAY_SIZE) return new BitmapContainer(words, cardinality);
+            char[] offsets = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                for (long word = words[i]; word != 0; word &= word - 1)
+                    offsets[count++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+            return new ArrayContainer(offsets);
+        }
+    }
+
+    private static final class ArrayContainer extends Container {
+        private final char[] offsets;
+
+        ArrayContainer(char[] offsets) {
+            this.offsets = offsets;
+        }
+
+        @Override
+        int cardinality() {
+            return offsets.length;
+        }
+
+        @Override
+        boolean contains(char offset) {
+            return Arrays.binarySearch(offsets, offset) >= 0;
+        }
+
+        @Override
+        int first() {
+            return offsets[0];
+        }
+
+        @Override
+        int last() {
+            return offsets[offsets.length - 1];
+        }
+
+        @Override
+        int next(int from) {
+            if (from >= CHUNK_ROWS) return -1;
+            int position = Arrays.binarySearch(offsets, (char) from);
+            if (position < 0) position = -position - 1;
+            return position < offsets.length ? offsets[position] : -1;
+        }
+
+        @Override
+        void forEach(int firstRow, IntConsumer action) {
+            for (char offset : offsets) action.accept(firstRow | offset);
+        }
+
+        @Override
+        long[] toWords() {
+            long[] words = new long[BITMAP_WORDS];
+            for (char offset : offsets) words[offset >>> 6] |= 1L << offset;
+            return words;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[offsets.length];
+            int count = 0;
+            for (char offset : offsets) if (other.contains(offset)) result[count++] = offset;
+            return count == 0 ? null : new ArrayContainer(Arrays.copyOf(result, count));
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[offsets.length];
+            int count = 0;
+            for (char offset : offsets) if (!other.contains(offset)) result[count++] = offset;
+            return count == 0 ? null : new ArrayContainer(Arrays.copyOf(result, count));
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer)) return super.or(other);
+            char[] otherOffsets = ((ArrayContainer) other).offsets;
+            char[] result = new char[offsets.length + otherOffsets.length];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < offsets.length || j < otherOffsets.length) {
+                if (j == otherOffsets.length || i < offsets.length && offsets[i] < otherOffsets[j]) {
+                    result[count++] = offsets[i++];
+                } else if (i == offsets.length || offsets[i] > otherOffsets[j]) {
+                    result[count++] = otherOffsets[j++];
+                } else {
+                    result[count++] = offsets[i++];
+                    j++;
+                }
+            }
+            return count > MAX_ARRAY_SIZE ? super.or(other) : new ArrayContainer(Arrays.copyOf(result, count));
+        }
+    }
+
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private final int cardinality;
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(char offset) {
+            return (words[offset >>> 6] & 1L << offset) != 0;
+        }
+
+        @Override
+        int first() {
+            return next(0);
+        }
+
+        @Override
+        int last() {
+            for (int i = BITMAP_WORDS - 1; ; i--)
+                if (words[i] != 0) return i * Long.SIZE + Long.SIZE - 1 - Long.numberOfLeadingZeros(words[i]);
+        }
+
+        @Override
+        int next(int from) {
+            if (from >= CHUNK_ROWS) return -1;
+            int i = from >>> 6;
+            long word = words[i] & -1L << from;
+            while (word == 0) {
+                if (++i == BITMAP_WORDS) return -1;
+                word = words[i];
+            }
+            return i * Long.SIZE + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        void forEach(int firstRow, IntConsumer action) {
+            for (int i = 0; i < BITMAP_WORDS; i++)
+                for (long word = words[i]; word != 0; word &= word - 1)
+                    action.accept(firstRow | i * Long.SIZE + Long.numberOfTrailingZeros(word));
+        }
+
+        @Override
+        long[] toWords() {
+            return words.clone();
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) return other.and(this);
+            long[] result = toWords();
+            long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < BITMAP_WORDS; i++) result[i] &= otherWords[i];
+            return of(result);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] result = toWords();
+            if (other instanceof ArrayContainer) {
+                for (char offset : ((ArrayContainer) other).offsets) result[offset >>> 6] &= ~(1L << offset);
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < BITMAP_WORDS; i++) result[i] &= ~otherWords[i];
+            }
+            return of(result);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.exponam.api.reader;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A lazy Spliterator over the rows of a query.  Rows are read in chunks, on demand, from one partition at
+ * a time; a traversal that stops early stops reading.  Chunks start small, so that a short-circuiting
+ * stream reads little more than it needs, and double up to a whole partition as the traversal continues.
+ * Splitting divides the remaining partitions, so a parallel stream reads disjoint partitions on each
+ * thread, each through a ReaderSession of its own.
+ */
+final class RowSpliterator implements Spliterator<Row> {
+    private static final int FIRST_CHUNK_ROWS = SegmentCache.SEGMENT_ROWS;
+
+    private final SessionPool sessions;
+    private final RowQuery query;
+    private final Collection<Integer> projectedColumns;
+    private final List<RowRange> partitions;
+    private int nextPartition;
+    private final int endPartition;
+    private int nextRow;
+    private int chunkRows = FIRST_CHUNK_ROWS;
+    private RowBlock block;
+    private int blockPosition;
+
+    RowSpliterator(SessionPool sessions, RowQuery query, Collection<Integer> projectedColumns,
+                   List<RowRange> partitions) {
+        this(sessions, query, projectedColumns, partitions, 0, partitions.size());
+    }
+
+    private RowSpliterator(SessionPool sessions, RowQuery query, Collection<Integer> projectedColumns,
+                           List<RowRange> partitions, int nextPartition, int endPartition) {
+        this.sessions = sessions;
+        this.query = query;
+        this.projectedColumns = projectedColumns;
+        this.partitions = partitions;
+        this.nextPartition = nextPartition;
+        this.endPartition = endPartition;
+        this.nextRow = nextPartition < endPartition ? partitions.get(nextPartition).getStartRow() : 0;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Row> action) {
+        while (block == null || blockPosition == block.size()) {
+            if (!readNextChunk()) return false;
+        }
+        action.accept(new Row(block, blockPosition++));
+        return true;
+    }
+
+    @Override
+    public Spliterator<Row> trySplit() {
+        int remaining = endPartition - nextPartition;
+        if (remaining < 2) return null;
+        int middle = nextPartition + remaining / 2;
+        RowSpliterator prefix = new RowSpliterator(sessions, query, projectedColumns, partitions,
+                nextPartition, middle);
+        prefix.nextRow = nextRow;
+        prefix.chunkRows = chunkRows;
+        prefix.block = block;
+        prefix.blockPosition = blockPosition;
+
+        nextPartition = middle;
+        nextRow = partitions.get(middle).getStartRow();
+        chunkRows = FIRST_CHUNK_ROWS;
+        block = null;
+        blockPosition = 0;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        long rows = block == null ? 0 : block.size() - blockPosition;
+        if (nextPartition < endPartition)
+            rows += (long) partitions.get(endPartition - 1).getEndRow() - nextRow + 1;
+        return rows;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    private boolean readNextChunk() {
+        if (nextPartition >= endPartition) return false;
+        RowRange partition = partitions.get(nextPartition);
+        int lastRow = (int) Math.min((long) nextRow + chunkRows - 1, partition.getEndRow());
+
+        RowBlock chunk = new RowBlock(projectedColumns);
+        ReaderSession session = sessions.borrow();
+        boolean completed = false;
+        try {
+            query.fetchRows(session.getMarshaller(), nextRow, lastRow, chunk::add);
+            completed = true;
+        } finally {
+            if (completed) sessions.release(session);
+            else sessions.discard(session);
+        }
+
+        block = chunk;
+        blockPosition = 0;
+        chunkRows = Math.min(chunkRows * 2, RowRange.PARTITION_ROWS);
+        if (lastRow == partition.getEndRow()) {
+            nextPartition++;
+            if (nextPartition < endPartition) nextRow = partitions.get(nextPartition).getStartRow();
+        } else {
+            nextRow = lastRow + 1;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,125 @@
+package com.exponam.api.reader;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * An immutable snapshot of the structure of a .BIG file: its worksheets, their row counts, and the name
+ * and type of each column.  The snapshot is taken once, when the Reader is opened, and can be retained and
+ * shared freely.
+ */
+public final class Schema {
+    private final ImmutableList<Worksheet> worksheets;
+
+    Schema(List<Worksheet> worksheets) {
+        this.worksheets = ImmutableList.copyOf(worksheets);
+    }
+
+    /**
+     * @return the number of worksheets
+     */
+    public int getWorksheetCount() {
+        return worksheets.size();
+    }
+
+    /**
+     * @param worksheetIndex the zero-based worksheet index
+     * @return the worksheet
+     */
+    public Worksheet getWorksheet(int worksheetIndex) {
+        if (worksheetIndex < 0 || worksheetIndex >= worksheets.size())
+            throw new IllegalArgumentException(String.format("Worksheet index '%d' out of range", worksheetIndex));
+        return worksheets.get(worksheetIndex);
+    }
+
+    public List<Worksheet> getWorksheets() {
+        return worksheets;
+    }
+
+    public String toString() {
+        return worksheets.toString();
+    }
+
+    /**
+     * The structure of one worksheet.
+     */
+    public static final class Worksheet {
+        private final int index;
+        private final String name;
+        private final int rowCount;
+        private final ImmutableList<Column> columns;
+
+        Worksheet(int index, String name, int rowCount, List<Column> columns) {
+            this.index = index;
+            this.name = name;
+            this.rowCount = rowCount;
+            this.columns = ImmutableList.copyOf(columns);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        public int getColumnCount() {
+            return columns.size();
+        }
+
+        /**
+         * @param columnIndex the zero-based column index
+         * @return the column
+         */
+        public Column getColumn(int columnIndex) {
+            if (columnIndex < 0 || columnIndex >= columns.size())
+                throw new IllegalArgumentException(String.format("Column index '%d' out of range", columnIndex));
+            return columns.get(columnIndex);
+        }
+
+        public List<Column> getColumns() {
+            return columns;
+        }
+
+        public String toString() {
+            return String.format("name=%s, rowCount=%d, columns=%s", name, rowCount, columns.toString());
+        }
+    }
+
+    /**
+     * The name and type of one column.
+     */
+    public static final class Column {
+        private final int index;
+        private final String name;
+        private final Reader.ColumnTypes type;
+
+        Column(int index, String name, Reader.ColumnTypes type) {
+            this.index = index;
+            this.name = name;
+            this.type = type;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Reader.ColumnTypes getType() {
+            return type;
+        }
+
+        public String toString() {
+            return String.format("%s:%s", name, type);
+        }
+    }
+}
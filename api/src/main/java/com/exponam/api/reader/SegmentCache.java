@@ -0,0 +1,138 @@
+package com.exponam.api.reader;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.lang.reflect.Type;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A byte-budgeted, least-recently-used cache of decoded column segments.  A segment is SEGMENT_ROWS
+ * consecutive values of one column, decoded to one desired type; the same rows requested as different
+ * types are cached separately.
+ */
+final class SegmentCache {
+    static final int SEGMENT_ROWS = 4096;
+
+    private final long maxBytes;
+    private final AtomicLong sizeBytes = new AtomicLong();
+    private final Cache<Key, Segment> segments;
+
+    SegmentCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.segments = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Segment segment) -> segment.weight)
+                .removalListener((RemovalNotification<Key, Segment> notification) ->
+                        sizeBytes.addAndGet(-notification.getValue().weight))
+                .recordStats()
+                .build();
+    }
+
+    static int segmentOf(int rowIndex) {
+        return rowIndex / SEGMENT_ROWS;
+    }
+
+    static int firstRowOf(int segment) {
+        return segment * SEGMENT_ROWS;
+    }
+
+    /**
+     * The values of a segment, decoding them with loader if the segment is not cached.
+     */
+    Object[] get(int worksheetIndex, int columnIndex, int segment, Type desiredType, Supplier<Object[]> loader) {
+        try {
+            return segments.get(new Key(worksheetIndex, columnIndex, segment, desiredType), () -> {
+                Segment loaded = new Segment(loader.get());
+                sizeBytes.addAndGet(loaded.weight);
+                return loaded;
+            }).values;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * The values of a segment if it is cached, or null.  Scans use this so as not to flush the point lookups'
+     * working set out of the cache.
+     */
+    Object[] getIfPresent(int worksheetIndex, int columnIndex, int segment, Type desiredType) {
+        Segment cached = segments.getIfPresent(new Key(worksheetIndex, columnIndex, segment, desiredType));
+        return cached == null ? null : cached.values;
+    }
+
+    SegmentCacheStats stats() {
+        CacheStats stats = segments.stats();
+        return new SegmentCacheStats(stats.hitCount(), stats.missCount(), stats.evictionCount(),
+                segments.size(), sizeBytes.get(), maxBytes);
+    }
+
+    void invalidateAll() {
+        segments.invalidateAll();
+    }
+
+    /**
+     * An estimate of the heap occupied by a segment's values.
+     */
+    static long estimateBytes(Object[] values) {
+        long bytes = 16 + 4L * values.length;
+        for (Object value : values) bytes += estimateBytes(value);
+        return bytes;
+    }
+
+    private static long estimateBytes(Object value) {
+        if (value instanceof Optional) return 16 + ((Optional<?>) value).map(SegmentCache::estimateBytes).orElse(0L);
+        if (value instanceof String) return 40 + 2L * ((String) value).length();
+        if (value instanceof Boolean || value == null) return 0;
+        if (value instanceof Date) return 24;
+        return 16;
+    }
+
+    private static final class Key {
+        private final int worksheetIndex;
+        private final int columnIndex;
+        private final int segment;
+        private final Type desiredType;
+
+        private Key(int worksheetIndex, int columnIndex, int segment, Type desiredType) {
+            this.worksheetIndex = worksheetIndex;
+            this.columnIndex = columnIndex;
+            this.segment = segment;
+            this.desiredType = desiredType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return worksheetIndex == other.worksheetIndex && columnIndex == other.columnIndex
+                    && segment == other.segment && desiredType.equals(other.desiredType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(worksheetIndex, columnIndex, segment, desiredType);
+        }
+    }
+
+    private static final class Segment {
+        private final Object[] values;
+        private final int weight;
+
+        private Segment(Object[] values) {
+            this.values = values;
+            this.weight = (int) Math.min(Integer.MAX_VALUE, estimateBytes(values));
+        }
+    }
+}
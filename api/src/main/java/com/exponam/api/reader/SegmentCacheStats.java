@@ -0,0 +1,77 @@
+package com.exponam.api.reader;
+
+/**
+ * A snapshot of the counters of a Reader's segment cache, for sizing the cache budget.
+ */
+public final class SegmentCacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long segmentCount;
+    private final long sizeBytes;
+    private final long maxBytes;
+
+    SegmentCacheStats(long hitCount, long missCount, long evictionCount, long segmentCount, long sizeBytes, long maxBytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.segmentCount = segmentCount;
+        this.sizeBytes = sizeBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return the number of segment lookups served from the cache
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of segment lookups that had to decode the segment
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of segments evicted to stay within the budget
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of segments currently cached
+     */
+    public long getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return the estimated size of the segments currently cached
+     */
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * @return the cache budget
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the fraction of lookups served from the cache, or 1.0 if there have been none
+     */
+    public double getHitRate() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public String toString() {
+        return String.format("hits=%d, misses=%d, evictions=%d, segments=%d, sizeBytes=%d, maxBytes=%d",
+                hitCount, missCount, evictionCount, segmentCount, sizeBytes, maxBytes);
+    }
+}
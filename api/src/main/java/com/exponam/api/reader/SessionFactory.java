@@ -0,0 +1,191 @@
+package com.exponam.api.reader;
+
+import com.exponam.core.crypto.DecryptionUtilities;
+import com.exponam.core.reader.BigReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Opens ReaderSessions over a BigReaderSource.
+ * <p>
+ * Each session is given a decryptor of its own, which it holds until it is closed, and which is dropped
+ * along with it: a decryptor is never handed from one session to another.  Nothing in core promises that a decryptor can be used by several BigReaders at once (one
+ * that wraps a Cipher cannot), and sessions are read on different threads at the same time, so no decryptor
+ * is ever installed on two sessions.  Password-based key derivation is by far the most expensive part of
+ * opening a .BIG file, so it runs once, when the factory is created: the decryptor it derives is kept, never
+ * installed, and each session is given a copy of it made by its public clone() method.  The password itself
+ * is dropped as soon as that decryptor is derived.
+ * <p>
+ * Should the decryptor not be cloneable, the first session is given the derived decryptor itself, and each
+ * further session derives one of its own, asking the password supplier for the password again and dropping
+ * it straight after.
+ */
+final class SessionFactory implements Closeable {
+    private final BigReaderSource source;
+    private final Decryption<?> decryption;
+    private final Supplier<String> passwordSupplier;
+    private final AtomicReference<ReaderSession> firstSession = new AtomicReference<>();
+
+    private SessionFactory(BigReaderSource source, Decryption<?> decryption, Supplier<String> passwordSupplier) {
+        this.source = source;
+        this.decryption = decryption;
+        // only needed if decryptors have to be derived afresh
+        this.passwordSupplier = decryption.isCloneable() ? null : passwordSupplier;
+    }
+
+    /**
+     * Creates a factory for source.  The session used to derive the decryptor is kept, and is the
+     * session returned by the first call to open().  If the factory cannot be created, source is closed.
+     */
+    static SessionFactory create(BigReaderSource source, Supplier<String> passwordSupplier)
+            throws IOException, BigReader.UnsupportedFileVersionException {
+        Objects.requireNonNull(source, "source");
+        FlightRecorderEvents.Event event = FlightRecorderEvents.READER_OPEN.begin();
+        try {
+            AtomicBoolean passwordSupplied = new AtomicBoolean();
+            SessionFactory factory = createOrThrow(source, passwordSupplier, passwordSupplied);
+            if (event != null) event.commit(source.getName(), passwordSupplied.get());
+            return factory;
+        } catch (IOException | BigReader.UnsupportedFileVersionException | RuntimeException e) {
+            try {
+                source.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private static SessionFactory createOrThrow(BigReaderSource source, Supplier<String> passwordSupplier,
+                                                AtomicBoolean passwordSupplied)
+            throws IOException, BigReader.UnsupportedFileVersionException {
+        CountingInputStream stream = new CountingInputStream(source.openStream());
+        BigReader bigReader = new BigReader(stream);
+        try {
+            String password = password(passwordSupplier);
+            passwordSupplied.set(!password.isEmpty());
+            Decryption<?> decryption = Decryption.of(
+                    DecryptionUtilities.setupDecryptionForPassword(password, bigReader).get(), BigReader::setDecryptor);
+            decryption.installCopy(bigReader);
+            SessionFactory factory = new SessionFactory(source, decryption, passwordSupplier);
+            factory.firstSession.set(new ReaderSession(bigReader, stream));
+            return factory;
+        } catch (RuntimeException e) {
+            closeAfterFailure(bigReader, e);
+            throw e;
+        }
+    }
+
+    ReaderSession open() throws IOException, BigReader.UnsupportedFileVersionException {
+        ReaderSession pending = firstSession.getAndSet(null);
+        if (pending != null) return pending;
+        return openNew();
+    }
+
+    private ReaderSession openNew() throws IOException, BigReader.UnsupportedFileVersionException {
+        CountingInputStream stream = new CountingInputStream(source.openStream());
+        BigReader bigReader = new BigReader(stream);
+        try {
+            if (!decryption.installCopy(bigReader)) bigReader.setDecryptor(
+                    DecryptionUtilities.setupDecryptionForPassword(password(passwordSupplier), bigReader).get());
+        } catch (RuntimeException e) {
+            closeAfterFailure(bigReader, e);
+            throw e;
+        }
+        return new ReaderSession(bigReader, stream);
+    }
+
+    BigReaderSource getSource() {
+        return source;
+    }
+
+    /**
+     * Closes the session kept from the creation of the factory, if it was never handed out.
+     */
+    @Override
+    public void close() throws IOException {
+        ReaderSession pending = firstSession.getAndSet(null);
+        if (pending != null) pending.close();
+    }
+
+    private static String password(Supplier<String> passwordSupplier) {
+        String password = passwordSupplier == null ? null : passwordSupplier.get();
+        return password == null ? "" : password;
+    }
+
+    private static void closeAfterFailure(BigReader bigReader, RuntimeException failure) {
+        try {
+            bigReader.close();
+        } catch (IOException suppressed) {
+            failure.addSuppressed(suppressed);
+        }
+    }
+
+    /**
+     * A derived decryptor, bound to the installer that puts it on a BigReader, so that it can be kept without
+     * naming its type.  The derived decryptor is the template for the copies installed on sessions, and is
+     * never installed itself unless it cannot be copied.
+     */
+    private static final class Decryption<D> {
+        private final D template;
+        private final BiConsumer<BigReader, D> installer;
+        private final Method clone;
+        private final AtomicBoolean templateInstalled = new AtomicBoolean();
+
+        private Decryption(D template, BiConsumer<BigReader, D> installer, Method clone) {
+            this.template = template;
+            this.installer = installer;
+            this.clone = clone;
+        }
+
+        static <D> Decryption<D> of(D template, BiConsumer<BigReader, D> installer) {
+            Method clone = null;
+            if (template instanceof Cloneable) {
+                try {
+                    clone = template.getClass().getMethod("clone");
+                    // a clone() that cannot be called, or does not return a decryptor, is no use either
+                    if (!template.getClass().isInstance(clone.invoke(template))) clone = null;
+                } catch (ReflectiveOperationException e) {
+                    // Object.clone() is protected; only a public override can be called
+                    clone = null;
+                }
+            }
+            return new Decryption<>(template, installer, clone);
+        }
+
+        boolean isCloneable() {
+            return clone != null;
+        }
+
+        /**
+         * Installs a copy of the template on bigReader, or the template itself if it cannot be copied and has
+         * not yet been installed.
+         * @return false if nothing was installed
+         */
+        boolean installCopy(BigReader bigReader) {
+            D copy = copy();
+            if (copy == null) return false;
+            installer.accept(bigReader, copy);
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private D copy() {
+            if (clone == null) return templateInstalled.compareAndSet(false, true) ? template : null;
+            try {
+                synchronized (template) {
+                    return (D) clone.invoke(template);
+                }
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to copy the decryptor", e);
+            }
+        }
+    }
+}
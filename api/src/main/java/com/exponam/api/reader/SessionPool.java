@@ -0,0 +1,132 @@
+package com.exponam.api.reader;
+
+import com.exponam.core.reader.BigReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A pool of idle ReaderSessions, so that work running on several threads at once can each read
+ * through its own stream without reopening the file (or re-deriving its key) for every task.
+ * <p>
+ * The pool also counts the references held on it: one for each borrowed session, and one for each query
+ * between enter() and exit().  close() waits for the count to reach zero, so closing a Reader never pulls
+ * a stream out from under a running query; once close() has begun, new references are refused.  Taking
+ * and dropping a reference is lock-free; the lock is only used by close() to wait.
+ */
+final class SessionPool implements Closeable {
+    private final SessionFactory factory;
+    private final Queue<ReaderSession> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger references = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition unreferenced = lock.newCondition();
+    private volatile boolean closed;
+
+    SessionPool(SessionFactory factory) {
+        this.factory = factory;
+    }
+
+    ReaderSession borrow() {
+        enter();
+        ReaderSession session = idle.poll();
+        if (session != null) return session;
+        try {
+            return factory.open();
+        } catch (IOException e) {
+            exit();
+            throw new UncheckedIOException(e);
+        } catch (BigReader.UnsupportedFileVersionException e) {
+            exit();
+            throw new IllegalStateException(e);
+        } catch (RuntimeException | Error e) {
+            exit();
+            throw e;
+        }
+    }
+
+    void release(ReaderSession session) {
+        idle.offer(session);
+        exit();
+    }
+
+    /**
+     * Closes a session that failed part way through a read, rather than returning it to the pool.
+     */
+    void discard(ReaderSession session) {
+        try {
+            session.close();
+        } catch (IOException ignored) {
+            // the failure that led to the discard is the one worth reporting
+        } finally {
+            exit();
+        }
+    }
+
+    /**
+     * Takes a reference for a query that borrows sessions one at a time, so that close() waits for the
+     * whole query rather than just the session it happens to hold.
+     */
+    void enter() {
+        references.incrementAndGet();
+        if (closed) {
+            exit();
+            throw new IllegalStateException("Reader has been closed");
+        }
+    }
+
+    void exit() {
+        if (references.decrementAndGet() == 0 && closed) {
+            lock.lock();
+            try {
+                unreferenced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Refuses new references, waits for those held to be dropped, and then closes the idle sessions.  Only
+     * the first call closes anything, though every call waits.
+     */
+    @Override
+    public void close() throws IOException {
+        boolean first;
+        lock.lock();
+        try {
+            first = !closed;
+            closed = true;
+            while (references.get() > 0) unreferenced.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
+        if (!first) return;
+
+        IOException failure = null;
+        for (ReaderSession session = idle.poll(); session != null; session = idle.poll()) {
+            try {
+                session.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        try {
+            factory.close();
+        } catch (IOException e) {
+            if (failure == null) failure = e;
+            else failure.addSuppressed(e);
+        }
+        if (failure != null) throw failure;
+    }
+}
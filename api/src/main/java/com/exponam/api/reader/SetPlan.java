@@ -0,0 +1,208 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.Filter;
+import com.exponam.api.reader.filters.IsIn;
+import com.exponam.api.reader.filters.IsNotIn;
+import com.exponam.api.reader.filters.StringIsIn;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Set-membership filters, compiled into a hash set of the column's value form so that each value is tested
+ * in constant time: a LongHashSet of longs for Long, Boolean, Date, DateTime and Time columns, a LongHashSet
+ * of the bits of doubles for Double columns, and a HashSet of strings for String columns.  Numeric sets also
+ * keep their values sorted, so that a zone can be skipped when none of them lies between its minimum and
+ * maximum.  As with comparisons, empty values satisfy neither IsIn nor IsNotIn.
+ * <p>
+ * The core reader has no set-membership filter, so these filters are always evaluated by the API, on values
+ * read for the purpose.
+ */
+abstract class SetPlan extends FilterPlan {
+    final boolean negated;
+
+    private SetPlan(boolean negated) {
+        this.negated = negated;
+    }
+
+    /**
+     * @return the compiled filter, or null if filter is not a set-membership filter
+     */
+    static FilterPlan compile(Filter filter, Reader.ColumnTypes columnType) {
+        if (filter instanceof IsIn) return compile(((IsIn) filter).getOperands(), false, columnType);
+        if (filter instanceof IsNotIn) return compile(((IsNotIn) filter).getOperands(), true, columnType);
+        if (filter instanceof StringIsIn && columnType == Reader.ColumnTypes.String)
+            return new StringSet(((StringIsIn) filter).getOperands(), ((StringIsIn) filter).getCaseSensitive(), false);
+        return null;
+    }
+
+    private static FilterPlan compile(Object[] operands, boolean negated, Reader.ColumnTypes columnType) {
+        switch (columnType) {
+            case String:
+                String[] strings = new String[operands.length];
+                for (int i = 0; i < operands.length; i++) strings[i] = String.valueOf(operands[i]);
+                return new StringSet(strings, true, negated);
+            case Double:
+                return new DoubleSet(operands, negated);
+            default:
+                return new LongSet(operands, negated, columnType);
+        }
+    }
+
+    private static BigDecimal operandOf(Object operand, Reader.ColumnTypes columnType) {
+        BigDecimal value = FilterPlan.toDecimal(columnType, operand);
+        if (value == null) throw new IllegalArgumentException(
+                String.format("Operand '%s' cannot be compared with a %s column", operand, columnType));
+        return value;
+    }
+
+    @Override
+    boolean isTestable() {
+        return true;
+    }
+
+    private static final class LongSet extends SetPlan {
+        private final LongHashSet values;
+        private final long[] sortedValues;
+
+        private LongSet(Object[] operands, boolean negated, Reader.ColumnTypes columnType) {
+            super(negated);
+            values = new LongHashSet(operands.length);
+            for (Object operand : operands) {
+                BigDecimal value = operandOf(operand, columnType);
+                // an operand that is fractional, or beyond the range of long, equals no value of the column
+                try {
+                    values.add(value.longValueExact());
+                } catch (ArithmeticException e) {
+                    // skipped
+                }
+            }
+            sortedValues = values.toSortedArray();
+        }
+
+        @Override
+        int cost() {
+            return 3;
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            if (negated) {
+                if (zone.isAllNull()) return false;
+                if (!zone.hasRange()) return true;
+                return zone.getLongMin() != zone.getLongMax() || !values.contains(zone.getLongMin());
+            }
+            if (zone.isAllNull()) return false;
+            if (!zone.hasRange()) return sortedValues.length > 0;
+            int first = Arrays.binarySearch(sortedValues, zone.getLongMin());
+            if (first >= 0) return true;
+            int insertion = -first - 1;
+            return insertion < sortedValues.length && sortedValues[insertion] <= zone.getLongMax();
+        }
+
+        @Override
+        boolean test(Object value) {
+            return value != null && values.contains(toLong(value)) != negated;
+        }
+    }
+
+    private static final class DoubleSet extends SetPlan {
+        private final LongHashSet bits;
+        private final double[] sortedValues;
+
+        private DoubleSet(Object[] operands, boolean negated) {
+            super(negated);
+            bits = new LongHashSet(operands.length);
+            for (Object operand : operands) bits.add(bitsOf(operandOf(operand, Reader.ColumnTypes.Double).doubleValue()));
+            long[] keys = bits.toSortedArray();
+            sortedValues = new double[keys.length];
+            for (int i = 0; i < keys.length; i++) sortedValues[i] = Double.longBitsToDouble(keys[i]);
+            Arrays.sort(sortedValues);
+        }
+
+        /**
+         * The key of a double in the set; -0.0 is keyed as 0.0, since the two are equal
+         */
+        private static long bitsOf(double value) {
+            return Double.doubleToLongBits(value == 0.0 ? 0.0 : value);
+        }
+
+        @Override
+        int cost() {
+            return 3;
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            if (negated) {
+                if (zone.isAllNull()) return false;
+                if (!zone.hasRange()) return true;
+                return zone.getDoubleMin() != zone.getDoubleMax() || !bits.contains(bitsOf(zone.getDoubleMin()));
+            }
+            if (zone.isAllNull()) return false;
+            if (!zone.hasRange()) return sortedValues.length > 0;
+            int first = Arrays.binarySearch(sortedValues, zone.getDoubleMin());
+            if (first >= 0) return true;
+            int insertion = -first - 1;
+            return insertion < sortedValues.length && sortedValues[insertion] <= zone.getDoubleMax();
+        }
+
+        @Override
+        boolean test(Object value) {
+            if (value == null) return false;
+            double d = ((Number) value).doubleValue();
+            return Double.isNaN(d) ? negated : bits.contains(bitsOf(d)) != negated;
+        }
+    }
+
+    private static final class StringSet extends SetPlan {
+        private final Set<String> values;
+        private final boolean caseSensitive;
+
+        private StringSet(String[] operands, boolean caseSensitive, boolean negated) {
+            super(negated);
+            this.caseSensitive = caseSensitive;
+            this.values = new HashSet<>(operands.length * 2);
+            for (String operand : operands) values.add(caseSensitive ? operand : fold(operand));
+        }
+
+        /**
+         * A form of the string under which strings that are equalsIgnoreCase are equal.  The string itself is
+         * returned, without allocating, when it is already in that form.
+         */
+        static String fold(String string) {
+            int length = string.length();
+            int i = 0;
+            while (i < length) {
+                char c = string.charAt(i);
+                if (c >= 0x80 || (c >= 'A' && c <= 'Z')) break;
+                i++;
+            }
+            if (i == length) return string;
+
+            char[] folded = string.toCharArray();
+            for (; i < length; i++)
+                folded[i] = Character.toLowerCase(Character.toUpperCase(folded[i]));
+            return new String(folded);
+        }
+
+        @Override
+        int cost() {
+            return 5;
+        }
+
+        @Override
+        boolean canMatch(ColumnZone zone) {
+            return !zone.isAllNull() && (negated || !values.isEmpty()) && matchesDictionary(zone);
+        }
+
+        @Override
+        boolean test(Object value) {
+            if (value == null) return false;
+            String string = (String) value;
+            return values.contains(caseSensitive ? string : fold(string)) != negated;
+        }
+    }
+}
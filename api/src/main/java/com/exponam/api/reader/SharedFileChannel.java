@@ -0,0 +1,74 @@
+package com.exponam.api.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A FileChannel shared by every stream of a source, re-opened when an interrupt closes it.
+ * <p>
+ * A FileChannel is interruptible: interrupting a thread that is reading from it closes the channel, for
+ * every thread.  Without this class, one interrupted read would leave the Reader unable to read from the
+ * file at all.  The read of the interrupted thread still fails, with ClosedByInterruptException.  Reads
+ * that other threads had in flight on the closed channel are retried on the new one.
+ */
+final class SharedFileChannel implements Closeable {
+    private final Path path;
+    private volatile FileChannel channel;
+    private volatile boolean closed;
+
+    SharedFileChannel(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    long size() throws IOException {
+        while (true) {
+            FileChannel current = channel;
+            try {
+                return current.size();
+            } catch (ClosedChannelException e) {
+                reopen(current, e);
+            }
+        }
+    }
+
+    /**
+     * Reads into target from position, as FileChannel.read does.
+     */
+    int read(ByteBuffer target, long position) throws IOException {
+        while (true) {
+            FileChannel current = channel;
+            try {
+                return current.read(target, position);
+            } catch (ClosedByInterruptException e) {
+                // this thread was interrupted: its read fails, but the channel is restored for the others
+                reopen(current, e);
+                throw e;
+            } catch (ClosedChannelException e) {
+                // another thread was interrupted while this one was reading
+                reopen(current, e);
+            }
+        }
+    }
+
+    /**
+     * Replaces stale with a newly opened channel, unless another thread already has, or the source has been
+     * closed, in which case failure is thrown.
+     */
+    private synchronized void reopen(FileChannel stale, ClosedChannelException failure) throws IOException {
+        if (closed) throw failure;
+        if (channel == stale) channel = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+}
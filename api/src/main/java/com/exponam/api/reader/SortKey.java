@@ -0,0 +1,70 @@
+package com.exponam.api.reader;
+
+/**
+ * A column by which Reader.getTopRows orders rows, ascending or descending, with empty values sorted either
+ * before or after every other value, whatever the direction.  Empty values sort last unless nullsFirst()
+ * is used.
+ * <p>
+ * Long, Date, DateTime and Time columns are ordered by their long values (the values that getValue returns
+ * when Long.class is requested), Double columns as by Double.compare, Boolean columns with false before
+ * true, and String columns by String.compareTo on their formatted values.
+ */
+public final class SortKey {
+    private final int columnIndex;
+    private final boolean descending;
+    private final boolean nullsFirst;
+
+    private SortKey(int columnIndex, boolean descending, boolean nullsFirst) {
+        if (columnIndex < 0) throw new IllegalArgumentException("Column index must be >= 0");
+        this.columnIndex = columnIndex;
+        this.descending = descending;
+        this.nullsFirst = nullsFirst;
+    }
+
+    /**
+     * @param columnIndex the zero-based column index
+     * @return a key ordering rows by ascending values of the column
+     */
+    public static SortKey ascending(int columnIndex) {
+        return new SortKey(columnIndex, false, false);
+    }
+
+    /**
+     * @param columnIndex the zero-based column index
+     * @return a key ordering rows by descending values of the column
+     */
+    public static SortKey descending(int columnIndex) {
+        return new SortKey(columnIndex, true, false);
+    }
+
+    /**
+     * @return a copy of this key that sorts empty values before every other value
+     */
+    public SortKey nullsFirst() {
+        return new SortKey(columnIndex, descending, true);
+    }
+
+    /**
+     * @return a copy of this key that sorts empty values after every other value
+     */
+    public SortKey nullsLast() {
+        return new SortKey(columnIndex, descending, false);
+    }
+
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    public boolean getDescending() {
+        return descending;
+    }
+
+    public boolean getNullsFirst() {
+        return nullsFirst;
+    }
+
+    public String toString() {
+        return String.format("columnIndex=%d, descending=%s, nullsFirst=%s", columnIndex,
+                Boolean.valueOf(descending).toString(), Boolean.valueOf(nullsFirst).toString());
+    }
+}
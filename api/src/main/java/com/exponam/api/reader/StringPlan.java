@@ -0,0 +1,178 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.*;
+
+/**
+ * A string filter compiled for a String column.  Case-insensitive filters compare characters in place,
+ * through SubstringSearch, String.regionMatches and compareToIgnoreCase, rather than lower-casing every value.
+ */
+final class StringPlan extends FilterPlan {
+    enum Kind {
+        Contains,
+        DoesNotContain,
+        StartsWith,
+        DoesNotStartWith,
+        EndsWith,
+        DoesNotEndWith,
+        Equal,
+        NotEqual,
+        GreaterThan,
+        GreaterThanOrEqual,
+        LessThan,
+        LessThanOrEqual
+    }
+
+    private final Kind kind;
+    private final boolean caseSensitive;
+    private final String operand;
+    private final SubstringSearch search;
+
+    private StringPlan(Kind kind, boolean caseSensitive, String operand) {
+        this.kind = kind;
+        this.caseSensitive = caseSensitive;
+        this.operand = operand;
+        this.search = kind == Kind.Contains || kind == Kind.DoesNotContain
+                ? SubstringSearch.of(operand, caseSensitive) : null;
+    }
+
+    /**
+     * @return the compiled filter, or null if filter is not a string filter
+     */
+    static StringPlan compile(Filter filter) {
+        if (filter instanceof StringContains)
+            return new StringPlan(Kind.Contains, ((StringContains) filter).getCaseSensitive(), ((StringContains) filter).getOperand());
+        if (filter instanceof StringDoesNotContain)
+            return new StringPlan(Kind.DoesNotContain, ((StringDoesNotContain) filter).getCaseSensitive(), ((StringDoesNotContain) filter).getOperand());
+        if (filter instanceof StringStartsWith)
+            return new StringPlan(Kind.StartsWith, ((StringStartsWith) filter).getCaseSensitive(), ((StringStartsWith) filter).getOperand());
+        if (filter instanceof StringDoesNotStartWith)
+            return new StringPlan(Kind.DoesNotStartWith, ((StringDoesNotStartWith) filter).getCaseSensitive(), ((StringDoesNotStartWith) filter).getOperand());
+        if (filter instanceof StringEndsWith)
+            return new StringPlan(Kind.EndsWith, ((StringEndsWith) filter).getCaseSensitive(), ((StringEndsWith) filter).getOperand());
+        if (filter instanceof StringDoesNotEndWith)
+            return new StringPlan(Kind.DoesNotEndWith, ((StringDoesNotEndWith) filter).getCaseSensitive(), ((StringDoesNotEndWith) filter).getOperand());
+        if (filter instanceof StringIsEqual)
+            return new StringPlan(Kind.Equal, ((StringIsEqual) filter).getCaseSensitive(), ((StringIsEqual) filter).getOperand());
+        if (filter instanceof StringIsNotEqual)
+            return new StringPlan(Kind.NotEqual, ((StringIsNotEqual) filter).getCaseSensitive(), ((StringIsNotEqual) filter).getOperand());
+        if (filter instanceof StringIsGreaterThan)
+            return new StringPlan(Kind.GreaterThan, ((StringIsGreaterThan) filter).getCaseSensitive(), ((StringIsGreaterThan) filter).getOperand());
+        if (filter instanceof StringIsGreaterThanOrEqual)
+            return new StringPlan(Kind.GreaterThanOrEqual, ((StringIsGreaterThanOrEqual) filter).getCaseSensitive(), ((StringIsGreaterThanOrEqual) filter).getOperand());
+        if (filter instanceof StringIsLessThan)
+            return new StringPlan(Kind.LessThan, ((StringIsLessThan) filter).getCaseSensitive(), ((StringIsLessThan) filter).getOperand());
+        if (filter instanceof StringIsLessThanOrEqual)
+            return new StringPlan(Kind.LessThanOrEqual, ((StringIsLessThanOrEqual) filter).getCaseSensitive(), ((StringIsLessThanOrEqual) filter).getOperand());
+        return null;
+    }
+
+    @Override
+    int cost() {
+        switch (kind) {
+            case Contains:
+            case DoesNotContain:
+                return 20;
+            case Equal:
+            case NotEqual:
+                return 4;
+            default:
+                return 6;
+        }
+    }
+
+    @Override
+    boolean canMatch(ColumnZone zone) {
+        // a zone holding empty values is kept for the negative filters, however the core reader treats them
+        if (isNegative() && zone.getNullCount() > 0) return true;
+        return !zone.isAllNull() && matchesDictionary(zone);
+    }
+
+    /**
+     * @return true for the filters that a value satisfies by not matching the operand
+     */
+    boolean isNegative() {
+        return kind == Kind.DoesNotContain || kind == Kind.DoesNotStartWith || kind == Kind.DoesNotEndWith
+                || kind == Kind.NotEqual;
+    }
+
+    @Override
+    boolean test(Object value) {
+        if (value == null) return false;
+        String string = (String) value;
+        switch (kind) {
+            case Contains:
+                return contains(string);
+            case DoesNotContain:
+                return !contains(string);
+            case StartsWith:
+                return startsWith(string);
+            case DoesNotStartWith:
+                return !startsWith(string);
+            case EndsWith:
+                return endsWith(string);
+            case DoesNotEndWith:
+                return !endsWith(string);
+            case Equal:
+                return caseSensitive ? string.equals(operand) : string.equalsIgnoreCase(operand);
+            case NotEqual:
+                return !(caseSensitive ? string.equals(operand) : string.equalsIgnoreCase(operand));
+            case GreaterThan:
+                return compare(string) > 0;
+            case GreaterThanOrEqual:
+                return compare(string) >= 0;
+            case LessThan:
+                return compare(string) < 0;
+            default:
+                return compare(string) <= 0;
+        }
+    }
+
+    @Override
+    boolean isTestable() {
+        return true;
+    }
+
+    @Override
+    KeyRange keyRange() {
+        if (!caseSensitive) return null;
+        switch (kind) {
+            case Equal:
+                return KeyRange.of(Comparison.Equal, operand);
+            case GreaterThan:
+                return KeyRange.of(Comparison.GreaterThan, operand);
+            case GreaterThanOrEqual:
+                return KeyRange.of(Comparison.GreaterThanOrEqual, operand);
+            case LessThan:
+                return KeyRange.of(Comparison.LessThan, operand);
+            case LessThanOrEqual:
+                return KeyRange.of(Comparison.LessThanOrEqual, operand);
+            case StartsWith: {
+                // the strings starting with "abc" are those from "abc" up to, but excluding, "abd"
+                int last = operand.length() - 1;
+                if (last < 0 || operand.charAt(last) == Character.MAX_VALUE) return null;
+                String next = operand.substring(0, last) + (char) (operand.charAt(last) + 1);
+                return KeyRange.of(Comparison.GreaterThanOrEqual, operand)
+                        .intersect(KeyRange.of(Comparison.LessThan, next));
+            }
+            default:
+                return null;
+        }
+    }
+
+    private boolean contains(String string) {
+        return search.isFoundIn(string);
+    }
+
+    private boolean startsWith(String string) {
+        return string.regionMatches(!caseSensitive, 0, operand, 0, operand.length());
+    }
+
+    private boolean endsWith(String string) {
+        int offset = string.length() - operand.length();
+        return offset >= 0 && string.regionMatches(!caseSensitive, offset, operand, 0, operand.length());
+    }
+
+    private int compare(String string) {
+        return caseSensitive ? string.compareTo(operand) : string.compareToIgnoreCase(operand);
+    }
+}
@@ -0,0 +1,90 @@
+package com.exponam.api.reader;
+
+import java.util.Arrays;
+
+/**
+ * Finds a fixed string within values, without allocating.  Case-sensitive searches use String.indexOf.
+ * Case-insensitive searches for an ASCII string use Boyer-Moore-Horspool over folded characters, comparing
+ * in place rather than lower-casing each value; other case-insensitive searches fall back to
+ * String.regionMatches at each offset.  Characters are folded as String.equalsIgnoreCase folds them, so
+ * that a match here is a match there.
+ */
+final class SubstringSearch {
+    private static final int ASCII = 128;
+
+    private final String needle;
+    private final boolean caseSensitive;
+    private final char[] folded;
+    private final int[] shifts;
+
+    private SubstringSearch(String needle, boolean caseSensitive) {
+        this.needle = needle;
+        this.caseSensitive = caseSensitive;
+        if (caseSensitive || !isAscii(needle) || needle.isEmpty()) {
+            this.folded = null;
+            this.shifts = null;
+            return;
+        }
+
+        int length = needle.length();
+        this.folded = new char[length];
+        for (int i = 0; i < length; i++) folded[i] = fold(needle.charAt(i));
+        this.shifts = new int[ASCII];
+        Arrays.fill(shifts, length);
+        for (int i = 0; i < length - 1; i++) shifts[folded[i]] = length - 1 - i;
+    }
+
+    static SubstringSearch of(String needle, boolean caseSensitive) {
+        return new SubstringSearch(needle, caseSensitive);
+    }
+
+    /**
+     * @return the offset of the first occurrence at or after from, or -1 if there is none
+     */
+    int indexIn(String haystack, int from) {
+        if (caseSensitive) return haystack.indexOf(needle, from);
+        if (folded == null) return regionSearch(haystack, from);
+
+        int length = folded.length;
+        int last = length - 1;
+        int offset = Math.max(from, 0);
+        int end = haystack.length() - length;
+        while (offset <= end) {
+            int i = last;
+            while (fold(haystack.charAt(offset + i)) == folded[i])
+                if (i-- == 0) return offset;
+            char next = fold(haystack.charAt(offset + last));
+            offset += next < ASCII ? shifts[next] : length;
+        }
+        return -1;
+    }
+
+    boolean isFoundIn(String haystack) {
+        return indexIn(haystack, 0) >= 0;
+    }
+
+    int length() {
+        return needle.length();
+    }
+
+    private int regionSearch(String haystack, int from) {
+        int length = needle.length();
+        int end = haystack.length() - length;
+        for (int offset = Math.max(from, 0); offset <= end; offset++)
+            if (haystack.regionMatches(true, offset, needle, 0, length)) return offset;
+        return -1;
+    }
+
+    /**
+     * The character as String.equalsIgnoreCase compares it; ASCII letters are folded without a table lookup.
+     */
+    private static char fold(char c) {
+        if (c < ASCII) return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static boolean isAscii(String string) {
+        for (int i = 0; i < string.length(); i++) if (string.charAt(i) >= ASCII) return false;
+        return true;
+    }
+}
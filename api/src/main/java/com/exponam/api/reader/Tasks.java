@@ -0,0 +1,40 @@
+package com.exponam.api.reader;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Helpers for waiting on work submitted to a caller-supplied executor.
+ */
+final class Tasks {
+    private Tasks() {
+    }
+
+    /**
+     * Waits for future, rethrowing the failure of the task itself rather than an ExecutionException.
+     */
+    static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for rows", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            if (cause instanceof IOException) throw new UncheckedIOException((IOException) cause);
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Cancels the tasks that have not started.  Running tasks are left to finish rather than interrupted, since
+     * an interrupt during a read would close the FileChannel that every session of a Reader shares.
+     */
+    static void cancelAll(Iterable<? extends Future<?>> futures) {
+        for (Future<?> future : futures) future.cancel(false);
+    }
+}
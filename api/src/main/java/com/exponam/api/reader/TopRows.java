@@ -0,0 +1,214 @@
+package com.exponam.api.reader;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A bounded heap of the best rows seen so far, by a list of sort keys, for Reader.getTopRows.  Only the
+ * sort key values of each row are kept, in primitive arrays indexed by slot: Long, Date, DateTime, Time,
+ * Boolean and Double keys as longs (doubles re-encoded so that their long order is that of Double.compare),
+ * String keys as Strings.  Ties are broken by row index, so the result is deterministic.
+ * <p>
+ * The heap holds at most limit rows, with the worst of them at the root.  Once it is full, each new row is
+ * written to the one spare slot and compared with the root, and only replaces it if the new row is better,
+ * so rows that do not make the cut cost a comparison and no allocation.  One heap is filled per partition,
+ * on that partition's thread, and the heaps are then merged.
+ */
+final class TopRows implements BiConsumer<Integer, Function<Integer, Object>> {
+    private static final int INITIAL_SLOTS = 64;
+
+    private final int[] columns;
+    private final Reader.ColumnTypes[] types;
+    private final boolean[] descending;
+    private final boolean[] nullsFirst;
+    private final int limit;
+    private final int width;
+    private int[] rowIndexes;
+    private long[] longs;
+    private String[] strings;
+    private boolean[] nulls;
+    private int[] heap;
+    private int size;
+    private int spare = -1;
+
+    TopRows(List<SortKey> sortKeys, Schema.Worksheet worksheet, int limit) {
+        this.width = sortKeys.size();
+        this.columns = new int[width];
+        this.types = new Reader.ColumnTypes[width];
+        this.descending = new boolean[width];
+        this.nullsFirst = new boolean[width];
+        boolean anyString = false;
+        for (int k = 0; k < width; k++) {
+            SortKey sortKey = sortKeys.get(k);
+            columns[k] = sortKey.getColumnIndex();
+            types[k] = worksheet.getColumn(sortKey.getColumnIndex()).getType();
+            descending[k] = sortKey.getDescending();
+            nullsFirst[k] = sortKey.getNullsFirst();
+            anyString |= types[k] == Reader.ColumnTypes.String;
+        }
+        this.limit = limit;
+        int slots = (int) Math.min(INITIAL_SLOTS, limit + 1L);
+        this.rowIndexes = new int[slots];
+        this.longs = new long[slots * width];
+        this.strings = anyString ? new String[slots * width] : null;
+        this.nulls = new boolean[slots * width];
+        this.heap = new int[slots];
+    }
+
+    @Override
+    public void accept(Integer rowIndex, Function<Integer, Object> row) {
+        if (size < limit) {
+            int slot = size;
+            ensureSlot(slot);
+            write(slot, rowIndex, row);
+            heap[size++] = slot;
+            siftUp(size - 1);
+            return;
+        }
+        if (spare < 0) {
+            spare = size;
+            ensureSlot(spare);
+        }
+        write(spare, rowIndex, row);
+        offerSpare();
+    }
+
+    /**
+     * Adds the rows of other, a heap over the same sort keys, to this heap.
+     */
+    void addAll(TopRows other) {
+        for (int i = 0; i < other.size; i++) {
+            int from = other.heap[i];
+            int slot;
+            if (size < limit) {
+                slot = size;
+                ensureSlot(slot);
+            } else {
+                if (spare < 0) {
+                    spare = size;
+                    ensureSlot(spare);
+                }
+                slot = spare;
+            }
+            rowIndexes[slot] = other.rowIndexes[from];
+            System.arraycopy(other.longs, from * width, longs, slot * width, width);
+            System.arraycopy(other.nulls, from * width, nulls, slot * width, width);
+            if (strings != null) System.arraycopy(other.strings, from * width, strings, slot * width, width);
+            if (size < limit) {
+                heap[size++] = slot;
+                siftUp(size - 1);
+            } else {
+                offerSpare();
+            }
+        }
+    }
+
+    /**
+     * @return the row indices of the rows held, best first
+     */
+    int[] sortedRowIndexes() {
+        Integer[] slots = new Integer[size];
+        for (int i = 0; i < size; i++) slots[i] = heap[i];
+        Arrays.sort(slots, this::compare);
+        int[] sorted = new int[size];
+        for (int i = 0; i < size; i++) sorted[i] = rowIndexes[slots[i]];
+        return sorted;
+    }
+
+    private void offerSpare() {
+        if (compare(spare, heap[0]) < 0) {
+            int evicted = heap[0];
+            heap[0] = spare;
+            spare = evicted;
+            siftDown(0);
+        }
+    }
+
+    private void write(int slot, int rowIndex, Function<Integer, Object> row) {
+        rowIndexes[slot] = rowIndex;
+        int base = slot * width;
+        for (int k = 0; k < width; k++) {
+            Object value = row.apply(columns[k]);
+            nulls[base + k] = value == null;
+            if (value == null) {
+                if (strings != null) strings[base + k] = null;
+                continue;
+            }
+            switch (types[k]) {
+                case Boolean:
+                    longs[base + k] = (Boolean) value ? 1 : 0;
+                    break;
+                case Double:
+                    long bits = Double.doubleToLongBits((Double) value);
+                    longs[base + k] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+                    break;
+                case String:
+                    strings[base + k] = (String) value;
+                    break;
+                default:
+                    longs[base + k] = (Long) value;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Negative if the row in slot a sorts before the row in slot b.
+     */
+    private int compare(int a, int b) {
+        int baseA = a * width;
+        int baseB = b * width;
+        for (int k = 0; k < width; k++) {
+            boolean nullA = nulls[baseA + k];
+            boolean nullB = nulls[baseB + k];
+            int order;
+            if (nullA || nullB) {
+                if (nullA == nullB) continue;
+                order = nullA == nullsFirst[k] ? -1 : 1;
+            } else {
+                order = types[k] == Reader.ColumnTypes.String
+                        ? strings[baseA + k].compareTo(strings[baseB + k])
+                        : Long.compare(longs[baseA + k], longs[baseB + k]);
+                if (descending[k]) order = -order;
+            }
+            if (order != 0) return order;
+        }
+        return Integer.compare(rowIndexes[a], rowIndexes[b]);
+    }
+
+    private void siftUp(int position) {
+        int slot = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (compare(slot, heap[parent]) <= 0) break;
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = slot;
+    }
+
+    private void siftDown(int position) {
+        int slot = heap[position];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            if (child + 1 < size && compare(heap[child + 1], heap[child]) > 0) child++;
+            if (compare(slot, heap[child]) >= 0) break;
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = slot;
+    }
+
+    private void ensureSlot(int slot) {
+        if (slot < rowIndexes.length) return;
+        int slots = (int) Math.min(Math.max(slot + 1L, 2L * rowIndexes.length), limit + 1L);
+        rowIndexes = Arrays.copyOf(rowIndexes, slots);
+        longs = Arrays.copyOf(longs, slots * width);
+        if (strings != null) strings = Arrays.copyOf(strings, slots * width);
+        nulls = Arrays.copyOf(nulls, slots * width);
+        heap = Arrays.copyOf(heap, slots);
+    }
+}
@@ -0,0 +1,43 @@
+package com.exponam.api.reader;
+
+/**
+ * A snapshot of the counters of a Reader's zone maps: how many zones have had statistics computed, and how
+ * many partitions of filtered queries were read or skipped because of them.
+ */
+public final class ZoneMapStats {
+    private final long zonesComputed;
+    private final long partitionsScanned;
+    private final long partitionsSkipped;
+
+    ZoneMapStats(long zonesComputed, long partitionsScanned, long partitionsSkipped) {
+        this.zonesComputed = zonesComputed;
+        this.partitionsScanned = partitionsScanned;
+        this.partitionsSkipped = partitionsSkipped;
+    }
+
+    /**
+     * @return the number of column zones whose statistics have been computed
+     */
+    public long getZonesComputed() {
+        return zonesComputed;
+    }
+
+    /**
+     * @return the number of partitions of filtered queries that had to be read
+     */
+    public long getPartitionsScanned() {
+        return partitionsScanned;
+    }
+
+    /**
+     * @return the number of partitions of filtered queries skipped because no row could match
+     */
+    public long getPartitionsSkipped() {
+        return partitionsSkipped;
+    }
+
+    public String toString() {
+        return String.format("zonesComputed=%d, partitionsScanned=%d, partitionsSkipped=%d",
+                zonesComputed, partitionsScanned, partitionsSkipped);
+    }
+}
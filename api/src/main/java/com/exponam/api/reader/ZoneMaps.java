@@ -0,0 +1,124 @@
+package com.exponam.api.reader;
+
+import com.exponam.core.reader.QueryColumnAttributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lazily computed per-zone column statistics, used to skip the partitions of a filtered query in which no
+ * row can match.  A zone is the set of rows of one partition, so zone statistics line up with the partitions
+ * that queries are split into.  The statistics of a zone are computed the first time a filtered query needs
+ * them, with a pass over that column's values in the zone, and are kept for the life of the Reader.
+ */
+final class ZoneMaps {
+    private final SessionPool sessions;
+    private final Schema schema;
+    private final boolean dictionaries;
+    private final Map<Key, ColumnZone> zones = new ConcurrentHashMap<>();
+    private final AtomicLong zonesComputed = new AtomicLong();
+    private final AtomicLong partitionsScanned = new AtomicLong();
+    private final AtomicLong partitionsSkipped = new AtomicLong();
+
+    /**
+     * @param dictionaries whether the zones of String columns keep their dictionaries
+     */
+    ZoneMaps(SessionPool sessions, Schema schema, boolean dictionaries) {
+        this.sessions = sessions;
+        this.schema = schema;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * The partitions in which some row could satisfy every compiled column filter of filterPlans.
+     */
+    List<RowRange> prune(int worksheetIndex, List<RowRange> partitions, Map<Integer, FilterPlan> filterPlans) {
+        List<RowRange> survivors = new ArrayList<>(partitions.size());
+        for (RowRange partition : partitions) {
+            if (canMatch(worksheetIndex, partition, filterPlans)) {
+                survivors.add(partition);
+                partitionsScanned.incrementAndGet();
+            } else {
+                partitionsSkipped.incrementAndGet();
+            }
+        }
+        return survivors;
+    }
+
+    ZoneMapStats stats() {
+        return new ZoneMapStats(zonesComputed.get(), partitionsScanned.get(), partitionsSkipped.get());
+    }
+
+    private boolean canMatch(int worksheetIndex, RowRange partition, Map<Integer, FilterPlan> filterPlans) {
+        for (Map.Entry<Integer, FilterPlan> entry : filterPlans.entrySet())
+            if (!entry.getValue().canMatch(zone(worksheetIndex, entry.getKey(), partition))) return false;
+        return true;
+    }
+
+    ColumnZone zone(int worksheetIndex, int columnIndex, RowRange partition) {
+        int zoneIndex = partition.getStartRow() / RowRange.PARTITION_ROWS;
+        Key key = new Key(worksheetIndex, columnIndex, zoneIndex);
+        ColumnZone zone = zones.get(key);
+        if (zone == null) {
+            zone = compute(worksheetIndex, columnIndex, zoneIndex);
+            ColumnZone raced = zones.putIfAbsent(key, zone);
+            if (raced != null) zone = raced;
+            else zonesComputed.incrementAndGet();
+        }
+        return zone;
+    }
+
+    private ColumnZone compute(int worksheetIndex, int columnIndex, int zoneIndex) {
+        Schema.Worksheet worksheet = schema.getWorksheet(worksheetIndex);
+        Reader.ColumnTypes columnType = worksheet.getColumn(columnIndex).getType();
+        int firstRow = zoneIndex * RowRange.PARTITION_ROWS;
+        int lastRow = (int) Math.min((long) firstRow + RowRange.PARTITION_ROWS, worksheet.getRowCount()) - 1;
+        ColumnZone zone = new ColumnZone(columnType, lastRow - firstRow + 1, dictionaries);
+
+        Map<Integer, QueryColumnAttributes> column = Collections.singletonMap(columnIndex,
+                new QueryColumnAttributes(true, FilterPlan.valueTypeFor(columnType), Optional.empty()));
+        ReaderSession session = sessions.borrow();
+        boolean completed = false;
+        try {
+            session.getMarshaller().fetchRows(worksheetIndex, firstRow, lastRow, column,
+                    (rowIndex, row) -> zone.add(row.apply(columnIndex)));
+            completed = true;
+        } finally {
+            if (completed) sessions.release(session);
+            else sessions.discard(session);
+        }
+        return zone;
+    }
+
+    private static final class Key {
+        private final int worksheetIndex;
+        private final int columnIndex;
+        private final int zoneIndex;
+
+        private Key(int worksheetIndex, int columnIndex, int zoneIndex) {
+            this.worksheetIndex = worksheetIndex;
+            this.columnIndex = columnIndex;
+            this.zoneIndex = zoneIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return worksheetIndex == other.worksheetIndex && columnIndex == other.columnIndex
+                    && zoneIndex == other.zoneIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(worksheetIndex, columnIndex, zoneIndex);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.exponam.api.reader.filters;
+
+public final class AllOf implements RowPredicate {
+    private final RowPredicate[] predicates;
+
+    public static RowPredicate of(RowPredicate ... predicates) {
+        return new AllOf(predicates);
+    }
+
+    private AllOf(RowPredicate[] predicates) {
+        this.predicates = predicates;
+    }
+
+    public RowPredicate[] getPredicates() {
+        return predicates;
+    }
+}
@@ -0,0 +1,17 @@
+package com.exponam.api.reader.filters;
+
+public final class AnyOf implements RowPredicate {
+    private final RowPredicate[] predicates;
+
+    public static RowPredicate of(RowPredicate ... predicates) {
+        return new AnyOf(predicates);
+    }
+
+    private AnyOf(RowPredicate[] predicates) {
+        this.predicates = predicates;
+    }
+
+    public RowPredicate[] getPredicates() {
+        return predicates;
+    }
+}
@@ -0,0 +1,25 @@
+package com.exponam.api.reader.filters;
+
+import java.util.Objects;
+
+public final class ColumnMatches implements RowPredicate {
+    private final int columnIndex;
+    private final Filter filter;
+
+    public static RowPredicate of(int columnIndex, Filter filter) {
+        return new ColumnMatches(columnIndex, filter);
+    }
+
+    private ColumnMatches(int columnIndex, Filter filter) {
+        this.columnIndex = columnIndex;
+        this.filter = Objects.requireNonNull(filter, "filter");
+    }
+
+    public int getColumnIndex() {
+        return columnIndex;
+    }
+
+    public Filter getFilter() {
+        return filter;
+    }
+}
@@ -3,17 +3,17 @@ package com.exponam.api.reader.filters;
 import java.util.Objects;
 
 public final class IsEqual implements Filter {
-    private final String operand;
+    private final Object operand;
 
-    public static Filter of(String operand) {
+    public static Filter of(Object operand) {
         return new IsEqual(operand);
     }
 
-    private IsEqual(String operand) {
+    private IsEqual(Object operand) {
         this.operand = Objects.requireNonNull(operand, "operand");
     }
 
-    public String getOperand() {
+    public Object getOperand() {
         return operand;
     }
 }
@@ -0,0 +1,25 @@
+package com.exponam.api.reader.filters;
+
+import java.util.Collection;
+import java.util.Objects;
+
+public final class IsIn implements Filter {
+    private final Object[] operands;
+
+    public static Filter of(Object ... operands) {
+        return new IsIn(operands.clone());
+    }
+
+    public static Filter of(Collection<?> operands) {
+        return new IsIn(operands.toArray());
+    }
+
+    private IsIn(Object[] operands) {
+        for (Object operand : operands) Objects.requireNonNull(operand, "operand");
+        this.operands = operands;
+    }
+
+    public Object[] getOperands() {
+        return operands;
+    }
+}
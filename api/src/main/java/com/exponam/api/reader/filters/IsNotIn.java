@@ -0,0 +1,25 @@
+package com.exponam.api.reader.filters;
+
+import java.util.Collection;
+import java.util.Objects;
+
+public final class IsNotIn implements Filter {
+    private final Object[] operands;
+
+    public static Filter of(Object ... operands) {
+        return new IsNotIn(operands.clone());
+    }
+
+    public static Filter of(Collection<?> operands) {
+        return new IsNotIn(operands.toArray());
+    }
+
+    private IsNotIn(Object[] operands) {
+        for (Object operand : operands) Objects.requireNonNull(operand, "operand");
+        this.operands = operands;
+    }
+
+    public Object[] getOperands() {
+        return operands;
+    }
+}
@@ -0,0 +1,8 @@
+package com.exponam.api.reader.filters;
+
+/**
+ * A condition on the values of one or more columns of a row.  A RowPredicate is built from ColumnMatches,
+ * which applies a Filter to one column, combined with AllOf and AnyOf.
+ */
+public interface RowPredicate {
+}
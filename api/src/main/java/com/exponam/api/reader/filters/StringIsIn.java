@@ -0,0 +1,27 @@
+package com.exponam.api.reader.filters;
+
+import java.util.Collection;
+import java.util.Objects;
+
+public final class StringIsIn implements Filter {
+    private final String[] operands;
+    private final boolean caseSensitive;
+
+    public static Filter of(Collection<String> operands, boolean caseSensitive) {
+        return new StringIsIn(operands.toArray(new String[0]), caseSensitive);
+    }
+
+    private StringIsIn(String[] operands, boolean caseSensitive) {
+        for (String operand : operands) Objects.requireNonNull(operand, "operand");
+        this.operands = operands;
+        this.caseSensitive = caseSensitive;
+    }
+
+    public String[] getOperands() {
+        return operands;
+    }
+
+    public boolean getCaseSensitive() {
+        return caseSensitive;
+    }
+}
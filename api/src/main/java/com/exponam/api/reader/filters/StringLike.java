@@ -0,0 +1,25 @@
+package com.exponam.api.reader.filters;
+
+import java.util.Objects;
+
+public final class StringLike implements Filter {
+    private final String pattern;
+    private final boolean caseSensitive;
+
+    public static Filter of(String pattern, boolean caseSensitive) {
+        return new StringLike(pattern, caseSensitive);
+    }
+
+    private StringLike(String pattern, boolean caseSensitive) {
+        this.pattern = Objects.requireNonNull(pattern, "pattern");
+        this.caseSensitive = caseSensitive;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public boolean getCaseSensitive() {
+        return caseSensitive;
+    }
+}
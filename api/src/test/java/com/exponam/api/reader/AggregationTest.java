@@ -0,0 +1,62 @@
+package com.exponam.api.reader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class AggregationTest {
+    private static final Schema.Worksheet WORKSHEET = new Schema.Worksheet(0, "sheet", 0, Arrays.asList(
+            new Schema.Column(0, "name", Reader.ColumnTypes.String),
+            new Schema.Column(1, "amount", Reader.ColumnTypes.Long)));
+
+    @Test
+    public void groupsComeOutInTheOrderInWhichTheyFirstOccur() {
+        Random random = new Random(8);
+        Aggregation aggregation = new Aggregation(WORKSHEET, Collections.singletonList(0),
+                Arrays.asList(Aggregate.count(), Aggregate.sum(1)));
+        List<Aggregation.Partial> partials = new ArrayList<>();
+        Map<Object, long[]> expected = new LinkedHashMap<>();
+        int rowIndex = 0;
+        for (int partition = 0; partition < 4; partition++) {
+            Aggregation.Partial partial = aggregation.newPartial();
+            for (int row = 0; row < 500; row++, rowIndex++) {
+                // enough distinct names that hash order and first-occurrence order differ
+                String name = random.nextInt(20) == 0 ? null : "name-" + random.nextInt(300);
+                long amount = random.nextInt(100);
+                partial.accept(rowIndex, columnIndex -> columnIndex == 0 ? name : amount);
+                long[] totals = expected.computeIfAbsent(name, ignored -> new long[2]);
+                totals[0]++;
+                totals[1] += amount;
+            }
+            partials.add(partial);
+        }
+
+        List<AggregateResult.Group> groups = aggregation.finish(partials).getGroups();
+        List<Object> keys = new ArrayList<>();
+        for (AggregateResult.Group group : groups) {
+            Object key = group.getKey().get(0);
+            keys.add(key);
+            assertEquals(expected.get(key)[0], group.getValue(0).longValue());
+            assertEquals(expected.get(key)[1], group.getValue(1).longValue());
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), keys);
+    }
+
+    @Test
+    public void ungroupedAggregatesOfNoRowsGiveOneGroup() {
+        Aggregation aggregation = new Aggregation(WORKSHEET, Collections.emptyList(),
+                Collections.singletonList(Aggregate.count()));
+        List<AggregateResult.Group> groups = aggregation.finish(Collections.singletonList(aggregation.newPartial()))
+                .getGroups();
+        assertEquals(1, groups.size());
+        assertEquals(0L, groups.get(0).getValue(0).longValue());
+    }
+}
@@ -0,0 +1,173 @@
+package com.exponam.api.reader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Streams of every kind of source read from many threads at once, each stream checked against the bytes of
+ * the file.  These are the concurrent reads that a Reader's sessions make, so unlike ReaderConcurrencyTest
+ * this needs no .BIG fixture.
+ */
+public class BigReaderSourceTest {
+    private static final int THREADS = 8;
+    private static final int FILE_SIZE = 1 << 20;
+
+    private Path file;
+    private byte[] content;
+
+    @Before
+    public void writeFile() throws Exception {
+        content = new byte[FILE_SIZE];
+        new Random(21).nextBytes(content);
+        file = Files.createTempFile("big-reader-source", ".big");
+        Files.write(file, content);
+    }
+
+    @After
+    public void deleteFile() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void concurrentStreamsOfEachSourceReadTheFile() throws Exception {
+        try (BigReaderSource source = BigReaderSource.forFile(file.toFile())) {
+            assertConcurrentReads(source);
+        }
+        try (BigReaderSource source = BigReaderSource.forChannel(file)) {
+            assertConcurrentReads(source);
+        }
+        try (BigReaderSource source = BigReaderSource.forMappedFile(file)) {
+            assertConcurrentReads(source);
+        }
+        try (BigReaderSource source = BigReaderSource.forBuffer(ByteBuffer.wrap(content))) {
+            assertConcurrentReads(source);
+        }
+    }
+
+    @Test
+    public void interruptingOneChannelReaderLeavesTheOthersReading() throws Exception {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicInteger interruptedReads = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        try (BigReaderSource source = BigReaderSource.forChannel(file)) {
+            // one thread interrupts itself over and over, closing the shared channel each time
+            Thread interrupted = new Thread(() -> {
+                Random random = new Random(-1);
+                while (!stop.get()) {
+                    try (InputStream stream = source.openStream()) {
+                        Thread.currentThread().interrupt();
+                        readRange(stream, random);
+                    } catch (ClosedByInterruptException e) {
+                        interruptedReads.incrementAndGet();
+                    } catch (Throwable e) {
+                        failures.add(e);
+                        return;
+                    } finally {
+                        Thread.interrupted();
+                    }
+                }
+            });
+            interrupted.start();
+            try {
+                runReaders(source, failures);
+            } finally {
+                stop.set(true);
+                interrupted.join();
+            }
+            assertNoFailures(failures);
+            assertTrue("no read was interrupted", interruptedReads.get() > 0);
+
+            // and the source is still readable once the interrupts stop
+            try (InputStream stream = source.openStream()) {
+                assertArrayEquals(content, readFully(stream, FILE_SIZE));
+            }
+        }
+    }
+
+    private void assertConcurrentReads(BigReaderSource source) throws Exception {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        runReaders(source, failures);
+        assertNoFailures(failures);
+    }
+
+    private void runReaders(BigReaderSource source, Queue<Throwable> failures) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            Thread reader = new Thread(() -> {
+                try {
+                    start.await();
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 200; i++) {
+                        try (InputStream stream = source.openStream()) {
+                            readRange(stream, random);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        start.countDown();
+        for (Thread reader : readers) reader.join();
+    }
+
+    /**
+     * Skips to a random position, then reads a random number of bytes and checks them against the file.
+     */
+    private void readRange(InputStream stream, Random random) throws IOException {
+        int start = random.nextInt(FILE_SIZE);
+        int length = Math.min(FILE_SIZE - start, 1 + random.nextInt(64 * 1024));
+        long skipped = 0;
+        while (skipped < start) {
+            long n = stream.skip(start - skipped);
+            if (n <= 0) throw new AssertionError("skip made no progress");
+            skipped += n;
+        }
+        byte[] read = readFully(stream, length);
+        for (int i = 0; i < length; i++)
+            if (read[i] != content[start + i]) throw new AssertionError(String.format("byte %d differs", start + i));
+    }
+
+    private static byte[] readFully(InputStream stream, int length) throws IOException {
+        byte[] read = new byte[length];
+        int total = 0;
+        while (total < length) {
+            int n = stream.read(read, total, length - total);
+            if (n < 0) break;
+            total += n;
+        }
+        assertEquals(length, total);
+        return read;
+    }
+
+    private static void assertNoFailures(Queue<Throwable> failures) {
+        if (failures.isEmpty()) return;
+        AssertionError error = new AssertionError(String.format("%d threads failed", failures.size()));
+        for (Throwable failure : failures) error.addSuppressed(failure);
+        throw error;
+    }
+}
@@ -0,0 +1,248 @@
+package com.exponam.api.reader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ColumnIndexTest {
+    private static final int WORKSHEET = 1;
+    private static final int COLUMN = 3;
+    private static final int ROWS = 3000;
+    private static final long SIZE = 123456789L;
+    private static final long LAST_MODIFIED = 1700000000000L;
+    private static final long FINGERPRINT = 0x1234567890abcdefL;
+    private static final String[] STRINGS = {"", "a", "A", "ab", "abc", "b", "z", "\u00E9", "\u00E9t\u00E9",
+            "\u4E2D\u6587", "\uFF21", "\uD83D\uDE00", "\uD83D\uDE00x", "\uFFFD"};
+
+    private Path directory;
+    private Path sidecar;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("column-index");
+        sidecar = ColumnIndex.sidecarFor(directory.resolve("test.big"), WORKSHEET, COLUMN);
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void sidecarIsNamedAfterTheBigFile() {
+        assertEquals(directory.resolve("test.big.1.3.idx"), sidecar);
+    }
+
+    @Test
+    public void longColumnRoundTrips() throws IOException {
+        Random random = new Random(24);
+        Long[] values = new Long[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            if (random.nextInt(10) == 0) continue;
+            values[row] = random.nextInt(4) == 0
+                    ? (random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE)
+                    : (long) random.nextInt(400) - 200;
+        }
+        ColumnIndex index = writeAndOpen(Reader.ColumnTypes.Long, values);
+        List<Comparable<?>> bounds = new ArrayList<>();
+        for (long bound = -205; bound <= 205; bound += 5) bounds.add(bound);
+        bounds.add(Long.MIN_VALUE);
+        bounds.add(Long.MAX_VALUE);
+        assertLookups(index, values, bounds, Comparator.<Long>naturalOrder(), random);
+    }
+
+    @Test
+    public void dateColumnIsIndexedAsLongs() throws IOException {
+        Object[] values = new Object[ROWS];
+        for (int row = 0; row < ROWS; row++) values[row] = row % 7 == 0 ? null : new java.util.Date(row % 50 * 1000L);
+        ColumnIndex index = writeAndOpen(Reader.ColumnTypes.Date, values);
+        int[] rows = index.lookup(KeyRange.of(FilterPlan.Comparison.Equal, 3000L), ROWS);
+        List<Integer> expected = new ArrayList<>();
+        for (int row = 0; row < ROWS; row++) if (row % 7 != 0 && row % 50 == 3) expected.add(row);
+        assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), rows);
+    }
+
+    @Test
+    public void doubleColumnRoundTrips() throws IOException {
+        Random random = new Random(25);
+        double[] special = {-0.0, 0.0, Double.NaN, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE};
+        Double[] values = new Double[ROWS];
+        for (int row = 0; row < ROWS; row++) {
+            if (random.nextInt(10) == 0) continue;
+            values[row] = random.nextInt(4) == 0
+                    ? special[random.nextInt(special.length)]
+                    : (random.nextInt(200) - 100) * 0.5;
+        }
+        ColumnIndex index = writeAndOpen(Reader.ColumnTypes.Double, values);
+        List<Comparable<?>> bounds = new ArrayList<>();
+        for (double bound = -52.25; bound <= 52.25; bound += 1.75) bounds.add(bound);
+        for (double bound : special) if (!Double.isNaN(bound)) bounds.add(bound);
+        // NaN is never indexed, and -0.0 and 0.0 are one value, as a FilterPlan compares them
+        assertLookups(index, values, bounds, ColumnIndexTest::compareDoubles, random);
+
+        int[] zeros = index.lookup(KeyRange.of(FilterPlan.Comparison.Equal, -0.0), ROWS);
+        assertArrayEquals(zeros, index.lookup(KeyRange.of(FilterPlan.Comparison.Equal, 0.0), ROWS));
+        int zeroCount = 0;
+        for (Double value : values) if (value != null && value == 0.0) zeroCount++;
+        assertEquals(zeroCount, zeros.length);
+        int indexed = 0;
+        for (Double value : values) if (value != null && !Double.isNaN(value)) indexed++;
+        assertEquals(indexed, index.lookup(KeyRange.of(FilterPlan.Comparison.GreaterThanOrEqual,
+                Double.NEGATIVE_INFINITY), ROWS).length);
+    }
+
+    @Test
+    public void stringColumnRoundTrips() throws IOException {
+        Random random = new Random(26);
+        String[] values = new String[ROWS];
+        for (int row = 0; row < ROWS; row++)
+            if (random.nextInt(10) != 0) values[row] = STRINGS[random.nextInt(STRINGS.length)];
+        ColumnIndex index = writeAndOpen(Reader.ColumnTypes.String, values);
+        List<Comparable<?>> bounds = new ArrayList<>();
+        for (String bound : STRINGS) bounds.add(bound);
+        bounds.add("aa");
+        bounds.add("\u00E8");
+        bounds.add("\uD83D\uDE01");
+        bounds.add("\uFFFF");
+        assertLookups(index, values, bounds, Comparator.<String>naturalOrder(), random);
+    }
+
+    @Test
+    public void emptyColumnRoundTrips() throws IOException {
+        ColumnIndex index = writeAndOpen(Reader.ColumnTypes.String, new String[ROWS]);
+        assertArrayEquals(new int[0], index.lookup(KeyRange.of(FilterPlan.Comparison.GreaterThanOrEqual, ""), ROWS));
+        index = writeAndOpen(Reader.ColumnTypes.Long, new Long[0]);
+        assertArrayEquals(new int[0], index.lookup(KeyRange.of(FilterPlan.Comparison.LessThan, 0L), 0));
+    }
+
+    @Test
+    public void lookupGivesUpPastMaxRows() throws IOException {
+        Long[] values = new Long[ROWS];
+        for (int row = 0; row < ROWS; row++) values[row] = (long) (row % 10);
+        ColumnIndex index = writeAndOpen(Reader.ColumnTypes.Long, values);
+        KeyRange range = KeyRange.of(FilterPlan.Comparison.LessThan, 2L);
+        assertEquals(ROWS / 5, index.lookup(range, ROWS / 5).length);
+        assertNull(index.lookup(range, ROWS / 5 - 1));
+    }
+
+    @Test
+    public void headerMismatchIsRejected() throws IOException {
+        Long[] values = new Long[ROWS];
+        for (int row = 0; row < ROWS; row++) values[row] = (long) row;
+        write(Reader.ColumnTypes.Long, values);
+        Reader.ColumnTypes type = Reader.ColumnTypes.Long;
+        assertNotNull(ColumnIndex.open(sidecar, type, WORKSHEET, COLUMN, ROWS, SIZE, LAST_MODIFIED, FINGERPRINT));
+
+        assertNull(ColumnIndex.open(sidecar, Reader.ColumnTypes.Double, WORKSHEET, COLUMN, ROWS, SIZE, LAST_MODIFIED, FINGERPRINT));
+        assertNull(ColumnIndex.open(sidecar, type, WORKSHEET + 1, COLUMN, ROWS, SIZE, LAST_MODIFIED, FINGERPRINT));
+        assertNull(ColumnIndex.open(sidecar, type, WORKSHEET, COLUMN + 1, ROWS, SIZE, LAST_MODIFIED, FINGERPRINT));
+        assertNull(ColumnIndex.open(sidecar, type, WORKSHEET, COLUMN, ROWS + 1, SIZE, LAST_MODIFIED, FINGERPRINT));
+        assertNull(ColumnIndex.open(sidecar, type, WORKSHEET, COLUMN, ROWS, SIZE + 1, LAST_MODIFIED, FINGERPRINT));
+        assertNull(ColumnIndex.open(sidecar, type, WORKSHEET, COLUMN, ROWS, SIZE, LAST_MODIFIED + 1, FINGERPRINT));
+        assertNull(ColumnIndex.open(sidecar, type, WORKSHEET, COLUMN, ROWS, SIZE, LAST_MODIFIED, FINGERPRINT ^ 1));
+
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+        assertNull(ColumnIndex.open(sidecar, type, WORKSHEET, COLUMN, ROWS, SIZE, LAST_MODIFIED, FINGERPRINT));
+        Files.write(sidecar, new byte[]{1, 2, 3});
+        assertNull(ColumnIndex.open(sidecar, type, WORKSHEET, COLUMN, ROWS, SIZE, LAST_MODIFIED, FINGERPRINT));
+        Files.delete(sidecar);
+        assertNull(ColumnIndex.open(sidecar, type, WORKSHEET, COLUMN, ROWS, SIZE, LAST_MODIFIED, FINGERPRINT));
+    }
+
+    @Test
+    public void fingerprintFollowsContent() throws IOException {
+        Path bigFile = directory.resolve("test.big");
+        byte[] content = new byte[3 << 20];
+        new Random(27).nextBytes(content);
+        Files.write(bigFile, content);
+        long fingerprint = ColumnIndex.fingerprint(bigFile);
+        assertEquals(fingerprint, ColumnIndex.fingerprint(bigFile));
+        content[content.length - 1]++;
+        Files.write(bigFile, content);
+        assertNotEquals(fingerprint, ColumnIndex.fingerprint(bigFile));
+        Files.write(bigFile, new byte[0]);
+        assertEquals(ColumnIndex.fingerprint(bigFile), ColumnIndex.fingerprint(bigFile));
+    }
+
+    /**
+     * Checks the rows looked up for ranges between random pairs of bounds against a scan of values.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void assertLookups(ColumnIndex index, Object[] values, List<Comparable<?>> bounds,
+                                          Comparator<T> order, Random random) {
+        FilterPlan.Comparison[] comparisons = {FilterPlan.Comparison.Equal, FilterPlan.Comparison.GreaterThan,
+                FilterPlan.Comparison.GreaterThanOrEqual, FilterPlan.Comparison.LessThan,
+                FilterPlan.Comparison.LessThanOrEqual};
+        for (int round = 0; round < 500; round++) {
+            FilterPlan.Comparison comparison = comparisons[random.nextInt(comparisons.length)];
+            Comparable<?> bound = bounds.get(random.nextInt(bounds.size()));
+            KeyRange range = KeyRange.of(comparison, bound);
+            if (random.nextBoolean()) {
+                FilterPlan.Comparison other = comparisons[1 + random.nextInt(comparisons.length - 1)];
+                range = range.intersect(KeyRange.of(other, bounds.get(random.nextInt(bounds.size()))));
+            }
+            List<Integer> expected = new ArrayList<>();
+            for (int row = 0; row < values.length; row++)
+                if (values[row] != null && inRange((T) values[row], range, order)) expected.add(row);
+            expected.sort(Comparator.comparing((Integer row) -> (T) values[row], order)
+                    .thenComparing(Comparator.naturalOrder()));
+            int[] rows = index.lookup(range, values.length);
+            assertArrayEquals(range.toString(), expected.stream().mapToInt(Integer::intValue).toArray(), rows);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> boolean inRange(T value, KeyRange range, Comparator<T> order) {
+        if (value instanceof Double && Double.isNaN((Double) value)) return false;
+        if (range.getLower() != null) {
+            int compared = order.compare(value, (T) range.getLower());
+            if (compared < 0 || (compared == 0 && !range.getLowerInclusive())) return false;
+        }
+        if (range.getUpper() != null) {
+            int compared = order.compare(value, (T) range.getUpper());
+            if (compared > 0 || (compared == 0 && !range.getUpperInclusive())) return false;
+        }
+        return true;
+    }
+
+    private static int compareDoubles(Double a, Double b) {
+        return Double.compare(a == 0.0 ? 0.0 : a, b == 0.0 ? 0.0 : b);
+    }
+
+    private ColumnIndex writeAndOpen(Reader.ColumnTypes columnType, Object[] values) throws IOException {
+        write(columnType, values);
+        ColumnIndex index = ColumnIndex.open(sidecar, columnType, WORKSHEET, COLUMN, values.length, SIZE,
+                LAST_MODIFIED, FINGERPRINT);
+        assertNotNull(index);
+        return index;
+    }
+
+    private void write(Reader.ColumnTypes columnType, Object[] values) throws IOException {
+        ColumnIndex.Writer writer = new ColumnIndex.Writer(columnType, WORKSHEET, COLUMN, values.length);
+        for (int row = 0; row < values.length; row++) writer.add(row, values[row]);
+        writer.write(sidecar, SIZE, LAST_MODIFIED, FINGERPRINT);
+    }
+}
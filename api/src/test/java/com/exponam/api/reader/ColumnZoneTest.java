@@ -0,0 +1,61 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.StringContains;
+import com.exponam.api.reader.filters.StringIsEqual;
+import com.exponam.api.reader.filters.StringIsIn;
+import com.exponam.api.reader.filters.StringLike;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnZoneTest {
+    /**
+     * String filters that no value of the zone satisfies, by Java's String comparisons.
+     */
+    private static final List<FilterPlan> UNMATCHED = Arrays.asList(
+            FilterPlan.compile(StringIsEqual.of("c", true), Reader.ColumnTypes.String),
+            FilterPlan.compile(StringContains.of("z", false), Reader.ColumnTypes.String),
+            FilterPlan.compile(StringLike.of("c%", true), Reader.ColumnTypes.String),
+            FilterPlan.compile(StringIsIn.of(Arrays.asList("c", "d"), true), Reader.ColumnTypes.String));
+
+    @Test
+    public void stringZonesArePrunedByTheirDictionaryOnlyIfTheyKeepOne() {
+        ColumnZone withDictionary = zone(true, "a", "b", null);
+        ColumnZone withoutDictionary = zone(false, "a", "b", null);
+        for (FilterPlan plan : UNMATCHED) {
+            assertFalse(plan.canMatch(withDictionary));
+            // without dictionary filters, the core reader's semantics decide, so the zone must be read
+            assertTrue(plan.canMatch(withoutDictionary));
+        }
+    }
+
+    @Test
+    public void stringZonesOfEmptyValuesArePrunedEitherWay() {
+        for (boolean dictionary : new boolean[]{true, false}) {
+            ColumnZone empty = zone(dictionary, null, null);
+            for (FilterPlan plan : UNMATCHED) assertFalse(plan.canMatch(empty));
+        }
+    }
+
+    @Test
+    public void mergingAZoneWithoutADictionaryDropsIt() {
+        ColumnZone merged = zone(true, "a");
+        merged.merge(zone(false, "b"));
+        assertTrue(merged.getDictionary() == null);
+        assertTrue(zone(Reader.ColumnTypes.Long, true, 1L).getDictionary() == null);
+    }
+
+    private static ColumnZone zone(boolean dictionary, Object... values) {
+        return zone(Reader.ColumnTypes.String, dictionary, values);
+    }
+
+    private static ColumnZone zone(Reader.ColumnTypes columnType, boolean dictionary, Object... values) {
+        ColumnZone zone = new ColumnZone(columnType, values.length, dictionary);
+        for (Object value : values) zone.add(value);
+        return zone;
+    }
+}
@@ -0,0 +1,63 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.And;
+import com.exponam.api.reader.filters.Filter;
+import com.exponam.api.reader.filters.IsEqual;
+import com.exponam.api.reader.filters.IsGreaterThanOrEqual;
+import com.exponam.api.reader.filters.IsLessThan;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilterPlanTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void dateOperandsCompileToEpochComparisons() {
+        for (Reader.ColumnTypes columnType : new Reader.ColumnTypes[]{
+                Reader.ColumnTypes.Date, Reader.ColumnTypes.DateTime, Reader.ColumnTypes.Time}) {
+            Filter filter = And.of(IsGreaterThanOrEqual.of(new Date(10 * DAY)), IsLessThan.of(new Date(20 * DAY)));
+            FilterPlan plan = FilterPlan.compile(filter, columnType);
+            assertTrue(plan.isTestable());
+            assertTrue(RowPredicatePlan.isEvaluated(filter, plan, columnType));
+            assertFalse(plan.test(new Date(10 * DAY - 1)));
+            assertTrue(plan.test(new Date(10 * DAY)));
+            assertTrue(plan.test(new Date(20 * DAY - 1)));
+            assertFalse(plan.test(new Date(20 * DAY)));
+            assertFalse(plan.test(null));
+
+            KeyRange range = plan.keyRange();
+            assertEquals(10 * DAY, range.getLower());
+            assertTrue(range.getLowerInclusive());
+            assertEquals(20 * DAY, range.getUpper());
+            assertFalse(range.getUpperInclusive());
+        }
+        FilterPlan equal = FilterPlan.compile(IsEqual.of(new Date(DAY)), Reader.ColumnTypes.Date);
+        assertTrue(equal.test(new Date(DAY)));
+        assertFalse(equal.test(new Date(2 * DAY)));
+    }
+
+    @Test
+    public void dateZonesArePrunedByDateOperands() {
+        ColumnZone zone = new ColumnZone(Reader.ColumnTypes.Date, 3, false);
+        zone.add(new Date(10 * DAY));
+        zone.add(null);
+        zone.add(new Date(19 * DAY));
+        assertTrue(FilterPlan.compile(IsGreaterThanOrEqual.of(new Date(19 * DAY)), Reader.ColumnTypes.Date).canMatch(zone));
+        assertFalse(FilterPlan.compile(IsGreaterThanOrEqual.of(new Date(20 * DAY)), Reader.ColumnTypes.Date).canMatch(zone));
+        assertFalse(FilterPlan.compile(IsLessThan.of(new Date(10 * DAY)), Reader.ColumnTypes.Date).canMatch(zone));
+        assertFalse(FilterPlan.compile(IsEqual.of(new Date(20 * DAY)), Reader.ColumnTypes.Date).canMatch(zone));
+    }
+
+    @Test
+    public void stringDateOperandsAreLeftToTheCoreReader() {
+        Filter filter = IsGreaterThanOrEqual.of("2024-01-01");
+        FilterPlan plan = FilterPlan.compile(filter, Reader.ColumnTypes.Date);
+        assertFalse(plan.isTestable());
+        assertFalse(RowPredicatePlan.isEvaluated(filter, plan, Reader.ColumnTypes.Date));
+    }
+}
@@ -0,0 +1,40 @@
+package com.exponam.api.reader;
+
+import com.exponam.core.reader.BigReader;
+import org.junit.Assume;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The .BIG fixtures described in benchmarks/README.md, read from the directory given by the exponam.fixtures
+ * system property and opened with the password given by exponam.fixturePassword.  A test that needs a fixture
+ * which is missing is skipped rather than failed.
+ */
+final class Fixtures {
+    static final String MIXED_100K = "mixed-100k.big";
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return the path of the named fixture, skipping the calling test if it is missing
+     */
+    static Path require(String name) {
+        Path fixture = Paths.get(System.getProperty("exponam.fixtures", "../benchmarks/fixtures")).resolve(name);
+        Assume.assumeTrue(String.format("Fixture '%s' not found; see benchmarks/README.md", fixture),
+                Files.isRegularFile(fixture));
+        return fixture;
+    }
+
+    static Reader open(Path fixture) throws IOException, BigReader.UnsupportedFileVersionException {
+        return open(fixture, ReaderOptions.defaults());
+    }
+
+    static Reader open(Path fixture, ReaderOptions options) throws IOException, BigReader.UnsupportedFileVersionException {
+        return new Reader(fixture, () -> System.getProperty("exponam.fixturePassword", ""), Reader.FileAccess.Channel,
+                options);
+    }
+}
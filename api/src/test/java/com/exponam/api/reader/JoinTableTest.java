@@ -0,0 +1,124 @@
+package com.exponam.api.reader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JoinTableTest {
+    private static final int KEY = 0;
+    private static final int VALUE = 2;
+
+    @Test
+    public void duplicateKeysAreChainedInRowOrder() {
+        Random random = new Random(25);
+        Long[] keys = new Long[12000];
+        for (int row = 0; row < keys.length; row++)
+            keys[row] = random.nextInt(10) == 0 ? null : (long) random.nextInt(2000) - 1000;
+        // rows spread over several blocks, as a parallel read of the build side leaves them
+        JoinTable table = JoinTable.build(Reader.ColumnTypes.Long, KEY, blocksOf(keys, 4));
+        assertEquals(Arrays.stream(keys).filter(key -> key != null).count(), table.size());
+        for (long key = -1005; key < 1005; key++) {
+            List<Integer> expected = new ArrayList<>();
+            for (int row = 0; row < keys.length; row++) if (keys[row] != null && keys[row] == key) expected.add(row);
+            assertEquals(expected, matches(table, key));
+        }
+        assertFalse(table.forEachMatch(Long.MIN_VALUE, (block, position) -> { }));
+    }
+
+    @Test
+    public void matchedRowsCarryTheirValues() {
+        JoinTable table = JoinTable.build(Reader.ColumnTypes.Long, KEY, blocksOf(new Long[]{7L, 8L, 7L}, 2));
+        List<Object> values = new ArrayList<>();
+        table.forEachMatch(7L, (block, position) -> values.add(block.getValue(position, VALUE)));
+        assertEquals(Arrays.asList("value-0", "value-2"), values);
+    }
+
+    @Test
+    public void nullAndNaNKeysMatchNothing() {
+        Double[] keys = {1.5, null, Double.NaN, 1.5, Double.NaN, null};
+        JoinTable table = JoinTable.build(Reader.ColumnTypes.Double, KEY, blocksOf(keys, 1));
+        assertEquals(2, table.size());
+        assertEquals(Arrays.asList(0, 3), matches(table, 1.5));
+        assertFalse(table.forEachMatch(null, (block, position) -> { }));
+        assertFalse(table.forEachMatch(Double.NaN, (block, position) -> { }));
+
+        JoinTable strings = JoinTable.build(Reader.ColumnTypes.String, KEY, blocksOf(new String[]{null, "a"}, 1));
+        assertEquals(1, strings.size());
+        assertFalse(strings.forEachMatch(null, (block, position) -> { }));
+
+        JoinTable empty = JoinTable.build(Reader.ColumnTypes.Long, KEY, blocksOf(new Long[]{null, null}, 1));
+        assertEquals(0, empty.size());
+        assertFalse(empty.forEachMatch(0L, (block, position) -> { }));
+    }
+
+    @Test
+    public void negativeZeroEqualsZero() {
+        Double[] keys = {0.0, -0.0, 2.0, -2.0, -0.0};
+        JoinTable table = JoinTable.build(Reader.ColumnTypes.Double, KEY, blocksOf(keys, 1));
+        assertEquals(Arrays.asList(0, 1, 4), matches(table, 0.0));
+        assertEquals(Arrays.asList(0, 1, 4), matches(table, -0.0));
+        assertEquals(Collections.singletonList(3), matches(table, -2.0));
+        assertEquals(Collections.singletonList(2), matches(table, 2.0));
+    }
+
+    @Test
+    public void stringKeysMatchExactly() {
+        // "Aa" and "BB" share a hash code, as do "AaAa", "AaBB" and "BBBB"; "\u00E9" and "e\u0301" are
+        // canonically equivalent but different Strings
+        String[] keys = {"a", "b", "a", null, "Aa", "BB", "", "A", "AaAa", "BBBB", "AaBB", "\u00E9", "e\u0301", "Aa"};
+        JoinTable table = JoinTable.build(Reader.ColumnTypes.String, KEY, blocksOf(keys, 3));
+        assertEquals(keys.length - 1, table.size());
+        assertEquals(Arrays.asList(0, 2), matches(table, "a"));
+        assertEquals(Collections.singletonList(7), matches(table, "A"));
+        assertEquals(Arrays.asList(4, 13), matches(table, "Aa"));
+        assertEquals(Collections.singletonList(5), matches(table, "BB"));
+        assertEquals(Collections.singletonList(6), matches(table, ""));
+        assertEquals(Collections.singletonList(8), matches(table, "AaAa"));
+        assertEquals(Collections.singletonList(9), matches(table, "BBBB"));
+        assertEquals(Collections.singletonList(10), matches(table, "AaBB"));
+        assertEquals(Collections.singletonList(11), matches(table, "\u00E9"));
+        assertEquals(Collections.singletonList(12), matches(table, "e\u0301"));
+        assertFalse(table.forEachMatch("c", (block, position) -> { }));
+        assertFalse(table.forEachMatch("BBAa", (block, position) -> { }));
+    }
+
+    @Test
+    public void dateKeysMatchAsLongs() {
+        Object[] keys = {1000L, 2000L, 1000L};
+        JoinTable table = JoinTable.build(Reader.ColumnTypes.Date, KEY, blocksOf(keys, 1));
+        assertEquals(Arrays.asList(0, 2), matches(table, 1000L));
+        assertTrue(table.forEachMatch(2000L, (block, position) -> { }));
+    }
+
+    private static List<Integer> matches(JoinTable table, Object key) {
+        List<Integer> rows = new ArrayList<>();
+        boolean matched = table.forEachMatch(key, (block, position) -> rows.add(block.getRowIndex(position)));
+        assertEquals(!rows.isEmpty(), matched);
+        return rows;
+    }
+
+    /**
+     * The rows holding keys, in row order, split across blockCount blocks, each with a value column.
+     */
+    private static List<RowBlock> blocksOf(Object[] keys, int blockCount) {
+        List<RowBlock> blocks = new ArrayList<>();
+        int rowsPerBlock = (keys.length + blockCount - 1) / blockCount;
+        for (int start = 0; start < keys.length; start += rowsPerBlock) {
+            RowBlock block = new RowBlock(Arrays.asList(KEY, VALUE));
+            for (int row = start; row < Math.min(keys.length, start + rowsPerBlock); row++) {
+                int rowIndex = row;
+                block.add(rowIndex, columnIndex -> columnIndex == KEY ? keys[rowIndex] : "value-" + rowIndex);
+            }
+            blocks.add(block);
+        }
+        return blocks;
+    }
+}
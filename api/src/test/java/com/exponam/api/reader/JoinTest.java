@@ -0,0 +1,120 @@
+package com.exponam.api.reader;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Joins of the mixed-100k.big fixture described in benchmarks/README.md with itself, on its first Double
+ * column, as the benchmarks join it.  The expected matches are worked out from the column's values, so the
+ * test makes no assumption about how many rows share a value or are empty.  Skipped if the fixture is
+ * missing.
+ */
+public class JoinTest {
+    private Reader left;
+    private Reader right;
+    private ExecutorService executor;
+    private Double[] keys;
+    private int keyColumn;
+    private Map<Double, List<Integer>> rowsByKey;
+
+    @Before
+    public void open() throws Exception {
+        Path fixture = Fixtures.require(Fixtures.MIXED_100K);
+        left = Fixtures.open(fixture);
+        right = Fixtures.open(fixture);
+        executor = Executors.newFixedThreadPool(4);
+        keyColumn = -1;
+        for (int columnIndex = 0; columnIndex < left.getColumnCount(0) && keyColumn < 0; columnIndex++)
+            if (left.getColumnType(0, columnIndex) == Reader.ColumnTypes.Double) keyColumn = columnIndex;
+        Assume.assumeTrue("Fixture has no Double column", keyColumn >= 0);
+        keys = new Double[left.getRowCount(0)];
+        left.getRowValues(0, 0, keys.length - 1, columns(),
+                (rowIndex, row) -> keys[rowIndex] = (Double) row.apply(keyColumn));
+        rowsByKey = new HashMap<>();
+        for (int row = 0; row < keys.length; row++) {
+            // empty and NaN keys match nothing, and -0.0 matches 0.0
+            if (keys[row] == null || keys[row].isNaN()) continue;
+            rowsByKey.computeIfAbsent(keys[row] + 0.0, ignored -> new ArrayList<>()).add(row);
+        }
+    }
+
+    @After
+    public void close() throws Exception {
+        if (executor != null) executor.shutdownNow();
+        if (left != null) left.close();
+        if (right != null) right.close();
+    }
+
+    @Test
+    public void leftJoinDeliversUnmatchedRowsWithoutARightRow() {
+        List<List<Integer>> matches = newMatches();
+        Join.left(side(left), side(right), executor, (leftRowIndex, leftRow, rightRowIndex, rightRow) -> {
+            assertEquals(keys[leftRowIndex], leftRow.apply(keyColumn));
+            if (rightRowIndex == -1) assertEquals(null, rightRow);
+            else assertEquals(keys[rightRowIndex], rightRow.apply(keyColumn));
+            addMatch(matches, leftRowIndex, rightRowIndex);
+        });
+        for (int row = 0; row < keys.length; row++) {
+            List<Integer> expected = expectedMatches(row);
+            assertEquals(expected.isEmpty() ? Collections.singletonList(-1) : expected, sorted(matches.get(row)));
+        }
+    }
+
+    @Test
+    public void innerJoinDropsRowsWithoutAMatch() {
+        List<List<Integer>> matches = newMatches();
+        Join.inner(side(left), side(right), executor, (leftRowIndex, leftRow, rightRowIndex, rightRow) -> {
+            assertTrue(rightRow != null);
+            addMatch(matches, leftRowIndex, rightRowIndex);
+        });
+        for (int row = 0; row < keys.length; row++) assertEquals(expectedMatches(row), sorted(matches.get(row)));
+    }
+
+    private List<Integer> expectedMatches(int row) {
+        if (keys[row] == null) return Collections.emptyList();
+        return rowsByKey.getOrDefault(keys[row] + 0.0, Collections.emptyList());
+    }
+
+    private List<List<Integer>> newMatches() {
+        List<List<Integer>> matches = new ArrayList<>(keys.length);
+        for (int row = 0; row < keys.length; row++) matches.add(new ArrayList<>());
+        return matches;
+    }
+
+    private static void addMatch(List<List<Integer>> matches, int leftRowIndex, int rightRowIndex) {
+        List<Integer> rows = matches.get(leftRowIndex);
+        synchronized (rows) {
+            rows.add(rightRowIndex);
+        }
+    }
+
+    private static List<Integer> sorted(List<Integer> rows) {
+        synchronized (rows) {
+            List<Integer> copy = new ArrayList<>(rows);
+            Collections.sort(copy);
+            return copy;
+        }
+    }
+
+    private JoinSide side(Reader reader) {
+        return JoinSide.of(reader, 0, keyColumn, columns());
+    }
+
+    private Map<Integer, QueryColumn> columns() {
+        return Collections.singletonMap(keyColumn, new QueryColumn(Double.class));
+    }
+}
@@ -0,0 +1,99 @@
+package com.exponam.api.reader;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongHashSetTest {
+    @Test
+    public void emptySetContainsNothing() {
+        LongHashSet set = new LongHashSet(0);
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0L));
+        assertFalse(set.contains(1L));
+        assertArrayEquals(new long[0], set.toSortedArray());
+    }
+
+    @Test
+    public void zeroIsAMemberLikeAnyOtherValue() {
+        LongHashSet set = new LongHashSet(4);
+        assertFalse(set.contains(0L));
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        assertTrue(set.contains(0L));
+        assertEquals(1, set.size());
+        assertArrayEquals(new long[]{0L}, set.toSortedArray());
+    }
+
+    @Test
+    public void matchesHashSetAcrossResizes() {
+        Random random = new Random(12);
+        // an expected size of 1 makes the set grow many times over
+        LongHashSet set = new LongHashSet(1);
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            long value = randomValue(random);
+            assertEquals(expected.add(value), set.add(value));
+            assertEquals(expected.size(), set.size());
+        }
+        for (long value : expected) assertTrue(set.contains(value));
+        for (int i = 0; i < 20000; i++) {
+            long value = randomValue(random);
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+        assertArrayEquals(expected.stream().mapToLong(Long::longValue).sorted().toArray(), set.toSortedArray());
+    }
+
+    @Test
+    public void collidingValuesAreAllFound() {
+        // values that differ only in their high bits land close together in a small table
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expected = new HashSet<>();
+        for (long high = 0; high < 2000; high++) {
+            long value = (high << 48) | 7;
+            set.add(value);
+            expected.add(value);
+        }
+        // sequential ids, which an identity hash would cluster
+        for (long id = -1000; id < 1000; id++) {
+            set.add(id);
+            expected.add(id);
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value : expected) assertTrue(set.contains(value));
+        for (long high = 0; high < 2000; high++) assertFalse(set.contains((high << 48) | 1001));
+        assertFalse(set.contains(1000L));
+        assertFalse(set.contains(-1001L));
+    }
+
+    @Test
+    public void extremeValuesAreMembers() {
+        LongHashSet set = new LongHashSet(2);
+        set.add(Long.MIN_VALUE);
+        set.add(Long.MAX_VALUE);
+        set.add(-1L);
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertTrue(set.contains(Long.MAX_VALUE));
+        assertTrue(set.contains(-1L));
+        assertFalse(set.contains(0L));
+        assertArrayEquals(new long[]{Long.MIN_VALUE, -1L, Long.MAX_VALUE}, set.toSortedArray());
+    }
+
+    private static long randomValue(Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                return random.nextInt(5000) - 2500;
+            case 1:
+                return random.nextLong();
+            default:
+                return (long) random.nextInt(64) << random.nextInt(60);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.StringLike;
+import com.exponam.api.reader.filters.StringMatches;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PatternPlanTest {
+    private static final String PATTERN_CHARACTERS = "aAbk%%__\\.*([$^+?|{}\u212A\u0131";
+    private static final String VALUE_CHARACTERS = "aAbBkK%_\\.*([$^+?|{}\u212A\u0131I";
+    /**
+     * A Deseret letter in both cases, as surrogate pairs.  String.equalsIgnoreCase folds supplementary
+     * characters only from Java 16, while Pattern always has, so they are used in case-sensitive patterns only.
+     */
+    private static final String SUPPLEMENTARY_CHARACTERS = "\uD801\uDC00\uD801\uDC28";
+
+    @Test
+    public void likeAgreesWithRegularExpression() {
+        Random random = new Random(16);
+        for (int round = 0; round < 20000; round++) {
+            boolean caseSensitive = random.nextBoolean();
+            String extra = caseSensitive ? SUPPLEMENTARY_CHARACTERS : "";
+            String pattern = randomString(random, PATTERN_CHARACTERS + extra, random.nextInt(7));
+            FilterPlan plan = PatternPlan.compile(StringLike.of(pattern, caseSensitive));
+            Pattern oracle = likeToRegex(pattern, caseSensitive);
+            for (int value = 0; value < 20; value++) {
+                String string = randomString(random, VALUE_CHARACTERS + extra, random.nextInt(9));
+                assertEquals(String.format("'%s' LIKE '%s' (case sensitive: %s)", string, pattern, caseSensitive),
+                        oracle.matcher(string).matches(), plan.test(string));
+            }
+        }
+    }
+
+    @Test
+    public void likeHandlesWildcardsAndEscapes() {
+        assertTrue(like("a%c", true).test("abbbc"));
+        assertTrue(like("a%c", true).test("ac"));
+        assertFalse(like("a%c", true).test("acb"));
+        assertTrue(like("a_c", true).test("abc"));
+        assertFalse(like("a_c", true).test("ac"));
+        assertTrue(like("a\\%c", true).test("a%c"));
+        assertFalse(like("a\\%c", true).test("abc"));
+        assertTrue(like("a\\_c", true).test("a_c"));
+        assertFalse(like("a\\_c", true).test("abc"));
+        assertTrue(like("a\\\\c", true).test("a\\c"));
+        assertTrue(like("trailing\\", true).test("trailing\\"));
+        assertTrue(like("%.*%", true).test("x.*y"));
+        assertFalse(like("%.*%", true).test("xy"));
+        assertTrue(like("%ab%ab%", true).test("abab"));
+        assertFalse(like("%ab%ab%", true).test("aba"));
+        assertTrue(like("%%", true).test(""));
+        assertTrue(like("", true).test(""));
+        assertFalse(like("", true).test("a"));
+        assertTrue(like("_", true).test("\n"));
+        assertTrue(like("%KELVIN%", false).test("\u212Aelvin"));
+        assertFalse(like("%", true).test(null));
+    }
+
+    @Test
+    public void matchesRequiresAWholeMatch() {
+        FilterPlan plan = PatternPlan.compile(StringMatches.of("a+b", true));
+        assertTrue(plan.test("aab"));
+        assertFalse(plan.test("aabc"));
+        assertFalse(plan.test("AAB"));
+        assertTrue(PatternPlan.compile(StringMatches.of("a+b", false)).test("AAB"));
+        assertFalse(plan.test(null));
+    }
+
+    private static FilterPlan like(String pattern, boolean caseSensitive) {
+        return PatternPlan.compile(StringLike.of(pattern, caseSensitive));
+    }
+
+    /**
+     * The regular expression equivalent to a LIKE pattern, translated one character at a time.
+     */
+    private static Pattern likeToRegex(String pattern, boolean caseSensitive) {
+        StringBuilder regex = new StringBuilder();
+        int[] codePoints = pattern.codePoints().toArray();
+        for (int i = 0; i < codePoints.length; i++) {
+            int c = codePoints[i];
+            if (c == '\\' && i + 1 < codePoints.length) regex.append(quote(codePoints[++i]));
+            else if (c == '%') regex.append(".*");
+            else if (c == '_') regex.append('.');
+            else regex.append(quote(c));
+        }
+        int flags = Pattern.DOTALL | (caseSensitive ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        return Pattern.compile(regex.toString(), flags);
+    }
+
+    private static String quote(int codePoint) {
+        return Pattern.quote(new String(Character.toChars(codePoint)));
+    }
+
+    private static String randomString(Random random, String characters, int length) {
+        StringBuilder string = new StringBuilder();
+        int[] codePoints = characters.codePoints().toArray();
+        for (int i = 0; i < length; i++) string.appendCodePoint(codePoints[random.nextInt(codePoints.length)]);
+        return string.toString();
+    }
+}
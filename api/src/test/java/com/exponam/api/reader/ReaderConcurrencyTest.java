@@ -0,0 +1,330 @@
+package com.exponam.api.reader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Queries from many threads against one shared Reader, with close() racing them.  Reads the mixed-100k.big
+ * fixture described in benchmarks/README.md, and is skipped if it is missing; BigReaderSourceTest covers the
+ * concurrent reads underneath without a fixture.
+ */
+public class ReaderConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int MAX_RANGE_ROWS = 5000;
+
+    private Path fixture;
+    private Object[][] expected;
+    private Map<Integer, QueryColumn> allColumns;
+    private ExecutorService executor;
+
+    @Before
+    public void readExpected() throws Exception {
+        fixture = Fixtures.require(Fixtures.MIXED_100K);
+        executor = Executors.newFixedThreadPool(4);
+        try (Reader reader = open()) {
+            allColumns = new HashMap<>();
+            for (int columnIndex = 0; columnIndex < reader.getColumnCount(0); columnIndex++)
+                allColumns.put(columnIndex, new QueryColumn(naturalType(reader.getColumnType(0, columnIndex))));
+            expected = new Object[reader.getRowCount(0)][];
+            int columnCount = reader.getColumnCount(0);
+            reader.getRowValues(0, 0, expected.length - 1, allColumns,
+                    (rowIndex, row) -> expected[rowIndex] = valuesOf(row, columnCount));
+        }
+        for (Object[] row : expected) assertTrue("single-threaded read missed a row", row != null);
+    }
+
+    @After
+    public void shutDown() {
+        if (executor != null) executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentQueriesMatchSingleThreadedRead() throws Exception {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        try (Reader reader = open()) {
+            runWorkers(failures, random -> {
+                for (int i = 0; i < 200; i++) query(reader, random);
+                return null;
+            });
+        }
+        assertNoFailures(failures);
+    }
+
+    @Test
+    public void closeRacingQueriesLetsThemFinishOrFailCleanly() throws Exception {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicInteger completedAfterClose = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        Reader reader = open();
+        AtomicBoolean closeReturned = new AtomicBoolean();
+        Thread closer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                reader.close();
+                closeReturned.set(true);
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        closer.start();
+        runWorkers(failures, random -> {
+            while (true) {
+                boolean closedBefore = closeReturned.get();
+                try {
+                    query(reader, random);
+                } catch (RuntimeException e) {
+                    if (!isClosedFailure(e)) throw e;
+                    refused.incrementAndGet();
+                    return null;
+                }
+                // a query begun once close() has returned must be refused, never run against closed streams
+                if (closedBefore) completedAfterClose.incrementAndGet();
+            }
+        });
+        closer.join();
+        assertNoFailures(failures);
+        assertEquals(0, completedAfterClose.get());
+        assertEquals(THREADS, refused.get());
+        assertRefused(reader);
+        reader.close();
+    }
+
+    @Test
+    public void closeWaitsForInFlightQuery() throws Exception {
+        Reader reader = open();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        AtomicInteger rows = new AtomicInteger();
+        AtomicReference<Throwable> queryFailure = new AtomicReference<>();
+        Thread query = new Thread(() -> {
+            try {
+                reader.getRowValues(0, 0, expected.length - 1, allColumns, (rowIndex, row) -> {
+                    if (rowIndex == 0) {
+                        started.countDown();
+                        await(proceed);
+                    }
+                    assertArrayEquals(expected[rowIndex], valuesOf(row, allColumns.size()));
+                    rows.incrementAndGet();
+                });
+            } catch (Throwable e) {
+                queryFailure.set(e);
+            }
+        });
+        query.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        AtomicReference<Throwable> closeFailure = new AtomicReference<>();
+        Thread closer = new Thread(() -> {
+            try {
+                reader.close();
+            } catch (Throwable e) {
+                closeFailure.set(e);
+            }
+        });
+        closer.start();
+        closer.join(200);
+        assertTrue("close() returned while a query was in flight", closer.isAlive());
+        assertRefused(reader);
+
+        proceed.countDown();
+        query.join();
+        closer.join(10000);
+        assertFalse("close() did not return once the query finished", closer.isAlive());
+        assertEquals(null, queryFailure.get());
+        assertEquals(null, closeFailure.get());
+        assertEquals(expected.length, rows.get());
+        assertRefused(reader);
+    }
+
+    @Test
+    public void queriesFailedByTheirConsumerLeaveTheReaderUsable() throws Exception {
+        // prefetching and parallel scans cancel their outstanding reads when the consumer throws
+        try (Reader reader = Fixtures.open(fixture, ReaderOptions.defaults().withPrefetchDepth(4))) {
+            int failAt = expected.length / 2;
+            BiConsumer<Integer, Function<Integer, Object>> failing = (rowIndex, row) -> {
+                if (rowIndex >= failAt) throw new IllegalArgumentException("consumer failed");
+            };
+            assertConsumerFailure(() -> reader.getRowValues(0, 0, expected.length - 1, allColumns, failing));
+            assertConsumerFailure(() -> reader.getRowValues(0, 0, expected.length - 1, allColumns, executor, true,
+                    failing));
+            assertConsumerFailure(() -> reader.getRowValues(0, 0, expected.length - 1, allColumns, executor, false,
+                    failing));
+
+            AtomicInteger rows = new AtomicInteger();
+            reader.getRowValues(0, 0, expected.length - 1, allColumns, executor, false, (rowIndex, row) -> {
+                assertArrayEquals(expected[rowIndex], valuesOf(row, allColumns.size()));
+                rows.incrementAndGet();
+            });
+            assertEquals(expected.length, rows.get());
+            Random random = new Random(3);
+            for (int i = 0; i < 20; i++) query(reader, random);
+        }
+    }
+
+    private interface Work {
+        Void run(Random random) throws Exception;
+    }
+
+    private void runWorkers(Queue<Throwable> failures, Work work) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    await(start);
+                    work.run(new Random(seed));
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+    }
+
+    /**
+     * Runs one randomly chosen query and checks every value it returns against the single-threaded read.
+     */
+    private void query(Reader reader, Random random) {
+        int rowCount = expected.length;
+        int startRow = random.nextInt(rowCount);
+        int endRow = Math.min(rowCount - 1, startRow + random.nextInt(MAX_RANGE_ROWS));
+        switch (random.nextInt(3)) {
+            case 0: {
+                int columnIndex = random.nextInt(allColumns.size());
+                Object value = reader.getValue(0, startRow, columnIndex, allColumns.get(columnIndex).getDesiredType());
+                assertEquals(expected[startRow][columnIndex], value);
+                break;
+            }
+            case 1: {
+                int[] next = {startRow};
+                reader.getRowValues(0, startRow, endRow, allColumns, (rowIndex, row) -> {
+                    assertEquals(next[0]++, (int) rowIndex);
+                    assertArrayEquals(expected[rowIndex], valuesOf(row, allColumns.size()));
+                });
+                assertEquals(endRow + 1, next[0]);
+                break;
+            }
+            default: {
+                AtomicInteger rows = new AtomicInteger();
+                BiConsumer<Integer, Function<Integer, Object>> check = (rowIndex, row) -> {
+                    assertArrayEquals(expected[rowIndex], valuesOf(row, allColumns.size()));
+                    rows.incrementAndGet();
+                };
+                reader.getRowValues(0, startRow, endRow, allColumns, executor, random.nextBoolean(), check);
+                assertEquals(endRow - startRow + 1, rows.get());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Asserts that each kind of query is refused with the IllegalStateException of a closed Reader.
+     */
+    private void assertRefused(Reader reader) {
+        assertClosedFailure(() -> reader.getValue(0, 0, 0, allColumns.get(0).getDesiredType()));
+        assertClosedFailure(() -> reader.getRowValues(0, 0, expected.length - 1, allColumns,
+                (rowIndex, row) -> fail("row delivered by a closed Reader")));
+        assertClosedFailure(() -> reader.getRowValues(0, 0, expected.length - 1, allColumns, executor, false,
+                (rowIndex, row) -> fail("row delivered by a closed Reader")));
+    }
+
+    private static void assertConsumerFailure(Runnable query) {
+        try {
+            query.run();
+        } catch (RuntimeException e) {
+            for (Throwable cause = e; cause != null; cause = cause.getCause())
+                if (cause instanceof IllegalArgumentException && "consumer failed".equals(cause.getMessage())) return;
+            throw e;
+        }
+        fail("query did not fail with its consumer");
+    }
+
+    private static void assertClosedFailure(Runnable query) {
+        try {
+            query.run();
+        } catch (RuntimeException e) {
+            if (isClosedFailure(e)) return;
+            throw e;
+        }
+        fail("query on a closed Reader did not fail");
+    }
+
+    private static boolean isClosedFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+            if (cause instanceof IllegalStateException && "Reader has been closed".equals(cause.getMessage()))
+                return true;
+        return false;
+    }
+
+    private static void assertNoFailures(Queue<Throwable> failures) {
+        if (failures.isEmpty()) return;
+        AssertionError error = new AssertionError(String.format("%d threads failed", failures.size()));
+        for (Throwable failure : failures) error.addSuppressed(failure);
+        throw error;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) throw new AssertionError("timed out");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+
+    private Reader open() throws Exception {
+        return Fixtures.open(fixture);
+    }
+
+    private static Object[] valuesOf(Function<Integer, Object> row, int columnCount) {
+        Object[] values = new Object[columnCount];
+        for (int columnIndex = 0; columnIndex < columnCount; columnIndex++) values[columnIndex] = row.apply(columnIndex);
+        return values;
+    }
+
+    private static Type naturalType(Reader.ColumnTypes columnType) {
+        switch (columnType) {
+            case Boolean:
+                return Boolean.class;
+            case Double:
+                return Double.class;
+            case Long:
+                return Long.class;
+            case String:
+                return String.class;
+            default:
+                return Date.class;
+        }
+    }
+}
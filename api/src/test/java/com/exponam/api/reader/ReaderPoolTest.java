@@ -0,0 +1,90 @@
+package com.exponam.api.reader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Leases on copies of the mixed-100k.big fixture described in benchmarks/README.md.  Skipped if the fixture is
+ * missing.
+ */
+public class ReaderPoolTest {
+    private static final Supplier<String> PASSWORD = () -> System.getProperty("exponam.fixturePassword", "");
+
+    private File bigFile;
+    private ReaderPool pool;
+
+    @Before
+    public void copyFixture() throws Exception {
+        Path fixture = Fixtures.require(Fixtures.MIXED_100K);
+        bigFile = Files.createTempFile("reader-pool", ".big").toFile();
+        Files.copy(fixture, bigFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        pool = new ReaderPool(4, 1, TimeUnit.MINUTES);
+    }
+
+    @After
+    public void close() throws Exception {
+        if (pool != null) pool.close();
+        if (bigFile != null) Files.deleteIfExists(bigFile.toPath());
+    }
+
+    @Test
+    public void concurrentLeasesShareOneReader() throws Exception {
+        ReaderPool.Lease first = pool.acquire(bigFile, PASSWORD);
+        ReaderPool.Lease second = pool.acquire(bigFile, PASSWORD);
+        Reader reader = first.getReader();
+        assertSame(reader, second.getReader());
+
+        first.close();
+        assertTrue(reader.isOpen());
+        assertEquals(reader.getRowCount(0), second.getReader().getRowCount(0));
+        second.close();
+        assertTrue("an idle Reader is kept open", reader.isOpen());
+
+        try (ReaderPool.Lease third = pool.acquire(bigFile, PASSWORD)) {
+            assertSame(reader, third.getReader());
+        }
+    }
+
+    @Test
+    public void aReplacedFileGetsANewReaderOnceTheOldOneIsReleased() throws Exception {
+        ReaderPool.Lease old = pool.acquire(bigFile, PASSWORD);
+        Reader oldReader = old.getReader();
+        Files.setLastModifiedTime(bigFile.toPath(),
+                FileTime.fromMillis(bigFile.lastModified() + TimeUnit.MINUTES.toMillis(1)));
+
+        try (ReaderPool.Lease replaced = pool.acquire(bigFile, PASSWORD)) {
+            assertNotSame(oldReader, replaced.getReader());
+            assertTrue("a leased Reader is not closed under its holder", oldReader.isOpen());
+            old.close();
+            assertFalse("a stale Reader is closed once its last Lease is", oldReader.isOpen());
+        }
+    }
+
+    @Test
+    public void readersBeyondMaxIdleAreClosed() throws Exception {
+        try (ReaderPool noIdle = new ReaderPool(0, 1, TimeUnit.MINUTES)) {
+            ReaderPool.Lease lease = noIdle.acquire(bigFile, PASSWORD);
+            Reader reader = lease.getReader();
+            lease.close();
+            assertFalse(reader.isOpen());
+            try (ReaderPool.Lease again = noIdle.acquire(bigFile, PASSWORD)) {
+                assertNotSame(reader, again.getReader());
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.And;
+import com.exponam.api.reader.filters.Filter;
+import com.exponam.api.reader.filters.IsEqual;
+import com.exponam.api.reader.filters.IsGreaterThan;
+import com.exponam.api.reader.filters.IsIn;
+import com.exponam.api.reader.filters.IsLessThan;
+import com.exponam.api.reader.filters.IsNotEqual;
+import com.exponam.api.reader.filters.IsNotNull;
+import com.exponam.api.reader.filters.IsNull;
+import com.exponam.api.reader.filters.Or;
+import com.exponam.api.reader.filters.StringContains;
+import com.exponam.api.reader.filters.StringDoesNotContain;
+import com.exponam.api.reader.filters.StringIsEqual;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RowPredicatePlanTest {
+    @Test
+    public void positiveComparisonsOfNonStringColumnsAreEvaluatedByThePlan() {
+        assertEvaluated(true, IsGreaterThan.of("10"), Reader.ColumnTypes.Long);
+        assertEvaluated(true, And.of(IsGreaterThan.of("1.5"), IsLessThan.of("2.5")), Reader.ColumnTypes.Double);
+        assertEvaluated(true, Or.of(IsNull.of(), IsEqual.of("true")), Reader.ColumnTypes.Boolean);
+        assertEvaluated(true, IsNotNull.of(), Reader.ColumnTypes.Long);
+        // set membership cannot be pushed down at all
+        assertEvaluated(true, IsIn.of(1L, 2L), Reader.ColumnTypes.Long);
+    }
+
+    @Test
+    public void caseInsensitiveSubstringSearchesAreEvaluatedByThePlan() {
+        assertEvaluated(true, StringContains.of("error", false), Reader.ColumnTypes.String);
+        assertEvaluated(true, StringDoesNotContain.of("debug", false), Reader.ColumnTypes.String);
+        assertEvaluated(true, Or.of(StringContains.of("error", false), StringContains.of("fatal", false)),
+                Reader.ColumnTypes.String);
+
+        Filter filter = And.of(StringContains.of("TIMEOUT", false), StringDoesNotContain.of("retry", false));
+        FilterPlan plan = FilterPlan.compile(filter, Reader.ColumnTypes.String);
+        assertTrue(plan.test("read timeout after 30s"));
+        assertTrue(plan.test("Timeout"));
+        assertFalse(plan.test("timeout, RETRY 2"));
+        assertFalse(plan.test("ok"));
+        // an empty value satisfies neither filter
+        assertFalse(plan.test(null));
+        assertFalse(FilterPlan.compile(StringDoesNotContain.of("retry", false), Reader.ColumnTypes.String).test(null));
+    }
+
+    @Test
+    public void filtersWhoseResultsAreTheCoreReadersArePushedDown() {
+        // empty values
+        assertEvaluated(false, IsNotEqual.of("10"), Reader.ColumnTypes.Long);
+        assertEvaluated(false, And.of(IsGreaterThan.of("1"), IsNotEqual.of("10")), Reader.ColumnTypes.Long);
+        // string comparisons
+        assertEvaluated(false, StringIsEqual.of("a", true), Reader.ColumnTypes.String);
+        assertEvaluated(false, IsEqual.of("a"), Reader.ColumnTypes.String);
+        assertEvaluated(false, StringContains.of("error", true), Reader.ColumnTypes.String);
+        assertEvaluated(false, And.of(StringContains.of("error", false), StringIsEqual.of("a", false)),
+                Reader.ColumnTypes.String);
+        // an operand the API cannot interpret
+        assertEvaluated(false, IsGreaterThan.of("ten"), Reader.ColumnTypes.Long);
+    }
+
+    private static void assertEvaluated(boolean expected, Filter filter, Reader.ColumnTypes columnType) {
+        assertEquals(expected, RowPredicatePlan.isEvaluated(filter, FilterPlan.compile(filter, columnType), columnType));
+    }
+}
@@ -0,0 +1,262 @@
+package com.exponam.api.reader;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RowSetTest {
+    private static final int CHUNK_ROWS = 65536;
+    private static final int MAX_ARRAY_SIZE = 4096;
+    private static final int CHUNKS = 4;
+
+    @Test
+    public void operationsMatchBitSet() {
+        Random random = new Random(23);
+        for (int round = 0; round < 300; round++) {
+            BitSet left = randomRows(random);
+            BitSet right = randomRows(random);
+            RowSet a = rowSetOf(left);
+            RowSet b = rowSetOf(right);
+            assertMatches(left, a);
+            assertMatches(right, b);
+
+            BitSet and = (BitSet) left.clone();
+            and.and(right);
+            assertMatches(and, a.and(b));
+            BitSet or = (BitSet) left.clone();
+            or.or(right);
+            assertMatches(or, a.or(b));
+            BitSet andNot = (BitSet) left.clone();
+            andNot.andNot(right);
+            assertMatches(andNot, a.andNot(b));
+            BitSet notAnd = (BitSet) right.clone();
+            notAnd.andNot(left);
+            assertMatches(notAnd, b.andNot(a));
+        }
+    }
+
+    @Test
+    public void chunkBoundaries() {
+        RowSet rows = RowSet.of(CHUNK_ROWS - 1, CHUNK_ROWS, 2 * CHUNK_ROWS - 1, 2 * CHUNK_ROWS);
+        assertEquals(4, rows.getCardinality());
+        assertEquals(CHUNK_ROWS - 1, rows.first());
+        assertEquals(2 * CHUNK_ROWS, rows.last());
+        assertEquals(3, rows.chunkCount());
+        assertArrayEquals(new int[]{CHUNK_ROWS - 1, CHUNK_ROWS, 2 * CHUNK_ROWS - 1, 2 * CHUNK_ROWS},
+                rows.stream().toArray());
+        assertFalse(rows.contains(CHUNK_ROWS - 2));
+        assertFalse(rows.contains(CHUNK_ROWS + 1));
+
+        RowSet range = RowSet.range(CHUNK_ROWS - 2, CHUNK_ROWS + 1);
+        assertArrayEquals(new int[]{CHUNK_ROWS - 2, CHUNK_ROWS - 1, CHUNK_ROWS, CHUNK_ROWS + 1}, range.stream().toArray());
+        assertEquals(2, range.chunkCount());
+        assertEquals(0, range.chunkStartRow(0));
+        assertEquals(CHUNK_ROWS, range.chunkStartRow(1));
+        assertEquals(RowSet.of(CHUNK_ROWS - 1, CHUNK_ROWS), rows.and(range));
+
+        RowSet full = RowSet.range(0, 3 * CHUNK_ROWS - 1);
+        assertEquals(3L * CHUNK_ROWS, full.getCardinality());
+        assertMatches(bits(0, 3 * CHUNK_ROWS), full);
+        assertMatches(bits(CHUNK_ROWS, 3 * CHUNK_ROWS), full.andNot(RowSet.range(0, CHUNK_ROWS - 1)));
+    }
+
+    @Test
+    public void cardinalityThresholdBetweenArrayAndBitmap() {
+        for (int size : new int[]{MAX_ARRAY_SIZE - 1, MAX_ARRAY_SIZE, MAX_ARRAY_SIZE + 1}) {
+            BitSet even = new BitSet();
+            for (int i = 0; i < size; i++) even.set(CHUNK_ROWS + 2 * i);
+            RowSet rows = rowSetOf(even);
+            assertMatches(even, rows);
+
+            // growing past the threshold, and shrinking back below it, must keep every row
+            BitSet odd = new BitSet();
+            for (int i = 0; i < size; i++) odd.set(CHUNK_ROWS + 2 * i + 1);
+            RowSet both = rows.or(rowSetOf(odd));
+            assertEquals(2L * size, both.getCardinality());
+            BitSet union = (BitSet) even.clone();
+            union.or(odd);
+            assertMatches(union, both);
+            assertEquals(rows, both.andNot(rowSetOf(odd)));
+            assertEquals(rows, both.and(rows));
+
+            RowSet oneMore = rows.or(RowSet.of(CHUNK_ROWS + 2 * size));
+            assertEquals(size + 1, oneMore.getCardinality());
+            assertEquals(rows, oneMore.andNot(RowSet.of(CHUNK_ROWS + 2 * size)));
+        }
+        RowSet bitmap = RowSet.range(0, MAX_ARRAY_SIZE);
+        RowSet array = RowSet.range(MAX_ARRAY_SIZE, MAX_ARRAY_SIZE + 10);
+        assertEquals(RowSet.of(MAX_ARRAY_SIZE), bitmap.and(array));
+        assertEquals(RowSet.range(0, MAX_ARRAY_SIZE - 1), bitmap.andNot(array));
+        assertEquals(RowSet.range(MAX_ARRAY_SIZE + 1, MAX_ARRAY_SIZE + 10), array.andNot(bitmap));
+        assertEquals(RowSet.range(0, MAX_ARRAY_SIZE + 10), array.or(bitmap));
+    }
+
+    @Test
+    public void emptyResults() {
+        RowSet empty = RowSet.empty();
+        assertMatches(new BitSet(), empty);
+        assertTrue(empty.isEmpty());
+        assertEquals(empty, RowSet.of());
+        assertFalse(empty.iterator().hasNext());
+        try {
+            empty.first();
+            fail("first() of an empty set");
+        } catch (NoSuchElementException expected) {
+            // expected
+        }
+        try {
+            empty.last();
+            fail("last() of an empty set");
+        } catch (NoSuchElementException expected) {
+            // expected
+        }
+        try {
+            empty.iterator().nextInt();
+            fail("nextInt() past the end");
+        } catch (NoSuchElementException expected) {
+            // expected
+        }
+
+        RowSet bitmap = RowSet.range(0, CHUNK_ROWS - 1);
+        RowSet array = RowSet.of(CHUNK_ROWS + 5, 3 * CHUNK_ROWS);
+        assertEquals(empty, bitmap.and(array));
+        assertEquals(empty, bitmap.andNot(bitmap));
+        assertEquals(empty, array.andNot(array));
+        assertEquals(empty, array.and(RowSet.of(CHUNK_ROWS + 6)));
+        assertEquals(empty, empty.and(bitmap));
+        assertEquals(empty, empty.andNot(bitmap));
+        assertEquals(bitmap, bitmap.andNot(empty));
+        assertEquals(array, empty.or(array));
+        assertEquals(0, bitmap.andNot(bitmap).chunkCount());
+    }
+
+    @Test
+    public void builderRejectsRowsOutOfOrder() {
+        RowSet.Builder builder = new RowSet.Builder();
+        builder.add(CHUNK_ROWS, bits(0, 10));
+        builder.add(CHUNK_ROWS + 20, bits(0, 10));
+        expectIllegalArgument(() -> builder.add(CHUNK_ROWS + 25, bits(0, 1)));
+        expectIllegalArgument(() -> builder.add(0, bits(0, 1)));
+        expectIllegalArgument(() -> builder.add(2 * CHUNK_ROWS - 5, bits(0, 10)));
+        builder.add(2 * CHUNK_ROWS, new BitSet());
+        builder.add(3 * CHUNK_ROWS, bits(3, 4));
+        BitSet expected = bits(CHUNK_ROWS, CHUNK_ROWS + 10);
+        expected.set(CHUNK_ROWS + 20, CHUNK_ROWS + 30);
+        expected.set(3 * CHUNK_ROWS + 3);
+        assertMatches(expected, builder.build());
+        expectIllegalArgument(() -> RowSet.of(1, -1));
+        expectIllegalArgument(() -> RowSet.range(5, 4));
+    }
+
+    @Test
+    public void collectorBuildsTheRowsItIsGiven() {
+        Random random = new Random(5);
+        BitSet expected = randomRows(random);
+        RowSet.Collector collector = new RowSet.Collector();
+        for (int row = expected.nextSetBit(0); row >= 0; row = expected.nextSetBit(row + 1)) collector.accept(row, null);
+        assertMatches(expected, collector.build());
+    }
+
+    /**
+     * Rows over a few chunks, each chunk empty, sparse, at the array/bitmap threshold, dense or full.
+     */
+    private static BitSet randomRows(Random random) {
+        BitSet rows = new BitSet();
+        for (int chunk = 0; chunk < CHUNKS; chunk++) {
+            int start = chunk * CHUNK_ROWS;
+            switch (random.nextInt(6)) {
+                case 0:
+                    break;
+                case 1:
+                    for (int i = random.nextInt(50); i > 0; i--) rows.set(start + random.nextInt(CHUNK_ROWS));
+                    rows.set(start + CHUNK_ROWS - 1, random.nextBoolean());
+                    rows.set(start, random.nextBoolean());
+                    break;
+                case 2:
+                    int size = MAX_ARRAY_SIZE - 1 + random.nextInt(3);
+                    BitSet chunkRows = new BitSet();
+                    while (chunkRows.cardinality() < size) chunkRows.set(random.nextInt(CHUNK_ROWS));
+                    for (int row = chunkRows.nextSetBit(0); row >= 0; row = chunkRows.nextSetBit(row + 1))
+                        rows.set(start + row);
+                    break;
+                case 3:
+                    for (int row = 0; row < CHUNK_ROWS; row++) if (random.nextInt(3) == 0) rows.set(start + row);
+                    break;
+                case 4:
+                    rows.set(start + random.nextInt(100), start + CHUNK_ROWS - random.nextInt(100));
+                    break;
+                default:
+                    rows.set(start, start + CHUNK_ROWS);
+                    break;
+            }
+        }
+        return rows;
+    }
+
+    private static RowSet rowSetOf(BitSet rows) {
+        return RowSet.of(rows.stream().toArray());
+    }
+
+    private static BitSet bits(int fromIndex, int toIndex) {
+        BitSet bits = new BitSet();
+        bits.set(fromIndex, toIndex);
+        return bits;
+    }
+
+    private static void assertMatches(BitSet expected, RowSet actual) {
+        assertEquals(expected.cardinality(), actual.getCardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        int[] rows = expected.stream().toArray();
+        assertArrayEquals(rows, actual.stream().toArray());
+
+        int[] iterated = new int[rows.length];
+        int count = 0;
+        for (PrimitiveIterator.OfInt iterator = actual.iterator(); iterator.hasNext(); ) iterated[count++] = iterator.nextInt();
+        assertArrayEquals(rows, iterated);
+        int[] visited = new int[rows.length];
+        int[] next = {0};
+        actual.forEach(row -> visited[next[0]++] = row);
+        assertArrayEquals(rows, visited);
+
+        if (rows.length > 0) {
+            assertEquals(rows[0], actual.first());
+            assertEquals(rows[rows.length - 1], actual.last());
+        }
+        for (int row : rows) assertTrue(actual.contains(row));
+        for (int row = 0; row < (CHUNKS + 1) * CHUNK_ROWS; row += 7) assertEquals(expected.get(row), actual.contains(row));
+        assertFalse(actual.contains(-1));
+
+        BitSet fromChunks = new BitSet();
+        for (int chunk = 0; chunk < actual.chunkCount(); chunk++) {
+            BitSet chunkRows = actual.chunkRows(chunk);
+            assertFalse(chunkRows.isEmpty());
+            int startRow = actual.chunkStartRow(chunk);
+            for (int row = chunkRows.nextSetBit(0); row >= 0; row = chunkRows.nextSetBit(row + 1)) fromChunks.set(startRow + row);
+        }
+        assertEquals(expected, fromChunks);
+
+        RowSet rebuilt = RowSet.of(rows);
+        assertEquals(rebuilt, actual);
+        assertEquals(rebuilt.hashCode(), actual.hashCode());
+        if (rows.length > 0) assertNotEquals(actual, actual.andNot(RowSet.of(rows[0])));
+    }
+
+    private static void expectIllegalArgument(Runnable action) {
+        try {
+            action.run();
+        } catch (IllegalArgumentException expected) {
+            return;
+        }
+        fail("expected IllegalArgumentException");
+    }
+}
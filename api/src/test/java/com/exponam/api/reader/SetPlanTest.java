@@ -0,0 +1,110 @@
+package com.exponam.api.reader;
+
+import com.exponam.api.reader.filters.IsIn;
+import com.exponam.api.reader.filters.IsNotIn;
+import com.exponam.api.reader.filters.StringIsIn;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SetPlanTest {
+    @Test
+    public void longSetMatchesHashSet() {
+        Random random = new Random(3);
+        for (int round = 0; round < 50; round++) {
+            int count = random.nextInt(200);
+            Object[] operands = new Object[count];
+            Set<Long> expected = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                long value = random.nextInt(1000) - 500;
+                operands[i] = value;
+                expected.add(value);
+            }
+            FilterPlan in = SetPlan.compile(IsIn.of(operands), Reader.ColumnTypes.Long);
+            FilterPlan notIn = SetPlan.compile(IsNotIn.of(operands), Reader.ColumnTypes.Long);
+            for (long value = -600; value < 600; value++) {
+                assertEquals(expected.contains(value), in.test(value));
+                assertEquals(!expected.contains(value), notIn.test(value));
+            }
+        }
+    }
+
+    @Test
+    public void fractionalOperandsMatchNoLong() {
+        FilterPlan in = SetPlan.compile(IsIn.of(1.5, 2, 1e30), Reader.ColumnTypes.Long);
+        assertFalse(in.test(1L));
+        assertTrue(in.test(2L));
+        assertFalse(in.test(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void emptyValuesSatisfyNeitherInNorNotIn() {
+        assertFalse(SetPlan.compile(IsIn.of(1L), Reader.ColumnTypes.Long).test(null));
+        assertFalse(SetPlan.compile(IsNotIn.of(1L), Reader.ColumnTypes.Long).test(null));
+        assertFalse(SetPlan.compile(IsIn.of(1.0), Reader.ColumnTypes.Double).test(null));
+        assertFalse(SetPlan.compile(IsNotIn.of("a"), Reader.ColumnTypes.String).test(null));
+    }
+
+    @Test
+    public void doubleSetTreatsNegativeZeroAsZeroAndNaNAsNoValue() {
+        FilterPlan in = SetPlan.compile(IsIn.of(-0.0, 2.5), Reader.ColumnTypes.Double);
+        assertTrue(in.test(0.0));
+        assertTrue(in.test(-0.0));
+        assertTrue(in.test(2.5));
+        assertFalse(in.test(2.4));
+        assertFalse(in.test(Double.NaN));
+        FilterPlan notIn = SetPlan.compile(IsNotIn.of(0.0), Reader.ColumnTypes.Double);
+        assertFalse(notIn.test(-0.0));
+        assertTrue(notIn.test(1.0));
+        assertTrue(notIn.test(Double.NaN));
+    }
+
+    @Test
+    public void stringSetIsCaseSensitiveUnlessAskedOtherwise() {
+        FilterPlan sensitive = SetPlan.compile(StringIsIn.of(Arrays.asList("Apple", "stra\u00DFe"), true),
+                Reader.ColumnTypes.String);
+        assertTrue(sensitive.test("Apple"));
+        assertFalse(sensitive.test("apple"));
+        FilterPlan insensitive = SetPlan.compile(StringIsIn.of(Arrays.asList("Apple", "stra\u00DFe", "\u212A"), false),
+                Reader.ColumnTypes.String);
+        for (String value : new String[]{"apple", "APPLE", "Apple", "STRA\u00DFE", "k", "K", "\u212A", "pear", "StRaSSe"})
+            assertEquals(value, isInIgnoreCase(value, "Apple", "stra\u00DFe", "\u212A"), insensitive.test(value));
+        FilterPlan notIn = SetPlan.compile(IsNotIn.of("a", "b"), Reader.ColumnTypes.String);
+        assertFalse(notIn.test("a"));
+        assertTrue(notIn.test("A"));
+    }
+
+    @Test
+    public void zonesWithoutAnyOperandInRangeCannotMatch() {
+        FilterPlan in = SetPlan.compile(IsIn.of(10L, 20L, 30L), Reader.ColumnTypes.Long);
+        assertTrue(in.canMatch(zone(Reader.ColumnTypes.Long, 5L, 10L)));
+        assertTrue(in.canMatch(zone(Reader.ColumnTypes.Long, 11L, 20L)));
+        assertFalse(in.canMatch(zone(Reader.ColumnTypes.Long, 11L, 19L)));
+        assertFalse(in.canMatch(zone(Reader.ColumnTypes.Long, 31L, 40L)));
+        assertFalse(in.canMatch(zone(Reader.ColumnTypes.Long, (Object) null)));
+        FilterPlan notIn = SetPlan.compile(IsNotIn.of(10L), Reader.ColumnTypes.Long);
+        assertFalse(notIn.canMatch(zone(Reader.ColumnTypes.Long, 10L, 10L)));
+        assertTrue(notIn.canMatch(zone(Reader.ColumnTypes.Long, 10L, 11L)));
+        FilterPlan doubles = SetPlan.compile(IsIn.of(1.5), Reader.ColumnTypes.Double);
+        assertTrue(doubles.canMatch(zone(Reader.ColumnTypes.Double, 1.0, 2.0)));
+        assertFalse(doubles.canMatch(zone(Reader.ColumnTypes.Double, 1.6, 2.0)));
+    }
+
+    private static ColumnZone zone(Reader.ColumnTypes columnType, Object... values) {
+        ColumnZone zone = new ColumnZone(columnType, values.length, true);
+        for (Object value : values) zone.add(value);
+        return zone;
+    }
+
+    private static boolean isInIgnoreCase(String value, String... operands) {
+        for (String operand : operands) if (operand.equalsIgnoreCase(value)) return true;
+        return false;
+    }
+}
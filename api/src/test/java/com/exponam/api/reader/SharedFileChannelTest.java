@@ -0,0 +1,76 @@
+package com.exponam.api.reader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SharedFileChannelTest {
+    private Path file;
+    private SharedFileChannel channel;
+
+    @Before
+    public void open() throws Exception {
+        file = Files.createTempFile("shared-file-channel", ".bin");
+        byte[] content = new byte[4096];
+        for (int i = 0; i < content.length; i++) content[i] = (byte) i;
+        Files.write(file, content);
+        channel = new SharedFileChannel(file);
+    }
+
+    @After
+    public void close() throws Exception {
+        Thread.interrupted();
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void anInterruptedReadFailsWithoutClosingTheChannelForOtherReads() throws Exception {
+        Thread.currentThread().interrupt();
+        try {
+            channel.read(ByteBuffer.allocate(16), 0);
+            fail("an interrupted read should fail");
+        } catch (ClosedByInterruptException expected) {
+            // the read of the interrupted thread fails
+        }
+        assertEquals(true, Thread.interrupted());
+
+        assertEquals(4096, channel.size());
+        ByteBuffer target = ByteBuffer.allocate(16);
+        assertEquals(16, channel.read(target, 100));
+        assertEquals((byte) 100, target.get(0));
+
+        Thread other = new Thread(() -> {
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate(8);
+                channel.read(buffer, 200);
+                target.put(0, buffer.get(0));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        other.start();
+        other.join();
+        assertEquals((byte) 200, target.get(0));
+    }
+
+    @Test
+    public void readsAfterCloseFail() throws Exception {
+        channel.close();
+        try {
+            channel.read(ByteBuffer.allocate(16), 0);
+            fail("a read of a closed channel should fail");
+        } catch (ClosedChannelException expected) {
+            // closing is final, unlike an interrupt
+        }
+    }
+}
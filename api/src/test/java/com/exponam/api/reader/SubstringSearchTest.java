@@ -0,0 +1,89 @@
+package com.exponam.api.reader;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubstringSearchTest {
+    /**
+     * Characters whose case folding is not plain ASCII: the Kelvin sign, which folds to k; dotless i and dotted
+     * capital I, which fold to i; sharp s, which equalsIgnoreCase leaves alone; and a Deseret letter in both
+     * cases, as surrogate pairs.
+     */
+    private static final String[] UNUSUAL = {"\u212A", "\u0131", "\u0130", "\u00DF", "\uD801\uDC00", "\uD801\uDC28"};
+    private static final String[] ASCII = {"a", "A", "b", "B", "k", "K", "i", "I", "s", "S", " ", "."};
+
+    @Test
+    public void caseInsensitiveSearchAgreesWithRegionMatches() {
+        Random random = new Random(14);
+        for (int round = 0; round < 20000; round++) {
+            // ASCII needles are searched with Boyer-Moore-Horspool, others with regionMatches
+            String needle = randomString(random, 1 + random.nextInt(4), random.nextBoolean());
+            String haystack = randomString(random, random.nextInt(16), true);
+            SubstringSearch search = SubstringSearch.of(needle, false);
+            for (int from = 0; from <= haystack.length(); from++)
+                assertEquals(String.format("'%s' in '%s' from %d", needle, haystack, from),
+                        regionSearch(haystack, needle, from), search.indexIn(haystack, from));
+            assertEquals(regionSearch(haystack, needle, 0) >= 0, search.isFoundIn(haystack));
+        }
+    }
+
+    @Test
+    public void caseSensitiveSearchAgreesWithIndexOf() {
+        Random random = new Random(15);
+        for (int round = 0; round < 5000; round++) {
+            String needle = randomString(random, 1 + random.nextInt(3), random.nextBoolean());
+            String haystack = randomString(random, random.nextInt(16), true);
+            SubstringSearch search = SubstringSearch.of(needle, true);
+            for (int from = 0; from <= haystack.length(); from++)
+                assertEquals(haystack.indexOf(needle, from), search.indexIn(haystack, from));
+        }
+    }
+
+    @Test
+    public void foldsAsEqualsIgnoreCaseDoes() {
+        assertTrue(SubstringSearch.of("kelvin", false).isFoundIn("273 \u212AELVIN"));
+        assertTrue(SubstringSearch.of("fix", false).isFoundIn("pre\u0131FIX"));
+        assertTrue(SubstringSearch.of("xi", false).isFoundIn("X\u0130"));
+        assertFalse(SubstringSearch.of("ss", false).isFoundIn("stra\u00DFe"));
+        // whether supplementary characters fold depends on the Java version, but always as regionMatches does
+        assertEquals(regionSearch("a\uD801\uDC00b", "\uD801\uDC28", 0),
+                SubstringSearch.of("\uD801\uDC28", false).indexIn("a\uD801\uDC00b", 0));
+        assertFalse(SubstringSearch.of("kelvin", true).isFoundIn("\u212Aelvin"));
+    }
+
+    @Test
+    public void emptyNeedleIsFoundAtEveryOffset() {
+        SubstringSearch search = SubstringSearch.of("", false);
+        assertEquals(0, search.indexIn("abc", 0));
+        assertEquals(2, search.indexIn("abc", 2));
+        assertEquals(3, search.indexIn("abc", 3));
+        assertEquals(-1, search.indexIn("abc", 4));
+        assertEquals(0, search.indexIn("", 0));
+    }
+
+    @Test
+    public void needleLongerThanHaystackIsNotFound() {
+        assertEquals(-1, SubstringSearch.of("abcd", false).indexIn("abc", 0));
+        assertEquals(-1, SubstringSearch.of("abc", false).indexIn("xxabc", 3));
+    }
+
+    private static int regionSearch(String haystack, String needle, int from) {
+        for (int offset = from; offset + needle.length() <= haystack.length(); offset++)
+            if (haystack.regionMatches(true, offset, needle, 0, needle.length())) return offset;
+        return -1;
+    }
+
+    private static String randomString(Random random, int length, boolean unusual) {
+        StringBuilder string = new StringBuilder();
+        while (string.length() < length) {
+            if (unusual && random.nextInt(4) == 0) string.append(UNUSUAL[random.nextInt(UNUSUAL.length)]);
+            else string.append(ASCII[random.nextInt(ASCII.length)]);
+        }
+        return string.toString();
+    }
+}
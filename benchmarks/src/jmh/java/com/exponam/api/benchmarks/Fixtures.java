@@ -0,0 +1,71 @@
+package com.exponam.api.benchmarks;
+
+import com.exponam.api.reader.Reader;
+import com.exponam.api.reader.ReaderOptions;
+import com.exponam.core.reader.BigReader;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+
+/**
+ * Locates the .BIG fixtures described in benchmarks/README.md.  The fixture directory and password are
+ * passed to the benchmark JVM as the exponam.fixtures and exponam.fixturePassword system properties.
+ */
+final class Fixtures {
+    static final String SMALL = "mixed-100k.big";
+    static final String LARGE = "mixed-1m.big";
+    static final String LARGE_ENCRYPTED = "mixed-1m-encrypted.big";
+
+    private Fixtures() {
+    }
+
+    static Path path(String file) {
+        Path path = Paths.get(System.getProperty("exponam.fixtures", "fixtures")).resolve(file);
+        if (!Files.isRegularFile(path))
+            throw new IllegalStateException(String.format("Fixture '%s' not found; see benchmarks/README.md", path));
+        return path;
+    }
+
+    static String password() {
+        return System.getProperty("exponam.fixturePassword", "");
+    }
+
+    static Reader open(String file) throws IOException, BigReader.UnsupportedFileVersionException {
+        return new Reader(path(file), Fixtures::password);
+    }
+
+    static Reader open(String file, ReaderOptions options) throws IOException, BigReader.UnsupportedFileVersionException {
+        return new Reader(path(file).toFile(), Fixtures::password, options);
+    }
+
+    /**
+     * The index of the first column of worksheet 0 of the given type.
+     */
+    static int firstColumnOf(Reader reader, Reader.ColumnTypes columnType) {
+        for (int columnIndex = 0; columnIndex < reader.getColumnCount(0); columnIndex++)
+            if (reader.getColumnType(0, columnIndex) == columnType) return columnIndex;
+        throw new IllegalStateException(String.format("Fixture has no %s column; see benchmarks/README.md", columnType));
+    }
+
+    /**
+     * The type in which values of a column of columnType are naturally read.
+     */
+    static Type naturalType(Reader.ColumnTypes columnType) {
+        switch (columnType) {
+            case Boolean:
+                return Boolean.class;
+            case Double:
+                return Double.class;
+            case Long:
+                return Long.class;
+            case String:
+                return String.class;
+            default:
+                return Date.class;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.exponam.api.benchmarks;
+
+import com.exponam.api.reader.Reader;
+import com.exponam.core.reader.BigReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The latency of opening a Reader, which reads the file header and schema and, for encrypted files,
+ * derives the key from the password.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OpenBenchmark {
+    @Param({Fixtures.SMALL, Fixtures.LARGE, Fixtures.LARGE_ENCRYPTED})
+    public String file;
+
+    @Benchmark
+    public int open() throws IOException, BigReader.UnsupportedFileVersionException {
+        try (Reader reader = Fixtures.open(file)) {
+            return reader.getColumnCount(0);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.exponam.api.benchmarks;
+
+import com.exponam.api.reader.Reader;
+import com.exponam.core.reader.BigReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random access through getValue, one column type at a time, over rows chosen uniformly at random.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PointLookupBenchmark {
+    private static final int ROWS = 4096;
+
+    @Param({Fixtures.LARGE, Fixtures.LARGE_ENCRYPTED})
+    public String file;
+
+    @Param({"Boolean", "Long", "Double", "String", "Date", "DateTime", "Time"})
+    public String columnType;
+
+    private Reader reader;
+    private int columnIndex;
+    private Type desiredType;
+    private int[] rows;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, BigReader.UnsupportedFileVersionException {
+        reader = Fixtures.open(file);
+        Reader.ColumnTypes type = Reader.ColumnTypes.valueOf(columnType);
+        columnIndex = Fixtures.firstColumnOf(reader, type);
+        desiredType = Fixtures.naturalType(type);
+        Random random = new Random(42);
+        rows = new int[ROWS];
+        for (int i = 0; i < ROWS; i++) rows[i] = random.nextInt(reader.getRowCount(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public Object getValue() {
+        int rowIndex = rows[next];
+        next = (next + 1) & (ROWS - 1);
+        return reader.getValue(0, rowIndex, columnIndex, desiredType);
+    }
+}
@@ -0,0 +1,66 @@
+package com.exponam.api.benchmarks;
+
+import com.exponam.api.reader.QueryColumn;
+import com.exponam.api.reader.Reader;
+import com.exponam.api.reader.ReaderOptions;
+import com.exponam.core.reader.BigReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sequential getRowValues over every row of a fixture and every column, by prefetch depth, with a consumer
+ * that does a fixed amount of work per row, so that the overlap of reading with consuming shows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PrefetchBenchmark {
+    @Param({Fixtures.LARGE, Fixtures.LARGE_ENCRYPTED})
+    public String file;
+
+    @Param({"0", "1", "2", "4"})
+    public int prefetchDepth;
+
+    @Param({"0", "200"})
+    public int consumerTokens;
+
+    private Reader reader;
+    private int lastRow;
+    private Map<Integer, QueryColumn> allColumns;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, BigReader.UnsupportedFileVersionException {
+        reader = Fixtures.open(file, ReaderOptions.defaults().withPrefetchDepth(prefetchDepth));
+        lastRow = reader.getRowCount(0) - 1;
+        allColumns = new HashMap<>();
+        for (int columnIndex = 0; columnIndex < reader.getColumnCount(0); columnIndex++)
+            allColumns.put(columnIndex, new QueryColumn(Fixtures.naturalType(reader.getColumnType(0, columnIndex))));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        reader.getRowValues(0, 0, lastRow, allColumns, (rowIndex, row) -> {
+            blackhole.consume(row.apply(0));
+            Blackhole.consumeCPU(consumerTokens);
+        });
+    }
+}
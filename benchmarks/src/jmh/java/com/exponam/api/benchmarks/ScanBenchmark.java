@@ -0,0 +1,81 @@
+package com.exponam.api.benchmarks;
+
+import com.exponam.api.reader.QueryColumn;
+import com.exponam.api.reader.Reader;
+import com.exponam.api.reader.filters.Filter;
+import com.exponam.api.reader.filters.IsGreaterThanOrEqual;
+import com.exponam.api.reader.filters.StringIsGreaterThanOrEqual;
+import com.exponam.core.reader.BigReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getRowValues over every row of a fixture, projecting one column at a time: unfiltered, and filtered by a
+ * comparison against the value in the middle row, which matches roughly half the rows of unsorted data.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScanBenchmark {
+    @Param({Fixtures.SMALL, Fixtures.LARGE, Fixtures.LARGE_ENCRYPTED})
+    public String file;
+
+    @Param({"Boolean", "Long", "Double", "String", "Date", "DateTime", "Time"})
+    public String columnType;
+
+    private Reader reader;
+    private int lastRow;
+    private int columnIndex;
+    private Map<Integer, QueryColumn> unfiltered;
+    private Map<Integer, QueryColumn> filtered;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, BigReader.UnsupportedFileVersionException {
+        reader = Fixtures.open(file);
+        lastRow = reader.getRowCount(0) - 1;
+        Reader.ColumnTypes type = Reader.ColumnTypes.valueOf(columnType);
+        columnIndex = Fixtures.firstColumnOf(reader, type);
+        Type desiredType = Fixtures.naturalType(type);
+        unfiltered = Collections.singletonMap(columnIndex, new QueryColumn(desiredType));
+        filtered = Collections.singletonMap(columnIndex, new QueryColumn(desiredType,
+                Optional.of(middleRowFilter(type, reader.getValue(0, lastRow / 2, columnIndex, desiredType)))));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public void fullScan(Blackhole blackhole) {
+        reader.getRowValues(0, 0, lastRow, unfiltered, (rowIndex, row) -> blackhole.consume(row.apply(columnIndex)));
+    }
+
+    @Benchmark
+    public void filteredScan(Blackhole blackhole) {
+        reader.getRowValues(0, 0, lastRow, filtered, (rowIndex, row) -> blackhole.consume(row.apply(columnIndex)));
+    }
+
+    private static Filter middleRowFilter(Reader.ColumnTypes type, Object middle) {
+        if (middle == null) throw new IllegalStateException("Fixture's middle row is empty; see benchmarks/README.md");
+        return type == Reader.ColumnTypes.String
+                ? StringIsGreaterThanOrEqual.of((String) middle, true)
+                : IsGreaterThanOrEqual.of(middle);
+    }
+}
@@ -0,0 +1,106 @@
+package com.exponam.api.benchmarks;
+
+import com.exponam.api.reader.QueryColumn;
+import com.exponam.api.reader.Reader;
+import com.exponam.api.reader.filters.Filter;
+import com.exponam.api.reader.filters.StringContains;
+import com.exponam.api.reader.filters.StringIsEqual;
+import com.exponam.api.reader.filters.StringIsIn;
+import com.exponam.api.reader.filters.StringLike;
+import com.exponam.api.reader.filters.StringMatches;
+import com.exponam.api.reader.filters.StringStartsWith;
+import com.exponam.core.reader.BigReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The cost of each kind of string filter, scanning every row of the first String column of a fixture.
+ * Operands are taken from the values of the fixture itself, so that every filter matches some rows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StringFilterBenchmark {
+    @Param({Fixtures.LARGE})
+    public String file;
+
+    @Param({"equals", "equalsIgnoreCase", "startsWith", "contains", "containsIgnoreCase", "in", "like", "matches"})
+    public String filter;
+
+    private Reader reader;
+    private int lastRow;
+    private int columnIndex;
+    private Map<Integer, QueryColumn> queryColumns;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException, BigReader.UnsupportedFileVersionException {
+        reader = Fixtures.open(file);
+        lastRow = reader.getRowCount(0) - 1;
+        columnIndex = Fixtures.firstColumnOf(reader, Reader.ColumnTypes.String);
+        queryColumns = Collections.singletonMap(columnIndex,
+                new QueryColumn(String.class, Optional.of(filterOf(filter))));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        reader.getRowValues(0, 0, lastRow, queryColumns, (rowIndex, row) -> blackhole.consume(row.apply(columnIndex)));
+    }
+
+    private Filter filterOf(String kind) {
+        String value = sample(lastRow / 2);
+        String fragment = value.substring(value.length() / 3, Math.max(value.length() / 3 + 1, 2 * value.length() / 3));
+        switch (kind) {
+            case "equals":
+                return StringIsEqual.of(value, true);
+            case "equalsIgnoreCase":
+                return StringIsEqual.of(value.toUpperCase(), false);
+            case "startsWith":
+                return StringStartsWith.of(value.substring(0, Math.min(3, value.length())), true);
+            case "contains":
+                return StringContains.of(fragment, true);
+            case "containsIgnoreCase":
+                return StringContains.of(fragment.toUpperCase(), false);
+            case "in": {
+                Set<String> values = new LinkedHashSet<>();
+                for (int i = 1; i <= 8; i++) values.add(sample((int) ((long) lastRow * i / 9)));
+                return StringIsIn.of(values, true);
+            }
+            case "like":
+                return StringLike.of("%" + fragment.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%", true);
+            case "matches":
+                return StringMatches.of(".*" + Pattern.quote(fragment) + ".*", true);
+            default:
+                throw new IllegalArgumentException(String.format("Unknown filter '%s'", kind));
+        }
+    }
+
+    private String sample(int rowIndex) {
+        String value = reader.getValue(0, rowIndex, columnIndex, String.class);
+        if (value == null || value.isEmpty())
+            throw new IllegalStateException(String.format("Fixture's row %d has no String value; see benchmarks/README.md", rowIndex));
+        return value;
+    }
+}